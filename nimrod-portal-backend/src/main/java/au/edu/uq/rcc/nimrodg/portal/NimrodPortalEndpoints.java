@@ -21,12 +21,11 @@ package au.edu.uq.rcc.nimrodg.portal;
 
 import au.edu.uq.rcc.nimrodg.api.AgentInfo;
 import au.edu.uq.rcc.nimrodg.api.Experiment;
-import au.edu.uq.rcc.nimrodg.api.Job;
-import au.edu.uq.rcc.nimrodg.api.JobAttempt;
 import au.edu.uq.rcc.nimrodg.api.NimrodAPI;
 import au.edu.uq.rcc.nimrodg.api.NimrodException;
 import au.edu.uq.rcc.nimrodg.api.PlanfileParseException;
 import au.edu.uq.rcc.nimrodg.api.Resource;
+import au.edu.uq.rcc.nimrodg.api.RunCounts;
 import au.edu.uq.rcc.nimrodg.api.setup.SetupConfig;
 import au.edu.uq.rcc.nimrodg.api.utils.run.CompiledRun;
 import au.edu.uq.rcc.nimrodg.api.utils.run.JsonUtils;
@@ -116,7 +115,6 @@ import java.sql.Statement;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -676,29 +674,12 @@ public class NimrodPortalEndpoints {
 		on.set("variables", vars);
 		on.set("tasks", javaxJsonToJackson(JsonUtils.toJson(exp.getTasks().values())));
 
-		Collection<Job> jobs = nimrod.filterJobs(exp, EnumSet.allOf(JobAttempt.Status.class), 0, -1);
-		int nComplete = 0, nFailed = 0, nPending = 0, nRunning = 0;
-		for(Job j : jobs) {
-			switch(j.getCachedStatus()) {
-				case COMPLETED:
-					++nComplete;
-					break;
-				case RUNNING:
-					++nRunning;
-					break;
-				case FAILED:
-					++nFailed;
-					break;
-				case NOT_RUN:
-					++nPending;
-					break;
-			}
-		}
-		on.put("total_jobs", jobs.size());
-		on.put("completed_jobs", nComplete);
-		on.put("running_jobs", nRunning);
-		on.put("failed_jobs", nFailed);
-		on.put("pending_jobs", nPending);
+		RunCounts counts = nimrod.getRunCounts(exp);
+		on.put("total_jobs", counts.total);
+		on.put("completed_jobs", counts.completed);
+		on.put("running_jobs", counts.running);
+		on.put("failed_jobs", counts.failed);
+		on.put("pending_jobs", counts.notRun);
 		return on;
 	}
 
@@ -51,4 +51,16 @@ public interface MessageBackend {
 	 * @return The MIME Content-Type this handler produces/consumes.
 	 */
 	ContentType getContentType();
+
+	/**
+	 * Does this backend's encoding depend on the charset.
+	 * <p>
+	 * If not, the charset passed to {@link #toBytes(AgentMessage, Charset)} and {@link #fromBytes(byte[], Charset)}
+	 * is ignored and shouldn't be advertised in the Content-Type.
+	 *
+	 * @return If this backend's encoding depends on the charset.
+	 */
+	default boolean usesCharset() {
+		return true;
+	}
 }
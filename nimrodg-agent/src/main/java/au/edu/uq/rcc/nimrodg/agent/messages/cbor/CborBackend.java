@@ -0,0 +1,164 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.agent.messages.cbor;
+
+import au.edu.uq.rcc.nimrodg.agent.MessageBackend;
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentMessage;
+
+import javax.mail.internet.ContentType;
+import java.nio.charset.Charset;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A compact binary message backend, using CBOR (RFC 8949).
+ *
+ * Messages are encoded as a map of
+ * <ul>
+ * <li>{@code uuid}: the agent UUID, as a 16-byte byte string,</li>
+ * <li>{@code version}: the protocol version,</li>
+ * <li>{@code type}: the message type string, i.e. {@code agent.submit},</li>
+ * <li>{@code timestamp}: an array of [epoch seconds, nanoseconds], and</li>
+ * <li>{@code payload}: a map of the type-specific fields.</li>
+ * </ul>
+ *
+ * Payload field names and enumeration strings are the same as the JSON encoding, except UUIDs,
+ * which are byte strings. Maps may be in any order and unknown keys are skipped.
+ *
+ * As the encoding is binary, the charset is ignored.
+ */
+public class CborBackend implements MessageBackend {
+	private static final Map<AgentMessage.Type, CborHandler> MESSAGE_HANDLERS = Map.of(
+			AgentMessage.Type.Hello, new HelloHandler(),
+			AgentMessage.Type.Init, new InitHandler(),
+			AgentMessage.Type.LifeControl, new LifeControlHandler(),
+			AgentMessage.Type.Shutdown, new ShutdownHandler(),
+			AgentMessage.Type.Submit, new SubmitHandler(),
+			AgentMessage.Type.Update, new UpdateHandler(),
+			AgentMessage.Type.Ping, new PingHandler(),
+			AgentMessage.Type.Pong, new PongHandler()
+	);
+
+	public static final CborBackend INSTANCE = new CborBackend();
+
+	private static CborHandler getHandlerForType(AgentMessage.Type type) {
+		CborHandler h = MESSAGE_HANDLERS.getOrDefault(type, null);
+		if(h == null) {
+			throw new UnsupportedOperationException();
+		}
+
+		return h;
+	}
+
+	@Override
+	public byte[] toBytes(AgentMessage msg, Charset charset) {
+		CborWriter w = new CborWriter();
+		write(w, msg);
+		return w.toByteArray();
+	}
+
+	public void write(CborWriter w, AgentMessage msg) {
+		Instant ts = msg.getTimestamp();
+
+		w.writeMapHeader(5);
+		w.writeString("uuid").writeUUID(msg.getAgentUUID());
+		w.writeString("version").writeLong(msg.getVersion());
+		w.writeString("type").writeString(msg.getType().typeString);
+		w.writeString("timestamp").writeArrayHeader(2).writeLong(ts.getEpochSecond()).writeLong(ts.getNano());
+		w.writeString("payload");
+		getHandlerForType(msg.getType()).write(w, msg);
+	}
+
+	@Override
+	public AgentMessage fromBytes(byte[] bytes, Charset charset) {
+		return read(new CborReader(bytes));
+	}
+
+	public AgentMessage read(CborReader r) {
+		UUID uuid = null;
+		int version = 1;
+		AgentMessage.Type type = null;
+		Instant timestamp = null;
+		int payload = -1;
+
+		for(int i = r.readMapHeader(); i > 0; --i) {
+			switch(r.readString()) {
+				case "uuid":
+					uuid = r.readUUID();
+					break;
+				case "version":
+					version = r.readInt();
+					break;
+				case "type":
+					type = readMessageType(r.readString());
+					break;
+				case "timestamp": {
+					if(r.readArrayHeader() != 2) {
+						throw new IllegalArgumentException("Invalid timestamp");
+					}
+					long secs = r.readLong();
+					timestamp = Instant.ofEpochSecond(secs, r.readLong());
+					break;
+				}
+				case "payload":
+					/* We may not know the type yet, come back to it. */
+					payload = r.getPosition();
+					r.skip();
+					break;
+				default:
+					r.skip();
+					break;
+			}
+		}
+
+		/* Do a simple version check. */
+		if(version != AgentMessage.PROTOCOL_VERSION) {
+			return null;
+		}
+
+		if(uuid == null || type == null || timestamp == null || payload < 0) {
+			throw new IllegalArgumentException("Incomplete message");
+		}
+
+		r.setPosition(payload);
+		return getHandlerForType(type).read(r, uuid, timestamp);
+	}
+
+	private static AgentMessage.Type readMessageType(String s) {
+		for(AgentMessage.Type t : AgentMessage.Type.values()) {
+			if(t.typeString.equals(s)) {
+				return t;
+			}
+		}
+
+		throw new IllegalArgumentException();
+	}
+
+	@Override
+	public ContentType getContentType() {
+		return new ContentType("application", "cbor", null);
+	}
+
+	@Override
+	public boolean usesCharset() {
+		return false;
+	}
+}
@@ -0,0 +1,255 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.agent.messages.cbor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * A minimal CBOR (RFC 8949) decoder, the counterpart of {@link CborWriter}.
+ *
+ * Indefinite-length items and tags aren't supported. Malformed input results
+ * in an {@link IllegalArgumentException}.
+ */
+public final class CborReader {
+
+	private final byte[] buf;
+	private final int end;
+	private int pos;
+
+	public CborReader(byte[] buf) {
+		this(buf, 0, buf.length);
+	}
+
+	public CborReader(byte[] buf, int offset, int length) {
+		if(offset < 0 || length < 0 || offset + length > buf.length) {
+			throw new IndexOutOfBoundsException();
+		}
+
+		this.buf = buf;
+		this.pos = offset;
+		this.end = offset + length;
+	}
+
+	public int getPosition() {
+		return pos;
+	}
+
+	public void setPosition(int pos) {
+		this.pos = pos;
+	}
+
+	public boolean hasRemaining() {
+		return pos < end;
+	}
+
+	private int readByte() {
+		if(pos >= end) {
+			throw new IllegalArgumentException("Unexpected end of input");
+		}
+		return buf[pos++] & 0xFF;
+	}
+
+	private int readRaw32() {
+		return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+	}
+
+	private int peekMajor() {
+		if(pos >= end) {
+			throw new IllegalArgumentException("Unexpected end of input");
+		}
+		return (buf[pos] & 0xFF) >>> 5;
+	}
+
+	private long readArgument(int ib) {
+		int ai = ib & 0x1F;
+		if(ai < 24) {
+			return ai;
+		}
+
+		switch(ai) {
+			case 24:
+				return readByte();
+			case 25:
+				return (readByte() << 8) | readByte();
+			case 26:
+				return readRaw32() & 0xFFFFFFFFL;
+			case 27:
+				return ((long)readRaw32() << 32) | (readRaw32() & 0xFFFFFFFFL);
+		}
+
+		throw new IllegalArgumentException("Unsupported additional information");
+	}
+
+	private long readHeader(int major) {
+		int ib = readByte();
+		if((ib >>> 5) != major) {
+			throw new IllegalArgumentException(String.format("Expected major type %d, got %d", major, ib >>> 5));
+		}
+		return readArgument(ib);
+	}
+
+	private int readLength(int major) {
+		long len = readHeader(major);
+		if(len < 0 || len > end - pos) {
+			/* Every item is at least a byte, so this catches obviously bogus lengths too. */
+			throw new IllegalArgumentException("Length exceeds input");
+		}
+		return (int)len;
+	}
+
+	public int readMapHeader() {
+		return readLength(CborWriter.MAJOR_MAP);
+	}
+
+	public int readArrayHeader() {
+		return readLength(CborWriter.MAJOR_ARRAY);
+	}
+
+	public long readLong() {
+		int major = peekMajor();
+		if(major == CborWriter.MAJOR_UINT) {
+			long v = readHeader(CborWriter.MAJOR_UINT);
+			if(v < 0) {
+				throw new IllegalArgumentException("Integer overflow");
+			}
+			return v;
+		} else if(major == CborWriter.MAJOR_NINT) {
+			long v = readHeader(CborWriter.MAJOR_NINT);
+			if(v < 0) {
+				throw new IllegalArgumentException("Integer overflow");
+			}
+			return -1 - v;
+		}
+
+		throw new IllegalArgumentException("Expected integer");
+	}
+
+	public int readInt() {
+		return Math.toIntExact(readLong());
+	}
+
+	public double readDouble() {
+		int major = peekMajor();
+		if(major == CborWriter.MAJOR_UINT || major == CborWriter.MAJOR_NINT) {
+			return readLong();
+		}
+
+		int ib = readByte();
+		switch(ib) {
+			case CborWriter.FLOAT_32:
+				return Float.intBitsToFloat(readRaw32());
+			case CborWriter.FLOAT_64:
+				return Double.longBitsToDouble(((long)readRaw32() << 32) | (readRaw32() & 0xFFFFFFFFL));
+		}
+
+		throw new IllegalArgumentException("Expected float");
+	}
+
+	public boolean readBoolean() {
+		int ib = readByte();
+		if(ib == CborWriter.SIMPLE_TRUE) {
+			return true;
+		} else if(ib == CborWriter.SIMPLE_FALSE) {
+			return false;
+		}
+
+		throw new IllegalArgumentException("Expected boolean");
+	}
+
+	public byte[] readBytes() {
+		int len = readLength(CborWriter.MAJOR_BYTES);
+		byte[] b = new byte[len];
+		System.arraycopy(buf, pos, b, 0, len);
+		pos += len;
+		return b;
+	}
+
+	public String readString() {
+		int len = readLength(CborWriter.MAJOR_TEXT);
+		String s = new String(buf, pos, len, StandardCharsets.UTF_8);
+		pos += len;
+		return s;
+	}
+
+	public UUID readUUID() {
+		if(readLength(CborWriter.MAJOR_BYTES) != 16) {
+			throw new IllegalArgumentException("Expected 16-byte UUID");
+		}
+
+		long msb = ((long)readRaw32() << 32) | (readRaw32() & 0xFFFFFFFFL);
+		long lsb = ((long)readRaw32() << 32) | (readRaw32() & 0xFFFFFFFFL);
+		return new UUID(msb, lsb);
+	}
+
+	/**
+	 * Skip the next item, including any nested items.
+	 */
+	public void skip() {
+		int ib = readByte();
+		int major = ib >>> 5;
+		switch(major) {
+			case CborWriter.MAJOR_UINT:
+			case CborWriter.MAJOR_NINT:
+				readArgument(ib);
+				return;
+			case CborWriter.MAJOR_BYTES:
+			case CborWriter.MAJOR_TEXT: {
+				long len = readArgument(ib);
+				if(len < 0 || len > end - pos) {
+					throw new IllegalArgumentException("Length exceeds input");
+				}
+				pos += (int)len;
+				return;
+			}
+			case CborWriter.MAJOR_ARRAY: {
+				long len = readArgument(ib);
+				for(long i = 0; i < len; ++i) {
+					skip();
+				}
+				return;
+			}
+			case CborWriter.MAJOR_MAP: {
+				long len = readArgument(ib);
+				for(long i = 0; i < len; ++i) {
+					skip();
+					skip();
+				}
+				return;
+			}
+			case CborWriter.MAJOR_SIMPLE:
+				switch(ib) {
+					case CborWriter.SIMPLE_FALSE:
+					case CborWriter.SIMPLE_TRUE:
+					case CborWriter.SIMPLE_NULL:
+						return;
+					case CborWriter.FLOAT_32:
+						readRaw32();
+						return;
+					case CborWriter.FLOAT_64:
+						readRaw32();
+						readRaw32();
+						return;
+				}
+		}
+
+		throw new IllegalArgumentException("Unsupported item");
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.agent.messages.cbor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * A minimal CBOR (RFC 8949) encoder, supporting only the definite-length items used by agent messages.
+ *
+ * This is not thread-safe.
+ */
+public final class CborWriter {
+
+	static final int MAJOR_UINT = 0;
+	static final int MAJOR_NINT = 1;
+	static final int MAJOR_BYTES = 2;
+	static final int MAJOR_TEXT = 3;
+	static final int MAJOR_ARRAY = 4;
+	static final int MAJOR_MAP = 5;
+	static final int MAJOR_SIMPLE = 7;
+
+	static final int SIMPLE_FALSE = 0xf4;
+	static final int SIMPLE_TRUE = 0xf5;
+	static final int SIMPLE_NULL = 0xf6;
+	static final int FLOAT_32 = 0xfa;
+	static final int FLOAT_64 = 0xfb;
+
+	private byte[] buf;
+	private int pos;
+
+	public CborWriter(int initialCapacity) {
+		this.buf = new byte[Math.max(initialCapacity, 16)];
+		this.pos = 0;
+	}
+
+	public CborWriter() {
+		this(256);
+	}
+
+	private void ensure(int n) {
+		if(pos + n > buf.length) {
+			buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+		}
+	}
+
+	private void writeHeader(int major, long len) {
+		ensure(9);
+		int mt = major << 5;
+		if(len < 24) {
+			buf[pos++] = (byte)(mt | (int)len);
+		} else if(len <= 0xFFL) {
+			buf[pos++] = (byte)(mt | 24);
+			buf[pos++] = (byte)len;
+		} else if(len <= 0xFFFFL) {
+			buf[pos++] = (byte)(mt | 25);
+			buf[pos++] = (byte)(len >>> 8);
+			buf[pos++] = (byte)len;
+		} else if(len <= 0xFFFFFFFFL) {
+			buf[pos++] = (byte)(mt | 26);
+			writeRaw32((int)len);
+		} else {
+			buf[pos++] = (byte)(mt | 27);
+			writeRaw32((int)(len >>> 32));
+			writeRaw32((int)len);
+		}
+	}
+
+	private void writeRaw32(int v) {
+		buf[pos++] = (byte)(v >>> 24);
+		buf[pos++] = (byte)(v >>> 16);
+		buf[pos++] = (byte)(v >>> 8);
+		buf[pos++] = (byte)v;
+	}
+
+	public CborWriter writeMapHeader(int n) {
+		writeHeader(MAJOR_MAP, n);
+		return this;
+	}
+
+	public CborWriter writeArrayHeader(int n) {
+		writeHeader(MAJOR_ARRAY, n);
+		return this;
+	}
+
+	public CborWriter writeLong(long v) {
+		if(v >= 0) {
+			writeHeader(MAJOR_UINT, v);
+		} else {
+			writeHeader(MAJOR_NINT, -1 - v);
+		}
+		return this;
+	}
+
+	public CborWriter writeFloat(float f) {
+		ensure(5);
+		buf[pos++] = (byte)FLOAT_32;
+		writeRaw32(Float.floatToIntBits(f));
+		return this;
+	}
+
+	public CborWriter writeBoolean(boolean b) {
+		ensure(1);
+		buf[pos++] = (byte)(b ? SIMPLE_TRUE : SIMPLE_FALSE);
+		return this;
+	}
+
+	public CborWriter writeBytes(byte[] b) {
+		writeHeader(MAJOR_BYTES, b.length);
+		ensure(b.length);
+		System.arraycopy(b, 0, buf, pos, b.length);
+		pos += b.length;
+		return this;
+	}
+
+	public CborWriter writeString(String s) {
+		if(s == null) {
+			throw new IllegalArgumentException();
+		}
+
+		byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		writeHeader(MAJOR_TEXT, b.length);
+		ensure(b.length);
+		System.arraycopy(b, 0, buf, pos, b.length);
+		pos += b.length;
+		return this;
+	}
+
+	/**
+	 * Write a UUID as a 16-byte byte string, most significant bits first.
+	 */
+	public CborWriter writeUUID(UUID uuid) {
+		writeHeader(MAJOR_BYTES, 16);
+		ensure(16);
+		long msb = uuid.getMostSignificantBits();
+		long lsb = uuid.getLeastSignificantBits();
+		writeRaw32((int)(msb >>> 32));
+		writeRaw32((int)msb);
+		writeRaw32((int)(lsb >>> 32));
+		writeRaw32((int)lsb);
+		return this;
+	}
+
+	public int size() {
+		return pos;
+	}
+
+	public void reset() {
+		pos = 0;
+	}
+
+	public byte[] toByteArray() {
+		return Arrays.copyOf(buf, pos);
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.agent.messages.cbor;
+
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentLifeControl;
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentMessage;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static au.edu.uq.rcc.nimrodg.agent.messages.json.LifeControlHandler.lifeControlOperationToString;
+import static au.edu.uq.rcc.nimrodg.agent.messages.json.LifeControlHandler.readLifeControlOperation;
+
+public class LifeControlHandler implements CborHandler {
+
+	@Override
+	public AgentMessage read(CborReader r, UUID uuid, Instant timestamp) {
+		AgentLifeControl.Operation op = null;
+		for(int i = r.readMapHeader(); i > 0; --i) {
+			if("operation".equals(r.readString())) {
+				op = readLifeControlOperation(r.readString());
+			} else {
+				r.skip();
+			}
+		}
+
+		return new AgentLifeControl.Builder()
+				.agentUuid(uuid)
+				.timestamp(timestamp)
+				.operation(op)
+				.build();
+	}
+
+	@Override
+	public void write(CborWriter w, AgentMessage msg) {
+		w.writeMapHeader(1);
+		w.writeString("operation").writeString(lifeControlOperationToString(((AgentLifeControl)msg).operation));
+	}
+}
@@ -0,0 +1,40 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.agent.messages.cbor;
+
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentPing;
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentMessage;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public class PingHandler implements CborHandler {
+
+	@Override
+	public AgentMessage read(CborReader r, UUID uuid, Instant timestamp) {
+		r.skip();
+		return new AgentPing.Builder().agentUuid(uuid).timestamp(timestamp).build();
+	}
+
+	@Override
+	public void write(CborWriter w, AgentMessage msg) {
+		w.writeMapHeader(0);
+	}
+}
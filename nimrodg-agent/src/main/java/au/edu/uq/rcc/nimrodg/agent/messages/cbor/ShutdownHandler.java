@@ -0,0 +1,67 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.agent.messages.cbor;
+
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentMessage;
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentShutdown;
+import au.edu.uq.rcc.nimrodg.api.AgentInfo;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static au.edu.uq.rcc.nimrodg.agent.messages.json.ShutdownHandler.readShutdownReason;
+import static au.edu.uq.rcc.nimrodg.agent.messages.json.ShutdownHandler.shutdownReasonToString;
+
+public class ShutdownHandler implements CborHandler {
+
+	@Override
+	public AgentMessage read(CborReader r, UUID uuid, Instant timestamp) {
+		AgentInfo.ShutdownReason reason = null;
+		int signal = -1;
+		for(int i = r.readMapHeader(); i > 0; --i) {
+			switch(r.readString()) {
+				case "reason":
+					reason = readShutdownReason(r.readString());
+					break;
+				case "signal":
+					signal = r.readInt();
+					break;
+				default:
+					r.skip();
+					break;
+			}
+		}
+
+		return new AgentShutdown.Builder()
+				.agentUuid(uuid)
+				.timestamp(timestamp)
+				.reason(reason)
+				.signal(signal)
+				.build();
+	}
+
+	@Override
+	public void write(CborWriter w, AgentMessage msg) {
+		AgentShutdown as = (AgentShutdown)msg;
+		w.writeMapHeader(2);
+		w.writeString("reason").writeString(shutdownReasonToString(as.reason));
+		w.writeString("signal").writeLong(as.signal);
+	}
+}
@@ -0,0 +1,243 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.agent.messages.cbor;
+
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentMessage;
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentSubmit;
+import au.edu.uq.rcc.nimrodg.agent.messages.NetworkJob;
+import au.edu.uq.rcc.nimrodg.api.Command;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static au.edu.uq.rcc.nimrodg.agent.messages.json.SubmitHandler.commandTypeToString;
+import static au.edu.uq.rcc.nimrodg.agent.messages.json.SubmitHandler.contextToString;
+import static au.edu.uq.rcc.nimrodg.agent.messages.json.SubmitHandler.onErrorActionToString;
+import static au.edu.uq.rcc.nimrodg.agent.messages.json.SubmitHandler.streamToString;
+import static au.edu.uq.rcc.nimrodg.agent.messages.json.SubmitHandler.stringToCommandType;
+import static au.edu.uq.rcc.nimrodg.agent.messages.json.SubmitHandler.stringToContext;
+import static au.edu.uq.rcc.nimrodg.agent.messages.json.SubmitHandler.stringToOnErrorAction;
+import static au.edu.uq.rcc.nimrodg.agent.messages.json.SubmitHandler.stringToStream;
+
+public class SubmitHandler implements CborHandler {
+
+	@Override
+	public AgentMessage read(CborReader r, UUID uuid, Instant timestamp) {
+		NetworkJob job = null;
+		for(int i = r.readMapHeader(); i > 0; --i) {
+			if("job".equals(r.readString())) {
+				job = readJob(r);
+			} else {
+				r.skip();
+			}
+		}
+
+		return new AgentSubmit.Builder()
+				.agentUuid(uuid)
+				.timestamp(timestamp)
+				.job(job)
+				.build();
+	}
+
+	private NetworkJob readJob(CborReader r) {
+		UUID jobUuid = null;
+		long index = 0;
+		String txuri = null;
+		Map<String, String> env = new HashMap<>();
+		List<NetworkJob.ResolvedCommand> commands = new ArrayList<>();
+
+		for(int i = r.readMapHeader(); i > 0; --i) {
+			switch(r.readString()) {
+				case "uuid":
+					jobUuid = r.readUUID();
+					break;
+				case "index":
+					index = r.readLong();
+					break;
+				case "txuri":
+					txuri = r.readString();
+					break;
+				case "environment":
+					for(int j = r.readMapHeader(); j > 0; --j) {
+						String k = r.readString();
+						env.put(k, r.readString());
+					}
+					break;
+				case "commands":
+					for(int j = r.readArrayHeader(); j > 0; --j) {
+						commands.add(readCommand(r));
+					}
+					break;
+				default:
+					r.skip();
+					break;
+			}
+		}
+
+		return new NetworkJob(jobUuid, index, txuri, commands, env);
+	}
+
+	private NetworkJob.ResolvedCommand readCommand(CborReader r) {
+		/* Fields may come in any order, collect them all then build. */
+		String type = null;
+		String action = null;
+		String stream = null;
+		boolean append = false;
+		String file = null;
+		String srcCtx = null;
+		String srcPath = null;
+		String dstCtx = null;
+		String dstPath = null;
+		String program = null;
+		List<String> args = new ArrayList<>();
+		boolean searchPath = false;
+
+		for(int i = r.readMapHeader(); i > 0; --i) {
+			switch(r.readString()) {
+				case "type":
+					type = r.readString();
+					break;
+				case "action":
+					action = r.readString();
+					break;
+				case "stream":
+					stream = r.readString();
+					break;
+				case "append":
+					append = r.readBoolean();
+					break;
+				case "file":
+					file = r.readString();
+					break;
+				case "source_context":
+					srcCtx = r.readString();
+					break;
+				case "source_path":
+					srcPath = r.readString();
+					break;
+				case "destination_context":
+					dstCtx = r.readString();
+					break;
+				case "destination_path":
+					dstPath = r.readString();
+					break;
+				case "program":
+					program = r.readString();
+					break;
+				case "arguments":
+					for(int j = r.readArrayHeader(); j > 0; --j) {
+						args.add(r.readString());
+					}
+					break;
+				case "search_path":
+					searchPath = r.readBoolean();
+					break;
+				default:
+					r.skip();
+					break;
+			}
+		}
+
+		/* We rely on this to throw if the command type is bad */
+		switch(stringToCommandType(type)) {
+			case OnError:
+				return new NetworkJob.OnErrorCommand(stringToOnErrorAction(action));
+			case Redirect:
+				return new NetworkJob.RedirectCommand(stringToStream(stream), append, file);
+			case Copy:
+				return new NetworkJob.CopyCommand(stringToContext(srcCtx), srcPath, stringToContext(dstCtx), dstPath);
+			case Exec:
+				return new NetworkJob.ExecCommand(program, args, searchPath);
+		}
+
+		throw new IllegalArgumentException();
+	}
+
+	@Override
+	public void write(CborWriter w, AgentMessage msg) {
+		NetworkJob j = ((AgentSubmit)msg).getJob();
+
+		w.writeMapHeader(1);
+		w.writeString("job").writeMapHeader(5);
+		w.writeString("uuid").writeUUID(j.uuid);
+		w.writeString("index").writeLong(j.index);
+		w.writeString("txuri").writeString(j.txUri);
+
+		w.writeString("environment").writeMapHeader(j.environment.size());
+		for(Map.Entry<String, String> e : j.environment.entrySet()) {
+			w.writeString(e.getKey()).writeString(e.getValue());
+		}
+
+		w.writeString("commands").writeArrayHeader(j.commands.size());
+		for(NetworkJob.ResolvedCommand cmd : j.commands) {
+			write(w, cmd);
+		}
+	}
+
+	private void write(CborWriter w, NetworkJob.ResolvedCommand cmd) {
+		Command.Type type = cmd.getType();
+		switch(type) {
+			case OnError: {
+				NetworkJob.OnErrorCommand ccmd = (NetworkJob.OnErrorCommand)cmd;
+				w.writeMapHeader(2);
+				w.writeString("type").writeString(commandTypeToString(type));
+				w.writeString("action").writeString(onErrorActionToString(ccmd.action));
+				break;
+			}
+			case Redirect: {
+				NetworkJob.RedirectCommand ccmd = (NetworkJob.RedirectCommand)cmd;
+				w.writeMapHeader(4);
+				w.writeString("type").writeString(commandTypeToString(type));
+				w.writeString("stream").writeString(streamToString(ccmd.stream));
+				w.writeString("append").writeBoolean(ccmd.append);
+				w.writeString("file").writeString(ccmd.file);
+				break;
+			}
+			case Copy: {
+				NetworkJob.CopyCommand ccmd = (NetworkJob.CopyCommand)cmd;
+				w.writeMapHeader(5);
+				w.writeString("type").writeString(commandTypeToString(type));
+				w.writeString("source_context").writeString(contextToString(ccmd.sourceContext));
+				w.writeString("source_path").writeString(ccmd.sourcePath);
+				w.writeString("destination_context").writeString(contextToString(ccmd.destinationContext));
+				w.writeString("destination_path").writeString(ccmd.destinationPath);
+				break;
+			}
+			case Exec: {
+				NetworkJob.ExecCommand ccmd = (NetworkJob.ExecCommand)cmd;
+				w.writeMapHeader(4);
+				w.writeString("type").writeString(commandTypeToString(type));
+				w.writeString("program").writeString(ccmd.program);
+				w.writeString("arguments").writeArrayHeader(ccmd.arguments.size());
+				for(String s : ccmd.arguments) {
+					w.writeString(s);
+				}
+				w.writeString("search_path").writeBoolean(ccmd.searchPath);
+				break;
+			}
+			default:
+				throw new IllegalArgumentException();
+		}
+	}
+}
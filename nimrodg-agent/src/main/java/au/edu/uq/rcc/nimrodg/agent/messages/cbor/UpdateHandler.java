@@ -0,0 +1,121 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.agent.messages.cbor;
+
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentMessage;
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentUpdate;
+import au.edu.uq.rcc.nimrodg.api.CommandResult;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static au.edu.uq.rcc.nimrodg.agent.messages.json.UpdateHandler.commandResultStatusToString;
+import static au.edu.uq.rcc.nimrodg.agent.messages.json.UpdateHandler.stringToCommandResultStatus;
+import static au.edu.uq.rcc.nimrodg.agent.messages.json.UpdateHandler.stringToUpdateAction;
+import static au.edu.uq.rcc.nimrodg.agent.messages.json.UpdateHandler.updateActionToString;
+
+public class UpdateHandler implements CborHandler {
+
+	@Override
+	public AgentMessage read(CborReader r, UUID uuid, Instant timestamp) {
+		UUID jobUuid = null;
+		AgentUpdate.CommandResult_ cr = null;
+		AgentUpdate.Action action = null;
+
+		for(int i = r.readMapHeader(); i > 0; --i) {
+			switch(r.readString()) {
+				case "job_uuid":
+					jobUuid = r.readUUID();
+					break;
+				case "command_result":
+					cr = readCommandResult(r);
+					break;
+				case "action":
+					action = stringToUpdateAction(r.readString());
+					break;
+				default:
+					r.skip();
+					break;
+			}
+		}
+
+		return new AgentUpdate.Builder()
+				.agentUuid(uuid)
+				.timestamp(timestamp)
+				.jobUuid(jobUuid)
+				.commandResult(cr)
+				.action(action)
+				.build();
+	}
+
+	private AgentUpdate.CommandResult_ readCommandResult(CborReader r) {
+		CommandResult.CommandResultStatus status = null;
+		long index = 0;
+		float time = 0.0f;
+		int retval = 0;
+		String message = null;
+		int errorCode = 0;
+
+		for(int i = r.readMapHeader(); i > 0; --i) {
+			switch(r.readString()) {
+				case "status":
+					status = stringToCommandResultStatus(r.readString());
+					break;
+				case "index":
+					index = r.readLong();
+					break;
+				case "time":
+					time = (float)r.readDouble();
+					break;
+				case "retval":
+					retval = r.readInt();
+					break;
+				case "message":
+					message = r.readString();
+					break;
+				case "error_code":
+					errorCode = r.readInt();
+					break;
+				default:
+					r.skip();
+					break;
+			}
+		}
+
+		return new AgentUpdate.CommandResult_(status, index, time, retval, message, errorCode);
+	}
+
+	@Override
+	public void write(CborWriter w, AgentMessage msg) {
+		AgentUpdate au = (AgentUpdate)msg;
+		AgentUpdate.CommandResult_ res = au.getCommandResult();
+
+		w.writeMapHeader(3);
+		w.writeString("job_uuid").writeUUID(au.getJobUUID());
+		w.writeString("action").writeString(updateActionToString(au.getAction()));
+		w.writeString("command_result").writeMapHeader(6);
+		w.writeString("status").writeString(commandResultStatusToString(res.status));
+		w.writeString("index").writeLong(res.index);
+		w.writeString("time").writeFloat(res.time);
+		w.writeString("retval").writeLong(res.retVal);
+		w.writeString("message").writeString(res.message);
+		w.writeString("error_code").writeLong(res.errorCode);
+	}
+}
@@ -24,23 +24,32 @@ import au.edu.uq.rcc.nimrodg.agent.messages.AgentMessage;
 
 import java.time.Instant;
 import java.util.UUID;
-import javax.json.JsonObject;
-import javax.json.JsonObjectBuilder;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonParser;
 
 public class HelloHandler implements JsonHandler {
 
 	@Override
-	public AgentMessage read(JsonObject jo, UUID uuid, Instant timestamp) {
+	public AgentMessage read(JsonParser p, UUID uuid, Instant timestamp) {
+		String queue = null;
+		for(String k; (k = JsonStreams.nextKey(p)) != null; ) {
+			if("queue".equals(k)) {
+				queue = JsonStreams.readString(p);
+			} else {
+				JsonStreams.skipValue(p);
+			}
+		}
+
 		return new AgentHello.Builder()
 				.agentUuid(uuid)
 				.timestamp(timestamp)
-				.queue(jo.getString("queue"))
+				.queue(queue)
 				.build();
 	}
 
 	@Override
-	public void write(JsonObjectBuilder jo, AgentMessage msg) {
-		jo.add("queue", ((AgentHello)msg).queue);
+	public void write(JsonGenerator g, AgentMessage msg) {
+		g.write("queue", ((AgentHello)msg).queue);
 	}
 
 }
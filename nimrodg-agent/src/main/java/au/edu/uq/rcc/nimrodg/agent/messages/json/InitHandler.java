@@ -24,18 +24,21 @@ import au.edu.uq.rcc.nimrodg.agent.messages.AgentMessage;
 
 import java.time.Instant;
 import java.util.UUID;
-import javax.json.JsonObject;
-import javax.json.JsonObjectBuilder;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonParser;
 
 public class InitHandler implements JsonHandler {
 
 	@Override
-	public AgentMessage read(JsonObject jo, UUID uuid, Instant timestamp) {
+	public AgentMessage read(JsonParser p, UUID uuid, Instant timestamp) {
+		while(JsonStreams.nextKey(p) != null) {
+			JsonStreams.skipValue(p);
+		}
 		return new AgentInit.Builder().agentUuid(uuid).timestamp(timestamp).build();
 	}
 
 	@Override
-	public void write(JsonObjectBuilder jo, AgentMessage msg) {
+	public void write(JsonGenerator g, AgentMessage msg) {
 		/* nop */
 	}
 
@@ -23,20 +23,23 @@ import au.edu.uq.rcc.nimrodg.agent.messages.AgentMessage;
 import au.edu.uq.rcc.nimrodg.agent.MessageBackend;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 import java.util.Map;
 import java.util.UUID;
 import javax.json.Json;
-import javax.json.JsonNumber;
 import javax.json.JsonObject;
-import javax.json.JsonObjectBuilder;
 import javax.json.JsonReader;
 import javax.json.JsonReaderFactory;
 import javax.json.JsonString;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParserFactory;
 import javax.mail.internet.ContentType;
-import javax.mail.internet.ParameterList;
 
 public class JsonBackend implements MessageBackend {
 	private static final Map<AgentMessage.Type, JsonHandler> MESSAGE_HANDLERS = Map.of(
@@ -50,8 +53,14 @@ public class JsonBackend implements MessageBackend {
 			AgentMessage.Type.Pong, new PongHandler()
 	);
 
-	private static final ContentType CONTENT_TYPE = new ContentType("application", "json", new ParameterList());
 	private static final JsonReaderFactory READER_FACTORY = Json.createReaderFactory(Map.of());
+	private static final JsonGeneratorFactory GENERATOR_FACTORY = Json.createGeneratorFactory(Map.of());
+	private static final JsonParserFactory PARSER_FACTORY = Json.createParserFactory(Map.of());
+
+	/* Don't hang on to buffers grown by unusually large messages. */
+	private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+	private static final ThreadLocal<ByteArrayOutputStream> BUFFERS = ThreadLocal.withInitial(() -> new ByteArrayOutputStream(4096));
+
 	public static final JsonBackend INSTANCE = new JsonBackend();
 
 	private static JsonHandler getHandlerForType(AgentMessage.Type type) {
@@ -65,57 +74,126 @@ public class JsonBackend implements MessageBackend {
 
 	@Override
 	public byte[] toBytes(AgentMessage msg, Charset charset) {
-		return toJson(msg).toString().getBytes(charset);
+		ByteArrayOutputStream bos = BUFFERS.get();
+		bos.reset();
+
+		try(JsonGenerator g = GENERATOR_FACTORY.createGenerator(bos, charset)) {
+			write(g, msg);
+		}
+
+		byte[] bytes = bos.toByteArray();
+		if(bytes.length > MAX_RETAINED_BUFFER) {
+			BUFFERS.remove();
+		}
+		return bytes;
+	}
+
+	private static void write(JsonGenerator g, AgentMessage msg) {
+		g.writeStartObject();
+		g.write("uuid", msg.getAgentUUID().toString());
+		g.write("version", msg.getVersion());
+		g.write("type", msg.getType().typeString);
+		g.write("timestamp", DateTimeFormatter.ISO_INSTANT.format(msg.getTimestamp()));
+		getHandlerForType(msg.getType()).write(g, msg);
+		g.writeEnd();
 	}
 
+	/**
+	 * Get a message as a {@link JsonObject}.
+	 *
+	 * This is for display purposes only and isn't used on the wire.
+	 *
+	 * @param msg The message.
+	 * @return The message as a {@link JsonObject}.
+	 */
 	public JsonObject toJson(AgentMessage msg) {
-		JsonObjectBuilder jo = Json.createObjectBuilder();
-		jo.add("uuid", msg.getAgentUUID().toString());
-		jo.add("version", msg.getVersion());
-		jo.add("type", toJson(msg.getType()));
-		jo.add("timestamp", DateTimeFormatter.ISO_INSTANT.format(msg.getTimestamp()));
-		getHandlerForType(msg.getType()).write(jo, msg);
-		return jo.build();
+		try(JsonReader r = READER_FACTORY.createReader(new ByteArrayInputStream(toBytes(msg, StandardCharsets.UTF_8)), StandardCharsets.UTF_8)) {
+			return r.readObject();
+		}
 	}
 
 	@Override
 	public AgentMessage fromBytes(byte[] bytes, Charset charset) {
-		JsonObject jo;
-		try(JsonReader p = READER_FACTORY.createReader(new ByteArrayInputStream(bytes), charset)) {
-			jo = p.readObject();
+		Header hdr = new Header();
+		try(JsonParser p = PARSER_FACTORY.createParser(new ByteArrayInputStream(bytes), charset)) {
+			JsonStreams.expect(p, JsonParser.Event.START_OBJECT);
+
+			/*
+			 * We write the header first, so if it's all there before the payload,
+			 * hand the rest straight to the handler.
+			 */
+			for(String k; !hdr.isComplete() && (k = JsonStreams.nextKey(p)) != null; ) {
+				if(!hdr.read(p, k)) {
+					/* Payload first (the agent sorts its keys), need a second pass. */
+					JsonStreams.skipValue(p);
+					for(; (k = JsonStreams.nextKey(p)) != null; ) {
+						if(!hdr.read(p, k)) {
+							JsonStreams.skipValue(p);
+						}
+					}
+					break;
+				}
+			}
+
+			if(hdr.isComplete() && p.hasNext()) {
+				return readPayload(p, hdr);
+			}
 		}
 
-		/* Do a simple version check. */
-		int version = 1;
-		JsonNumber jver = jo.getJsonNumber("version");
-		if(jver != null) {
-			version = jver.intValue();
+		try(JsonParser p = PARSER_FACTORY.createParser(new ByteArrayInputStream(bytes), charset)) {
+			JsonStreams.expect(p, JsonParser.Event.START_OBJECT);
+			return readPayload(p, hdr);
 		}
+	}
 
-		if(version != AgentMessage.PROTOCOL_VERSION) {
+	private static AgentMessage readPayload(JsonParser p, Header hdr) {
+		/* Do a simple version check. */
+		if(hdr.version != AgentMessage.PROTOCOL_VERSION) {
 			return null;
 		}
 
-		return getHandlerForType(readMessageType(jo.getString("type"))).read(
-				jo,
-				UUID.fromString(jo.getString("uuid")),
-				Instant.from(DateTimeFormatter.ISO_INSTANT.parse(jo.getString("timestamp")))
-		);
+		JsonHandler h = getHandlerForType(readMessageType(hdr.type));
+		if(hdr.uuid == null || hdr.timestamp == null) {
+			throw new IllegalArgumentException();
+		}
+
+		return h.read(p, hdr.uuid, hdr.timestamp);
 	}
 
-	/* TODO: Move this out of here if there's ever more than one message backend. */
-	private static ContentType duplicateContentType(ContentType ct) {
-		ParameterList parms = new ParameterList();
-		ct.getParameterList().getNames().asIterator().forEachRemaining(s -> {
-			parms.set(s, ct.getParameterList().get(s));
-		});
+	private static class Header {
+		int version = 1;
+		boolean haveVersion = false;
+		String type = null;
+		UUID uuid = null;
+		Instant timestamp = null;
 
-		return new ContentType(ct.getPrimaryType(), ct.getSubType(), parms);
+		boolean isComplete() {
+			return haveVersion && type != null && uuid != null && timestamp != null;
+		}
+
+		boolean read(JsonParser p, String key) {
+			switch(key) {
+				case "version":
+					version = JsonStreams.readInt(p);
+					haveVersion = true;
+					return true;
+				case "type":
+					type = JsonStreams.readString(p);
+					return true;
+				case "uuid":
+					uuid = JsonStreams.readUUID(p);
+					return true;
+				case "timestamp":
+					timestamp = Instant.from(DateTimeFormatter.ISO_INSTANT.parse(JsonStreams.readString(p)));
+					return true;
+			}
+			return false;
+		}
 	}
 
 	@Override
 	public ContentType getContentType() {
-		return duplicateContentType(CONTENT_TYPE);
+		return new ContentType("application", "json", null);
 	}
 
 	public static JsonString toJson(AgentMessage.Type type) {
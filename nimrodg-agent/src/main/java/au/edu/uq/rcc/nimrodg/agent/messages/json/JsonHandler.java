@@ -23,12 +23,21 @@ import au.edu.uq.rcc.nimrodg.agent.messages.AgentMessage;
 
 import java.time.Instant;
 import java.util.UUID;
-import javax.json.JsonObject;
-import javax.json.JsonObjectBuilder;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonParser;
 
 public interface JsonHandler {
 
-	AgentMessage read(JsonObject jo, UUID uuid, Instant timestamp);
+	/**
+	 * Read a message's payload.
+	 *
+	 * The parser is positioned just inside the top-level object, and must be left just after its end.
+	 * Payload fields are mixed in with the header fields, which should be skipped.
+	 */
+	AgentMessage read(JsonParser p, UUID uuid, Instant timestamp);
 
-	void write(JsonObjectBuilder jo, AgentMessage msg);
+	/**
+	 * Write a message's payload into the top-level object.
+	 */
+	void write(JsonGenerator g, AgentMessage msg);
 }
@@ -0,0 +1,141 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.agent.messages.json;
+
+import java.util.UUID;
+import javax.json.stream.JsonParser;
+
+/**
+ * Helpers for pulling values out of a {@link JsonParser}.
+ *
+ * All of these throw {@link IllegalArgumentException} if the next event isn't what was expected.
+ */
+final class JsonStreams {
+
+	private JsonStreams() {
+
+	}
+
+	static void expect(JsonParser p, JsonParser.Event event) {
+		if(!p.hasNext() || p.next() != event) {
+			throw new IllegalArgumentException();
+		}
+	}
+
+	/**
+	 * Get the next key in the current object.
+	 *
+	 * @param p The parser.
+	 * @return The next key, or null if the end of the object has been reached.
+	 */
+	static String nextKey(JsonParser p) {
+		if(!p.hasNext()) {
+			throw new IllegalArgumentException();
+		}
+
+		switch(p.next()) {
+			case KEY_NAME:
+				return p.getString();
+			case END_OBJECT:
+				return null;
+		}
+
+		throw new IllegalArgumentException();
+	}
+
+	/**
+	 * Advance to the next element in the current array.
+	 *
+	 * @param p The parser.
+	 * @return The event of the next element, or null if the end of the array has been reached.
+	 */
+	static JsonParser.Event nextElement(JsonParser p) {
+		if(!p.hasNext()) {
+			throw new IllegalArgumentException();
+		}
+
+		JsonParser.Event e = p.next();
+		return e == JsonParser.Event.END_ARRAY ? null : e;
+	}
+
+	static String readString(JsonParser p) {
+		expect(p, JsonParser.Event.VALUE_STRING);
+		return p.getString();
+	}
+
+	static UUID readUUID(JsonParser p) {
+		return UUID.fromString(readString(p));
+	}
+
+	static long readLong(JsonParser p) {
+		expect(p, JsonParser.Event.VALUE_NUMBER);
+		return p.getLong();
+	}
+
+	static int readInt(JsonParser p) {
+		expect(p, JsonParser.Event.VALUE_NUMBER);
+		return p.getInt();
+	}
+
+	static double readDouble(JsonParser p) {
+		expect(p, JsonParser.Event.VALUE_NUMBER);
+		return p.getBigDecimal().doubleValue();
+	}
+
+	static boolean readBoolean(JsonParser p) {
+		if(!p.hasNext()) {
+			throw new IllegalArgumentException();
+		}
+
+		switch(p.next()) {
+			case VALUE_TRUE:
+				return true;
+			case VALUE_FALSE:
+				return false;
+		}
+
+		throw new IllegalArgumentException();
+	}
+
+	/**
+	 * Skip the next value, including any nested objects or arrays.
+	 *
+	 * @param p The parser.
+	 */
+	static void skipValue(JsonParser p) {
+		int depth = 0;
+		do {
+			if(!p.hasNext()) {
+				throw new IllegalArgumentException();
+			}
+
+			switch(p.next()) {
+				case START_OBJECT:
+				case START_ARRAY:
+					++depth;
+					break;
+				case END_OBJECT:
+				case END_ARRAY:
+					--depth;
+					break;
+			}
+		} while(depth > 0);
+	}
+}
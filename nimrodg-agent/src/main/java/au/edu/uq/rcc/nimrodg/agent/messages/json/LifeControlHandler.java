@@ -24,39 +24,46 @@ import au.edu.uq.rcc.nimrodg.agent.messages.AgentMessage;
 
 import java.time.Instant;
 import java.util.UUID;
-import javax.json.Json;
-import javax.json.JsonObject;
-import javax.json.JsonObjectBuilder;
-import javax.json.JsonString;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonParser;
 
 public class LifeControlHandler implements JsonHandler {
 
 	@Override
-	public AgentMessage read(JsonObject jo, UUID uuid, Instant timestamp) {
+	public AgentMessage read(JsonParser p, UUID uuid, Instant timestamp) {
+		String operation = null;
+		for(String k; (k = JsonStreams.nextKey(p)) != null; ) {
+			if("operation".equals(k)) {
+				operation = JsonStreams.readString(p);
+			} else {
+				JsonStreams.skipValue(p);
+			}
+		}
+
 		return new AgentLifeControl.Builder()
 				.agentUuid(uuid)
 				.timestamp(timestamp)
-				.operation(readLifeControlOperation(jo.getString("operation")))
+				.operation(readLifeControlOperation(operation))
 				.build();
 	}
 
 	@Override
-	public void write(JsonObjectBuilder jo, AgentMessage msg) {
-		jo.add("operation", toJson(((AgentLifeControl)msg).operation));
+	public void write(JsonGenerator g, AgentMessage msg) {
+		g.write("operation", lifeControlOperationToString(((AgentLifeControl)msg).operation));
 	}
 
-	private static JsonString toJson(AgentLifeControl.Operation op) {
+	public static String lifeControlOperationToString(AgentLifeControl.Operation op) {
 		switch(op) {
 			case Cancel:
-				return Json.createValue("cancel");
+				return "cancel";
 			case Terminate:
-				return Json.createValue("terminate");
+				return "terminate";
 		}
 
 		throw new IllegalArgumentException();
 	}
 
-	private static AgentLifeControl.Operation readLifeControlOperation(String s) {
+	public static AgentLifeControl.Operation readLifeControlOperation(String s) {
 		if(s == null) {
 			throw new IllegalArgumentException();
 		}
@@ -25,23 +25,32 @@ import au.edu.uq.rcc.nimrodg.agent.messages.AgentPong;
 import java.util.UUID;
 import java.time.Instant;
 
-import javax.json.JsonObject;
-import javax.json.JsonObjectBuilder;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonParser;
 
 public class PongHandler implements JsonHandler {
 
 	@Override
-	public AgentMessage read(JsonObject jo, UUID uuid, Instant timestamp) {
+	public AgentMessage read(JsonParser p, UUID uuid, Instant timestamp) {
+		String state = null;
+		for(String k; (k = JsonStreams.nextKey(p)) != null; ) {
+			if("state".equals(k)) {
+				state = JsonStreams.readString(p);
+			} else {
+				JsonStreams.skipValue(p);
+			}
+		}
+
 		return new AgentPong.Builder()
 				.agentUuid(uuid)
 				.timestamp(timestamp)
-				.clientState(Agent.clientStateFromString(jo.getString("state")))
+				.clientState(Agent.clientStateFromString(state))
 				.build();
 	}
 
 	@Override
-	public void write(JsonObjectBuilder jo, AgentMessage msg) {
-		jo.add("state", Agent.clientStateToString(((AgentPong)msg).getState()));
+	public void write(JsonGenerator g, AgentMessage msg) {
+		g.write("state", Agent.clientStateToString(((AgentPong)msg).getState()));
 	}
 
 }
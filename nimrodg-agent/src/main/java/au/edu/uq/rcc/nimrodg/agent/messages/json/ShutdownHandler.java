@@ -26,35 +26,59 @@ import au.edu.uq.rcc.nimrodg.api.AgentInfo;
 import java.time.Instant;
 import java.util.UUID;
 import javax.json.Json;
-import javax.json.JsonObject;
-import javax.json.JsonObjectBuilder;
 import javax.json.JsonString;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonParser;
 
 public class ShutdownHandler implements JsonHandler {
 
 	@Override
-	public AgentMessage read(JsonObject jo, UUID uuid, Instant timestamp) {
+	public AgentMessage read(JsonParser p, UUID uuid, Instant timestamp) {
+		String reason = null;
+		Integer signal = null;
+		for(String k; (k = JsonStreams.nextKey(p)) != null; ) {
+			switch(k) {
+				case "reason":
+					reason = JsonStreams.readString(p);
+					break;
+				case "signal":
+					signal = JsonStreams.readInt(p);
+					break;
+				default:
+					JsonStreams.skipValue(p);
+					break;
+			}
+		}
+
+		if(signal == null) {
+			throw new IllegalArgumentException();
+		}
+
 		return new AgentShutdown.Builder()
 				.agentUuid(uuid)
 				.timestamp(timestamp)
-				.reason(readShutdownReason(jo.getString("reason")))
-				.signal(jo.getInt("signal"))
+				.reason(readShutdownReason(reason))
+				.signal(signal)
 				.build();
 	}
 
 	@Override
-	public void write(JsonObjectBuilder jo, AgentMessage msg) {
+	public void write(JsonGenerator g, AgentMessage msg) {
 		AgentShutdown as = (AgentShutdown)msg;
-		jo.add("reason", toJson(as.reason));
-		jo.add("signal", as.signal);
+		g.write("reason", shutdownReasonToString(as.reason));
+		g.write("signal", as.signal);
 	}
 
 	public static JsonString toJson(AgentInfo.ShutdownReason reason) {
+		return Json.createValue(shutdownReasonToString(reason));
+	}
+
+	public static String shutdownReasonToString(AgentInfo.ShutdownReason reason) {
 		switch(reason) {
 			case HostSignal:
-				return Json.createValue("hostsignal");
+				return "hostsignal";
 			case Requested:
-				return Json.createValue("requested");
+				return "requested";
 		}
 
 		throw new IllegalArgumentException();
@@ -34,161 +34,231 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import javax.json.Json;
-import javax.json.JsonArray;
-import javax.json.JsonArrayBuilder;
-import javax.json.JsonObject;
-import javax.json.JsonObjectBuilder;
 import javax.json.JsonString;
-import javax.json.JsonValue;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonParser;
 
 public class SubmitHandler implements JsonHandler {
 
 	@Override
-	public AgentMessage read(JsonObject jo, UUID uuid, Instant timestamp) {
-		JsonObject joo = jo.getJsonObject("job");
-
-		UUID jobUuid = UUID.fromString(joo.getString("uuid"));
-
-		long index = joo.getJsonNumber("index").longValue();
-
-		String txuri = joo.getJsonString("txuri").getString();
-
-		Map<String, String> env = new HashMap<>();
-		JsonObject je = joo.getJsonObject("environment");
-
-		for(Map.Entry<String, JsonValue> e : je.entrySet()) {
-			env.put(e.getKey(), ((JsonString)e).getString());
-		}
-
-		List<NetworkJob.ResolvedCommand> commands = new ArrayList<>();
-		JsonArray jc = joo.getJsonArray("commands");
-		for(JsonValue j : jc) {
-			commands.add(readCommand(j.asJsonObject()));
+	public AgentMessage read(JsonParser p, UUID uuid, Instant timestamp) {
+		NetworkJob job = null;
+		for(String k; (k = JsonStreams.nextKey(p)) != null; ) {
+			if("job".equals(k)) {
+				job = readJob(p);
+			} else {
+				JsonStreams.skipValue(p);
+			}
 		}
 
 		return new AgentSubmit.Builder()
 				.agentUuid(uuid)
 				.timestamp(timestamp)
-				.job(new NetworkJob(jobUuid, index, txuri, commands, env))
+				.job(job)
 				.build();
 	}
 
-	private NetworkJob.ResolvedCommand readCommand(JsonObject jo) {
-		/* We rely on this to throw if the command type is bad */
-		Command.Type type = stringToCommandType(jo.getString("type"));
+	private NetworkJob readJob(JsonParser p) {
+		UUID jobUuid = null;
+		long index = 0;
+		String txuri = null;
+		Map<String, String> env = new HashMap<>();
+		List<NetworkJob.ResolvedCommand> commands = new ArrayList<>();
 
-		switch(type) {
-			case OnError: {
-				return new NetworkJob.OnErrorCommand(stringToOnErrorAction(jo.getString("action")));
-			}
-			case Redirect: {
-				return new NetworkJob.RedirectCommand(
-						stringToStream(jo.getString("stream")),
-						jo.getBoolean("append"),
-						jo.getString("file")
-				);
-			}
-			case Copy: {
-				return new NetworkJob.CopyCommand(
-						stringToContext(jo.getString("source_context")),
-						jo.getString("source_path"),
-						stringToContext(jo.getString("destination_context")),
-						jo.getString("destination_path")
-				);
+		JsonStreams.expect(p, JsonParser.Event.START_OBJECT);
+		for(String k; (k = JsonStreams.nextKey(p)) != null; ) {
+			switch(k) {
+				case "uuid":
+					jobUuid = JsonStreams.readUUID(p);
+					break;
+				case "index":
+					index = JsonStreams.readLong(p);
+					break;
+				case "txuri":
+					txuri = JsonStreams.readString(p);
+					break;
+				case "environment":
+					JsonStreams.expect(p, JsonParser.Event.START_OBJECT);
+					for(String e; (e = JsonStreams.nextKey(p)) != null; ) {
+						env.put(e, JsonStreams.readString(p));
+					}
+					break;
+				case "commands":
+					JsonStreams.expect(p, JsonParser.Event.START_ARRAY);
+					for(JsonParser.Event e; (e = JsonStreams.nextElement(p)) != null; ) {
+						if(e != JsonParser.Event.START_OBJECT) {
+							throw new IllegalArgumentException();
+						}
+						commands.add(readCommand(p));
+					}
+					break;
+				default:
+					JsonStreams.skipValue(p);
+					break;
 			}
-			case Exec: {
-				JsonArray ja = jo.getJsonArray("arguments");
+		}
 
-				List<String> args = new ArrayList<>();
-				for(JsonValue s : ja) {
-					args.add(((JsonString)s).getString());
-				}
+		return new NetworkJob(jobUuid, index, txuri, commands, env);
+	}
 
-				return new NetworkJob.ExecCommand(jo.getString("program"), args, jo.getBoolean("search_path"));
+	private NetworkJob.ResolvedCommand readCommand(JsonParser p) {
+		/* Fields may come in any order, collect them all then build. */
+		String type = null;
+		String action = null;
+		String stream = null;
+		boolean append = false;
+		String file = null;
+		String srcCtx = null;
+		String srcPath = null;
+		String dstCtx = null;
+		String dstPath = null;
+		String program = null;
+		List<String> args = new ArrayList<>();
+		boolean searchPath = false;
+
+		for(String k; (k = JsonStreams.nextKey(p)) != null; ) {
+			switch(k) {
+				case "type":
+					type = JsonStreams.readString(p);
+					break;
+				case "action":
+					action = JsonStreams.readString(p);
+					break;
+				case "stream":
+					stream = JsonStreams.readString(p);
+					break;
+				case "append":
+					append = JsonStreams.readBoolean(p);
+					break;
+				case "file":
+					file = JsonStreams.readString(p);
+					break;
+				case "source_context":
+					srcCtx = JsonStreams.readString(p);
+					break;
+				case "source_path":
+					srcPath = JsonStreams.readString(p);
+					break;
+				case "destination_context":
+					dstCtx = JsonStreams.readString(p);
+					break;
+				case "destination_path":
+					dstPath = JsonStreams.readString(p);
+					break;
+				case "program":
+					program = JsonStreams.readString(p);
+					break;
+				case "arguments":
+					JsonStreams.expect(p, JsonParser.Event.START_ARRAY);
+					for(JsonParser.Event e; (e = JsonStreams.nextElement(p)) != null; ) {
+						if(e != JsonParser.Event.VALUE_STRING) {
+							throw new IllegalArgumentException();
+						}
+						args.add(p.getString());
+					}
+					break;
+				case "search_path":
+					searchPath = JsonStreams.readBoolean(p);
+					break;
+				default:
+					JsonStreams.skipValue(p);
+					break;
 			}
 		}
 
+		/* We rely on this to throw if the command type is bad */
+		switch(stringToCommandType(type)) {
+			case OnError:
+				return new NetworkJob.OnErrorCommand(stringToOnErrorAction(action));
+			case Redirect:
+				return new NetworkJob.RedirectCommand(stringToStream(stream), append, file);
+			case Copy:
+				return new NetworkJob.CopyCommand(stringToContext(srcCtx), srcPath, stringToContext(dstCtx), dstPath);
+			case Exec:
+				return new NetworkJob.ExecCommand(program, args, searchPath);
+		}
+
 		throw new IllegalArgumentException();
 	}
 
 	@Override
-	public void write(JsonObjectBuilder jo, AgentMessage msg) {
-		AgentSubmit as = (AgentSubmit)msg;
+	public void write(JsonGenerator g, AgentMessage msg) {
+		NetworkJob j = ((AgentSubmit)msg).getJob();
 
-		JsonObjectBuilder joo = Json.createObjectBuilder();
-		NetworkJob j = as.getJob();
+		g.writeStartObject("job");
+		g.write("uuid", j.uuid.toString());
+		g.write("index", j.index);
+		g.write("txuri", j.txUri);
 
-		joo.add("uuid", j.uuid.toString());
-		joo.add("index", j.index);
-		joo.add("txuri", j.txUri);
-
-		JsonObjectBuilder je = Json.createObjectBuilder();
-		Map<String, String> env = j.environment;
-		for(String s : env.keySet()) {
-			je.add(s, env.get(s));
+		g.writeStartObject("environment");
+		for(Map.Entry<String, String> e : j.environment.entrySet()) {
+			g.write(e.getKey(), e.getValue());
 		}
-		joo.add("environment", je);
+		g.writeEnd();
 
-		JsonArrayBuilder jc = Json.createArrayBuilder();
-		j.commands.forEach(jb -> write(jc, jb));
-		joo.add("commands", jc);
+		g.writeStartArray("commands");
+		for(NetworkJob.ResolvedCommand cmd : j.commands) {
+			write(g, cmd);
+		}
+		g.writeEnd();
 
-		jo.add("job", joo);
+		g.writeEnd();
 	}
 
-	private void write(JsonArrayBuilder ja, NetworkJob.ResolvedCommand cmd) {
-		JsonObjectBuilder jo = Json.createObjectBuilder();
-
-		jo.add("type", toJson(cmd.getType()));
+	private void write(JsonGenerator g, NetworkJob.ResolvedCommand cmd) {
+		g.writeStartObject();
+		g.write("type", commandTypeToString(cmd.getType()));
 		switch(cmd.getType()) {
 			case OnError: {
 				NetworkJob.OnErrorCommand ccmd = (NetworkJob.OnErrorCommand)cmd;
-				jo.add("action", toJson(ccmd.action));
+				g.write("action", onErrorActionToString(ccmd.action));
 				break;
 			}
 			case Redirect: {
 				NetworkJob.RedirectCommand ccmd = (NetworkJob.RedirectCommand)cmd;
-				jo.add("stream", toJson(ccmd.stream));
-				jo.add("append", ccmd.append);
-				jo.add("file", ccmd.file);
+				g.write("stream", streamToString(ccmd.stream));
+				g.write("append", ccmd.append);
+				g.write("file", ccmd.file);
 				break;
 			}
 			case Copy: {
 				NetworkJob.CopyCommand ccmd = (NetworkJob.CopyCommand)cmd;
-				jo.add("source_context", toJson(ccmd.sourceContext));
-				jo.add("source_path", ccmd.sourcePath);
-				jo.add("destination_context", toJson(ccmd.destinationContext));
-				jo.add("destination_path", ccmd.destinationPath);
+				g.write("source_context", contextToString(ccmd.sourceContext));
+				g.write("source_path", ccmd.sourcePath);
+				g.write("destination_context", contextToString(ccmd.destinationContext));
+				g.write("destination_path", ccmd.destinationPath);
 				break;
 			}
 			case Exec: {
 				NetworkJob.ExecCommand ccmd = (NetworkJob.ExecCommand)cmd;
 
-				jo.add("program", ccmd.program);
-				JsonArrayBuilder jac = Json.createArrayBuilder();
-				List<String> components = ccmd.arguments;
-				for(String s : components) {
-					jac.add(s);
+				g.write("program", ccmd.program);
+				g.writeStartArray("arguments");
+				for(String s : ccmd.arguments) {
+					g.write(s);
 				}
-				jo.add("arguments", jac);
-				jo.add("search_path", ccmd.searchPath);
+				g.writeEnd();
+				g.write("search_path", ccmd.searchPath);
 				break;
 			}
 		}
-
-		ja.add(jo);
+		g.writeEnd();
 	}
 
 	public static JsonString toJson(Command.Type type) {
+		return Json.createValue(commandTypeToString(type));
+	}
+
+	public static String commandTypeToString(Command.Type type) {
 		switch(type) {
 			case OnError:
-				return Json.createValue("onerror");
+				return "onerror";
 			case Redirect:
-				return Json.createValue("redirect");
+				return "redirect";
 			case Copy:
-				return Json.createValue("copy");
+				return "copy";
 			case Exec:
-				return Json.createValue("exec");
+				return "exec";
 		}
 
 		throw new IllegalArgumentException();
@@ -214,11 +284,15 @@ public class SubmitHandler implements JsonHandler {
 	}
 
 	public static JsonString toJson(OnErrorCommand.Action a) {
+		return Json.createValue(onErrorActionToString(a));
+	}
+
+	public static String onErrorActionToString(OnErrorCommand.Action a) {
 		switch(a) {
 			case Fail:
-				return Json.createValue("fail");
+				return "fail";
 			case Ignore:
-				return Json.createValue("ignore");
+				return "ignore";
 		}
 		throw new IllegalArgumentException();
 	}
@@ -239,11 +313,15 @@ public class SubmitHandler implements JsonHandler {
 	}
 
 	public static JsonString toJson(CopyCommand.Context ctx) {
+		return Json.createValue(contextToString(ctx));
+	}
+
+	public static String contextToString(CopyCommand.Context ctx) {
 		switch(ctx) {
 			case Node:
-				return Json.createValue("node");
+				return "node";
 			case Root:
-				return Json.createValue("root");
+				return "root";
 		}
 
 		throw new IllegalArgumentException();
@@ -265,15 +343,19 @@ public class SubmitHandler implements JsonHandler {
 	}
 
 	public static JsonString toJson(RedirectCommand.Stream s) {
+		return Json.createValue(streamToString(s));
+	}
+
+	public static String streamToString(RedirectCommand.Stream s) {
 		if(s == null) {
 			throw new IllegalArgumentException();
 		}
 
 		switch(s) {
 			case Stderr:
-				return Json.createValue("stderr");
+				return "stderr";
 			case Stdout:
-				return Json.createValue("stdout");
+				return "stdout";
 		}
 
 		throw new IllegalArgumentException();
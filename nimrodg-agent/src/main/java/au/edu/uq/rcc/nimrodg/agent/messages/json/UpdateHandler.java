@@ -23,64 +23,117 @@ import au.edu.uq.rcc.nimrodg.agent.messages.AgentMessage;
 import au.edu.uq.rcc.nimrodg.agent.messages.AgentUpdate;
 import au.edu.uq.rcc.nimrodg.api.CommandResult;
 
+import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.UUID;
 import javax.json.Json;
-import javax.json.JsonObject;
-import javax.json.JsonObjectBuilder;
 import javax.json.JsonString;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonParser;
 
 public class UpdateHandler implements JsonHandler {
 
 	@Override
-	public AgentMessage read(JsonObject jo, UUID uuid, Instant timestamp) {
+	public AgentMessage read(JsonParser p, UUID uuid, Instant timestamp) {
+		UUID jobUuid = null;
+		AgentUpdate.CommandResult_ cr = null;
+		AgentUpdate.Action action = null;
+
+		for(String k; (k = JsonStreams.nextKey(p)) != null; ) {
+			switch(k) {
+				case "job_uuid":
+					jobUuid = JsonStreams.readUUID(p);
+					break;
+				case "command_result":
+					cr = readCommandResult(p);
+					break;
+				case "action":
+					action = stringToUpdateAction(JsonStreams.readString(p));
+					break;
+				default:
+					JsonStreams.skipValue(p);
+					break;
+			}
+		}
+
 		return new AgentUpdate.Builder()
 				.agentUuid(uuid)
 				.timestamp(timestamp)
-				.jobUuid(UUID.fromString(jo.getString("job_uuid")))
-				.commandResult(readCommandResult(jo.getJsonObject("command_result")))
-				.action(stringToUpdateAction(jo.getString("action")))
+				.jobUuid(jobUuid)
+				.commandResult(cr)
+				.action(action)
 				.build();
 	}
 
-	private AgentUpdate.CommandResult_ readCommandResult(JsonObject jo) {
-		return new AgentUpdate.CommandResult_(
-				stringToCommandResultStatus(jo.getString("status")),
-				jo.getJsonNumber("index").longValue(),
-				(float)jo.getJsonNumber("time").doubleValue(),
-				jo.getInt("retval"),
-				jo.getString("message"),
-				jo.getInt("error_code")
-		);
+	private AgentUpdate.CommandResult_ readCommandResult(JsonParser p) {
+		CommandResult.CommandResultStatus status = null;
+		long index = 0;
+		float time = 0.0f;
+		int retval = 0;
+		String message = null;
+		int errorCode = 0;
+
+		JsonStreams.expect(p, JsonParser.Event.START_OBJECT);
+		for(String k; (k = JsonStreams.nextKey(p)) != null; ) {
+			switch(k) {
+				case "status":
+					status = stringToCommandResultStatus(JsonStreams.readString(p));
+					break;
+				case "index":
+					index = JsonStreams.readLong(p);
+					break;
+				case "time":
+					time = (float)JsonStreams.readDouble(p);
+					break;
+				case "retval":
+					retval = JsonStreams.readInt(p);
+					break;
+				case "message":
+					message = JsonStreams.readString(p);
+					break;
+				case "error_code":
+					errorCode = JsonStreams.readInt(p);
+					break;
+				default:
+					JsonStreams.skipValue(p);
+					break;
+			}
+		}
+
+		return new AgentUpdate.CommandResult_(status, index, time, retval, message, errorCode);
 	}
 
 	@Override
-	public void write(JsonObjectBuilder jo, AgentMessage msg) {
+	public void write(JsonGenerator g, AgentMessage msg) {
 		AgentUpdate au = (AgentUpdate)msg;
 
-		jo.add("job_uuid", au.getJobUUID().toString());
-		jo.add("action", toJson(au.getAction()));
-
-		JsonObjectBuilder joo = Json.createObjectBuilder();
+		g.write("job_uuid", au.getJobUUID().toString());
+		g.write("action", updateActionToString(au.getAction()));
 
+		g.writeStartObject("command_result");
 		{
 			AgentUpdate.CommandResult_ res = au.getCommandResult();
-			joo.add("status", toJson(res.status));
-			joo.add("index", res.index);
-			joo.add("time", res.time);
-			joo.add("retval", res.retVal);
-			joo.add("message", res.message);
-			joo.add("error_code", res.errorCode);
+			g.write("status", commandResultStatusToString(res.status));
+			g.write("index", res.index);
+			/* Match JsonObjectBuilder.add(String, double), which goes via BigDecimal. */
+			g.write("time", BigDecimal.valueOf(res.time));
+			g.write("retval", res.retVal);
+			g.write("message", res.message);
+			g.write("error_code", res.errorCode);
 		}
-		jo.add("command_result", joo);
+		g.writeEnd();
 	}
 
 	public static JsonString toJson(AgentUpdate.Action a) {
+		return Json.createValue(updateActionToString(a));
+	}
+
+	public static String updateActionToString(AgentUpdate.Action a) {
 		switch(a) {
 			case Continue:
-				return Json.createValue("continue");
+				return "continue";
 			case Stop:
-				return Json.createValue("stop");
+				return "stop";
 		}
 
 		throw new IllegalArgumentException();
@@ -102,19 +155,23 @@ public class UpdateHandler implements JsonHandler {
 	}
 
 	public static JsonString toJson(CommandResult.CommandResultStatus s) {
+		return Json.createValue(commandResultStatusToString(s));
+	}
+
+	public static String commandResultStatusToString(CommandResult.CommandResultStatus s) {
 		switch(s) {
 			case PRECONDITION_FAILURE:
-				return Json.createValue("precondition_failure");
+				return "precondition_failure";
 			case EXCEPTION:
-				return Json.createValue("exception");
+				return "exception";
 			case SUCCESS:
-				return Json.createValue("success");
+				return "success";
 			case SYSTEM_ERROR:
-				return Json.createValue("system_error");
+				return "system_error";
 			case ABORTED:
-				return Json.createValue("aborted");
+				return "aborted";
 			case FAILED:
-				return Json.createValue("failed");
+				return "failed";
 		}
 
 		throw new IllegalArgumentException();
@@ -0,0 +1,57 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.api;
+
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * A forward-only cursor over an experiment's jobs, in index order.
+ *
+ * Each fetch resumes from the index of the last job returned rather than re-reading
+ * from the start, so its cost depends on the size of the batch, not the position.
+ *
+ * @see NimrodAPI#openJobCursor(Experiment, EnumSet, long)
+ */
+public interface JobCursor {
+
+	Experiment getExperiment();
+
+	/**
+	 * Get the index of the last job returned by {@link #fetch(int)}.
+	 *
+	 * If nothing has been fetched yet, this is one less than the starting index.
+	 *
+	 * @return The index of the last job returned.
+	 */
+	long getPosition();
+
+	/**
+	 * Fetch the next batch of jobs.
+	 *
+	 * A short read means the cursor has caught up. Jobs added to the experiment afterwards
+	 * will be returned by subsequent fetches.
+	 *
+	 * @param limit The maximum number of jobs to return. Must be positive.
+	 * @return An immutable list of jobs with indices greater than {@link #getPosition()}, in ascending order.
+	 * @throws IllegalArgumentException If limit is not positive.
+	 */
+	List<Job> fetch(int limit) throws IllegalArgumentException;
+}
@@ -90,6 +90,18 @@ public interface NimrodAPI extends AgentProvider, AutoCloseable {
 	 */
 	Collection<Job> filterJobs(Experiment exp, EnumSet<JobAttempt.Status> status, long start, int limit);
 
+	/**
+	 * Open a cursor over the jobs that satisfy the given criteria.
+	 *
+	 * Statuses are evaluated at fetch time, so a job's status may have changed by the time it's returned.
+	 *
+	 * @param exp The experiment instance.
+	 * @param status The statuses of the jobs.
+	 * @param start The lowest possible starting number for the job.
+	 * @return A cursor positioned just before start.
+	 */
+	JobCursor openJobCursor(Experiment exp, EnumSet<JobAttempt.Status> status, long start);
+
 	default List<JobAttempt> filterJobAttempts(Job job, EnumSet<JobAttempt.Status> status) {
 		return this.filterJobAttempts(List.of(job), status).getOrDefault(job, List.of());
 	}
@@ -145,6 +157,16 @@ public interface NimrodAPI extends AgentProvider, AutoCloseable {
 
 	List<JobAttempt.Status> getJobStatuses(Collection<Job> jobs);
 
+	/**
+	 * Get the number of jobs in an experiment, by status.
+	 *
+	 * Job statuses are as described in {@link #getJobStatus(Job)}.
+	 *
+	 * @param exp The experiment instance.
+	 * @return The number of jobs in the experiment, by status.
+	 */
+	RunCounts getRunCounts(Experiment exp);
+
 	NimrodConfig getConfig();
 
 	void updateConfig(String workDir, String storeDir, NimrodURI amqpUri, String amqpRoutingKey, NimrodURI txUri);
@@ -0,0 +1,86 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.api;
+
+import java.util.Objects;
+
+/**
+ * A snapshot of the number of jobs in an experiment, by status.
+ *
+ * @see NimrodAPI#getRunCounts(Experiment)
+ */
+public final class RunCounts {
+
+	public final long total;
+	public final long notRun;
+	public final long running;
+	public final long completed;
+	public final long failed;
+
+	public RunCounts(long notRun, long running, long completed, long failed) {
+		this.total = notRun + running + completed + failed;
+		this.notRun = notRun;
+		this.running = running;
+		this.completed = completed;
+		this.failed = failed;
+	}
+
+	/**
+	 * Get the number of jobs with the given status.
+	 *
+	 * @param status The job status.
+	 * @return The number of jobs with the given status.
+	 */
+	public long get(JobAttempt.Status status) {
+		switch(status) {
+			case NOT_RUN:
+				return notRun;
+			case RUNNING:
+				return running;
+			case COMPLETED:
+				return completed;
+			case FAILED:
+				return failed;
+		}
+
+		throw new IllegalArgumentException();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("total=%d, not_run=%d, running=%d, completed=%d, failed=%d", total, notRun, running, completed, failed);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(this == o) return true;
+		if(o == null || getClass() != o.getClass()) return false;
+		RunCounts that = (RunCounts)o;
+		return notRun == that.notRun &&
+				running == that.running &&
+				completed == that.completed &&
+				failed == that.failed;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(notRun, running, completed, failed);
+	}
+}
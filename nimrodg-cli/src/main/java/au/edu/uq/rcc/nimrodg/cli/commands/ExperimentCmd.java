@@ -119,13 +119,24 @@ public final class ExperimentCmd extends NimrodCLICommand {
                 .nextRow()
                 .nextCell("Name")
                 .nextCell("State")
-                .nextCell("Working Directory");
+                .nextCell("Working Directory")
+                .nextCell("Total")
+                .nextCell("Pending")
+                .nextCell("Running")
+                .nextCell("Completed")
+                .nextCell("Failed");
 
         for(Experiment e : exps) {
+            RunCounts rc = nimrod.getRunCounts(e);
             st.nextRow()
                     .nextCell(e.getName())
                     .nextCell(Experiment.stateToString(e.getState()))
-                    .nextCell(e.getWorkingDirectory());
+                    .nextCell(e.getWorkingDirectory())
+                    .nextCell(String.valueOf(rc.total))
+                    .nextCell(String.valueOf(rc.notRun))
+                    .nextCell(String.valueOf(rc.running))
+                    .nextCell(String.valueOf(rc.completed))
+                    .nextCell(String.valueOf(rc.failed));
         }
 
         printTable(st, out);
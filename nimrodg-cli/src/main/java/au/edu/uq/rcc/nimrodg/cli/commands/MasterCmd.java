@@ -25,15 +25,15 @@ import au.edu.uq.rcc.nimrodg.api.NimrodConfig;
 import au.edu.uq.rcc.nimrodg.api.NimrodException;
 import au.edu.uq.rcc.nimrodg.api.NimrodMasterAPI;
 import au.edu.uq.rcc.nimrodg.api.NimrodURI;
-import au.edu.uq.rcc.nimrodg.master.AMQPMessage;
 import au.edu.uq.rcc.nimrodg.cli.CommandEntry;
 import au.edu.uq.rcc.nimrodg.cli.NimrodCLI;
 import au.edu.uq.rcc.nimrodg.cli.NimrodCLICommand;
 import au.edu.uq.rcc.nimrodg.master.AMQProcessorImpl;
+import au.edu.uq.rcc.nimrodg.master.JobSchedulerFactory;
 import au.edu.uq.rcc.nimrodg.master.Master;
-import au.edu.uq.rcc.nimrodg.master.MessageQueueListener;
 import au.edu.uq.rcc.nimrodg.master.sched.DefaultAgentScheduler;
 import au.edu.uq.rcc.nimrodg.master.sched.DefaultJobScheduler;
+import au.edu.uq.rcc.nimrodg.master.sched.LongestJobFirstScheduler;
 import au.edu.uq.rcc.nimrodg.master.sig.SigUtils;
 import au.edu.uq.rcc.nimrodg.resource.act.ActuatorUtils;
 import au.edu.uq.rcc.nimrodg.api.setup.UserConfig;
@@ -49,7 +49,6 @@ import java.nio.file.Paths;
 import java.security.GeneralSecurityException;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
-import java.util.Optional;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -65,7 +64,10 @@ public final class MasterCmd extends NimrodCLICommand {
 		return "master";
 	}
 
+	/* Maximum time between ticks, in milliseconds. */
 	private static final long TICK_RATE = 500L;
+	/* Minimum time between ticks, in milliseconds. */
+	private static final long MIN_TICK_RATE = 10L;
 
 	private static Certificate[] loadCerts(String path) throws CertificateException, IOException {
 		if(path == null || path.isEmpty()) {
@@ -75,27 +77,6 @@ public final class MasterCmd extends NimrodCLICommand {
 		}
 	}
 
-	private static class _MessageQueueListener implements MessageQueueListener {
-
-		public final Master m;
-		public final Object monitor;
-
-		public _MessageQueueListener(Master m, Object monitor) {
-			this.m = m;
-			this.monitor = monitor;
-		}
-
-		@Override
-		public Optional<MessageOperation> processAgentMessage(long tag, AMQPMessage amsg) throws IllegalStateException {
-			Optional<MessageQueueListener.MessageOperation> op = m.processAgentMessage(tag, amsg);
-			synchronized(monitor) {
-				monitor.notify();
-			}
-			return op;
-		}
-
-	}
-
 	@Override
 	public int execute(Namespace args, UserConfig config, NimrodAPI nimrod, PrintStream out, PrintStream err, Path[] configDirs) throws NimrodException {
 		String expName = args.getString("exp_name");
@@ -115,10 +96,14 @@ public final class MasterCmd extends NimrodCLICommand {
 			return 1;
 		}
 
-		Object monitor = new Object();
 		AtomicBoolean hasQuit = new AtomicBoolean(false);
 
 		long tickRate = args.getLong("tick_rate");
+		long minTickRate = args.getLong("min_tick_rate");
+		if(minTickRate < 0 || tickRate < minTickRate) {
+			err.printf("Invalid tick rates, require 0 <= min-tick-rate (%d) <= tick-rate (%d)\n", minTickRate, tickRate);
+			return 1;
+		}
 
 		if(!nimrod.getAPICaps().master) {
 			err.println("API Implementation doesn't provide master capabilities.");
@@ -140,7 +125,62 @@ public final class MasterCmd extends NimrodCLICommand {
 			return 1;
 		}
 
-		try(Master m = new Master((NimrodMasterAPI)nimrod, exp, DefaultJobScheduler.FACTORY, DefaultAgentScheduler.FACTORY)) {
+		int prefetch;
+		try {
+			prefetch = Integer.parseInt(nimrod.getProperty("nimrod.master.amqp.prefetch").orElseGet(() -> {
+				nimrod.setProperty("nimrod.master.amqp.prefetch", String.valueOf(AMQProcessorImpl.DEFAULT_PREFETCH));
+				return String.valueOf(AMQProcessorImpl.DEFAULT_PREFETCH);
+			}));
+		} catch(NumberFormatException e) {
+			err.println("Invalid AMQP prefetch count");
+			return 1;
+		}
+
+		int maxInFlight;
+		try {
+			maxInFlight = Integer.parseInt(nimrod.getProperty("nimrod.master.amqp.max_in_flight").orElseGet(() -> {
+				nimrod.setProperty("nimrod.master.amqp.max_in_flight", String.valueOf(AMQProcessorImpl.DEFAULT_MAX_IN_FLIGHT));
+				return String.valueOf(AMQProcessorImpl.DEFAULT_MAX_IN_FLIGHT);
+			}));
+		} catch(NumberFormatException e) {
+			err.println("Invalid AMQP in-flight message count");
+			return 1;
+		}
+
+		int publishChannels;
+		try {
+			publishChannels = Integer.parseInt(nimrod.getProperty("nimrod.master.amqp.publish_channels").orElseGet(() -> {
+				nimrod.setProperty("nimrod.master.amqp.publish_channels", String.valueOf(AMQProcessorImpl.DEFAULT_PUBLISH_CHANNELS));
+				return String.valueOf(AMQProcessorImpl.DEFAULT_PUBLISH_CHANNELS);
+			}));
+		} catch(NumberFormatException e) {
+			err.println("Invalid AMQP publishing channel count");
+			return 1;
+		}
+
+		int compressThreshold;
+		try {
+			compressThreshold = Integer.parseInt(nimrod.getProperty("nimrod.master.amqp.compress_threshold").orElseGet(() -> {
+				nimrod.setProperty("nimrod.master.amqp.compress_threshold", String.valueOf(AMQProcessorImpl.DEFAULT_COMPRESS_THRESHOLD));
+				return String.valueOf(AMQProcessorImpl.DEFAULT_COMPRESS_THRESHOLD);
+			}));
+		} catch(NumberFormatException e) {
+			err.println("Invalid AMQP compression threshold");
+			return 1;
+		}
+
+		JobSchedulerFactory jsf;
+		switch(args.getString("job_scheduler")) {
+			case "longest-first":
+				jsf = LongestJobFirstScheduler.FACTORY;
+				break;
+			case "default":
+			default:
+				jsf = DefaultJobScheduler.FACTORY;
+				break;
+		}
+
+		try(Master m = new Master((NimrodMasterAPI)nimrod, exp, jsf, DefaultAgentScheduler.FACTORY)) {
 			try(AMQProcessorImpl amqp = new AMQProcessorImpl(
 					amqpUri.uri,
 					certs,
@@ -148,17 +188,20 @@ public final class MasterCmd extends NimrodCLICommand {
 					cfg.getAmqpRoutingKey(),
 					amqpUri.noVerifyPeer,
 					amqpUri.noVerifyHost,
-					new _MessageQueueListener(m, monitor),
+					m,
 					ForkJoinPool.commonPool(),
-					signingAlgorithm
+					signingAlgorithm,
+					new AMQProcessorImpl.Settings.Builder()
+							.prefetch(prefetch)
+							.maxInFlight(maxInFlight)
+							.publishChannels(publishChannels)
+							.compressThreshold(compressThreshold)
+							.build()
 			)) {
 				m.setAMQP(amqp);
 
 				Runtime.getRuntime().addShutdownHook(new Thread(() -> {
 					m.flagStop();
-					synchronized(monitor) {
-						monitor.notify();
-					}
 
 					while(!hasQuit.get()) {
 						synchronized(hasQuit) {
@@ -175,9 +218,7 @@ public final class MasterCmd extends NimrodCLICommand {
 
 				while(m.tick()) {
 					try {
-						synchronized(monitor) {
-							monitor.wait(tickRate);
-						}
+						m.waitForWork(minTickRate, tickRate);
 					} catch(InterruptedException e) {
 						/* nop */
 					}
@@ -211,7 +252,20 @@ public final class MasterCmd extends NimrodCLICommand {
 					.dest("tick_rate")
 					.type(Long.class)
 					.setDefault(TICK_RATE)
-					.help("Tick Rate (ms)");
+					.help("Maximum time between ticks (ms)");
+
+			parser.addArgument("--min-tick-rate")
+					.dest("min_tick_rate")
+					.type(Long.class)
+					.setDefault(MIN_TICK_RATE)
+					.help("Minimum time between ticks (ms)");
+
+			parser.addArgument("--job-scheduler")
+					.dest("job_scheduler")
+					.type(String.class)
+					.choices("default", "longest-first")
+					.setDefault("default")
+					.help("The job scheduler. \"longest-first\" launches the jobs predicted to run longest first");
 		}
 
 	};
@@ -241,6 +241,8 @@ public class Controller {
 			return MessageQueueListener.MessageOperation.Reject;
 		}
 
+		amqp.updatePeer(amsg);
+
 		UUID uuid = msg.getAgentUUID();
 
 		boolean terminate =
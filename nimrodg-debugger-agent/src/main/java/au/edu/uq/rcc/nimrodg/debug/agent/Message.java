@@ -28,7 +28,7 @@ public class Message {
 	public static Message create(AMQPMessage msg, boolean incoming) {
 		/* Try to parse it "raw", as this will keep unknown fields. */
 		JsonStructure rawJson = null;
-		try(JsonReader r = Json.createReader(new ByteArrayInputStream(msg.body))) {
+		try(JsonReader r = Json.createReader(new ByteArrayInputStream(msg.payload))) {
 			try {
 				rawJson = r.read();
 			} catch(JsonException e) {
@@ -0,0 +1,250 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.impl.base.db;
+
+import au.edu.uq.rcc.nimrodg.api.CommandResult;
+import au.edu.uq.rcc.nimrodg.api.JobAttempt;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Job attempt updates and command results waiting to be written.
+ *
+ * Whilst enabled, updates are queued here instead of being written immediately, and are
+ * written in a single transaction by {@link NimrodDBAPI#flushAttemptUpdates()}.
+ * The queued attempt states are overlaid on reads, so the writer sees its own writes.
+ */
+public final class AttemptWriteBuffer {
+
+	public static abstract class Update {
+		public final TempJobAttempt.Impl att;
+
+		private Update(TempJobAttempt.Impl att) {
+			this.att = att;
+		}
+
+		abstract void apply(NimrodDBAPI db) throws SQLException;
+	}
+
+	public static final class StartUpdate extends Update {
+		public final UUID agentUuid;
+		/* When the attempt started, not when it was written. */
+		public final Instant time;
+
+		private StartUpdate(TempJobAttempt.Impl att, UUID agentUuid, Instant time) {
+			super(att);
+			this.agentUuid = agentUuid;
+			this.time = time;
+		}
+
+		@Override
+		void apply(NimrodDBAPI db) throws SQLException {
+			db.startJobAttempt(att, agentUuid, time);
+		}
+	}
+
+	public static final class FinishUpdate extends Update {
+		public final boolean failed;
+		/* When the attempt finished, not when it was written. */
+		public final Instant time;
+
+		private FinishUpdate(TempJobAttempt.Impl att, boolean failed, Instant time) {
+			super(att);
+			this.failed = failed;
+			this.time = time;
+		}
+
+		@Override
+		void apply(NimrodDBAPI db) throws SQLException {
+			db.finishJobAttempt(att, failed, time);
+		}
+	}
+
+	public static final class ResultUpdate extends Update {
+		public final CommandResult.CommandResultStatus status;
+		public final long index;
+		public final float time;
+		public final int retval;
+		public final String message;
+		public final int errcode;
+		public final boolean stop;
+
+		private ResultUpdate(TempJobAttempt.Impl att, CommandResult.CommandResultStatus status, long index, float time, int retval, String message, int errcode, boolean stop) {
+			super(att);
+			this.status = status;
+			this.index = index;
+			this.time = time;
+			this.retval = retval;
+			this.message = message;
+			this.errcode = errcode;
+			this.stop = stop;
+		}
+
+		@Override
+		void apply(NimrodDBAPI db) throws SQLException {
+			db.addCommandResult(att, status, index, time, retval, message, errcode, stop);
+		}
+	}
+
+	private static class PendingState {
+		JobAttempt.Status status;
+		UUID agentUuid;
+	}
+
+	private boolean enabled;
+	private final List<Update> updates;
+	/* Attempt id -> queued state. */
+	private final Map<Long, PendingState> attempts;
+	/* Ids of jobs with an attempt with a queued state change. */
+	private final Set<Long> jobs;
+
+	public AttemptWriteBuffer() {
+		this.enabled = false;
+		this.updates = new ArrayList<>();
+		this.attempts = new HashMap<>();
+		this.jobs = new HashSet<>();
+	}
+
+	public synchronized boolean isEnabled() {
+		return enabled;
+	}
+
+	public synchronized void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public synchronized boolean isEmpty() {
+		return updates.isEmpty();
+	}
+
+	public synchronized void start(TempJobAttempt.Impl att, UUID agentUuid, Instant time) {
+		updates.add(new StartUpdate(att, agentUuid, time));
+		PendingState ps = getPendingState(att);
+		ps.status = JobAttempt.Status.RUNNING;
+		ps.agentUuid = agentUuid;
+	}
+
+	public synchronized void finish(TempJobAttempt.Impl att, boolean failed, Instant time) {
+		updates.add(new FinishUpdate(att, failed, time));
+		getPendingState(att).status = failed ? JobAttempt.Status.FAILED : JobAttempt.Status.COMPLETED;
+	}
+
+	public synchronized void addCommandResult(TempJobAttempt.Impl att, CommandResult.CommandResultStatus status, long index, float time, int retval, String message, int errcode, boolean stop) {
+		updates.add(new ResultUpdate(att, status, index, time, retval, message, errcode, stop));
+	}
+
+	private PendingState getPendingState(TempJobAttempt.Impl att) {
+		jobs.add(att.base.jobId);
+		return attempts.computeIfAbsent(att.base.id, id -> new PendingState());
+	}
+
+	/**
+	 * Get the queued status of an attempt.
+	 *
+	 * @param attId The attempt id.
+	 * @return The queued status of the attempt, if any.
+	 */
+	public synchronized Optional<JobAttempt.Status> getPendingStatus(long attId) {
+		return Optional.ofNullable(attempts.get(attId)).map(ps -> ps.status);
+	}
+
+	/**
+	 * Get the queued agent of an attempt.
+	 *
+	 * @param attId The attempt id.
+	 * @return The queued agent of the attempt, if any.
+	 */
+	public synchronized Optional<UUID> getPendingAgent(long attId) {
+		return Optional.ofNullable(attempts.get(attId)).map(ps -> ps.agentUuid);
+	}
+
+	/**
+	 * Check if any attempts of a job have a queued state change.
+	 *
+	 * @param jobId The job id.
+	 * @return If any attempts of the job have a queued state change.
+	 */
+	public synchronized boolean hasPendingAttempts(long jobId) {
+		return jobs.contains(jobId);
+	}
+
+	/**
+	 * Get all queued updates, in the order they were queued.
+	 *
+	 * The updates remain queued until they're {@link #commit(int) committed}.
+	 *
+	 * @return The queued updates.
+	 */
+	public synchronized List<Update> peek() {
+		return new ArrayList<>(updates);
+	}
+
+	/**
+	 * Remove the first {@code n} queued updates, once they've been written.
+	 *
+	 * @param n The number of updates written, as returned by {@link #peek()}.
+	 */
+	public synchronized void commit(int n) {
+		updates.subList(0, n).clear();
+		attempts.clear();
+		jobs.clear();
+
+		/* Anything queued since the peek still needs to be overlaid. */
+		for(Update u : updates) {
+			if(u instanceof StartUpdate) {
+				PendingState ps = getPendingState(u.att);
+				ps.status = JobAttempt.Status.RUNNING;
+				ps.agentUuid = ((StartUpdate)u).agentUuid;
+			} else if(u instanceof FinishUpdate) {
+				getPendingState(u.att).status = ((FinishUpdate)u).failed ? JobAttempt.Status.FAILED : JobAttempt.Status.COMPLETED;
+			}
+		}
+	}
+
+	/**
+	 * Derive a job's status from the statuses of its attempts.
+	 *
+	 * See {@link au.edu.uq.rcc.nimrodg.api.NimrodAPI#getJobStatus(au.edu.uq.rcc.nimrodg.api.Job)} for the rules.
+	 *
+	 * @param statuses The statuses of all the job's attempts.
+	 * @return The status of the job.
+	 */
+	public static JobAttempt.Status deriveJobStatus(Collection<JobAttempt.Status> statuses) {
+		if(statuses.contains(JobAttempt.Status.COMPLETED)) {
+			return JobAttempt.Status.COMPLETED;
+		} else if(statuses.contains(JobAttempt.Status.RUNNING)) {
+			return JobAttempt.Status.RUNNING;
+		} else if(statuses.contains(JobAttempt.Status.FAILED)) {
+			return JobAttempt.Status.FAILED;
+		}
+
+		return JobAttempt.Status.NOT_RUN;
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.impl.base.db;
+
+import au.edu.uq.rcc.nimrodg.api.Experiment;
+import au.edu.uq.rcc.nimrodg.api.Job;
+import au.edu.uq.rcc.nimrodg.api.JobAttempt;
+import au.edu.uq.rcc.nimrodg.api.JobCursor;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * A keyset cursor, remembering only the index of the last job it returned.
+ *
+ * This holds no database resources, so needn't be closed.
+ */
+final class DBJobCursor implements JobCursor {
+
+	private final NimrodDBAPI db;
+	private final TempExperiment.Impl exp;
+	private final EnumSet<JobAttempt.Status> status;
+	private long position;
+
+	DBJobCursor(NimrodDBAPI db, TempExperiment.Impl exp, EnumSet<JobAttempt.Status> status, long start) {
+		this.db = db;
+		this.exp = exp;
+		this.status = EnumSet.copyOf(status);
+		this.position = Math.max(start, 1) - 1;
+	}
+
+	@Override
+	public Experiment getExperiment() {
+		return exp;
+	}
+
+	@Override
+	public long getPosition() {
+		return position;
+	}
+
+	@Override
+	public List<Job> fetch(int limit) {
+		if(limit <= 0) {
+			throw new IllegalArgumentException("limit");
+		}
+
+		if(status.isEmpty()) {
+			return List.of();
+		}
+
+		/* Pending attempt writes may change job statuses. */
+		db.flushAttemptUpdates();
+		List<TempJob.Impl> jobs = db.runSQL(() -> db.fetchJobsAfter(exp, status, position, limit));
+		if(!jobs.isEmpty()) {
+			position = jobs.get(jobs.size() - 1).getIndex();
+		}
+
+		return Collections.unmodifiableList(jobs);
+	}
+}
@@ -25,9 +25,11 @@ import au.edu.uq.rcc.nimrodg.api.JobAttempt;
 import au.edu.uq.rcc.nimrodg.api.NimrodConfig;
 import au.edu.uq.rcc.nimrodg.api.NimrodException;
 import au.edu.uq.rcc.nimrodg.api.NimrodURI;
+import au.edu.uq.rcc.nimrodg.api.RunCounts;
 import au.edu.uq.rcc.nimrodg.api.events.NimrodMasterEvent;
 import au.edu.uq.rcc.nimrodg.api.utils.run.CompiledRun;
 import java.sql.SQLException;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumSet;
@@ -77,6 +79,19 @@ public interface NimrodDBAPI extends ResourceFunctions<TempResource.Impl, TempEx
 
 	List<TempJob.Impl> filterJobs(TempExperiment.Impl exp, EnumSet<JobAttempt.Status> status, long start, long limit) throws SQLException;
 
+	/**
+	 * Fetch a page of jobs for a {@link au.edu.uq.rcc.nimrodg.api.JobCursor}.
+	 *
+	 * This must seek directly to the first job after {@code after}, without visiting any before it.
+	 *
+	 * @param exp The experiment.
+	 * @param status The statuses of the jobs.
+	 * @param after The index of the last job of the previous page.
+	 * @param limit The maximum number of jobs to return. Always positive.
+	 * @return Up to limit jobs with indices greater than after, in ascending order.
+	 */
+	List<TempJob.Impl> fetchJobsAfter(TempExperiment.Impl exp, EnumSet<JobAttempt.Status> status, long after, int limit) throws SQLException;
+
 	List<TempJob.Impl> addJobs(TempExperiment.Impl exp, Collection<Map<String, String>> jobs) throws SQLException;
 
 	default List<JobAttempt.Status> getJobStatuses(Collection<TempJob.Impl> jobs) throws SQLException {
@@ -88,11 +103,13 @@ public interface NimrodDBAPI extends ResourceFunctions<TempResource.Impl, TempEx
 		return sl;
 	}
 
+	RunCounts getRunCounts(TempExperiment.Impl exp) throws SQLException;
+
 	TempJobAttempt.Impl createJobAttempt(TempJob.Impl job, UUID uuid) throws SQLException;
 
-	void startJobAttempt(TempJobAttempt.Impl att, UUID agentUuid) throws SQLException;
+	void startJobAttempt(TempJobAttempt.Impl att, UUID agentUuid, Instant time) throws SQLException;
 
-	void finishJobAttempt(TempJobAttempt.Impl att, boolean failed) throws SQLException;
+	void finishJobAttempt(TempJobAttempt.Impl att, boolean failed, Instant time) throws SQLException;
 
 	List<TempJobAttempt.Impl> filterJobAttempts(Map<Long, TempJob.Impl> jobs, EnumSet<JobAttempt.Status> status) throws SQLException;
 
@@ -104,6 +121,48 @@ public interface NimrodDBAPI extends ResourceFunctions<TempResource.Impl, TempEx
 
 	TempCommandResult.Impl addCommandResult(TempJobAttempt.Impl att, CommandResult.CommandResultStatus status, long index, float time, int retval, String message, int errcode, boolean stop) throws SQLException;
 
+	/**
+	 * Get the buffer for deferred job attempt updates and command results.
+	 *
+	 * @return The buffer for deferred job attempt updates and command results.
+	 */
+	AttemptWriteBuffer getAttemptWriteBuffer();
+
+	/**
+	 * Apply a batch of job attempt updates and command results.
+	 *
+	 * An attempt is only ever started, given command results, and finished, in that order.
+	 * Implementations may use this to batch each kind of update separately.
+	 *
+	 * @param updates The updates, in the order they were made.
+	 * @throws SQLException If a database error occurs.
+	 */
+	default void applyAttemptUpdates(List<AttemptWriteBuffer.Update> updates) throws SQLException {
+		for(AttemptWriteBuffer.Update u : updates) {
+			u.apply(this);
+		}
+	}
+
+	/**
+	 * Write all deferred job attempt updates and command results in a single transaction.
+	 *
+	 * The updates are only removed from the buffer once the transaction commits. If it fails,
+	 * they're kept and retried on the next flush.
+	 */
+	default void flushAttemptUpdates() {
+		AttemptWriteBuffer wb = getAttemptWriteBuffer();
+		/* Same monitor as runSQLTransaction(), so concurrent flushes can't write the same updates. */
+		synchronized(this) {
+			List<AttemptWriteBuffer.Update> updates = wb.peek();
+			if(updates.isEmpty()) {
+				return;
+			}
+
+			runSQLTransaction(() -> applyAttemptUpdates(updates));
+			wb.commit(updates.size());
+		}
+	}
+
 	List<NimrodMasterEvent> pollMasterEventsT() throws SQLException;
 
 	@Override
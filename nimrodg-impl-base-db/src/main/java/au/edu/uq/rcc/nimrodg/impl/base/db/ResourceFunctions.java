@@ -89,6 +89,12 @@ public interface ResourceFunctions<T extends Resource, E extends Experiment, A e
 
 	void updateAgent(AgentState agent) throws X;
 
+	default void updateAgents(Collection<AgentState> agents) throws X {
+		for(AgentState as : agents) {
+			updateAgent(as);
+		}
+	}
+
 	boolean addAgentPlatform(String platformString, Path path) throws X;
 
 	boolean deleteAgentPlatform(String platformString) throws X;
@@ -72,9 +72,18 @@ public class TempJobAttempt {
 			return uuid;
 		}
 
+		private TempJobAttempt fetch() {
+			/* The start and finish times are set by the database, so flush any deferred updates first. */
+			if(db.getAttemptWriteBuffer().getPendingStatus(id).isPresent()) {
+				db.flushAttemptUpdates();
+			}
+			return db.runSQL(() -> db.getJobAttempt(this));
+		}
+
 		@Override
 		public Status getStatus() {
-			return db.runSQL(() -> db.getJobAttempt(this)).status;
+			return db.getAttemptWriteBuffer().getPendingStatus(id)
+					.orElseGet(() -> db.runSQL(() -> db.getJobAttempt(this)).status);
 		}
 
 		@Override
@@ -84,17 +93,18 @@ public class TempJobAttempt {
 
 		@Override
 		public Instant getStartTime() {
-			return db.runSQL(() -> db.getJobAttempt(this)).startTime;
+			return fetch().startTime;
 		}
 
 		@Override
 		public Instant getFinishTime() {
-			return db.runSQL(() -> db.getJobAttempt(this)).finishTime;
+			return fetch().finishTime;
 		}
 
 		@Override
 		public UUID getAgentUUID() {
-			return db.runSQL(() -> db.getJobAttempt(this)).agentUuid;
+			return db.getAttemptWriteBuffer().getPendingAgent(id)
+					.orElseGet(() -> db.runSQL(() -> db.getJobAttempt(this)).agentUuid);
 		}
 
 		@Override
@@ -26,6 +26,7 @@ import au.edu.uq.rcc.nimrodg.api.CommandResult;
 import au.edu.uq.rcc.nimrodg.api.Experiment;
 import au.edu.uq.rcc.nimrodg.api.Job;
 import au.edu.uq.rcc.nimrodg.api.JobAttempt;
+import au.edu.uq.rcc.nimrodg.api.JobCursor;
 import au.edu.uq.rcc.nimrodg.api.MachinePair;
 import au.edu.uq.rcc.nimrodg.api.NimrodAPI;
 import au.edu.uq.rcc.nimrodg.api.NimrodConfig;
@@ -35,6 +36,7 @@ import au.edu.uq.rcc.nimrodg.api.NimrodURI;
 import au.edu.uq.rcc.nimrodg.api.Resource;
 import au.edu.uq.rcc.nimrodg.api.ResourceType;
 import au.edu.uq.rcc.nimrodg.api.ResourceTypeInfo;
+import au.edu.uq.rcc.nimrodg.api.RunCounts;
 import au.edu.uq.rcc.nimrodg.api.events.NimrodMasterEvent;
 import au.edu.uq.rcc.nimrodg.utils.NimrodUtils;
 import au.edu.uq.rcc.nimrodg.api.utils.run.CompiledRun;
@@ -45,11 +47,14 @@ import java.nio.file.Path;
 import java.security.cert.Certificate;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -96,6 +101,7 @@ public abstract class TempNimrodAPIImpl implements NimrodAPI, NimrodMasterAPI {
 
 	@Override
 	public void deleteExperiment(Experiment _exp) {
+		db.flushAttemptUpdates();
 		db.runSQL(() -> db.deleteExperiment(validateExperiment(_exp).base.id));
 	}
 
@@ -111,13 +117,60 @@ public abstract class TempNimrodAPIImpl implements NimrodAPI, NimrodMasterAPI {
 
 	@Override
 	public Collection<Job> filterJobs(Experiment exp, EnumSet<JobAttempt.Status> status, long start, int limit) {
+		db.flushAttemptUpdates();
 		return db.runSQL(() -> Collections.unmodifiableCollection(db.filterJobs(validateExperiment(exp), status, start, limit)));
 	}
 
+	@Override
+	public JobCursor openJobCursor(Experiment exp, EnumSet<JobAttempt.Status> status, long start) {
+		return new DBJobCursor(db, validateExperiment(exp), status, start);
+	}
+
 	@Override
 	public List<JobAttempt.Status> getJobStatuses(Collection<Job> jobs) {
 		/* TODO: Evaluate changing dbapi calls to take streams instead of lists. */
-		return db.runSQL(() -> db.getJobStatuses(jobs.stream().map(TempNimrodAPIImpl::validateJob).collect(Collectors.toList())));
+		List<TempJob.Impl> jjobs = jobs.stream().map(TempNimrodAPIImpl::validateJob).collect(Collectors.toList());
+
+		AttemptWriteBuffer wb = db.getAttemptWriteBuffer();
+		Map<Long, TempJob.Impl> pending = jjobs.stream()
+				.filter(j -> wb.hasPendingAttempts(j.base.id))
+				.collect(Collectors.toMap(j -> j.base.id, j -> j, (a, b) -> a));
+
+		if(pending.isEmpty()) {
+			return db.runSQL(() -> db.getJobStatuses(jjobs));
+		}
+
+		/*
+		 * This is called after every attempt update, so don't flush.
+		 * Instead, overlay the deferred updates on the attempts' current states.
+		 */
+		return db.runSQLTransaction(() -> {
+			Map<Long, List<JobAttempt.Status>> attStats = new HashMap<>();
+			for(TempJobAttempt.Impl att : db.filterJobAttempts(pending, EnumSet.allOf(JobAttempt.Status.class))) {
+				attStats.computeIfAbsent(att.base.jobId, id -> new ArrayList<>())
+						.add(wb.getPendingStatus(att.base.id).orElse(att.base.status));
+			}
+
+			Iterator<JobAttempt.Status> rest = db.getJobStatuses(jjobs.stream()
+					.filter(j -> !pending.containsKey(j.base.id))
+					.collect(Collectors.toList())).iterator();
+
+			List<JobAttempt.Status> sl = new ArrayList<>(jjobs.size());
+			for(TempJob.Impl j : jjobs) {
+				if(pending.containsKey(j.base.id)) {
+					sl.add(AttemptWriteBuffer.deriveJobStatus(attStats.getOrDefault(j.base.id, List.of())));
+				} else {
+					sl.add(rest.next());
+				}
+			}
+			return sl;
+		});
+	}
+
+	@Override
+	public RunCounts getRunCounts(Experiment exp) {
+		db.flushAttemptUpdates();
+		return db.runSQL(() -> db.getRunCounts(validateExperiment(exp)));
 	}
 
 	@Override
@@ -355,6 +408,15 @@ public abstract class TempNimrodAPIImpl implements NimrodAPI, NimrodMasterAPI {
 		db.runSQL(() -> db.updateAgent(agent));
 	}
 
+	@Override
+	public void updateAgents(Collection<AgentState> agents) {
+		if(agents.isEmpty()) {
+			return;
+		}
+
+		db.runSQLTransaction(() -> db.updateAgents(agents));
+	}
+
 	@Override
 	public void updateExperimentState(Experiment _exp, Experiment.State state) {
 		db.runSQL(() -> db.updateExperimentState(validateExperiment(_exp), state));
@@ -373,16 +435,31 @@ public abstract class TempNimrodAPIImpl implements NimrodAPI, NimrodMasterAPI {
 
 	@Override
 	public void startJobAttempt(JobAttempt att, UUID agentUuid) {
-		db.runSQL(() -> db.startJobAttempt(validateJobAttempt(att), agentUuid));
+		Instant now = Instant.now();
+		AttemptWriteBuffer wb = db.getAttemptWriteBuffer();
+		if(wb.isEnabled()) {
+			wb.start(validateJobAttempt(att), agentUuid, now);
+			return;
+		}
+
+		db.runSQL(() -> db.startJobAttempt(validateJobAttempt(att), agentUuid, now));
 	}
 
 	@Override
 	public void finishJobAttempt(JobAttempt att, boolean failed) {
-		db.runSQL(() -> db.finishJobAttempt(validateJobAttempt(att), failed));
+		Instant now = Instant.now();
+		AttemptWriteBuffer wb = db.getAttemptWriteBuffer();
+		if(wb.isEnabled()) {
+			wb.finish(validateJobAttempt(att), failed, now);
+			return;
+		}
+
+		db.runSQL(() -> db.finishJobAttempt(validateJobAttempt(att), failed, now));
 	}
 
 	@Override
 	public Map<Job, Collection<JobAttempt>> filterJobAttempts(Experiment _exp, EnumSet<JobAttempt.Status> status) {
+		db.flushAttemptUpdates();
 		return db.runSQLTransaction(() -> db.filterJobAttempts(validateExperiment(_exp), status))
 				.entrySet().stream()
 				.collect(Collectors.toMap(Map.Entry::getKey, e -> Collections.unmodifiableCollection(e.getValue())));
@@ -393,6 +470,7 @@ public abstract class TempNimrodAPIImpl implements NimrodAPI, NimrodMasterAPI {
 		Objects.requireNonNull(jobs, "jobs");
 		Objects.requireNonNull(status, "status");
 		TempJob.Impl[] jjobs = jobs.stream().map(TempNimrodAPIImpl::validateJob).toArray(TempJob.Impl[]::new);
+		db.flushAttemptUpdates();
 
 		Map<Long, TempJob.Impl> idMap = Arrays.stream(jjobs)
 				.collect(Collectors.toMap(j -> j.base.id, j -> j));
@@ -414,6 +492,7 @@ public abstract class TempNimrodAPIImpl implements NimrodAPI, NimrodMasterAPI {
 		TempJobAttempt.Impl[] atts = attempts.stream()
 				.map(TempNimrodAPIImpl::validateJobAttempt)
 				.toArray(TempJobAttempt.Impl[]::new);
+		db.flushAttemptUpdates();
 
 		Map<Long, TempJobAttempt.Impl> idMap = Arrays.stream(atts)
 				.collect(Collectors.toMap(att -> att.base.id, att -> att));
@@ -431,6 +510,12 @@ public abstract class TempNimrodAPIImpl implements NimrodAPI, NimrodMasterAPI {
 
 	@Override
 	public CommandResult addCommandResult(JobAttempt att, CommandResult.CommandResultStatus status, long index, float time, int retval, String message, int errcode, boolean stop) {
+		AttemptWriteBuffer wb = db.getAttemptWriteBuffer();
+		if(wb.isEnabled()) {
+			wb.addCommandResult(validateJobAttempt(att), status, index, time, retval, message, errcode, stop);
+			return null;
+		}
+
 		return db.runSQLTransaction(() -> db.addCommandResult(validateJobAttempt(att), status, index, time, retval, message, errcode, stop));
 	}
 
@@ -440,10 +525,24 @@ public abstract class TempNimrodAPIImpl implements NimrodAPI, NimrodMasterAPI {
 		return db.runSQLTransaction(db::pollMasterEventsT);
 	}
 
+	@Override
+	public void setDeferredWrites(boolean enabled) {
+		AttemptWriteBuffer wb = db.getAttemptWriteBuffer();
+		if(!enabled) {
+			db.flushAttemptUpdates();
+		}
+		wb.setEnabled(enabled);
+	}
+
+	@Override
+	public void flush() {
+		db.flushAttemptUpdates();
+	}
+
 	@Override
 	public void close() {
-		try {
-			db.close();
+		try(db) {
+			db.flushAttemptUpdates();
 		} catch(SQLException e) {
 			throw new NimrodException.DbError(e);
 		}
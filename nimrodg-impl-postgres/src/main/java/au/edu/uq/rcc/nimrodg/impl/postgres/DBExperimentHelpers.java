@@ -22,8 +22,10 @@ package au.edu.uq.rcc.nimrodg.impl.postgres;
 import au.edu.uq.rcc.nimrodg.api.CommandResult;
 import au.edu.uq.rcc.nimrodg.api.Experiment;
 import au.edu.uq.rcc.nimrodg.api.JobAttempt;
+import au.edu.uq.rcc.nimrodg.api.RunCounts;
 import au.edu.uq.rcc.nimrodg.api.utils.run.CompiledRun;
 import au.edu.uq.rcc.nimrodg.api.utils.run.JsonUtils;
+import au.edu.uq.rcc.nimrodg.impl.base.db.AttemptWriteBuffer;
 import au.edu.uq.rcc.nimrodg.impl.base.db.BrokenDBInvariantException;
 import au.edu.uq.rcc.nimrodg.impl.base.db.DBBaseHelper;
 import au.edu.uq.rcc.nimrodg.impl.base.db.DBUtils;
@@ -38,6 +40,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -70,6 +73,7 @@ public class DBExperimentHelpers extends DBBaseHelper {
 	private final PreparedStatement qGetJobStatus;
 	private final PreparedStatement qFilterJobs;
 	private final PreparedStatement qGetJobsById;
+	private final PreparedStatement qGetRunCounts;
 
 	/* Job Attempts */
 	private final PreparedStatement qCreateJobAttempt;
@@ -82,6 +86,11 @@ public class DBExperimentHelpers extends DBBaseHelper {
 	private final PreparedStatement qAddCommandResult;
 	private final PreparedStatement qGetCommandResultsByAttempt;
 
+	/* Batched attempt updates. These don't return anything so they can be batched. */
+	private final PreparedStatement qBatchStartJobAttempt;
+	private final PreparedStatement qBatchFinishJobAttempt;
+	private final PreparedStatement qBatchAddCommandResult;
+
 	/* Utility */
 	private final PreparedStatement qAddCompiledExperiment;
 	private final PreparedStatement qAddMultipleJobs;
@@ -103,10 +112,11 @@ public class DBExperimentHelpers extends DBBaseHelper {
 
 		this.qFilterJobs = prepareStatement("SELECT * FROM filter_jobs(?::BIGINT, ?::nimrod_job_status[], ?::BIGINT, ?::BIGINT)");
 		this.qGetJobsById = prepareStatement("SELECT * FROM nimrod_full_jobs WHERE id = ANY(?::BIGINT[])");
+		this.qGetRunCounts = prepareStatement("SELECT * FROM get_run_counts(?::BIGINT)");
 
 		this.qCreateJobAttempt = prepareStatement("SELECT * FROM create_job_attempt(?::BIGINT, ?::UUID)");
-		this.qStartJobAttempt = prepareStatement("SELECT * FROM start_job_attempt(?::BIGINT, ?::UUID)");
-		this.qFinishJobAttempt = prepareStatement("SELECT * FROM finish_job_attempt(?::BIGINT, ?::BOOLEAN)");
+		this.qStartJobAttempt = prepareStatement("SELECT * FROM start_job_attempt(?::BIGINT, ?::UUID, ?::TIMESTAMP WITH TIME ZONE)");
+		this.qFinishJobAttempt = prepareStatement("SELECT * FROM finish_job_attempt(?::BIGINT, ?::BOOLEAN, ?::TIMESTAMP WITH TIME ZONE)");
 		this.qFilterJobAttempts = prepareStatement(
 				"SELECT\n" +
 				"    *\n" +
@@ -123,6 +133,10 @@ public class DBExperimentHelpers extends DBBaseHelper {
 		this.qAddCommandResult = prepareStatement("SELECT * FROM add_command_result(?::BIGINT, ?::nimrod_command_result_status, ?::BIGINT, ?::REAL, ?::INT, ?::TEXT, ?::INT, ?::BOOLEAN)");
 		this.qGetCommandResultsByAttempt = prepareStatement("SELECT * FROM nimrod_command_results WHERE attempt_id = ANY(?::BIGINT[])");
 
+		this.qBatchStartJobAttempt = prepareStatement("UPDATE nimrod_job_attempts SET status = 'RUNNING'::nimrod_job_status, agent_uuid = ?::UUID, start_time = ?::TIMESTAMP WITH TIME ZONE WHERE id = ?::BIGINT");
+		this.qBatchFinishJobAttempt = prepareStatement("UPDATE nimrod_job_attempts SET status = ?::nimrod_job_status, finish_time = GREATEST(?::TIMESTAMP WITH TIME ZONE, start_time) WHERE id = ?::BIGINT");
+		this.qBatchAddCommandResult = prepareStatement("INSERT INTO nimrod_command_results(attempt_id, status, command_index, time, retval, message, error_code, stop) VALUES(?::BIGINT, ?::nimrod_command_result_status, ?::BIGINT, ?::REAL, ?::INT, ?::TEXT, ?::INT, ?::BOOLEAN)");
+
 		this.qAddCompiledExperiment = prepareStatement("SELECT * FROM add_compiled_experiment(?::TEXT, ?::TEXT, ?::jsonb)");
 		this.qAddMultipleJobs = prepareStatement("SELECT * FROM add_multiple_jobs(?::BIGINT, ?::JSONB)");
 		this.qAddMultipleJobsInternal = prepareStatement("SELECT job_id FROM add_multiple_jobs_internal(?::BIGINT, ?::JSONB) AS job_id");
@@ -263,6 +277,23 @@ public class DBExperimentHelpers extends DBBaseHelper {
 		}
 	}
 
+	public RunCounts getRunCounts(long expId) throws SQLException {
+		qGetRunCounts.setLong(1, expId);
+
+		try(ResultSet rs = qGetRunCounts.executeQuery()) {
+			if(!rs.next()) {
+				throw new BrokenDBInvariantException("get_run_counts() returned no rows.");
+			}
+
+			return new RunCounts(
+					rs.getLong("not_run"),
+					rs.getLong("running"),
+					rs.getLong("completed"),
+					rs.getLong("failed")
+			);
+		}
+	}
+
 	public List<TempJob> filterJobs(long expId, EnumSet<JobAttempt.Status> status, long start, long limit) throws SQLException {
 		qFilterJobs.setLong(1, expId);
 		qFilterJobs.setArray(2, conn.createArrayOf("TEXT", status.stream()
@@ -333,9 +364,10 @@ public class DBExperimentHelpers extends DBBaseHelper {
 		}
 	}
 
-	public TempJobAttempt startJobAttempt(long jobId, UUID agentUuid) throws SQLException {
+	public TempJobAttempt startJobAttempt(long jobId, UUID agentUuid, Instant time) throws SQLException {
 		qStartJobAttempt.setLong(1, jobId);
 		qStartJobAttempt.setString(2, agentUuid.toString());
+		DBUtils.setInstant(qStartJobAttempt, 3, time);
 
 		try(ResultSet rs = qStartJobAttempt.executeQuery()) {
 			if(!rs.next()) {
@@ -346,9 +378,10 @@ public class DBExperimentHelpers extends DBBaseHelper {
 		}
 	}
 
-	public TempJobAttempt finishJobAttempt(long attId, boolean failed) throws SQLException {
+	public TempJobAttempt finishJobAttempt(long attId, boolean failed, Instant time) throws SQLException {
 		qFinishJobAttempt.setLong(1, attId);
 		qFinishJobAttempt.setBoolean(2, failed);
+		DBUtils.setInstant(qFinishJobAttempt, 3, time);
 
 		try(ResultSet rs = qFinishJobAttempt.executeQuery()) {
 			if(!rs.next()) {
@@ -424,6 +457,62 @@ public class DBExperimentHelpers extends DBBaseHelper {
 		}
 	}
 
+	/**
+	 * Apply a batch of attempt updates.
+	 *
+	 * Each kind of update is sent as a single JDBC batch, starts first, then command results,
+	 * then finishes. This is the only order updates to a single attempt can happen in.
+	 *
+	 * @param updates The updates, in the order they were made.
+	 * @throws SQLException If a database error occurs.
+	 */
+	public void applyAttemptUpdates(List<AttemptWriteBuffer.Update> updates) throws SQLException {
+		qBatchStartJobAttempt.clearBatch();
+		qBatchAddCommandResult.clearBatch();
+		qBatchFinishJobAttempt.clearBatch();
+
+		for(AttemptWriteBuffer.Update u : updates) {
+			if(u instanceof AttemptWriteBuffer.StartUpdate) {
+				AttemptWriteBuffer.StartUpdate su = (AttemptWriteBuffer.StartUpdate)u;
+				qBatchStartJobAttempt.setString(1, su.agentUuid.toString());
+				DBUtils.setInstant(qBatchStartJobAttempt, 2, su.time);
+				qBatchStartJobAttempt.setLong(3, su.att.base.id);
+				qBatchStartJobAttempt.addBatch();
+			} else if(u instanceof AttemptWriteBuffer.ResultUpdate) {
+				AttemptWriteBuffer.ResultUpdate ru = (AttemptWriteBuffer.ResultUpdate)u;
+				qBatchAddCommandResult.setLong(1, ru.att.base.id);
+				qBatchAddCommandResult.setString(2, CommandResult.statusToString(ru.status));
+				qBatchAddCommandResult.setLong(3, ru.index);
+				qBatchAddCommandResult.setFloat(4, ru.time);
+				qBatchAddCommandResult.setInt(5, ru.retval);
+				qBatchAddCommandResult.setString(6, ru.message);
+				qBatchAddCommandResult.setInt(7, ru.errcode);
+				qBatchAddCommandResult.setBoolean(8, ru.stop);
+				qBatchAddCommandResult.addBatch();
+			} else if(u instanceof AttemptWriteBuffer.FinishUpdate) {
+				AttemptWriteBuffer.FinishUpdate fu = (AttemptWriteBuffer.FinishUpdate)u;
+				qBatchFinishJobAttempt.setString(1, JobAttempt.statusToString(fu.failed ? JobAttempt.Status.FAILED : JobAttempt.Status.COMPLETED));
+				DBUtils.setInstant(qBatchFinishJobAttempt, 2, fu.time);
+				qBatchFinishJobAttempt.setLong(3, fu.att.base.id);
+				qBatchFinishJobAttempt.addBatch();
+			} else {
+				throw new IllegalArgumentException();
+			}
+		}
+
+		executeAttemptBatch(qBatchStartJobAttempt, "start_job_attempt");
+		executeAttemptBatch(qBatchAddCommandResult, "add_command_result");
+		executeAttemptBatch(qBatchFinishJobAttempt, "finish_job_attempt");
+	}
+
+	private static void executeAttemptBatch(PreparedStatement ps, String name) throws SQLException {
+		for(int c : ps.executeBatch()) {
+			if(c == 0) {
+				throw new BrokenDBInvariantException(String.format("batched %s() updated no rows.", name));
+			}
+		}
+	}
+
 	public List<TempCommandResult> getCommandResultsByAttempt(Collection<Long> attemptIds) throws SQLException {
 		qGetCommandResultsByAttempt.setArray(1, conn.createArrayOf("BIGINT", attemptIds.toArray()));
 
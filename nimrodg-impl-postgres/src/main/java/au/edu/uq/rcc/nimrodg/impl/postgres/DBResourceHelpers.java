@@ -70,6 +70,7 @@ public class DBResourceHelpers extends DBBaseHelper {
 	private final PreparedStatement qGetAgentsOnResource;
 	private final PreparedStatement qAddAgent;
 	private final PreparedStatement qUpdateAgent;
+	private final PreparedStatement qBatchUpdateAgent;
 
 	private final PreparedStatement qAddResourceType;
 	private final PreparedStatement qDeleteResourceType;
@@ -102,6 +103,13 @@ public class DBResourceHelpers extends DBBaseHelper {
 		this.qGetAgentsOnResource = prepareStatement("SELECT * FROM nimrod_resource_agents WHERE expired = FALSE AND location = ?");
 		this.qAddAgent = prepareStatement("SELECT * FROM add_agent(?::nimrod_agent_state, ?, ?::UUID, ?, ?::nimrod_agent_shutdown_reason, ?, ?, ?, ?::JSONB)");
 		this.qUpdateAgent = prepareStatement("SELECT * FROM update_agent(?::UUID, ?::nimrod_agent_state, ?, ?, ?::nimrod_agent_shutdown_reason, ?, ?, ?, ?, ?::JSONB)");
+		/* update_agent() can't be batched, this must be kept in sync with it. */
+		this.qBatchUpdateAgent = prepareStatement(
+				"UPDATE nimrod_resource_agents SET "
+				+ "state = ?::nimrod_agent_state, queue = ?, shutdown_signal = ?, shutdown_reason = ?::nimrod_agent_shutdown_reason, "
+				+ "connected_at = ?, last_heard_from = ?, expiry_time = ?, expired = ?, actuator_data = ?::JSONB "
+				+ "WHERE agent_uuid = ?::UUID"
+		);
 
 		this.qAddResourceType = conn.prepareStatement(
 				"INSERT INTO nimrod_resource_types(name, implementation_class) VALUES (?, ?) "
@@ -330,29 +338,44 @@ public class DBResourceHelpers extends DBBaseHelper {
 		}
 	}
 
-	public boolean updateAgent(AgentState agent) throws SQLException {
-		qUpdateAgent.setString(1, agent.getUUID().toString());
-		qUpdateAgent.setString(2, Agent.stateToString(agent.getState()));
-		qUpdateAgent.setString(3, agent.getQueue());
-		qUpdateAgent.setInt(4, agent.getShutdownSignal());
-		qUpdateAgent.setString(5, AgentShutdown.reasonToString(agent.getShutdownReason()));
-		DBUtils.setInstant(qUpdateAgent, 6, agent.getConnectionTime());
-		DBUtils.setInstant(qUpdateAgent, 7, agent.getLastHeardFrom());
-		DBUtils.setInstant(qUpdateAgent, 8, agent.getExpiryTime());
-		qUpdateAgent.setBoolean(9, agent.getExpired());
+	private static void setAgentState(PreparedStatement ps, int index, AgentState agent) throws SQLException {
+		ps.setString(index, Agent.stateToString(agent.getState()));
+		ps.setString(index + 1, agent.getQueue());
+		ps.setInt(index + 2, agent.getShutdownSignal());
+		ps.setString(index + 3, AgentShutdown.reasonToString(agent.getShutdownReason()));
+		DBUtils.setInstant(ps, index + 4, agent.getConnectionTime());
+		DBUtils.setInstant(ps, index + 5, agent.getLastHeardFrom());
+		DBUtils.setInstant(ps, index + 6, agent.getExpiryTime());
+		ps.setBoolean(index + 7, agent.getExpired());
 
 		JsonObject data = agent.getActuatorData();
 		if(data == null) {
-			qUpdateAgent.setString(10, null);
+			ps.setString(index + 8, null);
 		} else {
-			qUpdateAgent.setString(10, data.toString());
+			ps.setString(index + 8, data.toString());
 		}
+	}
+
+	public boolean updateAgent(AgentState agent) throws SQLException {
+		qUpdateAgent.setString(1, agent.getUUID().toString());
+		setAgentState(qUpdateAgent, 2, agent);
 
 		try(ResultSet rs = qUpdateAgent.executeQuery()) {
 			return rs.next();
 		}
 	}
 
+	public void updateAgents(Collection<AgentState> agents) throws SQLException {
+		qBatchUpdateAgent.clearBatch();
+		for(AgentState agent : agents) {
+			setAgentState(qBatchUpdateAgent, 1, agent);
+			qBatchUpdateAgent.setString(10, agent.getUUID().toString());
+			qBatchUpdateAgent.addBatch();
+		}
+
+		qBatchUpdateAgent.executeBatch();
+	}
+
 	public boolean addAgentPlatform(String platformString, Path path) throws SQLException {
 		qAddAgentPlatform.setString(1, platformString);
 		qAddAgentPlatform.setString(2, path.toString());
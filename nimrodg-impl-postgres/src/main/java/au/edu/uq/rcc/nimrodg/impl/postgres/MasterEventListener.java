@@ -0,0 +1,154 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.impl.postgres;
+
+import au.edu.uq.rcc.nimrodg.impl.base.db.ISQLBase;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Listens for master message notifications on a dedicated connection.
+ *
+ * Notifications only signal that there's something in nimrod_master_message_storage,
+ * which is still the source of truth. Whilst disconnected, every poll goes to the database.
+ *
+ * A half-open connection just stops delivering notifications, so the connection is validated
+ * periodically when it's quiet. The storage table is polled at the same time, in case
+ * anything was missed.
+ */
+class MasterEventListener implements AutoCloseable {
+
+	public static final String CHANNEL = "nimrod_master_messages";
+
+	/* How long to block for notifications, this bounds how long close() takes. */
+	private static final int NOTIFY_TIMEOUT_MS = 1000;
+	/* Time between reconnection attempts. */
+	private static final long RECONNECT_DELAY_MS = 5000;
+	/* Validate the connection after this many quiet timeouts. */
+	private static final int VALIDATE_INTERVAL = 30;
+	private static final int VALIDATE_TIMEOUT_S = 5;
+
+	private final ISQLBase.SQLReturnProc<Connection> connectionSupplier;
+	private final Runnable listener;
+	private final AtomicBoolean pending;
+	private final Thread thread;
+	private volatile boolean connected;
+	private volatile boolean running;
+
+	MasterEventListener(ISQLBase.SQLReturnProc<Connection> connectionSupplier, Runnable listener) {
+		this.connectionSupplier = connectionSupplier;
+		this.listener = listener;
+		/* Start pending so the first poll catches up on anything already queued. */
+		this.pending = new AtomicBoolean(true);
+		this.thread = new Thread(this::run, "nimrod-master-listener");
+		this.thread.setDaemon(true);
+		this.connected = false;
+		this.running = false;
+	}
+
+	void start() {
+		running = true;
+		thread.start();
+	}
+
+	/**
+	 * Consume the pending flag.
+	 *
+	 * @return If the storage table should be polled.
+	 */
+	boolean consumePending() {
+		return pending.getAndSet(false) || !connected;
+	}
+
+	private void signal() {
+		pending.set(true);
+		listener.run();
+	}
+
+	private void run() {
+		while(running) {
+			try(Connection c = connectionSupplier.doSQL()) {
+				try(Statement s = c.createStatement()) {
+					s.execute("LISTEN " + CHANNEL);
+				}
+
+				connected = true;
+
+				/* We may have missed something whilst disconnected, catch up. */
+				signal();
+
+				PGConnection pgc = c.unwrap(PGConnection.class);
+				int quiet = 0;
+				while(running) {
+					PGNotification[] notifications = pgc.getNotifications(NOTIFY_TIMEOUT_MS);
+					if(notifications != null && notifications.length > 0) {
+						quiet = 0;
+						signal();
+						continue;
+					}
+
+					if(++quiet < VALIDATE_INTERVAL) {
+						continue;
+					}
+					quiet = 0;
+
+					if(!c.isValid(VALIDATE_TIMEOUT_S)) {
+						throw new SQLException("Notification connection is no longer valid");
+					}
+
+					/* Catch up anyway, in case anything was missed. */
+					signal();
+				}
+			} catch(SQLException e) {
+				/* Fall back to polling until we reconnect. */
+				connected = false;
+				signal();
+			}
+
+			connected = false;
+
+			if(!running) {
+				break;
+			}
+
+			try {
+				Thread.sleep(RECONNECT_DELAY_MS);
+			} catch(InterruptedException e) {
+				/* nop */
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		running = false;
+		thread.interrupt();
+		try {
+			thread.join(NOTIFY_TIMEOUT_MS * 2);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
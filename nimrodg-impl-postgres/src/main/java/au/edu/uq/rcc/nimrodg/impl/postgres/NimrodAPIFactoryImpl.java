@@ -41,7 +41,7 @@ import java.util.Properties;
 
 public class NimrodAPIFactoryImpl implements NimrodAPIDatabaseFactory {
 
-	public static final SchemaVersion NATIVE_SCHEMA = SchemaVersion.of(5, 0, 0);
+	public static final SchemaVersion NATIVE_SCHEMA = SchemaVersion.of(5, 1, 0);
 
 	public static final MigrationPlan RESET_PLAN;
 
@@ -85,8 +85,13 @@ public class NimrodAPIFactoryImpl implements NimrodAPIDatabaseFactory {
 				),
 				UpgradeStep.of(
 						SchemaVersion.of(4, 0, 0),
-						NATIVE_SCHEMA,
+						SchemaVersion.of(5, 0, 0),
 						NimrodUtils.readEmbeddedFileAsString(NimrodAPIFactoryImpl.class, "db/upgrade/4.0.0_to_5.0.0.sql")
+				),
+				UpgradeStep.of(
+						SchemaVersion.of(5, 0, 0),
+						NATIVE_SCHEMA,
+						NimrodUtils.readEmbeddedFileAsString(NimrodAPIFactoryImpl.class, "db/upgrade/5.0.0_to_5.1.0.sql")
 				)
 		);
 
@@ -105,7 +110,9 @@ public class NimrodAPIFactoryImpl implements NimrodAPIDatabaseFactory {
 	@Override
 	public NimrodAPI createNimrod(UserConfig config) {
 		try {
-			return createNimrod(createConnection(config));
+			Connection conn = createConnection(config);
+			checkSchemaVersion(conn);
+			return new NimrodAPIImpl(conn, () -> createConnection(config));
 		} catch(SQLException e) {
 			throw new NimrodException.DbError(e);
 		}
@@ -20,21 +20,72 @@
 package au.edu.uq.rcc.nimrodg.impl.postgres;
 
 import au.edu.uq.rcc.nimrodg.api.NimrodException;
+import au.edu.uq.rcc.nimrodg.api.events.NimrodMasterEvent;
+import au.edu.uq.rcc.nimrodg.impl.base.db.ISQLBase;
 import au.edu.uq.rcc.nimrodg.impl.base.db.TempNimrodAPIImpl;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
 
 public class NimrodAPIImpl extends TempNimrodAPIImpl {
 
 	private final Connection conn;
+	private final ISQLBase.SQLReturnProc<Connection> listenConnectionSupplier;
+	private MasterEventListener eventListener;
 
 	public NimrodAPIImpl(Connection conn) throws SQLException {
+		this(conn, null);
+	}
+
+	/**
+	 * Create a new API instance.
+	 *
+	 * @param conn The database connection.
+	 * @param listenConnectionSupplier A supplier for dedicated connections on which to listen for master events.
+	 *                                 If null, master events are always polled.
+	 * @throws SQLException if a database error occurs.
+	 */
+	public NimrodAPIImpl(Connection conn, ISQLBase.SQLReturnProc<Connection> listenConnectionSupplier) throws SQLException {
 		super(new RunDMC(conn));
 		this.conn = conn;
+		this.listenConnectionSupplier = listenConnectionSupplier;
+		this.eventListener = null;
+	}
+
+	@Override
+	public synchronized void setMasterEventListener(Runnable listener) {
+		if(eventListener != null) {
+			eventListener.close();
+			eventListener = null;
+		}
+
+		if(listener == null || listenConnectionSupplier == null) {
+			return;
+		}
+
+		eventListener = new MasterEventListener(listenConnectionSupplier, listener);
+		eventListener.start();
+	}
+
+	@Override
+	public Collection<NimrodMasterEvent> pollMasterEvents() {
+		MasterEventListener l;
+		synchronized(this) {
+			l = eventListener;
+		}
+
+		/* Don't touch the database if we haven't been notified. */
+		if(l != null && !l.consumePending()) {
+			return List.of();
+		}
+
+		return super.pollMasterEvents();
 	}
 
 	@Override
 	public void close() {
+		setMasterEventListener(null);
 		try(conn) {
 			super.close();
 		} catch(SQLException e) {
@@ -27,11 +27,13 @@ import au.edu.uq.rcc.nimrodg.api.NimrodConfig;
 import au.edu.uq.rcc.nimrodg.api.NimrodException;
 import au.edu.uq.rcc.nimrodg.api.NimrodURI;
 import au.edu.uq.rcc.nimrodg.api.ResourceTypeInfo;
+import au.edu.uq.rcc.nimrodg.api.RunCounts;
 import au.edu.uq.rcc.nimrodg.api.events.ConfigChangeMasterEvent;
 import au.edu.uq.rcc.nimrodg.api.events.JobAddMasterEvent;
 import au.edu.uq.rcc.nimrodg.api.events.NimrodMasterEvent;
 import au.edu.uq.rcc.nimrodg.utils.NimrodUtils;
 import au.edu.uq.rcc.nimrodg.api.utils.run.CompiledRun;
+import au.edu.uq.rcc.nimrodg.impl.base.db.AttemptWriteBuffer;
 import au.edu.uq.rcc.nimrodg.impl.base.db.BrokenDBInvariantException;
 import au.edu.uq.rcc.nimrodg.impl.base.db.DBUtils;
 import au.edu.uq.rcc.nimrodg.impl.base.db.NimrodDBAPI;
@@ -81,6 +83,8 @@ public class RunDMC extends SQLUUUUU<NimrodException.DbError> implements NimrodD
 	private final DBAgentHelpers agentHelpers;
 	private final DBResourceHelpers resourceHelpers;
 
+	private final AttemptWriteBuffer attemptWriteBuffer;
+
 	public RunDMC(Connection conn) throws SQLException {
 		this.conn = conn;
 		this.statements = new ArrayList<>();
@@ -97,6 +101,8 @@ public class RunDMC extends SQLUUUUU<NimrodException.DbError> implements NimrodD
 		this.experimentHelpers = new DBExperimentHelpers(conn, statements);
 		this.agentHelpers = new DBAgentHelpers(conn, statements);
 		this.resourceHelpers = new DBResourceHelpers(conn, statements);
+
+		this.attemptWriteBuffer = new AttemptWriteBuffer();
 	}
 
 	@Override
@@ -223,11 +229,22 @@ public class RunDMC extends SQLUUUUU<NimrodException.DbError> implements NimrodD
 		return experimentHelpers.getJobStatus(job.base.id);
 	}
 
+	@Override
+	public synchronized RunCounts getRunCounts(TempExperiment.Impl exp) throws SQLException {
+		return experimentHelpers.getRunCounts(exp.base.id);
+	}
+
 	@Override
 	public synchronized List<TempJob.Impl> filterJobs(TempExperiment.Impl exp, EnumSet<JobAttempt.Status> status, long start, long limit) throws SQLException {
 		return experimentHelpers.filterJobs(exp.base.id, status, start, limit).stream().map(tj -> tj.create(exp)).collect(Collectors.toList());
 	}
 
+	@Override
+	public synchronized List<TempJob.Impl> fetchJobsAfter(TempExperiment.Impl exp, EnumSet<JobAttempt.Status> status, long after, int limit) throws SQLException {
+		/* filter_jobs() is already a keyset scan over i_exp_jobs_status. */
+		return filterJobs(exp, status, after + 1, limit);
+	}
+
 	@Override
 	public synchronized List<TempJob.Impl> addJobs(TempExperiment.Impl exp, Collection<Map<String, String>> vars) throws SQLException {
 		return experimentHelpers.addJobs(exp.base.id, vars).stream().map(tj -> tj.create(exp)).collect(Collectors.toList());
@@ -239,13 +256,13 @@ public class RunDMC extends SQLUUUUU<NimrodException.DbError> implements NimrodD
 	}
 
 	@Override
-	public synchronized void startJobAttempt(TempJobAttempt.Impl att, UUID agentUuid) throws SQLException {
-		experimentHelpers.startJobAttempt(att.base.id, agentUuid);
+	public synchronized void startJobAttempt(TempJobAttempt.Impl att, UUID agentUuid, Instant time) throws SQLException {
+		experimentHelpers.startJobAttempt(att.base.id, agentUuid, time);
 	}
 
 	@Override
-	public synchronized void finishJobAttempt(TempJobAttempt.Impl att, boolean failed) throws SQLException {
-		experimentHelpers.finishJobAttempt(att.base.id, failed);
+	public synchronized void finishJobAttempt(TempJobAttempt.Impl att, boolean failed, Instant time) throws SQLException {
+		experimentHelpers.finishJobAttempt(att.base.id, failed, time);
 	}
 
 	@Override
@@ -283,6 +300,16 @@ public class RunDMC extends SQLUUUUU<NimrodException.DbError> implements NimrodD
 		return experimentHelpers.addCommandResult(att.base.id, status, index, time, retval, message, errcode, stop).create();
 	}
 
+	@Override
+	public AttemptWriteBuffer getAttemptWriteBuffer() {
+		return attemptWriteBuffer;
+	}
+
+	@Override
+	public synchronized void applyAttemptUpdates(List<AttemptWriteBuffer.Update> updates) throws SQLException {
+		experimentHelpers.applyAttemptUpdates(updates);
+	}
+
 	@Override
 	public List<TempCommandResult.Impl> getCommandResultsByAttempt(Map<Long, TempJobAttempt.Impl> attempts) throws SQLException {
 		return experimentHelpers.getCommandResultsByAttempt(attempts.keySet()).stream().map(TempCommandResult::create).collect(Collectors.toList());
@@ -319,8 +346,17 @@ public class RunDMC extends SQLUUUUU<NimrodException.DbError> implements NimrodD
 					return null;
 				}
 
-				Optional<TempJob.Impl> job = getSingleJobT(payload.getInt("id"));
-				return job.map(impl -> new JobAddMasterEvent(exp.get(), impl)).orElse(null);
+				/* Pre-5.1.0 messages are per-job. */
+				if(!payload.containsKey("first_index")) {
+					long index = payload.getJsonNumber("job_index").longValue();
+					return new JobAddMasterEvent(exp.get(), index, index);
+				}
+
+				return new JobAddMasterEvent(
+						exp.get(),
+						payload.getJsonNumber("first_index").longValue(),
+						payload.getJsonNumber("last_index").longValue()
+				);
 			}
 		}
 
@@ -433,6 +469,11 @@ public class RunDMC extends SQLUUUUU<NimrodException.DbError> implements NimrodD
 		resourceHelpers.updateAgent(agent);
 	}
 
+	@Override
+	public synchronized void updateAgents(Collection<AgentState> agents) throws SQLException {
+		resourceHelpers.updateAgents(agents);
+	}
+
 	@Override
 	public synchronized boolean addAgentPlatform(String platformString, Path path) throws SQLException {
 		return resourceHelpers.addAgentPlatform(platformString, path);
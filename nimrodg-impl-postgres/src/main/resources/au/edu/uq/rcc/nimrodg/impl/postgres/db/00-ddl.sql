@@ -253,7 +253,7 @@ VALUES
 ;
 
 CREATE OR REPLACE FUNCTION get_schema_version() RETURNS TABLE(major INTEGER, minor INTEGER, patch INTEGER) AS $$
-    SELECT 5, 0, 0;
+    SELECT 5, 1, 0;
 $$ LANGUAGE SQL IMMUTABLE;
 
 CREATE OR REPLACE FUNCTION is_schema_compatible(_major INTEGER, _minor INTEGER, _patch INTEGER) RETURNS BOOLEAN AS $$
@@ -39,6 +39,9 @@ CREATE TABLE nimrod_experiments(
 );
 -- Use add_compiled_experiment() for adding. There is no facility for adding them manually.
 
+DROP TYPE IF EXISTS nimrod_job_status CASCADE;
+CREATE TYPE nimrod_job_status AS ENUM('NOT_RUN', 'RUNNING', 'COMPLETED', 'FAILED');
+
 DROP TABLE IF EXISTS nimrod_jobs CASCADE;
 CREATE TABLE nimrod_jobs(
     id          BIGSERIAL NOT NULL PRIMARY KEY,
@@ -47,7 +50,23 @@ CREATE TABLE nimrod_jobs(
     created     TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
     -- NB: This isn't validated by a trigger because it's too damned slow to do so.
     -- Use add_compiled_experiment() or add_multiple_jobs()
-    variables   JSONB NOT NULL
+    variables   JSONB NOT NULL,
+    -- Derived from the job's attempts, maintained by t_exp_attempt_status.
+    status      nimrod_job_status NOT NULL DEFAULT 'NOT_RUN'::nimrod_job_status
+);
+
+CREATE INDEX i_exp_jobs_status ON nimrod_jobs(exp_id, status, job_index);
+
+--
+-- Per-experiment job counts, by status. Maintained by the t_exp_job_counts_* triggers.
+--
+DROP TABLE IF EXISTS nimrod_experiment_job_counts CASCADE;
+CREATE TABLE nimrod_experiment_job_counts(
+    exp_id      BIGINT NOT NULL PRIMARY KEY REFERENCES nimrod_experiments(id) ON DELETE CASCADE,
+    not_run     BIGINT NOT NULL DEFAULT 0 CHECK(not_run >= 0),
+    running     BIGINT NOT NULL DEFAULT 0 CHECK(running >= 0),
+    completed   BIGINT NOT NULL DEFAULT 0 CHECK(completed >= 0),
+    failed      BIGINT NOT NULL DEFAULT 0 CHECK(failed >= 0)
 );
 
 
@@ -102,9 +121,6 @@ CREATE TABLE nimrod_substitutions(
 );
 
 
-DROP TYPE IF EXISTS nimrod_job_status CASCADE;
-CREATE TYPE nimrod_job_status AS ENUM('NOT_RUN', 'RUNNING', 'COMPLETED', 'FAILED');
-
 --
 -- All the possible attempts at running a job.
 -- TODO: Add invariant conditions to this
@@ -128,16 +144,17 @@ CREATE OR REPLACE FUNCTION _exp_t_attempt_add() RETURNS TRIGGER AS $$
 DECLARE
     _status nimrod_job_status;
 BEGIN
+    -- Times given by the update are when it happened, which may be before it was written.
     IF OLD.status = 'NOT_RUN'::nimrod_job_status AND NEW.status = 'RUNNING'::nimrod_job_status THEN
         -- NOT_RUN -> RUNNING
-        NEW.start_time = NOW();
+        NEW.start_time = COALESCE(NEW.start_time, NOW());
     ELSIF OLD.status = 'NOT_RUN'::nimrod_job_status AND NEW.status = 'FAILED'::nimrod_job_status THEN
         -- NOT_RUN -> FAILED
-        NEW.start_time = NOW();
-        NEW.finish_time = NOW();
+        NEW.finish_time = COALESCE(NEW.finish_time, NOW());
+        NEW.start_time = COALESCE(NEW.start_time, NEW.finish_time);
     ELSIF OLD.status = 'RUNNING'::nimrod_job_status AND (NEW.status = 'FAILED'::nimrod_job_status OR NEW.status = 'COMPLETED'::nimrod_job_status) THEN
         -- RUNNING -> {FAILED, COMPLETED}
-        NEW.finish_time = NOW();
+        NEW.finish_time = COALESCE(NEW.finish_time, NOW());
     ELSE
         RAISE EXCEPTION 'Invalid job attempt update (%), cannot transition from % -> %', OLD.id, OLD.status, NEW.status;
     END IF;
@@ -228,17 +245,18 @@ CREATE OR REPLACE FUNCTION create_job_attempt(_job_id BIGINT, _uuid UUID) RETURN
     RETURNING *;
 $$ LANGUAGE SQL VOLATILE;
 
-CREATE OR REPLACE FUNCTION start_job_attempt(_att_id BIGINT, _agent_uuid UUID) RETURNS SETOF nimrod_job_attempts AS $$
+CREATE OR REPLACE FUNCTION start_job_attempt(_att_id BIGINT, _agent_uuid UUID, _time TIMESTAMP WITH TIME ZONE) RETURNS SETOF nimrod_job_attempts AS $$
     UPDATE nimrod_job_attempts
     SET
         status = 'RUNNING'::nimrod_job_status,
-        agent_uuid = _agent_uuid
+        agent_uuid = _agent_uuid,
+        start_time = _time
     WHERE
         id = _att_id
     RETURNING *;
 $$ LANGUAGE SQL VOLATILE;
 
-CREATE OR REPLACE FUNCTION finish_job_attempt(_att_id BIGINT, _failed BOOLEAN) RETURNS SETOF nimrod_job_attempts AS $$
+CREATE OR REPLACE FUNCTION finish_job_attempt(_att_id BIGINT, _failed BOOLEAN, _time TIMESTAMP WITH TIME ZONE) RETURNS SETOF nimrod_job_attempts AS $$
     UPDATE nimrod_job_attempts
     SET
         status = (
@@ -246,7 +264,8 @@ CREATE OR REPLACE FUNCTION finish_job_attempt(_att_id BIGINT, _failed BOOLEAN) R
                 WHEN FALSE THEN 'COMPLETED'::nimrod_job_status
                 WHEN TRUE THEN 'FAILED'::nimrod_job_status
             END
-        )
+        ),
+        finish_time = GREATEST(_time, start_time)
     WHERE
         id = _att_id
     RETURNING *;
@@ -289,9 +308,115 @@ CREATE OR REPLACE FUNCTION _exp_get_attempt_info(_job_id BIGINT) RETURNS TABLE(s
 $$ LANGUAGE SQL STABLE;
 
 CREATE OR REPLACE FUNCTION get_job_status(_job_id BIGINT) RETURNS nimrod_job_status AS $$
-    SELECT status FROM _exp_get_attempt_info(_job_id);
+    SELECT status FROM nimrod_jobs WHERE id = _job_id;
 $$ LANGUAGE SQL STABLE;
 
+--
+-- Keep nimrod_jobs.status in sync with the job's attempts.
+--
+CREATE OR REPLACE FUNCTION _exp_t_attempt_status() RETURNS TRIGGER AS $$
+DECLARE
+    _job_id BIGINT;
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        _job_id := OLD.job_id;
+    ELSE
+        _job_id := NEW.job_id;
+    END IF;
+
+    UPDATE nimrod_jobs AS j
+    SET status = a.status
+    FROM _exp_get_attempt_info(_job_id) AS a
+    WHERE j.id = _job_id AND j.status IS DISTINCT FROM a.status;
+
+    RETURN NULL;
+END $$ LANGUAGE 'plpgsql';
+
+DROP TRIGGER IF EXISTS t_exp_attempt_status ON nimrod_job_attempts;
+CREATE TRIGGER t_exp_attempt_status AFTER INSERT OR DELETE OR UPDATE OF status ON nimrod_job_attempts
+    FOR EACH ROW EXECUTE PROCEDURE _exp_t_attempt_status();
+
+--
+-- Keep nimrod_experiment_job_counts in sync with nimrod_jobs.
+-- Attempt changes reach here via t_exp_attempt_status.
+--
+CREATE OR REPLACE FUNCTION _exp_t_job_counts_exp_add() RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO nimrod_experiment_job_counts(exp_id) VALUES(NEW.id);
+    RETURN NULL;
+END $$ LANGUAGE 'plpgsql';
+
+DROP TRIGGER IF EXISTS t_exp_job_counts_exp_add ON nimrod_experiments;
+CREATE TRIGGER t_exp_job_counts_exp_add AFTER INSERT ON nimrod_experiments
+    FOR EACH ROW EXECUTE PROCEDURE _exp_t_job_counts_exp_add();
+
+CREATE OR REPLACE FUNCTION _exp_t_job_counts_add() RETURNS TRIGGER AS $$
+BEGIN
+    UPDATE nimrod_experiment_job_counts AS c SET
+        not_run = c.not_run + d.not_run,
+        running = c.running + d.running,
+        completed = c.completed + d.completed,
+        failed = c.failed + d.failed
+    FROM (
+        SELECT
+            exp_id,
+            COUNT(*) FILTER (WHERE status = 'NOT_RUN'::nimrod_job_status) AS not_run,
+            COUNT(*) FILTER (WHERE status = 'RUNNING'::nimrod_job_status) AS running,
+            COUNT(*) FILTER (WHERE status = 'COMPLETED'::nimrod_job_status) AS completed,
+            COUNT(*) FILTER (WHERE status = 'FAILED'::nimrod_job_status) AS failed
+        FROM _exp_jc_new_jobs
+        GROUP BY exp_id
+    ) AS d
+    WHERE c.exp_id = d.exp_id;
+    RETURN NULL;
+END $$ LANGUAGE 'plpgsql';
+
+DROP TRIGGER IF EXISTS t_exp_job_counts_add ON nimrod_jobs;
+CREATE TRIGGER t_exp_job_counts_add AFTER INSERT ON nimrod_jobs
+    REFERENCING NEW TABLE AS _exp_jc_new_jobs
+    FOR EACH STATEMENT EXECUTE PROCEDURE _exp_t_job_counts_add();
+
+CREATE OR REPLACE FUNCTION _exp_t_job_counts_del() RETURNS TRIGGER AS $$
+BEGIN
+    UPDATE nimrod_experiment_job_counts AS c SET
+        not_run = c.not_run - d.not_run,
+        running = c.running - d.running,
+        completed = c.completed - d.completed,
+        failed = c.failed - d.failed
+    FROM (
+        SELECT
+            exp_id,
+            COUNT(*) FILTER (WHERE status = 'NOT_RUN'::nimrod_job_status) AS not_run,
+            COUNT(*) FILTER (WHERE status = 'RUNNING'::nimrod_job_status) AS running,
+            COUNT(*) FILTER (WHERE status = 'COMPLETED'::nimrod_job_status) AS completed,
+            COUNT(*) FILTER (WHERE status = 'FAILED'::nimrod_job_status) AS failed
+        FROM _exp_jc_old_jobs
+        GROUP BY exp_id
+    ) AS d
+    WHERE c.exp_id = d.exp_id;
+    RETURN NULL;
+END $$ LANGUAGE 'plpgsql';
+
+DROP TRIGGER IF EXISTS t_exp_job_counts_del ON nimrod_jobs;
+CREATE TRIGGER t_exp_job_counts_del AFTER DELETE ON nimrod_jobs
+    REFERENCING OLD TABLE AS _exp_jc_old_jobs
+    FOR EACH STATEMENT EXECUTE PROCEDURE _exp_t_job_counts_del();
+
+CREATE OR REPLACE FUNCTION _exp_t_job_counts_update() RETURNS TRIGGER AS $$
+BEGIN
+    UPDATE nimrod_experiment_job_counts SET
+        not_run = not_run + (NEW.status = 'NOT_RUN'::nimrod_job_status)::INT - (OLD.status = 'NOT_RUN'::nimrod_job_status)::INT,
+        running = running + (NEW.status = 'RUNNING'::nimrod_job_status)::INT - (OLD.status = 'RUNNING'::nimrod_job_status)::INT,
+        completed = completed + (NEW.status = 'COMPLETED'::nimrod_job_status)::INT - (OLD.status = 'COMPLETED'::nimrod_job_status)::INT,
+        failed = failed + (NEW.status = 'FAILED'::nimrod_job_status)::INT - (OLD.status = 'FAILED'::nimrod_job_status)::INT
+    WHERE exp_id = NEW.exp_id;
+    RETURN NULL;
+END $$ LANGUAGE 'plpgsql';
+
+DROP TRIGGER IF EXISTS t_exp_job_counts_update ON nimrod_jobs;
+CREATE TRIGGER t_exp_job_counts_update AFTER UPDATE OF status ON nimrod_jobs
+    FOR EACH ROW WHEN (OLD.status IS DISTINCT FROM NEW.status) EXECUTE PROCEDURE _exp_t_job_counts_update();
+
 CREATE OR REPLACE FUNCTION filter_job_attempts(_job_id BIGINT, _status nimrod_job_status[]) RETURNS SETOF nimrod_job_attempts AS $$
     SELECT
         *
@@ -318,86 +443,56 @@ CREATE OR REPLACE FUNCTION filter_job_attempts_by_experiment(_exp_id BIGINT, _st
 $$ LANGUAGE SQL STABLE;
 
 --
--- The nimrod_jobs table, except with three extra fields containg:
--- - The derived state of the job.
--- - An array of the variable names.
--- - An array of the variable values.
+-- The nimrod_jobs table, except with an extra field containing the
+-- variables, including the implicit ones.
 --
 DROP VIEW IF EXISTS nimrod_full_jobs CASCADE;
 CREATE VIEW nimrod_full_jobs AS
     SELECT
         j.*,
-        get_job_status(j.id) AS status,
         (j.variables || jsonb_build_object('jobindex', j.job_index::TEXT, 'jobname', j.job_index::TEXT)) AS full_variables
     FROM
         nimrod_jobs AS j
 ;
 
+--
+-- Range scan i_exp_jobs_status once per status and merge the results.
+-- Each scan stops after _limit rows, so this doesn't slow down as the experiment grows.
+--
 CREATE OR REPLACE FUNCTION filter_jobs(_exp_id BIGINT, _status nimrod_job_status[], _start BIGINT, _limit BIGINT) RETURNS SETOF nimrod_full_jobs AS $$
     SELECT
-        *
+        j.*
     FROM
-        nimrod_full_jobs
-    WHERE
-        exp_id = _exp_id AND
-        job_index >= COALESCE(_start, 0) AND
-        status = ANY(COALESCE(_status, enum_range(NULL::nimrod_job_status)))
-    ORDER BY job_index ASC
+        (SELECT DISTINCT unnest(COALESCE(_status, enum_range(NULL::nimrod_job_status)))) AS s(status)
+    CROSS JOIN LATERAL (
+        SELECT
+            *
+        FROM
+            nimrod_full_jobs
+        WHERE
+            exp_id = _exp_id AND
+            status = s.status AND
+            job_index >= COALESCE(_start, 0)
+        ORDER BY job_index ASC
+        LIMIT _limit
+    ) AS j
+    ORDER BY j.job_index ASC
     LIMIT _limit;
 $$ LANGUAGE SQL STABLE;
 
---
--- This isn't actually used, it's too slow.
---
 CREATE OR REPLACE FUNCTION get_run_counts(_exp_id BIGINT) RETURNS TABLE(total_count BIGINT, not_run BIGINT, running BIGINT, completed BIGINT, failed BIGINT) AS $$
--- You can do this in a single query, but it's ungodly slow:
---	SELECT
---		COUNT(1) AS total_count,
---		COUNT(1) FILTER (WHERE status = 'NOT_RUN'::nimrod_job_status) AS not_run,
---		COUNT(1) FILTER (WHERE status = 'RUNNING'::nimrod_job_status) AS running,
---		COUNT(1) FILTER (WHERE status = 'COMPLETED'::nimrod_job_status) AS completed,
---		COUNT(1) FILTER (WHERE status = 'FAILED'::nimrod_job_status) AS failed
---	FROM
---		nimrod_full_jobs AS j
---	WHERE
---		j.exp_id = _exp_id
---	;
-DECLARE
-    _not_run BIGINT;
-    _running BIGINT;
-    _completed BIGINT;
-    _failed BIGINT;
-    _s RECORD;
-BEGIN
-    _not_run := 0;
-    _running := 0;
-    _completed := 0;
-    _failed := 0;
-
-    FOR _s IN
-        SELECT status FROM nimrod_full_jobs WHERE exp_id = _exp_id
-    LOOP
-        IF _s.status = 'NOT_RUN' THEN
-            _not_run := _not_run + 1;
-        ELSIF _s._status = 'RUNNING' THEN
-            _running := _running + 1;
-        ELSIF _s._status = 'COMPLETED' THEN
-            _completed := _completed + 1;
-        ELSIF _s._status = 'FAILED' THEN
-            _failed := _failed + 1;
-        END IF;
-    END LOOP;
-
-    RETURN QUERY
-        SELECT
-            _not_run + _running + _completed + _failed,
-            _not_run,
-            _running,
-            _completed,
-            _failed
+    SELECT
+        not_run + running + completed + failed,
+        not_run,
+        running,
+        completed,
+        failed
+    FROM
+        nimrod_experiment_job_counts
+    WHERE
+        exp_id = _exp_id
     ;
-END
-$$ LANGUAGE 'plpgsql' STABLE;
+$$ LANGUAGE SQL STABLE;
 
 -- Validate job key names, will throw if invalid
 CREATE OR REPLACE FUNCTION validate_jobs_json(_exp_id BIGINT, _jobs JSONB) RETURNS VOID AS $$
@@ -50,12 +50,11 @@ CREATE OR REPLACE FUNCTION _msg_build_payload_config_update(_old nimrod_kv_confi
     );
 $$ LANGUAGE SQL;
 
-CREATE OR REPLACE FUNCTION _msg_build_payload_job(_job nimrod_jobs) RETURNS JSONB AS $$
+CREATE OR REPLACE FUNCTION _msg_build_payload_jobs(_exp_id BIGINT, _first_index BIGINT, _last_index BIGINT) RETURNS JSONB AS $$
     SELECT jsonb_build_object(
-        'id', _job.id,
-        'exp_id', _job.exp_id,
-        'job_index', _job.job_index,
-        'created', (SELECT EXTRACT(EPOCH FROM _job.created))::BIGINT
+        'exp_id', _exp_id,
+        'first_index', _first_index,
+        'last_index', _last_index
     );
 $$ LANGUAGE SQL;
 
@@ -72,9 +71,14 @@ CREATE OR REPLACE FUNCTION poll_master_messages() RETURNS SETOF nimrod_master_me
     DELETE FROM nimrod_master_message_storage RETURNING *;
 $$ LANGUAGE SQL;
 
+--
+-- Listening masters are woken via NOTIFY, which is only delivered on commit.
+-- The payload is unused, the storage table is the source of truth.
+--
 CREATE OR REPLACE FUNCTION add_master_message(op nimrod_message_operation, class nimrod_master_message_class, payload JSONB) RETURNS VOID AS $$
     INSERT INTO nimrod_master_message_storage(operation, class, ts, payload)
     VALUES(op, class, NOW(), payload);
+    SELECT pg_notify('nimrod_master_messages', class::TEXT);
 $$ LANGUAGE SQL;
 
 --
@@ -102,25 +106,33 @@ DROP TRIGGER IF EXISTS t_msg_config ON nimrod_kv_config;
 CREATE TRIGGER t_msg_config AFTER INSERT OR UPDATE OR DELETE ON nimrod_kv_config FOR EACH ROW EXECUTE PROCEDURE _msg_t_config();
 
 --
--- Trigger to catch job INSERT on nimrod_jobs
+-- Trigger to catch job INSERT on nimrod_jobs.
+-- This is per-statement, emitting a single range per experiment.
 --
 CREATE OR REPLACE FUNCTION _msg_t_job() RETURNS TRIGGER AS $$
-DECLARE
-    payload JSONB;
-    expstate nimrod_experiment_state;
 BEGIN
-    IF TG_OP = 'INSERT' THEN
-        -- Only add the message if the experiments's active.
-        SELECT state INTO expstate FROM nimrod_experiments WHERE id = NEW.exp_id;
-        IF expstate != 'STOPPED' THEN
-            payload := _msg_build_payload_job(NEW);
-            PERFORM add_master_message(TG_OP::nimrod_message_operation, 'job'::nimrod_master_message_class, payload);
-        END IF;
-    ELSE
+    IF TG_OP != 'INSERT' THEN
         RAISE EXCEPTION 'Operation % not valid for job', TG_OP;
     END IF;
 
+    -- Only add the message if the experiments's active.
+    PERFORM add_master_message(
+        TG_OP::nimrod_message_operation,
+        'job'::nimrod_master_message_class,
+        _msg_build_payload_jobs(j.exp_id, MIN(j.job_index), MAX(j.job_index))
+    )
+    FROM
+        _msg_new_jobs AS j INNER JOIN
+        nimrod_experiments AS e ON e.id = j.exp_id
+    WHERE
+        e.state != 'STOPPED'
+    GROUP BY
+        j.exp_id
+    ;
+
     RETURN NULL;
 END $$ LANGUAGE 'plpgsql';
 DROP TRIGGER IF EXISTS t_msg_job ON nimrod_jobs;
-CREATE TRIGGER t_msg_job AFTER INSERT ON nimrod_jobs FOR EACH ROW EXECUTE PROCEDURE _msg_t_job();
+CREATE TRIGGER t_msg_job AFTER INSERT ON nimrod_jobs
+    REFERENCING NEW TABLE AS _msg_new_jobs
+    FOR EACH STATEMENT EXECUTE PROCEDURE _msg_t_job();
@@ -0,0 +1,327 @@
+DO $upgrade$
+DECLARE
+    _oid INTEGER;
+    _currver INTEGER[];
+BEGIN
+    SELECT oid INTO _oid FROM pg_proc WHERE
+        proname = 'get_schema_version' AND
+        pronamespace = to_regnamespace((SELECT current_schema))::oid
+    ;
+
+    IF _oid IS NULL THEN
+        RAISE EXCEPTION 'No schema version, is this a Nimrod database?';
+    END IF;
+
+    SELECT ARRAY[major, minor, patch] INTO _currver FROM get_schema_version();
+
+    IF _currver != ARRAY[5, 0, 0] THEN
+        RAISE EXCEPTION 'Cannot upgrade, require version 5.0.0, got %.%.%', _currver[1], _currver[2], _currver[3];
+    END IF;
+
+    RAISE NOTICE 'Upgrading from 5.0.0 to 5.1.0...';
+
+    CREATE OR REPLACE FUNCTION get_schema_version() RETURNS TABLE(major INTEGER, minor INTEGER, patch INTEGER) AS $$
+        SELECT 5, 1, 0;
+    $$ LANGUAGE SQL IMMUTABLE;
+
+    --
+    -- Master messages, wake listening masters via NOTIFY.
+    --
+    CREATE OR REPLACE FUNCTION add_master_message(op nimrod_message_operation, class nimrod_master_message_class, payload JSONB) RETURNS VOID AS $$
+        INSERT INTO nimrod_master_message_storage(operation, class, ts, payload)
+        VALUES(op, class, NOW(), payload);
+        SELECT pg_notify('nimrod_master_messages', class::TEXT);
+    $$ LANGUAGE SQL;
+
+    --
+    -- Coalesce job-add messages into a single range per statement.
+    --
+    DROP TRIGGER t_msg_job ON nimrod_jobs;
+    DROP FUNCTION _msg_t_job();
+    DROP FUNCTION _msg_build_payload_job(nimrod_jobs);
+
+    CREATE OR REPLACE FUNCTION _msg_build_payload_jobs(_exp_id BIGINT, _first_index BIGINT, _last_index BIGINT) RETURNS JSONB AS $$
+        SELECT jsonb_build_object(
+            'exp_id', _exp_id,
+            'first_index', _first_index,
+            'last_index', _last_index
+        );
+    $$ LANGUAGE SQL;
+
+    CREATE OR REPLACE FUNCTION _msg_t_job() RETURNS TRIGGER AS $$
+    BEGIN
+        IF TG_OP != 'INSERT' THEN
+            RAISE EXCEPTION 'Operation % not valid for job', TG_OP;
+        END IF;
+
+        -- Only add the message if the experiments's active.
+        PERFORM add_master_message(
+            TG_OP::nimrod_message_operation,
+            'job'::nimrod_master_message_class,
+            _msg_build_payload_jobs(j.exp_id, MIN(j.job_index), MAX(j.job_index))
+        )
+        FROM
+            _msg_new_jobs AS j INNER JOIN
+            nimrod_experiments AS e ON e.id = j.exp_id
+        WHERE
+            e.state != 'STOPPED'
+        GROUP BY
+            j.exp_id
+        ;
+
+        RETURN NULL;
+    END $$ LANGUAGE 'plpgsql';
+    CREATE TRIGGER t_msg_job AFTER INSERT ON nimrod_jobs
+        REFERENCING NEW TABLE AS _msg_new_jobs
+        FOR EACH STATEMENT EXECUTE PROCEDURE _msg_t_job();
+
+    --
+    -- Materialise job status.
+    --
+    DROP FUNCTION filter_jobs(BIGINT, nimrod_job_status[], BIGINT, BIGINT);
+    DROP FUNCTION add_multiple_jobs(BIGINT, JSONB);
+    DROP VIEW nimrod_full_jobs;
+
+    ALTER TABLE nimrod_jobs ADD COLUMN status nimrod_job_status NOT NULL DEFAULT 'NOT_RUN'::nimrod_job_status;
+
+    UPDATE nimrod_jobs AS j
+    SET status = a.status
+    FROM (SELECT DISTINCT job_id FROM nimrod_job_attempts) AS att
+    CROSS JOIN LATERAL _exp_get_attempt_info(att.job_id) AS a
+    WHERE j.id = att.job_id;
+
+    CREATE INDEX i_exp_jobs_status ON nimrod_jobs(exp_id, status, job_index);
+
+    CREATE OR REPLACE FUNCTION get_job_status(_job_id BIGINT) RETURNS nimrod_job_status AS $$
+        SELECT status FROM nimrod_jobs WHERE id = _job_id;
+    $$ LANGUAGE SQL STABLE;
+
+    CREATE OR REPLACE FUNCTION _exp_t_attempt_status() RETURNS TRIGGER AS $$
+    DECLARE
+        _job_id BIGINT;
+    BEGIN
+        IF TG_OP = 'DELETE' THEN
+            _job_id := OLD.job_id;
+        ELSE
+            _job_id := NEW.job_id;
+        END IF;
+
+        UPDATE nimrod_jobs AS j
+        SET status = a.status
+        FROM _exp_get_attempt_info(_job_id) AS a
+        WHERE j.id = _job_id AND j.status IS DISTINCT FROM a.status;
+
+        RETURN NULL;
+    END $$ LANGUAGE 'plpgsql';
+
+    CREATE TRIGGER t_exp_attempt_status AFTER INSERT OR DELETE OR UPDATE OF status ON nimrod_job_attempts
+        FOR EACH ROW EXECUTE PROCEDURE _exp_t_attempt_status();
+
+    CREATE VIEW nimrod_full_jobs AS
+        SELECT
+            j.*,
+            (j.variables || jsonb_build_object('jobindex', j.job_index::TEXT, 'jobname', j.job_index::TEXT)) AS full_variables
+        FROM
+            nimrod_jobs AS j
+    ;
+
+    CREATE OR REPLACE FUNCTION filter_jobs(_exp_id BIGINT, _status nimrod_job_status[], _start BIGINT, _limit BIGINT) RETURNS SETOF nimrod_full_jobs AS $$
+        SELECT
+            j.*
+        FROM
+            (SELECT DISTINCT unnest(COALESCE(_status, enum_range(NULL::nimrod_job_status)))) AS s(status)
+        CROSS JOIN LATERAL (
+            SELECT
+                *
+            FROM
+                nimrod_full_jobs
+            WHERE
+                exp_id = _exp_id AND
+                status = s.status AND
+                job_index >= COALESCE(_start, 0)
+            ORDER BY job_index ASC
+            LIMIT _limit
+        ) AS j
+        ORDER BY j.job_index ASC
+        LIMIT _limit;
+    $$ LANGUAGE SQL STABLE;
+
+    CREATE OR REPLACE FUNCTION add_multiple_jobs(_exp_id BIGINT, _jobs JSONB) RETURNS SETOF nimrod_full_jobs AS $$
+    DECLARE
+        _ids BIGINT[];
+    BEGIN
+        SELECT array_agg(j) INTO _ids FROM add_multiple_jobs_internal(_exp_id, _jobs) AS j;
+        RETURN QUERY SELECT * FROM nimrod_full_jobs WHERE id IN (SELECT unnest(_ids));
+    END
+    $$ LANGUAGE 'plpgsql' VOLATILE;
+
+    --
+    -- Per-experiment job counts.
+    --
+    CREATE TABLE nimrod_experiment_job_counts(
+        exp_id      BIGINT NOT NULL PRIMARY KEY REFERENCES nimrod_experiments(id) ON DELETE CASCADE,
+        not_run     BIGINT NOT NULL DEFAULT 0 CHECK(not_run >= 0),
+        running     BIGINT NOT NULL DEFAULT 0 CHECK(running >= 0),
+        completed   BIGINT NOT NULL DEFAULT 0 CHECK(completed >= 0),
+        failed      BIGINT NOT NULL DEFAULT 0 CHECK(failed >= 0)
+    );
+
+    INSERT INTO nimrod_experiment_job_counts(exp_id, not_run, running, completed, failed)
+        SELECT
+            e.id,
+            COUNT(j.id) FILTER (WHERE j.status = 'NOT_RUN'::nimrod_job_status),
+            COUNT(j.id) FILTER (WHERE j.status = 'RUNNING'::nimrod_job_status),
+            COUNT(j.id) FILTER (WHERE j.status = 'COMPLETED'::nimrod_job_status),
+            COUNT(j.id) FILTER (WHERE j.status = 'FAILED'::nimrod_job_status)
+        FROM
+            nimrod_experiments AS e
+            LEFT JOIN nimrod_jobs AS j ON j.exp_id = e.id
+        GROUP BY e.id
+    ;
+
+    CREATE OR REPLACE FUNCTION _exp_t_job_counts_exp_add() RETURNS TRIGGER AS $$
+    BEGIN
+        INSERT INTO nimrod_experiment_job_counts(exp_id) VALUES(NEW.id);
+        RETURN NULL;
+    END $$ LANGUAGE 'plpgsql';
+
+    DROP TRIGGER IF EXISTS t_exp_job_counts_exp_add ON nimrod_experiments;
+    CREATE TRIGGER t_exp_job_counts_exp_add AFTER INSERT ON nimrod_experiments
+        FOR EACH ROW EXECUTE PROCEDURE _exp_t_job_counts_exp_add();
+
+    CREATE OR REPLACE FUNCTION _exp_t_job_counts_add() RETURNS TRIGGER AS $$
+    BEGIN
+        UPDATE nimrod_experiment_job_counts AS c SET
+            not_run = c.not_run + d.not_run,
+            running = c.running + d.running,
+            completed = c.completed + d.completed,
+            failed = c.failed + d.failed
+        FROM (
+            SELECT
+                exp_id,
+                COUNT(*) FILTER (WHERE status = 'NOT_RUN'::nimrod_job_status) AS not_run,
+                COUNT(*) FILTER (WHERE status = 'RUNNING'::nimrod_job_status) AS running,
+                COUNT(*) FILTER (WHERE status = 'COMPLETED'::nimrod_job_status) AS completed,
+                COUNT(*) FILTER (WHERE status = 'FAILED'::nimrod_job_status) AS failed
+            FROM _exp_jc_new_jobs
+            GROUP BY exp_id
+        ) AS d
+        WHERE c.exp_id = d.exp_id;
+        RETURN NULL;
+    END $$ LANGUAGE 'plpgsql';
+
+    DROP TRIGGER IF EXISTS t_exp_job_counts_add ON nimrod_jobs;
+    CREATE TRIGGER t_exp_job_counts_add AFTER INSERT ON nimrod_jobs
+        REFERENCING NEW TABLE AS _exp_jc_new_jobs
+        FOR EACH STATEMENT EXECUTE PROCEDURE _exp_t_job_counts_add();
+
+    CREATE OR REPLACE FUNCTION _exp_t_job_counts_del() RETURNS TRIGGER AS $$
+    BEGIN
+        UPDATE nimrod_experiment_job_counts AS c SET
+            not_run = c.not_run - d.not_run,
+            running = c.running - d.running,
+            completed = c.completed - d.completed,
+            failed = c.failed - d.failed
+        FROM (
+            SELECT
+                exp_id,
+                COUNT(*) FILTER (WHERE status = 'NOT_RUN'::nimrod_job_status) AS not_run,
+                COUNT(*) FILTER (WHERE status = 'RUNNING'::nimrod_job_status) AS running,
+                COUNT(*) FILTER (WHERE status = 'COMPLETED'::nimrod_job_status) AS completed,
+                COUNT(*) FILTER (WHERE status = 'FAILED'::nimrod_job_status) AS failed
+            FROM _exp_jc_old_jobs
+            GROUP BY exp_id
+        ) AS d
+        WHERE c.exp_id = d.exp_id;
+        RETURN NULL;
+    END $$ LANGUAGE 'plpgsql';
+
+    DROP TRIGGER IF EXISTS t_exp_job_counts_del ON nimrod_jobs;
+    CREATE TRIGGER t_exp_job_counts_del AFTER DELETE ON nimrod_jobs
+        REFERENCING OLD TABLE AS _exp_jc_old_jobs
+        FOR EACH STATEMENT EXECUTE PROCEDURE _exp_t_job_counts_del();
+
+    CREATE OR REPLACE FUNCTION _exp_t_job_counts_update() RETURNS TRIGGER AS $$
+    BEGIN
+        UPDATE nimrod_experiment_job_counts SET
+            not_run = not_run + (NEW.status = 'NOT_RUN'::nimrod_job_status)::INT - (OLD.status = 'NOT_RUN'::nimrod_job_status)::INT,
+            running = running + (NEW.status = 'RUNNING'::nimrod_job_status)::INT - (OLD.status = 'RUNNING'::nimrod_job_status)::INT,
+            completed = completed + (NEW.status = 'COMPLETED'::nimrod_job_status)::INT - (OLD.status = 'COMPLETED'::nimrod_job_status)::INT,
+            failed = failed + (NEW.status = 'FAILED'::nimrod_job_status)::INT - (OLD.status = 'FAILED'::nimrod_job_status)::INT
+        WHERE exp_id = NEW.exp_id;
+        RETURN NULL;
+    END $$ LANGUAGE 'plpgsql';
+
+    DROP TRIGGER IF EXISTS t_exp_job_counts_update ON nimrod_jobs;
+    CREATE TRIGGER t_exp_job_counts_update AFTER UPDATE OF status ON nimrod_jobs
+        FOR EACH ROW WHEN (OLD.status IS DISTINCT FROM NEW.status) EXECUTE PROCEDURE _exp_t_job_counts_update();
+
+    CREATE OR REPLACE FUNCTION get_run_counts(_exp_id BIGINT) RETURNS TABLE(total_count BIGINT, not_run BIGINT, running BIGINT, completed BIGINT, failed BIGINT) AS $$
+        SELECT
+            not_run + running + completed + failed,
+            not_run,
+            running,
+            completed,
+            failed
+        FROM
+            nimrod_experiment_job_counts
+        WHERE
+            exp_id = _exp_id
+        ;
+    $$ LANGUAGE SQL STABLE;
+
+    --
+    -- Attempt start/finish times are given by the caller, as writes may be deferred.
+    --
+    CREATE OR REPLACE FUNCTION _exp_t_attempt_add() RETURNS TRIGGER AS $$
+    DECLARE
+        _status nimrod_job_status;
+    BEGIN
+        -- Times given by the update are when it happened, which may be before it was written.
+        IF OLD.status = 'NOT_RUN'::nimrod_job_status AND NEW.status = 'RUNNING'::nimrod_job_status THEN
+            -- NOT_RUN -> RUNNING
+            NEW.start_time = COALESCE(NEW.start_time, NOW());
+        ELSIF OLD.status = 'NOT_RUN'::nimrod_job_status AND NEW.status = 'FAILED'::nimrod_job_status THEN
+            -- NOT_RUN -> FAILED
+            NEW.finish_time = COALESCE(NEW.finish_time, NOW());
+            NEW.start_time = COALESCE(NEW.start_time, NEW.finish_time);
+        ELSIF OLD.status = 'RUNNING'::nimrod_job_status AND (NEW.status = 'FAILED'::nimrod_job_status OR NEW.status = 'COMPLETED'::nimrod_job_status) THEN
+            -- RUNNING -> {FAILED, COMPLETED}
+            NEW.finish_time = COALESCE(NEW.finish_time, NOW());
+        ELSE
+            RAISE EXCEPTION 'Invalid job attempt update (%), cannot transition from % -> %', OLD.id, OLD.status, NEW.status;
+        END IF;
+
+        RETURN NEW;
+    END $$ LANGUAGE 'plpgsql';
+
+    DROP FUNCTION IF EXISTS start_job_attempt(BIGINT, UUID);
+    CREATE OR REPLACE FUNCTION start_job_attempt(_att_id BIGINT, _agent_uuid UUID, _time TIMESTAMP WITH TIME ZONE) RETURNS SETOF nimrod_job_attempts AS $$
+        UPDATE nimrod_job_attempts
+        SET
+            status = 'RUNNING'::nimrod_job_status,
+            agent_uuid = _agent_uuid,
+            start_time = _time
+        WHERE
+            id = _att_id
+        RETURNING *;
+    $$ LANGUAGE SQL VOLATILE;
+
+    DROP FUNCTION IF EXISTS finish_job_attempt(BIGINT, BOOLEAN);
+    CREATE OR REPLACE FUNCTION finish_job_attempt(_att_id BIGINT, _failed BOOLEAN, _time TIMESTAMP WITH TIME ZONE) RETURNS SETOF nimrod_job_attempts AS $$
+        UPDATE nimrod_job_attempts
+        SET
+            status = (
+                SELECT CASE _failed
+                    WHEN FALSE THEN 'COMPLETED'::nimrod_job_status
+                    WHEN TRUE THEN 'FAILED'::nimrod_job_status
+                END
+            ),
+            finish_time = GREATEST(_time, start_time)
+        WHERE
+            id = _att_id
+        RETURNING *;
+    $$ LANGUAGE SQL VOLATILE;
+
+    RAISE NOTICE 'Done.';
+END $upgrade$;
@@ -23,6 +23,7 @@ import au.edu.uq.rcc.nimrodg.api.Command;
 import au.edu.uq.rcc.nimrodg.api.CommandResult;
 import au.edu.uq.rcc.nimrodg.api.Experiment;
 import au.edu.uq.rcc.nimrodg.api.JobAttempt;
+import au.edu.uq.rcc.nimrodg.api.RunCounts;
 import au.edu.uq.rcc.nimrodg.api.Substitution;
 import au.edu.uq.rcc.nimrodg.api.Task;
 import au.edu.uq.rcc.nimrodg.api.utils.CompiledSubstitution;
@@ -51,6 +52,7 @@ import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -91,7 +93,9 @@ public class DBExperimentHelpers extends DBBaseHelper {
 
 	private final PreparedStatement qGetSingleJob;
 	private final PreparedStatement qGetJobRange;
+	private final PreparedStatement qFetchJobsAfter;
 	private final PreparedStatement qGetJobAttemptsByJob;
+	private final PreparedStatement qGetRunCounts;
 	private final PreparedStatement qGetNextJobId;
 
 	private final PreparedStatement qCreateJobAttempt;
@@ -139,14 +143,58 @@ public class DBExperimentHelpers extends DBBaseHelper {
 
 		this.qGetSingleJob = prepareStatement("SELECT * FROM nimrod_jobs WHERE id = ?");
 		this.qGetJobRange = prepareStatement("SELECT * FROM nimrod_jobs WHERE exp_id = ? AND job_index >= COALESCE(?, 0) ORDER BY job_index ASC LIMIT ?");
+		/*
+		 * Keyset scan of UNIQUE(exp_id, job_index), deriving each job's status as we go.
+		 * SQLite walks the index in order and stops at the limit, so jobs before the key are never visited.
+		 * The statuses are four parameters, unused ones are bound to NULL.
+		 */
+		this.qFetchJobsAfter = prepareStatement(
+				"SELECT * FROM (\n" +
+				"    SELECT\n" +
+				"        j.*,\n" +
+				"        CASE\n" +
+				"            WHEN EXISTS(SELECT 1 FROM nimrod_job_attempts WHERE job_id = j.id AND status = 'COMPLETED') THEN 'COMPLETED'\n" +
+				"            WHEN EXISTS(SELECT 1 FROM nimrod_job_attempts WHERE job_id = j.id AND status = 'RUNNING') THEN 'RUNNING'\n" +
+				"            WHEN EXISTS(SELECT 1 FROM nimrod_job_attempts WHERE job_id = j.id AND status = 'FAILED') THEN 'FAILED'\n" +
+				"            ELSE 'NOT_RUN'\n" +
+				"        END AS status\n" +
+				"    FROM\n" +
+				"        nimrod_jobs AS j\n" +
+				"    WHERE\n" +
+				"        j.exp_id = ? AND j.job_index > ?\n" +
+				")\n" +
+				"WHERE status IN (?, ?, ?, ?)\n" +
+				"ORDER BY job_index ASC\n" +
+				"LIMIT ?");
 		this.qGetJobAttemptsByJob = prepareStatement("SELECT * FROM nimrod_job_attempts WHERE job_id = ?");
+		/* Same derivation as JobCounts, done in one pass instead of a query per job. */
+		this.qGetRunCounts = prepareStatement(
+				"SELECT\n" +
+				"    COALESCE(SUM(status = 'NOT_RUN'), 0) AS not_run,\n" +
+				"    COALESCE(SUM(status = 'RUNNING'), 0) AS running,\n" +
+				"    COALESCE(SUM(status = 'COMPLETED'), 0) AS completed,\n" +
+				"    COALESCE(SUM(status = 'FAILED'), 0) AS failed\n" +
+				"FROM (\n" +
+				"    SELECT\n" +
+				"        CASE\n" +
+				"            WHEN SUM(a.status = 'COMPLETED') > 0 THEN 'COMPLETED'\n" +
+				"            WHEN SUM(a.status = 'RUNNING') > 0 THEN 'RUNNING'\n" +
+				"            WHEN SUM(a.status = 'FAILED') > 0 THEN 'FAILED'\n" +
+				"            ELSE 'NOT_RUN'\n" +
+				"        END AS status\n" +
+				"    FROM\n" +
+				"        nimrod_jobs AS j\n" +
+				"        LEFT JOIN nimrod_job_attempts AS a ON a.job_id = j.id\n" +
+				"    WHERE\n" +
+				"        j.exp_id = ?\n" +
+				"    GROUP BY j.id\n" +
+				")");
 
-		/* The finer-grained filtering is done application-side, row by row. */
 		this.qGetNextJobId = prepareStatement("SELECT COALESCE(MAX(job_index) + 1, 1) FROM nimrod_jobs WHERE exp_id = ?");
 
 		this.qCreateJobAttempt = prepareStatement("INSERT INTO nimrod_job_attempts(job_id, uuid) VALUES(?, ?)", true);
-		this.qStartJobAttempt = prepareStatement("UPDATE nimrod_job_attempts SET status = ?, agent_uuid = ? WHERE id = ?");
-		this.qFinishJobAttempt = prepareStatement("UPDATE nimrod_job_attempts SET status = ? WHERE id = ?");
+		this.qStartJobAttempt = prepareStatement("UPDATE nimrod_job_attempts SET status = ?, agent_uuid = ?, start_time = ? WHERE id = ?");
+		this.qFinishJobAttempt = prepareStatement("UPDATE nimrod_job_attempts SET status = ?, finish_time = MAX(?, IFNULL(start_time, 0)) WHERE id = ?");
 		this.qGetJobAttempt = prepareStatement("SELECT * FROM nimrod_job_attempts WHERE id = ?");
 		this.qFilterJobAttemptsByExperiment = prepareStatement("	SELECT\n"
 				+ "		att.*\n"
@@ -694,10 +742,58 @@ public class DBExperimentHelpers extends DBBaseHelper {
 		return new JobCounts(jobId, total, notRun, completed, failed, running);
 	}
 
+	public RunCounts getRunCounts(long expId) throws SQLException {
+		qGetRunCounts.setLong(1, expId);
+		try(ResultSet rs = qGetRunCounts.executeQuery()) {
+			if(!rs.next()) {
+				throw new SQLException("Unable to get run counts, no rows returned.");
+			}
+
+			return new RunCounts(
+					rs.getLong("not_run"),
+					rs.getLong("running"),
+					rs.getLong("completed"),
+					rs.getLong("failed")
+			);
+		}
+	}
+
 	public List<TempJob> filterJobs(long expId, EnumSet<JobAttempt.Status> status, long start, long limit) throws SQLException {
-		return getJobRange(expId, start, limit).stream()
-				.filter(tj -> status.contains(tj.status))
-				.collect(Collectors.toList());
+		return fetchJobsAfter(expId, status, Math.max(start, 1) - 1, limit);
+	}
+
+	public List<TempJob> fetchJobsAfter(long expId, EnumSet<JobAttempt.Status> status, long after, long limit) throws SQLException {
+		qFetchJobsAfter.setLong(1, expId);
+		qFetchJobsAfter.setLong(2, after);
+
+		Iterator<JobAttempt.Status> it = status.iterator();
+		for(int i = 3; i < 7; ++i) {
+			qFetchJobsAfter.setString(i, it.hasNext() ? JobAttempt.statusToString(it.next()) : null);
+		}
+
+		/* SQLite treats a negative limit as no limit. */
+		qFetchJobsAfter.setLong(7, limit <= 0 ? -1 : limit);
+
+		List<TempJob> jobs = new ArrayList<>();
+		try(ResultSet rs = qFetchJobsAfter.executeQuery()) {
+			while(rs.next()) {
+				long jobIndex = rs.getLong("job_index");
+				Map<String, String> vars = JsonUtils.jobFromJson(DBUtils.getJSONObject(rs, "variables"));
+				vars.put("jobindex", String.valueOf(jobIndex));
+				vars.put("jobname", String.valueOf(jobIndex));
+
+				jobs.add(new TempJob(
+						rs.getLong("id"),
+						rs.getLong("exp_id"),
+						jobIndex,
+						DBUtils.getLongInstant(rs, "created"),
+						JobAttempt.stringToStatus(rs.getString("status")),
+						vars
+				));
+			}
+		}
+
+		return jobs;
 	}
 
 	public List<TempJob> getJobsById(long[] ids) throws SQLException {
@@ -744,10 +840,11 @@ public class DBExperimentHelpers extends DBBaseHelper {
 		return getJobAttempt(id);
 	}
 
-	public TempJobAttempt startJobAttempt(long attId, UUID agentUuid) throws SQLException {
+	public TempJobAttempt startJobAttempt(long attId, UUID agentUuid, Instant time) throws SQLException {
 		qStartJobAttempt.setString(1, JobAttempt.statusToString(JobAttempt.Status.RUNNING));
 		qStartJobAttempt.setString(2, agentUuid.toString());
-		qStartJobAttempt.setLong(3, attId);
+		DBUtils.setLongInstant(qStartJobAttempt, 3, time);
+		qStartJobAttempt.setLong(4, attId);
 
 		if(qStartJobAttempt.executeUpdate() == 0) {
 			throw new SQLException("Unable to start attempt, no rows affected.");
@@ -756,9 +853,10 @@ public class DBExperimentHelpers extends DBBaseHelper {
 		return getJobAttempt(attId);
 	}
 
-	public TempJobAttempt finishJobAttempt(long attId, boolean failed) throws SQLException {
+	public TempJobAttempt finishJobAttempt(long attId, boolean failed, Instant time) throws SQLException {
 		qFinishJobAttempt.setString(1, JobAttempt.statusToString(failed ? JobAttempt.Status.FAILED : JobAttempt.Status.COMPLETED));
-		qFinishJobAttempt.setLong(2, attId);
+		DBUtils.setLongInstant(qFinishJobAttempt, 2, time);
+		qFinishJobAttempt.setLong(3, attId);
 
 		if(qFinishJobAttempt.executeUpdate() == 0) {
 			throw new SQLException("Unable to start attempt, no rows affected.");
@@ -36,6 +36,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -371,7 +372,7 @@ public class DBResourceHelpers extends DBBaseHelper {
 		}
 	}
 
-	public boolean updateAgent(AgentState agent) throws SQLException {
+	private void bindUpdateAgent(AgentState agent) throws SQLException {
 		qUpdateAgent.setString(1, Agent.stateToString(agent.getState()));
 		qUpdateAgent.setString(2, agent.getQueue());
 		qUpdateAgent.setInt(3, agent.getShutdownSignal());
@@ -389,10 +390,23 @@ public class DBResourceHelpers extends DBBaseHelper {
 		}
 
 		qUpdateAgent.setString(10, agent.getUUID().toString());
+	}
 
+	public boolean updateAgent(AgentState agent) throws SQLException {
+		bindUpdateAgent(agent);
 		return qUpdateAgent.executeUpdate() != 0;
 	}
 
+	public void updateAgents(Collection<AgentState> agents) throws SQLException {
+		qUpdateAgent.clearBatch();
+		for(AgentState agent : agents) {
+			bindUpdateAgent(agent);
+			qUpdateAgent.addBatch();
+		}
+
+		qUpdateAgent.executeBatch();
+	}
+
 
 	public boolean addAgentPlatform(String platformString, Path path) throws SQLException {
 		qAddAgentPlatform.setString(1, platformString);
@@ -42,7 +42,7 @@ import java.util.Properties;
 
 public class SQLite3APIFactory implements NimrodAPIDatabaseFactory {
 
-	public static final SchemaVersion NATIVE_SCHEMA = SchemaVersion.of(4, 0, 0);
+	public static final SchemaVersion NATIVE_SCHEMA = SchemaVersion.of(4, 1, 0);
 
 	public static final MigrationPlan RESET_PLAN;
 
@@ -80,6 +80,11 @@ public class SQLite3APIFactory implements NimrodAPIDatabaseFactory {
 						SchemaVersion.of(3, 0, 0),
 						SchemaVersion.of(4, 0, 0),
 						NimrodUtils.readEmbeddedFileAsString(SQLite3APIFactory.class, "db/upgrade/3.0.0_to_4.0.0.sql")
+				),
+				UpgradeStep.of(
+						SchemaVersion.of(4, 0, 0),
+						SchemaVersion.of(4, 1, 0),
+						NimrodUtils.readEmbeddedFileAsString(SQLite3APIFactory.class, "db/upgrade/4.0.0_to_4.1.0.sql")
 				)
 		);
 
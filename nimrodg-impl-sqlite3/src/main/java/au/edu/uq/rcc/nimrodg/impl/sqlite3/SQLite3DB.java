@@ -27,11 +27,13 @@ import au.edu.uq.rcc.nimrodg.api.MachinePair;
 import au.edu.uq.rcc.nimrodg.api.NimrodConfig;
 import au.edu.uq.rcc.nimrodg.api.NimrodException;
 import au.edu.uq.rcc.nimrodg.api.NimrodURI;
+import au.edu.uq.rcc.nimrodg.api.RunCounts;
 import au.edu.uq.rcc.nimrodg.api.events.ConfigChangeMasterEvent;
 import au.edu.uq.rcc.nimrodg.api.events.JobAddMasterEvent;
 import au.edu.uq.rcc.nimrodg.api.events.NimrodMasterEvent;
 import au.edu.uq.rcc.nimrodg.utils.NimrodUtils;
 import au.edu.uq.rcc.nimrodg.api.utils.run.CompiledRun;
+import au.edu.uq.rcc.nimrodg.impl.base.db.AttemptWriteBuffer;
 import au.edu.uq.rcc.nimrodg.impl.base.db.BrokenDBInvariantException;
 import au.edu.uq.rcc.nimrodg.impl.base.db.DBUtils;
 import au.edu.uq.rcc.nimrodg.impl.base.db.NimrodDBAPI;
@@ -58,6 +60,7 @@ import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.LongSummaryStatistics;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -88,6 +91,8 @@ public class SQLite3DB extends SQLUUUUU<NimrodException.DbError> implements Nimr
 	private final DBExperimentHelpers experimentHelpers;
 	private final DBResourceHelpers resourceHelpers;
 
+	private final AttemptWriteBuffer attemptWriteBuffer;
+
 	private final PreparedStatement qGetMasterMessages;
 	private final PreparedStatement qDeleteMasterMessages;
 	private final PreparedStatement qAddMasterMessage;
@@ -129,6 +134,8 @@ public class SQLite3DB extends SQLUUUUU<NimrodException.DbError> implements Nimr
 		this.experimentHelpers = new DBExperimentHelpers(conn, statements);
 		this.resourceHelpers = new DBResourceHelpers(conn, statements);
 
+		this.attemptWriteBuffer = new AttemptWriteBuffer();
+
 		this.qGetMasterMessages = prepareStatement("SELECT * FROM nimrod_master_message_storage ORDER BY ts ASC");
 		this.qDeleteMasterMessages = prepareStatement("DELETE FROM nimrod_master_message_storage");
 		this.qAddMasterMessage = prepareStatement("INSERT INTO nimrod_master_message_storage(operation, class, payload) VALUES(?, ?, ?)");
@@ -344,19 +351,29 @@ public class SQLite3DB extends SQLUUUUU<NimrodException.DbError> implements Nimr
 		return experimentHelpers.getJobStatus(job.base.id);
 	}
 
+	@Override
+	public synchronized RunCounts getRunCounts(TempExperiment.Impl exp) throws SQLException {
+		return experimentHelpers.getRunCounts(exp.base.id);
+	}
+
 	@Override
 	public synchronized List<TempJob.Impl> filterJobs(TempExperiment.Impl exp, EnumSet<JobAttempt.Status> status, long start, long limit) throws SQLException {
 		return experimentHelpers.filterJobs(exp.base.id, status, start, limit).stream().map(tj -> tj.create(exp)).collect(Collectors.toList());
 	}
 
+	@Override
+	public synchronized List<TempJob.Impl> fetchJobsAfter(TempExperiment.Impl exp, EnumSet<JobAttempt.Status> status, long after, int limit) throws SQLException {
+		return experimentHelpers.fetchJobsAfter(exp.base.id, status, after, limit).stream().map(tj -> tj.create(exp)).collect(Collectors.toList());
+	}
+
 	@Override
 	public synchronized List<TempJob.Impl> addJobs(TempExperiment.Impl exp, Collection<Map<String, String>> vars) throws SQLException {
 		List<TempJob.Impl> jobs = experimentHelpers.addJobs(exp.base.id, vars).stream().map(tj -> tj.create(exp)).collect(Collectors.toList());
 
-		if(exp.getState() != Experiment.State.STOPPED) {
-			for(TempJob.Impl j : jobs) {
-				addJobMessage(j.base.id, exp.base.id, j.base.jobIndex, j.base.created);
-			}
+		if(exp.getState() != Experiment.State.STOPPED && !jobs.isEmpty()) {
+			/* One message for the lot, the master will fetch them as needed. */
+			LongSummaryStatistics stats = jobs.stream().mapToLong(j -> j.base.jobIndex).summaryStatistics();
+			addJobMessage(exp.base.id, stats.getMin(), stats.getMax());
 		}
 		return jobs;
 	}
@@ -367,13 +384,13 @@ public class SQLite3DB extends SQLUUUUU<NimrodException.DbError> implements Nimr
 	}
 
 	@Override
-	public synchronized void startJobAttempt(TempJobAttempt.Impl att, UUID agentUuid) throws SQLException {
-		experimentHelpers.startJobAttempt(att.base.id, agentUuid);
+	public synchronized void startJobAttempt(TempJobAttempt.Impl att, UUID agentUuid, Instant time) throws SQLException {
+		experimentHelpers.startJobAttempt(att.base.id, agentUuid, time);
 	}
 
 	@Override
-	public synchronized void finishJobAttempt(TempJobAttempt.Impl att, boolean failed) throws SQLException {
-		experimentHelpers.finishJobAttempt(att.base.id, failed);
+	public synchronized void finishJobAttempt(TempJobAttempt.Impl att, boolean failed, Instant time) throws SQLException {
+		experimentHelpers.finishJobAttempt(att.base.id, failed, time);
 	}
 
 	@Override
@@ -418,6 +435,11 @@ public class SQLite3DB extends SQLUUUUU<NimrodException.DbError> implements Nimr
 		return experimentHelpers.addCommandResult(att.base.id, status, index, time, retval, message, errcode, stop).create();
 	}
 
+	@Override
+	public AttemptWriteBuffer getAttemptWriteBuffer() {
+		return attemptWriteBuffer;
+	}
+
 	@Override
 	public List<TempCommandResult.Impl> getCommandResultsByAttempt(Map<Long, TempJobAttempt.Impl> attempts) throws SQLException {
 		return experimentHelpers.getCommandResultsByAttempt(attempts.keySet()).stream().map(TempCommandResult::create).collect(Collectors.toList());
@@ -544,6 +566,11 @@ public class SQLite3DB extends SQLUUUUU<NimrodException.DbError> implements Nimr
 		resourceHelpers.updateAgent(agent);
 	}
 
+	@Override
+	public synchronized void updateAgents(Collection<AgentState> agents) throws SQLException {
+		resourceHelpers.updateAgents(agents);
+	}
+
 	@Override
 	public synchronized boolean addAgentPlatform(String platformString, Path path) throws SQLException {
 		return resourceHelpers.addAgentPlatform(platformString, path);
@@ -597,14 +624,13 @@ public class SQLite3DB extends SQLUUUUU<NimrodException.DbError> implements Nimr
 		qAddMasterMessage.executeUpdate();
 	}
 
-	private void addJobMessage(long jobId, long expId, long jobIndex, Instant created) throws SQLException {
+	private void addJobMessage(long expId, long firstIndex, long lastIndex) throws SQLException {
 		qAddMasterMessage.setString(1, "INSERT");
 		qAddMasterMessage.setString(2, "job");
 		qAddMasterMessage.setString(3, Json.createObjectBuilder()
-				.add("id", jobId)
 				.add("exp_id", expId)
-				.add("job_index", jobIndex)
-				.add("created", created.toEpochMilli() / 1000)
+				.add("first_index", firstIndex)
+				.add("last_index", lastIndex)
 				.build().toString());
 		qAddMasterMessage.executeUpdate();
 	}
@@ -625,8 +651,17 @@ public class SQLite3DB extends SQLUUUUU<NimrodException.DbError> implements Nimr
 					return null;
 				}
 
-				Optional<TempJob.Impl> job = getSingleJobT(payload.getInt("id"));
-				return job.map(impl -> new JobAddMasterEvent(exp.get(), impl)).orElse(null);
+				/* Older messages are per-job. */
+				if(!payload.containsKey("first_index")) {
+					long index = payload.getJsonNumber("job_index").longValue();
+					return new JobAddMasterEvent(exp.get(), index, index);
+				}
+
+				return new JobAddMasterEvent(
+						exp.get(),
+						payload.getJsonNumber("first_index").longValue(),
+						payload.getJsonNumber("last_index").longValue()
+				);
 			}
 		}
 
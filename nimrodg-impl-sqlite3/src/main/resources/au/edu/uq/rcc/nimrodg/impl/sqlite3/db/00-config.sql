@@ -108,7 +108,7 @@ CREATE TABLE nimrod_schema_version(
 );
 
 INSERT INTO nimrod_schema_version(major, minor, patch)
-VALUES (4, 0, 0);
+VALUES (4, 1, 0);
 
 --
 -- SQLite doesn't have stored procedures, so abuse a trigger to compare a schema version.
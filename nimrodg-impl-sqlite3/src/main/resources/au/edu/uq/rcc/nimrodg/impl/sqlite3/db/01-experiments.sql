@@ -121,22 +121,34 @@ CREATE TABLE nimrod_job_attempts(
     CHECK(finish_time >= start_time)
 );
 
+--
+-- Job statuses are derived from their attempts, make that a lookup instead of a scan.
+--
+DROP INDEX IF EXISTS i_job_attempts_status;
+CREATE INDEX i_job_attempts_status ON nimrod_job_attempts(job_id, status);
+
+--
+-- Times given by the update are when it happened, which may be before it was written.
+--
 DROP TRIGGER IF EXISTS t_set_attempt_start_time;
 CREATE TRIGGER t_set_attempt_start_time AFTER UPDATE ON nimrod_job_attempts FOR EACH ROW WHEN OLD.status = 'NOT_RUN' AND NEW.status = 'RUNNING'
 BEGIN
-    UPDATE nimrod_job_attempts SET start_time = strftime('%s', 'now') WHERE id = NEW.id;
+    UPDATE nimrod_job_attempts SET start_time = COALESCE(NEW.start_time, strftime('%s', 'now')) WHERE id = NEW.id;
 END;
 
 DROP TRIGGER IF EXISTS t_set_attempt_finish_time;
 CREATE TRIGGER t_set_attempt_finish_time AFTER UPDATE ON nimrod_job_attempts FOR EACH ROW WHEN OLD.status = 'RUNNING' AND NEW.status IN ('COMPLETED', 'FAILED')
 BEGIN
-    UPDATE nimrod_job_attempts SET finish_time = strftime('%s', 'now') WHERE id = NEW.id;
+    UPDATE nimrod_job_attempts SET finish_time = COALESCE(NEW.finish_time, strftime('%s', 'now')) WHERE id = NEW.id;
 END;
 
 DROP TRIGGER IF EXISTS t_set_attempt_both_times;
 CREATE TRIGGER t_set_attempt_both_times AFTER UPDATE ON nimrod_job_attempts FOR EACH ROW WHEN OLD.status = 'NOT_RUN' AND NEW.status IN ('COMPLETED', 'FAILED')
 BEGIN
-    UPDATE nimrod_job_attempts SET start_time = strftime('%s', 'now'), finish_time = strftime('%s', 'now') WHERE id = NEW.id;
+    UPDATE nimrod_job_attempts SET
+        start_time = COALESCE(NEW.start_time, NEW.finish_time, strftime('%s', 'now')),
+        finish_time = COALESCE(NEW.finish_time, strftime('%s', 'now'))
+    WHERE id = NEW.id;
 END;
 
 DROP TABLE IF EXISTS nimrod_command_results;
@@ -0,0 +1,45 @@
+.bail on
+
+BEGIN TRANSACTION;
+
+--
+-- Check our schema is the correct version.
+--
+UPDATE nimrod_schema_version SET major = 4, minor = 0, patch = 0;
+
+--
+-- Job statuses are derived from their attempts, make that a lookup instead of a scan.
+--
+CREATE INDEX i_job_attempts_status ON nimrod_job_attempts(job_id, status);
+
+--
+-- Times given by the update are when it happened, which may be before it was written.
+--
+DROP TRIGGER IF EXISTS t_set_attempt_start_time;
+CREATE TRIGGER t_set_attempt_start_time AFTER UPDATE ON nimrod_job_attempts FOR EACH ROW WHEN OLD.status = 'NOT_RUN' AND NEW.status = 'RUNNING'
+BEGIN
+    UPDATE nimrod_job_attempts SET start_time = COALESCE(NEW.start_time, strftime('%s', 'now')) WHERE id = NEW.id;
+END;
+
+DROP TRIGGER IF EXISTS t_set_attempt_finish_time;
+CREATE TRIGGER t_set_attempt_finish_time AFTER UPDATE ON nimrod_job_attempts FOR EACH ROW WHEN OLD.status = 'RUNNING' AND NEW.status IN ('COMPLETED', 'FAILED')
+BEGIN
+    UPDATE nimrod_job_attempts SET finish_time = COALESCE(NEW.finish_time, strftime('%s', 'now')) WHERE id = NEW.id;
+END;
+
+DROP TRIGGER IF EXISTS t_set_attempt_both_times;
+CREATE TRIGGER t_set_attempt_both_times AFTER UPDATE ON nimrod_job_attempts FOR EACH ROW WHEN OLD.status = 'NOT_RUN' AND NEW.status IN ('COMPLETED', 'FAILED')
+BEGIN
+    UPDATE nimrod_job_attempts SET
+        start_time = COALESCE(NEW.start_time, NEW.finish_time, strftime('%s', 'now')),
+        finish_time = COALESCE(NEW.finish_time, strftime('%s', 'now'))
+    WHERE id = NEW.id;
+END;
+
+--
+-- All changes done, now actually update the version.
+--
+DELETE FROM nimrod_schema_version;
+INSERT INTO nimrod_schema_version(major, minor, patch) VALUES(4, 1, 0);
+
+COMMIT;
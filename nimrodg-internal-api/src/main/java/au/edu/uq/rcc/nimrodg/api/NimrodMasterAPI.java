@@ -69,6 +69,17 @@ public interface NimrodMasterAPI extends NimrodAPI {
 
 	void updateAgent(AgentState agent);
 
+	/**
+	 * Update multiple agents at once.
+	 *
+	 * Implementations should do this in a single transaction.
+	 *
+	 * @param agents The agents to update.
+	 */
+	default void updateAgents(Collection<AgentState> agents) {
+		agents.forEach(this::updateAgent);
+	}
+
 	void updateExperimentState(Experiment exp, Experiment.State state);
 
 	List<JobAttempt> createJobAttempts(Collection<Job> jobs);
@@ -90,9 +101,46 @@ public interface NimrodMasterAPI extends NimrodAPI {
 	 * @param message A human-readable error message.
 	 * @param errcode The error code.
 	 * @param stop Has execution stopped?
-	 * @return
+	 * @return The command result, or null if writes are deferred.
+	 * @see #setDeferredWrites(boolean)
 	 */
 	CommandResult addCommandResult(JobAttempt att, CommandResult.CommandResultStatus status, long index, float time, int retval, String message, int errcode, boolean stop);
 
 	Collection<NimrodMasterEvent> pollMasterEvents();
+
+	/**
+	 * Set a callback to be invoked when new master events may be available.
+	 *
+	 * The callback may be invoked from any thread, and should do little more than
+	 * wake the caller of {@link #pollMasterEvents()}. Implementations that can't
+	 * deliver notifications may ignore this, so {@link #pollMasterEvents()} must
+	 * still be called periodically.
+	 *
+	 * @param listener The callback. If null, any existing callback is removed.
+	 */
+	default void setMasterEventListener(Runnable listener) {
+
+	}
+
+	/**
+	 * Enable or disable deferred writes.
+	 *
+	 * Whilst enabled, {@link #startJobAttempt(JobAttempt, UUID)}, {@link #finishJobAttempt(JobAttempt, boolean)}
+	 * and {@link #addCommandResult(JobAttempt, CommandResult.CommandResultStatus, long, float, int, String, int, boolean)}
+	 * are queued and written in a single transaction by {@link #flush()}. Reads through this API see queued writes.
+	 *
+	 * Disabling deferred writes flushes any queued writes. Implementations may ignore this.
+	 *
+	 * @param enabled Should writes be deferred?
+	 */
+	default void setDeferredWrites(boolean enabled) {
+
+	}
+
+	/**
+	 * Write any deferred writes.
+	 */
+	default void flush() {
+
+	}
 }
@@ -20,16 +20,28 @@
 package au.edu.uq.rcc.nimrodg.api.events;
 
 import au.edu.uq.rcc.nimrodg.api.Experiment;
-import au.edu.uq.rcc.nimrodg.api.Job;
 
+/**
+ * Jobs have been added to an experiment.
+ *
+ * A single event covers every job added by a statement, as a range of job indices.
+ */
 public class JobAddMasterEvent implements NimrodMasterEvent {
 
 	public final Experiment exp;
-	public final Job job;
+	/* The index of the first job added, inclusive. */
+	public final long firstIndex;
+	/* The index of the last job added, inclusive. */
+	public final long lastIndex;
+
+	public JobAddMasterEvent(Experiment exp, long firstIndex, long lastIndex) {
+		if(firstIndex > lastIndex) {
+			throw new IllegalArgumentException();
+		}
 
-	public JobAddMasterEvent(Experiment exp, Job job) {
 		this.exp = exp;
-		this.job = job;
+		this.firstIndex = firstIndex;
+		this.lastIndex = lastIndex;
 	}
 
 	@Override
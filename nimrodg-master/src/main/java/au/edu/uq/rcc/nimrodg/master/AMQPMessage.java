@@ -1,5 +1,6 @@
 package au.edu.uq.rcc.nimrodg.master;
 
+import au.edu.uq.rcc.nimrodg.agent.MessageBackend;
 import au.edu.uq.rcc.nimrodg.agent.messages.AgentMessage;
 import au.edu.uq.rcc.nimrodg.master.sig.AuthHeader;
 import com.rabbitmq.client.AMQP;
@@ -11,7 +12,10 @@ import java.util.Optional;
 import java.util.UUID;
 
 public class AMQPMessage {
+    /* The body as sent, this is what's signed. */
     public final byte[] body;
+    /* The body after undoing any content-encoding. */
+    public final byte[] payload;
     public final AMQP.BasicProperties basicProperties;
     public final UUID messageId;
     public final ContentType contentType;
@@ -19,9 +23,22 @@ public class AMQPMessage {
     public final Optional<Instant> sentAt;
     public final AuthHeader authHeader;
     public final AgentMessage message;
+    /* The backend the message was encoded with, null if unknown. */
+    public final MessageBackend backend;
+    /* If the sender accepts gzip'd replies. */
+    public final boolean acceptsGzip;
 
     public AMQPMessage(byte[] body, AMQP.BasicProperties basicProperties, UUID messageId, ContentType contentType, Charset charset, Optional<Instant> sentAt, AuthHeader authHeader, AgentMessage message) {
+        this(body, body, basicProperties, messageId, contentType, charset, sentAt, authHeader, message);
+    }
+
+    public AMQPMessage(byte[] body, byte[] payload, AMQP.BasicProperties basicProperties, UUID messageId, ContentType contentType, Charset charset, Optional<Instant> sentAt, AuthHeader authHeader, AgentMessage message) {
+        this(body, payload, basicProperties, messageId, contentType, charset, sentAt, authHeader, message, null, false);
+    }
+
+    public AMQPMessage(byte[] body, byte[] payload, AMQP.BasicProperties basicProperties, UUID messageId, ContentType contentType, Charset charset, Optional<Instant> sentAt, AuthHeader authHeader, AgentMessage message, MessageBackend backend, boolean acceptsGzip) {
         this.body = body;
+        this.payload = payload;
         this.basicProperties = basicProperties;
         this.messageId = messageId;
         this.contentType = contentType;
@@ -29,5 +46,7 @@ public class AMQPMessage {
         this.sentAt = sentAt;
         this.authHeader = authHeader;
         this.message = message;
+        this.backend = backend;
+        this.acceptsGzip = acceptsGzip;
     }
 }
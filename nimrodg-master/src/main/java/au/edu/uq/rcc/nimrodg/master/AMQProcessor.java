@@ -3,6 +3,7 @@ package au.edu.uq.rcc.nimrodg.master;
 import au.edu.uq.rcc.nimrodg.agent.messages.AgentMessage;
 
 import java.io.IOException;
+import java.util.Map;
 
 public interface AMQProcessor extends AutoCloseable {
 
@@ -15,4 +16,46 @@ public interface AMQProcessor extends AutoCloseable {
 	AMQPMessage sendMessage(String key, String accessKey, String secretKey, AgentMessage msg) throws IOException;
 
 	void opMessage(MessageQueueListener.MessageOperation op, long tag);
+
+	/**
+	 * Perform operations on a batch of messages.
+	 *
+	 * Implementations may coalesce these, so it is preferable to calling {@link #opMessage(MessageQueueListener.MessageOperation, long)}
+	 * for each message.
+	 *
+	 * @param ops The operations, keyed by delivery tag.
+	 */
+	default void opMessages(Map<Long, MessageQueueListener.MessageOperation> ops) {
+		ops.forEach((tag, op) -> opMessage(op, tag));
+	}
+
+	/**
+	 * Remember what a peer's message says about how to talk to it, e.g. its encoding.
+	 *
+	 * Only call this once the message has been authenticated, otherwise anyone could
+	 * change what the peer is sent.
+	 *
+	 * @param msg The authenticated message.
+	 */
+	default void updatePeer(AMQPMessage msg) {
+
+	}
+
+	/**
+	 * Get the most deliveries that may be unsettled at once.
+	 *
+	 * @return The prefetch limit. 0 is unlimited.
+	 */
+	default int getPrefetch() {
+		return 0;
+	}
+
+	/**
+	 * Pause or resume the delivery of agent messages.
+	 *
+	 * Deliveries already in flight may still arrive whilst paused.
+	 *
+	 * @param paused If delivery should be paused.
+	 */
+	void setPaused(boolean paused);
 }
@@ -22,6 +22,7 @@ package au.edu.uq.rcc.nimrodg.master;
 import au.edu.uq.rcc.nimrodg.agent.messages.AgentMessage;
 import au.edu.uq.rcc.nimrodg.agent.MessageBackend;
 import au.edu.uq.rcc.nimrodg.shell.ShellUtils;
+import au.edu.uq.rcc.nimrodg.agent.messages.cbor.CborBackend;
 import au.edu.uq.rcc.nimrodg.agent.messages.json.JsonBackend;
 import au.edu.uq.rcc.nimrodg.master.sig.AuthHeader;
 import au.edu.uq.rcc.nimrodg.master.sig.SigUtils;
@@ -29,12 +30,10 @@ import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.AlreadyClosedException;
 import com.rabbitmq.client.BuiltinExchangeType;
 import com.rabbitmq.client.Channel;
-import com.rabbitmq.client.ConfirmListener;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 import com.rabbitmq.client.DefaultConsumer;
 import com.rabbitmq.client.Envelope;
-import com.rabbitmq.client.ReturnListener;
 import com.rabbitmq.client.impl.ForgivingExceptionHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,15 +56,19 @@ import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.Date;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import javax.json.Json;
 import javax.mail.internet.ContentType;
-import javax.mail.internet.ParseException;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManagerFactory;
@@ -74,6 +77,20 @@ public class AMQProcessorImpl implements AMQProcessor {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(Master.class);
 
+	/* Maximum number of unacknowledged deliveries. */
+	public static final int DEFAULT_PREFETCH = 1000;
+	/* Maximum number of published messages awaiting confirmation. */
+	public static final int DEFAULT_MAX_IN_FLIGHT = 1000;
+	/* Number of channels used for publishing. */
+	public static final int DEFAULT_PUBLISH_CHANNELS = 4;
+	/* Payloads at least this large are compressed, if the peer accepts it. */
+	public static final int DEFAULT_COMPRESS_THRESHOLD = 4096;
+	/* Sent with every message, tells the peer what we can decode. */
+	private static final String ACCEPT_ENCODING = PayloadCodec.GZIP + ", " + PayloadCodec.IDENTITY;
+	static final String MASTER_USER_AGENT = "NimrodGMaster/X.X.X"; /* FIXME: */
+	/* How long sendMessage() will wait for room in the confirm window. */
+	private static final long CONFIRM_TIMEOUT_MS = 30000;
+
 	private final String m_User;
 	private final String m_SigningAlgorithm;
 	private final MessageQueueListener m_Listener;
@@ -83,15 +100,95 @@ public class AMQProcessorImpl implements AMQProcessor {
 	private final AMQP.Exchange.DeclareOk m_DirectExchangeOk;
 	private final AMQP.Queue.DeclareOk m_QueueOk;
 	private final _Consumer m_Consumer;
+	/* The consumer tag, null whilst paused. Guarded by m_Channel. */
+	private String m_ConsumerTag;
+	/* Delivery tags passed to the listener and not yet settled. Guarded by m_Channel. */
+	private final TreeSet<Long> m_Outstanding;
+	private final PublisherPool<AMQPMessage> m_Publishers;
+	private final int m_CompressThreshold;
+	private final int m_Prefetch;
 
 	private static final MessageBackend DEFAULT_MESSAGE_BACKEND = JsonBackend.INSTANCE;
 
-	private static final Map<String, MessageBackend> MESSAGE_BACKENDS = Map.of(
-			DEFAULT_MESSAGE_BACKEND.getContentType().getBaseType(), DEFAULT_MESSAGE_BACKEND
+	static final Map<String, MessageBackend> MESSAGE_BACKENDS = Map.of(
+			DEFAULT_MESSAGE_BACKEND.getContentType().getBaseType(), DEFAULT_MESSAGE_BACKEND,
+			CborBackend.INSTANCE.getContentType().getBaseType(), CborBackend.INSTANCE
 	);
 
+	/*
+	 * Peers that last spoke to us with something other than the default backend.
+	 * Replies are sent using the same one.
+	 */
+	private final ConcurrentHashMap<UUID, MessageBackend> m_PeerBackends;
+
+	/* Peers that have told us they accept gzip'd payloads. */
+	private final Set<UUID> m_GzipPeers;
+
+	/**
+	 * Tuning for the broker connection.
+	 */
+	public static final class Settings {
+		public static final Settings DEFAULT = new Builder().build();
+
+		/* Maximum number of unacknowledged deliveries, 0 is unlimited. */
+		public final int prefetch;
+		/* Maximum number of published messages awaiting confirmation, 0 is unlimited. */
+		public final int maxInFlight;
+		/* Number of channels used for publishing. */
+		public final int publishChannels;
+		/* Compress payloads at least this large, if the peer accepts it. 0 disables compression. */
+		public final int compressThreshold;
+
+		private Settings(Builder b) {
+			this.prefetch = b.prefetch;
+			this.maxInFlight = b.maxInFlight;
+			this.publishChannels = b.publishChannels;
+			this.compressThreshold = b.compressThreshold;
+		}
+
+		public static class Builder {
+			private int prefetch = DEFAULT_PREFETCH;
+			private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+			private int publishChannels = DEFAULT_PUBLISH_CHANNELS;
+			private int compressThreshold = DEFAULT_COMPRESS_THRESHOLD;
+
+			public Builder prefetch(int prefetch) {
+				this.prefetch = prefetch;
+				return this;
+			}
+
+			public Builder maxInFlight(int maxInFlight) {
+				this.maxInFlight = maxInFlight;
+				return this;
+			}
+
+			public Builder publishChannels(int publishChannels) {
+				this.publishChannels = publishChannels;
+				return this;
+			}
+
+			public Builder compressThreshold(int compressThreshold) {
+				this.compressThreshold = compressThreshold;
+				return this;
+			}
+
+			public Settings build() {
+				return new Settings(this);
+			}
+		}
+	}
+
 	public AMQProcessorImpl(URI uri, Certificate[] certs, String tlsProtocol, String routingKey, boolean noVerifyPeer, boolean noVerifyHost, MessageQueueListener listener, ExecutorService execs, String signingAlgorithm) throws IOException, TimeoutException, URISyntaxException, GeneralSecurityException {
+		this(uri, certs, tlsProtocol, routingKey, noVerifyPeer, noVerifyHost, listener, execs, signingAlgorithm, Settings.DEFAULT);
+	}
+
+	public AMQProcessorImpl(URI uri, Certificate[] certs, String tlsProtocol, String routingKey, boolean noVerifyPeer, boolean noVerifyHost, MessageQueueListener listener, ExecutorService execs, String signingAlgorithm, Settings settings) throws IOException, TimeoutException, URISyntaxException, GeneralSecurityException {
 		m_Listener = listener;
+		m_Outstanding = new TreeSet<>();
+		m_PeerBackends = new ConcurrentHashMap<>();
+		m_GzipPeers = ConcurrentHashMap.newKeySet();
+		m_CompressThreshold = Math.max(settings.compressThreshold, 0);
+		m_Prefetch = Math.max(settings.prefetch, 0);
 		ConnectionFactory cf = new ConnectionFactory();
 
 		String scheme = uri.getScheme();
@@ -155,24 +252,38 @@ public class AMQProcessorImpl implements AMQProcessor {
 
 		m_Connection = cf.newConnection();
 
+		/* The consuming channel. Deliveries must be acked on the channel they came in on. */
 		m_Channel = m_Connection.createChannel();
 
-		m_Channel.addConfirmListener(new _ConfirmListener());
-		m_Channel.addReturnListener(new _ReturnListener());
+		List<Channel> pubChannels = new ArrayList<>();
+		for(int i = 0; i < Math.max(settings.publishChannels, 1); ++i) {
+			pubChannels.add(m_Connection.createChannel());
+		}
+
+		m_Publishers = new PublisherPool<>(
+				pubChannels,
+				Math.max(settings.maxInFlight, 0),
+				TimeUnit.MILLISECONDS.toNanos(CONFIRM_TIMEOUT_MS),
+				this::reportUndeliverable
+		);
 
 		m_DirectName = "amq.direct";
 		m_DirectExchangeOk = m_Channel.exchangeDeclare(m_DirectName, BuiltinExchangeType.DIRECT, true, false, false, null);
-		m_QueueOk = m_Channel.queueDeclare("", true, true, true, null);
+		/* Not auto-delete, so pausing can cancel the consumer. It's exclusive, so it still goes with the connection. */
+		m_QueueOk = m_Channel.queueDeclare("", true, true, false, null);
 
 		/* No agents yet, don't bind anything to the direct exchange */
 		m_Channel.queueBind(m_QueueOk.getQueue(), m_DirectName, routingKey);
 
+		m_Channel.basicQos(m_Prefetch);
+
 		m_Consumer = new _Consumer(m_Channel);
-		m_Channel.basicConsume(m_QueueOk.getQueue(), false, m_Consumer);
+		m_ConsumerTag = m_Channel.basicConsume(m_QueueOk.getQueue(), false, m_Consumer);
 	}
 
 	@Override
 	public void close() throws IOException {
+		m_Publishers.close();
 		try(m_Connection) {
 			//m_Channel.close();
 			/* abort() will wait for the close to finish. */
@@ -199,37 +310,76 @@ public class AMQProcessorImpl implements AMQProcessor {
 
 	@Override
 	public AMQPMessage sendMessage(String key, String accessKey, String secretKey, AgentMessage msg) throws IOException {
+		MessageBackend mb = m_PeerBackends.getOrDefault(msg.getAgentUUID(), DEFAULT_MESSAGE_BACKEND);
+		int compressThreshold = m_GzipPeers.contains(msg.getAgentUUID()) ? m_CompressThreshold : 0;
+
+		AMQPMessage amsg = encodeMessage(mb, m_User, m_SigningAlgorithm, accessKey, secretKey, 0, compressThreshold, MASTER_USER_AGENT, msg);
+
+		/* Messages may be sent from multiple threads, the pool handles this. */
+		m_Publishers.publish(m_DirectName, key, amsg.basicProperties, amsg.body, amsg);
+		return amsg;
+	}
+
+	/**
+	 * Serialise and sign a message, ready to be sent.
+	 *
+	 * @param mb The message backend.
+	 * @param user The AMQP user id.
+	 * @param algorithm The signing algorithm.
+	 * @param accessKey The access key.
+	 * @param secretKey The secret key.
+	 * @param nonce The nonce.
+	 * @param compressThreshold Compress payloads at least this large. 0 disables compression.
+	 * @param userAgent The value of the User-Agent header.
+	 * @param msg The message.
+	 * @return The message, as it would be sent.
+	 * @throws IOException If serialisation or signing fails.
+	 */
+	static AMQPMessage encodeMessage(MessageBackend mb, String user, String algorithm, String accessKey, String secretKey, long nonce, int compressThreshold, String userAgent, AgentMessage msg) throws IOException {
 		Charset cs = StandardCharsets.UTF_8;
-		byte[] bytes = DEFAULT_MESSAGE_BACKEND.toBytes(msg, cs);
-		if(bytes == null) {
+		byte[] payload = mb.toBytes(msg, cs);
+		if(payload == null) {
 			throw new IOException("Message serialisation failure");
 		}
 
-		ContentType ct = DEFAULT_MESSAGE_BACKEND.getContentType();
-		ct.setParameter("charset", cs.name());
+		byte[] bytes = payload;
+		String encoding = PayloadCodec.IDENTITY;
+		if(compressThreshold > 0 && payload.length >= compressThreshold) {
+			byte[] gz = PayloadCodec.gzip(payload);
+			if(gz != null) {
+				bytes = gz;
+				encoding = PayloadCodec.GZIP;
+			}
+		}
+
+		ContentType ct = mb.getContentType();
+		if(mb.usesCharset()) {
+			ct.setParameter("charset", cs.name());
+		}
 
 		UUID messageId = UUID.randomUUID();
 		Instant sendtime = Instant.now();
 		Instant msgtime = msg.getTimestamp();
 
 		HashMap<String, Object> headers = new HashMap<>();
-		headers.put("User-Agent", "NimrodGMaster/X.X.X"); /* FIXME: */
+		headers.put("User-Agent", userAgent);
 		headers.put("X-NimrodG-Sent-At", DateTimeFormatter.ISO_INSTANT.format(sendtime));
+		headers.put("Accept-Encoding", ACCEPT_ENCODING);
 
-		AMQP.BasicProperties props = buildBasicProperties(msg, messageId, ct, msgtime, SigUtils.DEFAULT_APPID, headers);
+		AMQP.BasicProperties props = buildBasicProperties(user, msg, messageId, ct, encoding, msgtime, SigUtils.DEFAULT_APPID, headers);
 		AuthHeader hdr;
 		try {
-			hdr = SigUtils.buildAuthHeader(m_SigningAlgorithm, accessKey, secretKey, msgtime, 0, bytes, props);
+			/* Sign what's actually sent, so it's checked against the body as received, encoding and all. */
+			hdr = SigUtils.buildAuthHeader(algorithm, accessKey, secretKey, msgtime, nonce, bytes, props);
 			headers.put("Authorization", hdr.toString());
-			props = buildBasicProperties(msg, messageId, ct, msgtime, SigUtils.DEFAULT_APPID, headers);
+			props = buildBasicProperties(user, msg, messageId, ct, encoding, msgtime, SigUtils.DEFAULT_APPID, headers);
 		} catch(NoSuchAlgorithmException e) {
 			throw new IOException(e);
 		}
 
-		m_Channel.basicPublish(m_DirectName, key, true, props, bytes);
-
 		return new AMQPMessage(
 				bytes,
+				payload,
 				props,
 				messageId,
 				ct,
@@ -240,21 +390,90 @@ public class AMQProcessorImpl implements AMQProcessor {
 		);
 	}
 
-	private AMQP.BasicProperties buildBasicProperties(AgentMessage msg, UUID messageId, ContentType ct, Instant timestamp, String appid, Map<String, Object> headers) {
+	/**
+	 * The receiving end of {@link #encodeMessage}. Undo any content-encoding and deserialise a message.
+	 *
+	 * The signature isn't verified, that's up to the listener.
+	 *
+	 * @param algorithm The signing algorithm the message must use.
+	 * @param props The message properties.
+	 * @param body The message body, as received.
+	 * @return The message, or null if it's malformed or not signed using {@code algorithm}.
+	 */
+	static AMQPMessage decodeMessage(String algorithm, AMQP.BasicProperties props, byte[] body) {
+		if(props.getMessageId() == null) {
+			return null;
+		}
+
+		UUID uuid;
+		try {
+			uuid = UUID.fromString(props.getMessageId());
+		} catch(IllegalArgumentException e) {
+			return null;
+		}
+
+		ContentFormat format = ContentFormat.resolve(props.getContentType());
+		if(format == null) {
+			return null;
+		}
+
+		AuthHeader hdr = getAuthHeader(props);
+		if(hdr == null) {
+			return null;
+		}
+
+		/* Make sure the agents are using the same algo as us. */
+		if(!Objects.equals(algorithm, hdr.algorithm)) {
+			return null;
+		}
+
+		/* The signature covers the encoded body, it's checked later. This is bounded, so it's safe to do first. */
+		byte[] payload;
+		try {
+			payload = PayloadCodec.decode(props.getContentEncoding(), body, PayloadCodec.MAX_DECODED_SIZE);
+		} catch(IOException e) {
+			return null;
+		}
+
+		AgentMessage am = payload == null ? null : format.backend.fromBytes(payload, format.charset);
+		if(am == null) {
+			return null;
+		}
+
+		Optional<Instant> sentAt = Optional.empty();
+		String _sentAt = getHeader(props, "X-NimrodG-Sent-At");
+		if(_sentAt != null) {
+			try {
+				sentAt = Optional.of(Instant.parse(_sentAt));
+			} catch(DateTimeParseException e) {
+				/* nop */
+			}
+		}
+
+		boolean gzip = PayloadCodec.acceptsGzip(props.getHeaders() == null ? null : props.getHeaders().get("Accept-Encoding"));
+		return new AMQPMessage(body, payload, props, uuid, format.contentType, format.charset, sentAt, hdr, am, format.backend, gzip);
+	}
+
+	private void reportUndeliverable(AMQPMessage msg, String reason) {
+		LOGGER.warn("Message {} ({}) to agent {} was not delivered: {}", msg.messageId, msg.message.getType().typeString, msg.message.getAgentUUID(), reason);
+		m_Listener.onMessageUndeliverable(msg, reason);
+	}
+
+	private static AMQP.BasicProperties buildBasicProperties(String user, AgentMessage msg, UUID messageId, ContentType ct, String encoding, Instant timestamp, String appid, Map<String, Object> headers) {
 		return new AMQP.BasicProperties.Builder()
 				.deliveryMode(2)
 				.contentType(ct.toString())
-				.contentEncoding("identity")
+				.contentEncoding(encoding)
 				.type(msg.getType().typeString)
 				.messageId(messageId.toString())
 				.timestamp(Date.from(timestamp))
-				.userId(m_User)
+				.userId(user)
 				.appId(appid)
 				.headers(headers)
 				.build();
 	}
 
-	private Charset resolveCharset(String name) {
+	static Charset resolveCharset(String name) {
 		/* Following HTTP/1.1 here: https://tools.ietf.org/html/rfc2616 section 3.4.1*/
 		if(name == null) {
 			return StandardCharsets.ISO_8859_1;
@@ -267,7 +486,7 @@ public class AMQProcessorImpl implements AMQProcessor {
 		}
 	}
 
-	private AuthHeader getAuthHeader(AMQP.BasicProperties props) {
+	static AuthHeader getAuthHeader(AMQP.BasicProperties props) {
 		Map<String, Object> headers = props.getHeaders();
 		if(headers == null) {
 			/* No headers. */
@@ -304,103 +523,112 @@ public class AMQProcessorImpl implements AMQProcessor {
 			return;
 		}
 
-		if(properties.getMessageId() == null) {
-			opMessage(MessageQueueListener.MessageOperation.Reject, tag);
-			return;
-		}
-
-		UUID uuid;
-
-		try {
-			uuid = UUID.fromString(properties.getMessageId());
-		} catch(IllegalArgumentException e) {
+		AMQPMessage amsg = decodeMessage(m_SigningAlgorithm, properties, body);
+		if(amsg == null) {
 			opMessage(MessageQueueListener.MessageOperation.Reject, tag);
 			return;
 		}
 
-		if(properties.getContentType() == null) {
-			opMessage(MessageQueueListener.MessageOperation.Reject, tag);
-			return;
+		/* Do this first, the listener may settle it before we return. */
+		synchronized(m_Channel) {
+			m_Outstanding.add(tag);
 		}
 
-		ContentType contentType;
+		Optional<MessageQueueListener.MessageOperation> op;
 		try {
-			contentType = new ContentType(properties.getContentType());
-		} catch(ParseException e) {
-			opMessage(MessageQueueListener.MessageOperation.Reject, tag);
-			return;
+			op = m_Listener.processAgentMessage(tag, amsg);
+		} catch(IllegalStateException e) {
+			op = Optional.of(MessageQueueListener.MessageOperation.Ack);
 		}
 
-		MessageBackend mb = MESSAGE_BACKENDS.get(contentType.getBaseType());
-		if(mb == null) {
-			opMessage(MessageQueueListener.MessageOperation.Reject, tag);
-			return;
-		}
+		op.ifPresent(mop -> opMessage(mop, tag));
+	}
 
-		Charset charset = resolveCharset(contentType.getParameter("charset"));
+	@Override
+	public void updatePeer(AMQPMessage msg) {
+		UUID peer = msg.message.getAgentUUID();
 
-		if(charset == null) {
-			opMessage(MessageQueueListener.MessageOperation.Reject, tag);
+		if(msg.message.getType() == AgentMessage.Type.Shutdown) {
+			m_PeerBackends.remove(peer);
+			m_GzipPeers.remove(peer);
 			return;
 		}
 
-		AuthHeader hdr = getAuthHeader(properties);
-		if(hdr == null) {
-			opMessage(MessageQueueListener.MessageOperation.Reject, tag);
-			return;
+		if(msg.backend == null || msg.backend == DEFAULT_MESSAGE_BACKEND) {
+			m_PeerBackends.remove(peer);
+		} else {
+			m_PeerBackends.put(peer, msg.backend);
 		}
 
-		/* Make sure the agents are using the same algo as us. */
-		if(!Objects.equals(m_SigningAlgorithm, hdr.algorithm)) {
-			opMessage(MessageQueueListener.MessageOperation.Reject, tag);
-			return;
+		if(msg.acceptsGzip) {
+			m_GzipPeers.add(peer);
+		} else {
+			m_GzipPeers.remove(peer);
 		}
+	}
 
-		AgentMessage am = mb.fromBytes(body, charset);
-		if(am == null) {
-			throw new IOException("Message deserialisation failed");
-		}
+	@Override
+	public int getPrefetch() {
+		return m_Prefetch;
+	}
 
-		Optional<Instant> sentAt = Optional.empty();
-		String _sentAt = getHeader(properties, "X-NimrodG-Sent-At");
-		if(_sentAt != null) {
+	@Override
+	public void setPaused(boolean paused) {
+		/*
+		 * Changing the QoS doesn't affect a running consumer, the broker fixes its prefetch when
+		 * it starts. Cancel it instead, and start a new one to resume. Unacknowledged deliveries
+		 * are kept, and can still be settled whilst paused.
+		 */
+		synchronized(m_Channel) {
 			try {
-				sentAt = Optional.of(Instant.parse(_sentAt));
-			} catch(DateTimeParseException e) {
-				/* nop */
+				if(paused && m_ConsumerTag != null) {
+					m_Channel.basicCancel(m_ConsumerTag);
+					m_ConsumerTag = null;
+				} else if(!paused && m_ConsumerTag == null) {
+					m_ConsumerTag = m_Channel.basicConsume(m_QueueOk.getQueue(), false, m_Consumer);
+				}
+			} catch(IOException e) {
+				LOGGER.error("Unable to {} consumption", paused ? "pause" : "resume", e);
 			}
 		}
+	}
 
-		AMQPMessage amsg = new AMQPMessage(body, properties, uuid, contentType, charset, sentAt, hdr, am);
-
-		Optional<MessageQueueListener.MessageOperation> op;
-		try {
-			op = m_Listener.processAgentMessage(tag, amsg);
-		} catch(IllegalStateException e) {
-			op = Optional.of(MessageQueueListener.MessageOperation.Ack);
+	@Override
+	public void opMessage(MessageQueueListener.MessageOperation op, long tag) {
+		synchronized(m_Channel) {
+			m_Outstanding.remove(tag);
+			doOpMessage(op, tag, false);
 		}
-
-		op.ifPresent(mop -> opMessage(mop, tag));
 	}
 
 	@Override
-	public void opMessage(MessageQueueListener.MessageOperation op, long tag) {
+	public void opMessages(Map<Long, MessageQueueListener.MessageOperation> ops) {
+		if(ops.isEmpty()) {
+			return;
+		}
+
 		synchronized(m_Channel) {
-			try {
-				switch(op) {
-					case Ack:
-						m_Channel.basicAck(tag, false);
-						break;
-					case Reject:
-						m_Channel.basicReject(tag, false);
-						break;
-					case RejectAndRequeue:
-						m_Channel.basicReject(tag, true);
-						break;
-				}
-			} catch(IOException e) {
-				LOGGER.error("Unable to {} message, delivery tag = {}", op, tag, e);
+			m_Outstanding.removeAll(ops.keySet());
+			long floor = m_Outstanding.isEmpty() ? Long.MAX_VALUE : m_Outstanding.first();
+			AckCoalescer.coalesce(ops, floor).forEach(st -> doOpMessage(st.op, st.tag, st.multiple));
+		}
+	}
+
+	private void doOpMessage(MessageQueueListener.MessageOperation op, long tag, boolean multiple) {
+		try {
+			switch(op) {
+				case Ack:
+					m_Channel.basicAck(tag, multiple);
+					break;
+				case Reject:
+					m_Channel.basicReject(tag, false);
+					break;
+				case RejectAndRequeue:
+					m_Channel.basicReject(tag, true);
+					break;
 			}
+		} catch(IOException e) {
+			LOGGER.error("Unable to {} message, delivery tag = {}", op, tag, e);
 		}
 	}
 
@@ -415,33 +643,4 @@ public class AMQProcessorImpl implements AMQProcessor {
 			AMQProcessorImpl.this.handleDelivery(consumerTag, envelope, properties, body);
 		}
 	}
-
-	private static class _ConfirmListener implements ConfirmListener {
-
-		@Override
-		public void handleAck(long deliveryTag, boolean multiple) {
-			/* nop */
-		}
-
-		@Override
-		public void handleNack(long deliveryTag, boolean multiple) {
-			/* nop */
-		}
-	}
-
-	private static class _ReturnListener implements ReturnListener {
-
-		@Override
-		public void handleReturn(int replyCode, String replyText, String exchange, String routingKey, AMQP.BasicProperties properties, byte[] body) throws IOException {
-			String s = Json.createObjectBuilder()
-					.add("replyCode", replyCode)
-					.add("replyText", replyText)
-					.add("exchange", exchange)
-					.add("routingKey", routingKey)
-					.add("properties", properties.toString())
-					.add("body", new String(body, StandardCharsets.UTF_8))
-					.build().toString();
-			System.err.println(s);
-		}
-	}
 }
@@ -0,0 +1,76 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.master;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Coalesces message acknowledgements.
+ */
+final class AckCoalescer {
+
+	private AckCoalescer() {
+
+	}
+
+	public static final class Settlement {
+		public final MessageQueueListener.MessageOperation op;
+		public final long tag;
+		public final boolean multiple;
+
+		Settlement(MessageQueueListener.MessageOperation op, long tag, boolean multiple) {
+			this.op = op;
+			this.tag = tag;
+			this.multiple = multiple;
+		}
+	}
+
+	/**
+	 * Coalesce a batch of message operations.
+	 *
+	 * Acks below the lowest delivery tag that is still outstanding are replaced by a single
+	 * multiple ack, which covers everything up to and including its tag. Everything else,
+	 * i.e. rejects and acks above an outstanding tag, is sent individually beforehand.
+	 *
+	 * @param ops The operations, by delivery tag.
+	 * @param floor The lowest outstanding delivery tag not in {@code ops}.
+	 * @return The operations to perform, in order.
+	 */
+	public static List<Settlement> coalesce(Map<Long, MessageQueueListener.MessageOperation> ops, long floor) {
+		List<Settlement> settlements = new ArrayList<>();
+		long lastAck = -1;
+		for(Map.Entry<Long, MessageQueueListener.MessageOperation> e : new TreeMap<>(ops).entrySet()) {
+			long tag = e.getKey();
+			if(e.getValue() == MessageQueueListener.MessageOperation.Ack && tag < floor) {
+				lastAck = tag;
+			} else {
+				settlements.add(new Settlement(e.getValue(), tag, false));
+			}
+		}
+
+		if(lastAck >= 0) {
+			settlements.add(new Settlement(MessageQueueListener.MessageOperation.Ack, lastAck, true));
+		}
+		return settlements;
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.master;
+
+import au.edu.uq.rcc.nimrodg.agent.AgentState;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Coalesces routine agent updates (i.e. heartbeats), writing them out periodically in one batch.
+ *
+ * Multiple updates to the same agent between flushes result in a single write of its latest state.
+ * State transitions should use {@link #updateNow(AgentState)}, which writes immediately.
+ */
+class AgentWriteBehind implements ConfigListener {
+
+	/* Time in seconds between flushes. */
+	public static final long DEFAULT_FLUSH_INTERVAL = 10;
+
+	public interface Operations {
+
+		void updateAgents(Collection<AgentState> agents);
+	}
+
+	private final Operations ops;
+	private final Map<UUID, AgentState> dirty;
+	private Instant lastFlush;
+	private long flushInterval;
+
+	AgentWriteBehind(Operations ops, Instant now) {
+		this.ops = ops;
+		this.dirty = new LinkedHashMap<>();
+		this.lastFlush = now;
+		this.flushInterval = DEFAULT_FLUSH_INTERVAL;
+	}
+
+	/**
+	 * Mark an agent as dirty, to be written on the next flush.
+	 *
+	 * @param as The agent state.
+	 */
+	public void markDirty(AgentState as) {
+		dirty.put(as.getUUID(), as);
+	}
+
+	/**
+	 * Write an agent immediately, superseding any pending write.
+	 *
+	 * @param as The agent state.
+	 */
+	public void updateNow(AgentState as) {
+		dirty.remove(as.getUUID());
+		ops.updateAgents(List.of(as));
+	}
+
+	/**
+	 * Flush the dirty agents if the flush interval has elapsed.
+	 *
+	 * @param now The current time.
+	 */
+	public void tick(Instant now) {
+		if(now.isBefore(getNextDeadline())) {
+			return;
+		}
+
+		flush();
+		lastFlush = now;
+	}
+
+	/**
+	 * Write all dirty agents.
+	 */
+	public void flush() {
+		if(dirty.isEmpty()) {
+			return;
+		}
+
+		List<AgentState> agents = new ArrayList<>(dirty.values());
+		dirty.clear();
+		ops.updateAgents(agents);
+	}
+
+	/**
+	 * Get the earliest time at which {@link #tick(Instant)} will flush.
+	 *
+	 * @return The time of the next flush, or {@link Instant#MAX} if nothing is dirty.
+	 */
+	public Instant getNextDeadline() {
+		if(dirty.isEmpty()) {
+			return Instant.MAX;
+		}
+
+		return lastFlush.plusSeconds(flushInterval);
+	}
+
+	public int getDirtyCount() {
+		return dirty.size();
+	}
+
+	@Override
+	public void onConfigChange(String key, String oldValue, String newValue) {
+		Objects.requireNonNull(key, "key");
+
+		if("nimrod.master.agent_flush_interval".equals(key)) {
+			flushInterval = ConfigListener.get(newValue, flushInterval, DEFAULT_FLUSH_INTERVAL, 0, Long.MAX_VALUE);
+		}
+	}
+}
@@ -46,4 +46,19 @@ public interface ConfigListener {
 	static int get(String val, int old, int def, int min, int max) {
 		return clamp(get(val, old, def), min, max);
 	}
+
+	static boolean get(String val, boolean old, boolean def) {
+		if(val == null) {
+			return def;
+		}
+
+		switch(val) {
+			case "true":
+				return true;
+			case "false":
+				return false;
+			default:
+				return old;
+		}
+	}
 }
@@ -0,0 +1,154 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.master;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+/**
+ * Tracks published messages until the broker confirms them, limiting how many may be in flight.
+ *
+ * Messages are keyed by their publish sequence number. Confirmations may arrive on any thread,
+ * so all methods are thread-safe.
+ *
+ * @param <T> The message type.
+ */
+public final class ConfirmTracker<T> {
+
+	private final int maxInFlight;
+	private final NavigableMap<Long, T> pending;
+
+	/**
+	 * @param maxInFlight The maximum number of unconfirmed messages. 0 is unlimited.
+	 */
+	public ConfirmTracker(int maxInFlight) {
+		if(maxInFlight < 0) {
+			throw new IllegalArgumentException();
+		}
+
+		this.maxInFlight = maxInFlight;
+		this.pending = new TreeMap<>();
+	}
+
+	/**
+	 * Block until there's room in the window for another message.
+	 *
+	 * @param timeoutNanos The maximum amount of time to wait, in nanoseconds.
+	 * @throws InterruptedException If the thread was interrupted whilst waiting.
+	 * @throws TimeoutException If the timeout expired before room became available.
+	 */
+	public synchronized void awaitCapacity(long timeoutNanos) throws InterruptedException, TimeoutException {
+		if(maxInFlight == 0) {
+			return;
+		}
+
+		long deadline = System.nanoTime() + timeoutNanos;
+		long remaining = timeoutNanos;
+		while(pending.size() >= maxInFlight) {
+			if(remaining <= 0) {
+				throw new TimeoutException();
+			}
+
+			TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			remaining = deadline - System.nanoTime();
+		}
+	}
+
+	/**
+	 * Start tracking a message.
+	 *
+	 * @param seqNo The publish sequence number.
+	 * @param msg The message.
+	 */
+	public synchronized void track(long seqNo, T msg) {
+		pending.put(seqNo, msg);
+	}
+
+	/**
+	 * Stop tracking confirmed messages.
+	 *
+	 * @param seqNo The publish sequence number.
+	 * @param multiple If true, confirm every message up to and including seqNo.
+	 * @return The confirmed messages, in sequence order.
+	 */
+	public synchronized List<T> confirm(long seqNo, boolean multiple) {
+		List<T> msgs = new ArrayList<>();
+		if(multiple) {
+			Map<Long, T> head = pending.headMap(seqNo, true);
+			msgs.addAll(head.values());
+			head.clear();
+		} else {
+			T msg = pending.remove(seqNo);
+			if(msg != null) {
+				msgs.add(msg);
+			}
+		}
+
+		if(!msgs.isEmpty()) {
+			notifyAll();
+		}
+		return msgs;
+	}
+
+	/**
+	 * Stop tracking the first message matching a predicate.
+	 *
+	 * @param pred The predicate.
+	 * @return The message, if any.
+	 */
+	public synchronized Optional<T> remove(Predicate<T> pred) {
+		Iterator<T> it = pending.values().iterator();
+		while(it.hasNext()) {
+			T msg = it.next();
+			if(pred.test(msg)) {
+				it.remove();
+				notifyAll();
+				return Optional.of(msg);
+			}
+		}
+
+		return Optional.empty();
+	}
+
+	/**
+	 * Stop tracking everything, i.e. if the channel has been closed and the
+	 * sequence numbers are no longer meaningful.
+	 *
+	 * @return The unconfirmed messages, in sequence order.
+	 */
+	public synchronized List<T> clear() {
+		List<T> msgs = new ArrayList<>(pending.values());
+		pending.clear();
+		notifyAll();
+		return msgs;
+	}
+
+	public synchronized int getInFlight() {
+		return pending.size();
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.master;
+
+import au.edu.uq.rcc.nimrodg.agent.MessageBackend;
+
+import javax.mail.internet.ContentType;
+import javax.mail.internet.ParseException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A content-type, resolved to a message backend and charset.
+ *
+ * Agents all send the same few content-types, so the ones our backends produce are
+ * resolved up-front, keyed by the raw header value. Anything else is parsed each time.
+ */
+final class ContentFormat {
+
+	/* Read-only once built, so what's sent to us can't change it. */
+	private static final Map<String, ContentFormat> KNOWN = buildKnown();
+
+	/* Shared between deliveries, don't modify it. */
+	final ContentType contentType;
+	final MessageBackend backend;
+	final Charset charset;
+
+	private ContentFormat(ContentType contentType, MessageBackend backend, Charset charset) {
+		this.contentType = contentType;
+		this.backend = backend;
+		this.charset = charset;
+	}
+
+	/**
+	 * Resolve a content-type.
+	 *
+	 * @param contentType The content-type header value.
+	 * @return The resolved format, or null if the content-type is invalid, or has no backend or known charset.
+	 */
+	static ContentFormat resolve(String contentType) {
+		if(contentType == null) {
+			return null;
+		}
+
+		ContentFormat cf = KNOWN.get(contentType);
+		if(cf != null) {
+			return cf;
+		}
+
+		return parse(contentType);
+	}
+
+	private static Map<String, ContentFormat> buildKnown() {
+		HashMap<String, ContentFormat> known = new HashMap<>();
+		AMQProcessorImpl.MESSAGE_BACKENDS.forEach((baseType, mb) -> {
+			List<String> values;
+			if(mb.usesCharset()) {
+				/* Ours, and the common spellings of it. */
+				ContentType ct = mb.getContentType();
+				ct.setParameter("charset", StandardCharsets.UTF_8.name());
+				values = List.of(baseType, ct.toString(), baseType + "; charset=utf-8", baseType + "; charset=UTF-8");
+			} else {
+				values = List.of(baseType, mb.getContentType().toString());
+			}
+
+			for(String v : values) {
+				ContentFormat cf = parse(v);
+				if(cf != null) {
+					known.putIfAbsent(v, cf);
+				}
+			}
+		});
+		return Map.copyOf(known);
+	}
+
+	private static ContentFormat parse(String contentType) {
+		ContentType ct;
+		try {
+			ct = new ContentType(contentType);
+		} catch(ParseException e) {
+			return null;
+		}
+
+		MessageBackend mb = AMQProcessorImpl.MESSAGE_BACKENDS.get(ct.getBaseType());
+		if(mb == null) {
+			return null;
+		}
+
+		Charset charset = AMQProcessorImpl.resolveCharset(ct.getParameter("charset"));
+		if(charset == null) {
+			return null;
+		}
+
+		return new ContentFormat(ct, mb, charset);
+	}
+}
@@ -0,0 +1,298 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.master;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded queue between the AMQP consumer and the master thread.
+ *
+ * When the queue reaches its high-water mark, the listener is told to pause consumption.
+ * When it's drained down to its low-water mark, it's told to resume. Offers at the high-water mark wait
+ * for space, or fail, the caller should have the message redelivered later.
+ *
+ * Deliveries count against the transport's prefetch limit until they're settled, which is after
+ * they've left the queue. If the high-water mark isn't well below the limit, it can never be reached,
+ * so given a limit, the watermarks are scaled down to keep the high-water mark at half of it.
+ *
+ * @param <T> The element type.
+ */
+public final class FlowControlledQueue<T> implements ConfigListener {
+
+	public static final int DEFAULT_HIGH_WATER = 5000;
+	public static final int DEFAULT_LOW_WATER = 1000;
+
+	public interface FlowListener {
+
+		/**
+		 * Called when consumption should be paused or resumed.
+		 *
+		 * Calls are serialised and always alternate, starting with a pause.
+		 *
+		 * @param paused If consumption should be paused.
+		 * @param depth The queue depth at the time.
+		 */
+		void onFlowChange(boolean paused, int depth);
+	}
+
+	/**
+	 * A snapshot of the queue's metrics.
+	 */
+	public static final class Stats {
+		public final int depth;
+		public final int peakDepth;
+		public final boolean paused;
+		public final long pauseCount;
+		public final Duration pausedTime;
+		public final long rejectedCount;
+
+		private Stats(int depth, int peakDepth, boolean paused, long pauseCount, Duration pausedTime, long rejectedCount) {
+			this.depth = depth;
+			this.peakDepth = peakDepth;
+			this.paused = paused;
+			this.pauseCount = pauseCount;
+			this.pausedTime = pausedTime;
+			this.rejectedCount = rejectedCount;
+		}
+	}
+
+	private final ConcurrentLinkedQueue<T> queue;
+	private final AtomicInteger size;
+	private final AtomicInteger peakSize;
+	private final AtomicLong rejectedCount;
+	private final FlowListener listener;
+	/* The effective watermarks. */
+	private volatile int highWater;
+	private volatile int lowWater;
+
+	/* Guarded by this. */
+	private int configHighWater;
+	private int configLowWater;
+	private int prefetch;
+	private boolean paused;
+	private long pauseCount;
+	private long pausedSince;
+	private long pausedNanos;
+
+	public FlowControlledQueue(FlowListener listener) {
+		this.queue = new ConcurrentLinkedQueue<>();
+		this.size = new AtomicInteger(0);
+		this.peakSize = new AtomicInteger(0);
+		this.rejectedCount = new AtomicLong(0);
+		this.listener = listener;
+		this.highWater = DEFAULT_HIGH_WATER;
+		this.lowWater = DEFAULT_LOW_WATER;
+		this.configHighWater = DEFAULT_HIGH_WATER;
+		this.configLowWater = DEFAULT_LOW_WATER;
+		this.prefetch = 0;
+
+		this.paused = false;
+		this.pauseCount = 0;
+		this.pausedSince = 0;
+		this.pausedNanos = 0;
+	}
+
+	/**
+	 * Add an element, if the queue is below its high-water mark.
+	 *
+	 * @param t The element.
+	 * @return If the element was added.
+	 */
+	public boolean offer(T t) {
+		if(size.get() >= highWater) {
+			rejectedCount.incrementAndGet();
+			updateFlow();
+			return false;
+		}
+
+		return force(t);
+	}
+
+	/**
+	 * Add an element, waiting for the queue to drain below its high-water mark if needed.
+	 *
+	 * Waiting holds up whoever's delivering, which is what we want. It stops taking
+	 * anything more and lets the pause take effect, instead of the element being redelivered straight away.
+	 *
+	 * @param t The element.
+	 * @param timeout How long to wait.
+	 * @param unit The unit of {@code timeout}.
+	 * @return If the element was added.
+	 * @throws InterruptedException If interrupted whilst waiting.
+	 */
+	public boolean offer(T t, long timeout, TimeUnit unit) throws InterruptedException {
+		if(size.get() >= highWater) {
+			long deadline = System.nanoTime() + unit.toNanos(timeout);
+			synchronized(this) {
+				updateFlow();
+				while(size.get() >= highWater) {
+					long remaining = deadline - System.nanoTime();
+					if(remaining <= 0) {
+						rejectedCount.incrementAndGet();
+						return false;
+					}
+					TimeUnit.NANOSECONDS.timedWait(this, remaining);
+				}
+			}
+		}
+
+		return force(t);
+	}
+
+	/**
+	 * Add an element, regardless of the queue depth.
+	 *
+	 * This is for things that can't be redelivered.
+	 *
+	 * @param t The element.
+	 * @return true
+	 */
+	public boolean force(T t) {
+		queue.offer(t);
+		int n = size.incrementAndGet();
+		peakSize.accumulateAndGet(n, Math::max);
+
+		if(n >= highWater) {
+			updateFlow();
+		}
+		return true;
+	}
+
+	/**
+	 * Remove all the elements, resuming consumption if it was paused.
+	 *
+	 * @param c The collection to add the elements to.
+	 * @return The number of elements removed.
+	 */
+	public int drainTo(Collection<? super T> c) {
+		int n = 0;
+		T t;
+		while((t = queue.poll()) != null) {
+			c.add(t);
+			++n;
+		}
+		size.addAndGet(-n);
+
+		synchronized(this) {
+			updateFlow();
+			if(n > 0) {
+				notifyAll();
+			}
+		}
+		return n;
+	}
+
+	public int size() {
+		return size.get();
+	}
+
+	public int getHighWater() {
+		return highWater;
+	}
+
+	public int getLowWater() {
+		return lowWater;
+	}
+
+	public synchronized void setWatermarks(int highWater, int lowWater) {
+		if(highWater < 1 || lowWater < 0 || lowWater >= highWater) {
+			throw new IllegalArgumentException("Require 0 <= lowWater < highWater");
+		}
+
+		this.configHighWater = highWater;
+		this.configLowWater = lowWater;
+		applyWatermarks();
+	}
+
+	/**
+	 * Set the transport's prefetch limit, the most deliveries it'll have unsettled at once.
+	 *
+	 * @param prefetch The prefetch limit. 0 is unlimited.
+	 */
+	public synchronized void setPrefetch(int prefetch) {
+		this.prefetch = Math.max(prefetch, 0);
+		applyWatermarks();
+	}
+
+	private synchronized void applyWatermarks() {
+		int hw = configHighWater;
+		int lw = configLowWater;
+
+		if(prefetch > 0 && hw > prefetch / 2) {
+			int capped = Math.max(prefetch / 2, 1);
+			lw = (int)((long)lw * capped / hw);
+			hw = capped;
+		}
+
+		this.highWater = hw;
+		this.lowWater = Math.min(lw, hw - 1);
+		updateFlow();
+		notifyAll();
+	}
+
+	public synchronized Stats getStats() {
+		long total = pausedNanos;
+		if(paused) {
+			total += System.nanoTime() - pausedSince;
+		}
+		return new Stats(size.get(), peakSize.get(), paused, pauseCount, Duration.ofNanos(total), rejectedCount.get());
+	}
+
+	/*
+	 * The depth is read under the lock, so whoever changes it last
+	 * leaves the flow state consistent with it.
+	 */
+	private synchronized void updateFlow() {
+		int n = size.get();
+
+		if(!paused && n >= highWater) {
+			paused = true;
+			++pauseCount;
+			pausedSince = System.nanoTime();
+		} else if(paused && n <= lowWater) {
+			paused = false;
+			pausedNanos += System.nanoTime() - pausedSince;
+		} else {
+			return;
+		}
+
+		listener.onFlowChange(paused, n);
+	}
+
+	@Override
+	public synchronized void onConfigChange(String key, String oldValue, String newValue) {
+		switch(key) {
+			case "nimrod.master.agent_queue_high_water": {
+				int hw = ConfigListener.get(newValue, configHighWater, DEFAULT_HIGH_WATER, 1, 1 << 24);
+				setWatermarks(hw, Math.min(configLowWater, hw - 1));
+				break;
+			}
+			case "nimrod.master.agent_queue_low_water": {
+				setWatermarks(configHighWater, ConfigListener.get(newValue, configLowWater, DEFAULT_LOW_WATER, 0, configHighWater - 1));
+				break;
+			}
+		}
+	}
+}
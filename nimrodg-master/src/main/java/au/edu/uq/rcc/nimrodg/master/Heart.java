@@ -26,13 +26,23 @@ import org.slf4j.LoggerFactory;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Objects;
+import java.util.TreeSet;
 import java.util.UUID;
 
 /**
  * Heart, manages heartbeats, expiry timeouts, etc.
+ *
+ * Agents are kept in a queue ordered by the next time they may need attention, so a tick
+ * only touches agents whose deadline has passed. Deadlines are only ever early, as an agent's
+ * last-heard-from time only moves forward. Anything that may bring a deadline forward must
+ * reschedule the agent.
  */
 class Heart implements ConfigListener {
 
@@ -48,13 +58,18 @@ class Heart implements ConfigListener {
 
 	private static class ExpiryInfo {
 
+		public final UUID uuid;
+		public Instant deadline;
+
 		public Instant lastExpiryCheck;
 		public int retryCount;
 
 		public Instant lastPing;
 		public long missedBeats;
 
-		public ExpiryInfo(Instant now) {
+		public ExpiryInfo(UUID uuid, Instant now) {
+			this.uuid = uuid;
+			this.deadline = now;
 			this.lastExpiryCheck = Instant.MIN;
 			this.retryCount = 0;
 			this.lastPing = now;
@@ -70,6 +85,7 @@ class Heart implements ConfigListener {
 
 	private final Operations ops;
 	private final Map<UUID, ExpiryInfo> expiryInfo;
+	private final NavigableSet<ExpiryInfo> schedule;
 	private long expiryRetryInterval;
 	private long expiryRetryCount;
 	private long heartbeatInterval;
@@ -105,6 +121,7 @@ class Heart implements ConfigListener {
 	Heart(Operations ops) {
 		this.ops = ops;
 		this.expiryInfo = new HashMap<>();
+		this.schedule = new TreeSet<>(Comparator.<ExpiryInfo, Instant>comparing(ei -> ei.deadline).thenComparing(ei -> ei.uuid));
 		this.expiryRetryInterval = DEFAULT_EXPIRY_RETRY_INTERVAL;
 		this.expiryRetryCount = DEFAULT_EXPIRY_RETRY_COUNT;
 		this.heartbeatInterval = DEFAULT_HEARTBEAT_INTERVAL;
@@ -112,12 +129,33 @@ class Heart implements ConfigListener {
 	}
 
 	public void tick(Instant now) {
-		expiryInfo.keySet().forEach(u -> tickAgent(u, now));
+		/* Collect everything first, an agent may be rescheduled whilst being ticked. */
+		List<ExpiryInfo> due = new ArrayList<>();
+		while(!schedule.isEmpty() && !schedule.first().deadline.isAfter(now)) {
+			due.add(schedule.pollFirst());
+		}
+
+		for(ExpiryInfo ei : due) {
+			/* May have been disconnected by an earlier agent's operations. */
+			if(expiryInfo.get(ei.uuid) != ei) {
+				continue;
+			}
+
+			tickAgent(ei.uuid, ei, now);
+
+			if(expiryInfo.get(ei.uuid) == ei) {
+				reschedule(ei, getAgentDeadline(ei.uuid, ei));
+			}
+		}
 	}
 
-	private void tickAgent(UUID u, Instant now) {
-		ExpiryInfo ei = expiryInfo.get(u);
+	private void reschedule(ExpiryInfo ei, Instant deadline) {
+		schedule.remove(ei);
+		ei.deadline = deadline;
+		schedule.add(ei);
+	}
 
+	private void tickAgent(UUID u, ExpiryInfo ei, Instant now) {
 		tickWalltime(u, ei, now);
 
 		if(!ei.isExpiring()) {
@@ -176,6 +214,47 @@ class Heart implements ConfigListener {
 		}
 	}
 
+	/**
+	 * Get the earliest time at which {@link #tick(Instant)} may need to take action.
+	 *
+	 * This is used to wake the master for heartbeats and expiry checks.
+	 *
+	 * @param now The current time.
+	 * @return The earliest deadline, or {@link Instant#MAX} if there is none.
+	 *         This is never before {@code now}.
+	 */
+	public Instant getNextDeadline(Instant now) {
+		if(schedule.isEmpty()) {
+			return Instant.MAX;
+		}
+
+		return latest(schedule.first().deadline, now);
+	}
+
+	private Instant getAgentDeadline(UUID u, ExpiryInfo ei) {
+		Instant next = Instant.MAX;
+
+		if(expiryRetryInterval > 0) {
+			next = latest(ops.getWalltime(u), ei.lastExpiryCheck.plusSeconds(expiryRetryInterval));
+		}
+
+		if(ei.isExpiring() || heartbeatInterval == 0) {
+			return next;
+		}
+
+		/* Mirrors tickHeartbeat(), including the processing delay. */
+		Instant beat = ops.getLastHeardFrom(u).plusSeconds(heartbeatInterval + 1);
+		if(ei.missedBeats < heartbeatMissedThreshold || heartbeatMissedThreshold == 0) {
+			beat = latest(beat, ei.lastPing.plusSeconds(heartbeatInterval + 1));
+		}
+
+		return beat.isBefore(next) ? beat : next;
+	}
+
+	private static Instant latest(Instant a, Instant b) {
+		return a.isAfter(b) ? a : b;
+	}
+
 	public void onAgentPong(UUID u) {
 		/* We've received a heartbeat, reset */
 		ExpiryInfo ei = expiryInfo.get(u);
@@ -194,7 +273,27 @@ class Heart implements ConfigListener {
 	 * @param u The UUID of the agent.
 	 */
 	public void onAgentCreate(UUID u, Instant now) {
-		expiryInfo.put(u, new ExpiryInfo(now));
+		ExpiryInfo ei = new ExpiryInfo(u, now);
+		ExpiryInfo old = expiryInfo.put(u, ei);
+		if(old != null) {
+			schedule.remove(old);
+		}
+		/* Can't use operations, so schedule it for the next tick. */
+		schedule.add(ei);
+	}
+
+	/**
+	 * Recalculate an agent's deadlines on the next tick.
+	 *
+	 * This must be called if an agent's walltime changes.
+	 *
+	 * @param u The UUID of the agent.
+	 */
+	public void reschedule(UUID u) {
+		ExpiryInfo ei = expiryInfo.get(u);
+		if(ei != null) {
+			reschedule(ei, Instant.MIN);
+		}
 	}
 
 	/**
@@ -206,6 +305,7 @@ class Heart implements ConfigListener {
 		ExpiryInfo ei = expiryInfo.get(u);
 		if(ei != null) {
 			ei.lastPing = Instant.MIN;
+			reschedule(ei, Instant.MIN);
 		}
 	}
 
@@ -230,6 +330,7 @@ class Heart implements ConfigListener {
 		ExpiryInfo ei = expiryInfo.get(u);
 		if(ei != null) {
 			ei.missedBeats = Integer.MAX_VALUE;
+			reschedule(ei, Instant.MIN);
 		}
 	}
 
@@ -247,6 +348,8 @@ class Heart implements ConfigListener {
 			return;
 		}
 
+		schedule.remove(ei);
+
 		/* Only log if we've tried to terminate. */
 		if(ei.isExpiring()) {
 			ops.logInfo("Agent %s expired on attempt %d", u, ei.retryCount);
@@ -275,6 +378,17 @@ class Heart implements ConfigListener {
 				heartbeatMissedThreshold = ConfigListener.get(newValue, heartbeatMissedThreshold, DEFAULT_HEARTBEAT_MISSED_THRESHOLD);
 				break;
 			}
+			default:
+				return;
 		}
+
+		/* Deadlines may have moved forward, recalculate everything. */
+		List<ExpiryInfo> all = new ArrayList<>(schedule);
+		schedule.clear();
+		all.forEach(ei -> {
+			ei.deadline = Instant.MIN;
+			schedule.add(ei);
+		});
 	}
+
 }
@@ -0,0 +1,339 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.master;
+
+import au.edu.uq.rcc.nimrodg.agent.MessageBackend;
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentMessage;
+import au.edu.uq.rcc.nimrodg.agent.messages.json.JsonBackend;
+import au.edu.uq.rcc.nimrodg.master.sig.SigUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * An in-memory transport, for running a master and its agents in the same JVM without a broker.
+ *
+ * Messages are still serialised and signed, so the master sees exactly what it would via
+ * {@link AMQProcessorImpl}. Agents connect with {@link #connect(String, String, String, Consumer)},
+ * using their queue name as the routing key.
+ *
+ * Each side's deliveries are processed in order, one at a time, on the given executor.
+ * No threads are created.
+ */
+public class LocalTransport implements AMQProcessor {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(LocalTransport.class);
+
+	public static final String QUEUE = "nimrod-local";
+	public static final String EXCHANGE = "nimrod-local";
+	private static final String USER = "nimrod";
+	private static final String AGENT_USER_AGENT = "NimrodGLocalAgent/X.X.X";
+
+	private final MessageQueueListener listener;
+	private final Executor executor;
+	private final String signingAlgorithm;
+	private final MessageBackend backend;
+	private final int prefetch;
+
+	private final ConcurrentHashMap<String, AgentEndpoint> endpoints;
+	/* Deliveries passed to the listener and not yet settled. */
+	private final ConcurrentHashMap<Long, AMQPMessage> unacked;
+	private final AtomicInteger unackedCount;
+	private final AtomicLong nextTag;
+	private final Mailbox<AMQPMessage> inbox;
+	private volatile boolean paused;
+	private volatile boolean closed;
+
+	public LocalTransport(MessageQueueListener listener, Executor executor, String signingAlgorithm) {
+		this(listener, executor, signingAlgorithm, JsonBackend.INSTANCE, AMQProcessorImpl.DEFAULT_PREFETCH);
+	}
+
+	public LocalTransport(MessageQueueListener listener, Executor executor, String signingAlgorithm, MessageBackend backend, int prefetch) {
+		this.listener = Objects.requireNonNull(listener, "listener");
+		this.executor = Objects.requireNonNull(executor, "executor");
+		this.signingAlgorithm = Objects.requireNonNull(signingAlgorithm, "signingAlgorithm");
+		this.backend = Objects.requireNonNull(backend, "backend");
+		/* 0 is unlimited. */
+		this.prefetch = Math.max(prefetch, 0);
+
+		if(!SigUtils.ALGORITHMS.containsKey(signingAlgorithm)) {
+			throw new IllegalArgumentException("Invalid signing algorithm");
+		}
+
+		this.endpoints = new ConcurrentHashMap<>();
+		this.unacked = new ConcurrentHashMap<>();
+		this.unackedCount = new AtomicInteger(0);
+		this.nextTag = new AtomicLong(0);
+		this.inbox = new Mailbox<>(executor, () -> !paused && (this.prefetch == 0 || unackedCount.get() < this.prefetch), this::deliver);
+		this.paused = false;
+		this.closed = false;
+	}
+
+	/**
+	 * Connect an agent.
+	 *
+	 * @param queue The agent's queue name. The master uses this as the routing key.
+	 * @param accessKey The agent's access key.
+	 * @param secretKey The agent's secret key. Messages from the master not signed with this are dropped.
+	 * @param handler Called with each message from the master, in order.
+	 * @return The agent's end of the connection.
+	 * @throws IllegalStateException If an agent is already connected with this queue name.
+	 */
+	public AgentEndpoint connect(String queue, String accessKey, String secretKey, Consumer<AgentMessage> handler) {
+		AgentEndpoint ep = new AgentEndpoint(queue, accessKey, secretKey, handler);
+		if(endpoints.putIfAbsent(queue, ep) != null) {
+			throw new IllegalStateException("Queue already in use");
+		}
+		return ep;
+	}
+
+	@Override
+	public String getQueue() {
+		return QUEUE;
+	}
+
+	@Override
+	public String getExchange() {
+		return EXCHANGE;
+	}
+
+	@Override
+	public String getSigningAlgorithm() {
+		return signingAlgorithm;
+	}
+
+	@Override
+	public AMQPMessage sendMessage(String key, String accessKey, String secretKey, AgentMessage msg) throws IOException {
+		if(closed) {
+			throw new IOException("Transport closed");
+		}
+
+		AMQPMessage amsg = AMQProcessorImpl.encodeMessage(backend, USER, signingAlgorithm, accessKey, secretKey, 0, 0, AMQProcessorImpl.MASTER_USER_AGENT, msg);
+
+		AgentEndpoint ep = endpoints.get(key);
+		if(ep == null) {
+			/* Same as the broker returning it. */
+			listener.onMessageUndeliverable(amsg, "NO_ROUTE");
+		} else {
+			ep.inbox.post(amsg);
+		}
+		return amsg;
+	}
+
+	private void deliver(AMQPMessage delivered) {
+		if(closed) {
+			return;
+		}
+
+		long tag = nextTag.incrementAndGet();
+
+		/* Do this first, the listener may settle it before we return. */
+		unacked.put(tag, delivered);
+		unackedCount.incrementAndGet();
+
+		AMQPMessage amsg = AMQProcessorImpl.decodeMessage(signingAlgorithm, delivered.basicProperties, delivered.body);
+		if(amsg == null) {
+			opMessage(MessageQueueListener.MessageOperation.Reject, tag);
+			return;
+		}
+
+		Optional<MessageQueueListener.MessageOperation> op;
+		try {
+			op = listener.processAgentMessage(tag, amsg);
+		} catch(IllegalStateException e) {
+			op = Optional.of(MessageQueueListener.MessageOperation.Ack);
+		} catch(IOException e) {
+			LOGGER.error("Unable to process message, delivery tag = {}", tag, e);
+			op = Optional.of(MessageQueueListener.MessageOperation.Reject);
+		}
+
+		op.ifPresent(mop -> opMessage(mop, tag));
+	}
+
+	@Override
+	public void opMessage(MessageQueueListener.MessageOperation op, long tag) {
+		AMQPMessage amsg = unacked.remove(tag);
+		if(amsg == null) {
+			LOGGER.error("Unable to {} message, unknown delivery tag = {}", op, tag);
+			return;
+		}
+		unackedCount.decrementAndGet();
+
+		if(op == MessageQueueListener.MessageOperation.RejectAndRequeue) {
+			/* It'll get a new tag. */
+			inbox.requeue(amsg);
+		}
+
+		/* May have been waiting on the prefetch limit. */
+		inbox.schedule();
+	}
+
+	@Override
+	public int getPrefetch() {
+		return prefetch;
+	}
+
+	@Override
+	public void setPaused(boolean paused) {
+		this.paused = paused;
+		if(!paused) {
+			inbox.schedule();
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		endpoints.clear();
+		unacked.clear();
+	}
+
+	/**
+	 * The agent's end of the transport.
+	 */
+	public final class AgentEndpoint implements AutoCloseable {
+		private final String queue;
+		private final String accessKey;
+		private final String secretKey;
+		private final Consumer<AgentMessage> handler;
+		private final Mailbox<AMQPMessage> inbox;
+		private final AtomicLong nonce;
+
+		private AgentEndpoint(String queue, String accessKey, String secretKey, Consumer<AgentMessage> handler) {
+			this.queue = Objects.requireNonNull(queue, "queue");
+			this.accessKey = Objects.requireNonNull(accessKey, "accessKey");
+			this.secretKey = Objects.requireNonNull(secretKey, "secretKey");
+			this.handler = Objects.requireNonNull(handler, "handler");
+			this.inbox = new Mailbox<>(executor, () -> true, this::receive);
+			this.nonce = new AtomicLong(0);
+		}
+
+		public String getQueue() {
+			return queue;
+		}
+
+		/**
+		 * Send a message to the master.
+		 *
+		 * @param msg The message.
+		 * @return The message, as the master will receive it.
+		 * @throws IOException If the message can't be serialised or signed, or the transport is closed.
+		 */
+		public AMQPMessage send(AgentMessage msg) throws IOException {
+			if(closed) {
+				throw new IOException("Transport closed");
+			}
+
+			AMQPMessage amsg = AMQProcessorImpl.encodeMessage(backend, USER, signingAlgorithm, accessKey, secretKey, nonce.incrementAndGet(), 0, AGENT_USER_AGENT, msg);
+			LocalTransport.this.inbox.post(amsg);
+			return amsg;
+		}
+
+		private void receive(AMQPMessage amsg) {
+			try {
+				if(!SigUtils.verifySignature(amsg.authHeader, secretKey, amsg.basicProperties, amsg.body)) {
+					LOGGER.warn("Agent on queue {} dropping message {} with invalid signature", queue, amsg.messageId);
+					return;
+				}
+			} catch(NoSuchAlgorithmException e) {
+				LOGGER.warn("Agent on queue {} dropping message {}", queue, amsg.messageId, e);
+				return;
+			}
+
+			handler.accept(amsg.message);
+		}
+
+		/**
+		 * Disconnect the agent. Anything the master sends it after this is undeliverable.
+		 */
+		@Override
+		public void close() {
+			endpoints.remove(queue, this);
+		}
+	}
+
+	/**
+	 * A lock-free queue that's drained on an executor, one item at a time.
+	 */
+	private static final class Mailbox<T> {
+		private final ConcurrentLinkedDeque<T> queue;
+		private final AtomicBoolean scheduled;
+		private final Executor executor;
+		private final BooleanSupplier canTake;
+		private final Consumer<T> handler;
+		private final Runnable drain;
+
+		Mailbox(Executor executor, BooleanSupplier canTake, Consumer<T> handler) {
+			this.queue = new ConcurrentLinkedDeque<>();
+			this.scheduled = new AtomicBoolean(false);
+			this.executor = executor;
+			this.canTake = canTake;
+			this.handler = handler;
+			this.drain = this::drain;
+		}
+
+		void post(T t) {
+			queue.offer(t);
+			schedule();
+		}
+
+		void requeue(T t) {
+			queue.offerFirst(t);
+		}
+
+		void schedule() {
+			if(!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+				executor.execute(drain);
+			}
+		}
+
+		private void drain() {
+			for(;;) {
+				T t;
+				while(canTake.getAsBoolean() && (t = queue.poll()) != null) {
+					try {
+						handler.accept(t);
+					} catch(RuntimeException e) {
+						LOGGER.error("Unhandled exception in delivery handler", e);
+					}
+				}
+
+				scheduled.set(false);
+
+				/* Something may have arrived, or room been made, after we looked but before we cleared the flag. */
+				if(queue.isEmpty() || !canTake.getAsBoolean() || !scheduled.compareAndSet(false, true)) {
+					return;
+				}
+			}
+		}
+	}
+}
@@ -26,6 +26,7 @@ import au.edu.uq.rcc.nimrodg.agent.ReferenceAgent;
 import au.edu.uq.rcc.nimrodg.agent.messages.AgentMessage;
 import au.edu.uq.rcc.nimrodg.agent.messages.AgentPong;
 import au.edu.uq.rcc.nimrodg.agent.messages.AgentShutdown;
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentSubmit;
 import au.edu.uq.rcc.nimrodg.agent.messages.AgentUpdate;
 import au.edu.uq.rcc.nimrodg.api.Actuator;
 import au.edu.uq.rcc.nimrodg.api.Actuator.LaunchResult;
@@ -35,6 +36,7 @@ import au.edu.uq.rcc.nimrodg.api.CommandResult;
 import au.edu.uq.rcc.nimrodg.api.Experiment;
 import au.edu.uq.rcc.nimrodg.api.Job;
 import au.edu.uq.rcc.nimrodg.api.JobAttempt;
+import au.edu.uq.rcc.nimrodg.api.JobCursor;
 import au.edu.uq.rcc.nimrodg.agent.messages.NetworkJob;
 import au.edu.uq.rcc.nimrodg.api.NimrodMasterAPI;
 import au.edu.uq.rcc.nimrodg.api.NimrodURI;
@@ -59,6 +61,7 @@ import java.security.NoSuchAlgorithmException;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -79,12 +82,18 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 public class Master implements MessageQueueListener, AutoCloseable {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(Master.class);
+	/* Number of threads to process agent messages on. */
+	public static final int DEFAULT_AGENT_WORKERS = Runtime.getRuntime().availableProcessors();
+
+	/* How long a delivery waits for room in the agent message queue before it's requeued. */
+	private static final long AGENT_QUEUE_WAIT_MS = 1000;
 
 	private enum State {
 		None(0),
@@ -181,12 +190,18 @@ public class Master implements MessageQueueListener, AutoCloseable {
 	private final Queue<NimrodMasterEvent> events;
 	private final _HeartOperations heartOps;
 	private final Heart heart;
+	private final AgentWriteBehind agentWriteBehind;
+	private final ReplayCache replayCache;
 	private final JobScheduler jobScheduler;
 	private final AgentScheduler agentScheduler;
 
 	private final LinkedBlockingDeque<QTask> taskQueue;
 	private final LinkedBlockingDeque<QTask> taskQueuePrio;
-	private final LinkedBlockingDeque<_AgentMessage> agentMessages;
+	private final FlowControlledQueue<_AgentMessage> agentMessages;
+	private final ShardedExecutor agentWorkers;
+	private final WakeSignal wakeSignal;
+	private long lastTickTime;
+	private Thread masterThread;
 
 	private final AAAAA aaaaa;
 	private final ConcurrentHashMap<UUID, MasterAgentInfo> allAgents;
@@ -196,6 +211,8 @@ public class Master implements MessageQueueListener, AutoCloseable {
 	private final _ActuatorOperations actuatorOps;
 
 	private final Map<UUID, RunningJob> runningJobs;
+	/* Processed messages whose effects haven't been flushed yet. Only settled once they have. */
+	private final Map<Long, MessageOperation> unsettled;
 
 	private AMQProcessor amqp;
 
@@ -215,12 +232,18 @@ public class Master implements MessageQueueListener, AutoCloseable {
 		this.events = new LinkedList<>();
 		this.heartOps = new _HeartOperations();
 		this.heart = new Heart(heartOps);
+		this.agentWriteBehind = new AgentWriteBehind(nimrod::updateAgents, Instant.now());
+		this.replayCache = new ReplayCache();
 		this.jobScheduler = jsf.create();
 		this.agentScheduler = asf.create();
 
 		this.taskQueue = new LinkedBlockingDeque<>();
 		this.taskQueuePrio = new LinkedBlockingDeque<>();
-		this.agentMessages = new LinkedBlockingDeque<>();
+		this.agentMessages = new FlowControlledQueue<>(this::onAgentMessageFlow);
+		this.agentWorkers = new ShardedExecutor("nimrod-agent-worker", DEFAULT_AGENT_WORKERS);
+		this.wakeSignal = new WakeSignal();
+		this.lastTickTime = System.nanoTime();
+		this.masterThread = null;
 
 		this.aaaaa = new _AAAAA();
 		this.allAgents = new ConcurrentHashMap<>();
@@ -230,6 +253,7 @@ public class Master implements MessageQueueListener, AutoCloseable {
 		this.actuatorOps = new _ActuatorOperations();
 
 		this.runningJobs = new HashMap<>();
+		this.unsettled = new HashMap<>();
 
 		this.jobScheduler.setJobOperations(new _JobOperations());
 		this.agentScheduler.setAgentOperations(new _AgentOperations());
@@ -250,8 +274,6 @@ public class Master implements MessageQueueListener, AutoCloseable {
 			return Optional.of(MessageOperation.Reject);
 		}
 
-		/* TODO: Check nonce. */
-
 		if(!SigUtils.validateMessage(amsg.basicProperties, amsg.authHeader, amsg.message)) {
 			return Optional.of(MessageOperation.Reject);
 		}
@@ -264,23 +286,163 @@ public class Master implements MessageQueueListener, AutoCloseable {
 			return Optional.of(MessageOperation.Reject);
 		}
 
-		if(!agentMessages.offer(new _AgentMessage(tag, amsg.messageId, amsg.message, amsg.sentAt.get(), Instant.now()))) {
+		/* Only after verification, so forgeries can't fill the cache. */
+		long timestamp = amsg.authHeader.timestamp.getEpochSecond();
+		long fingerprint = ReplayCache.fingerprint(amsg.authHeader, amsg.messageId);
+		switch(replayCache.check(timestamp, fingerprint, System.currentTimeMillis() / 1000)) {
+			case Replayed:
+			case Expired:
+				return Optional.of(MessageOperation.Reject);
+			case Full:
+				return Optional.of(MessageOperation.RejectAndRequeue);
+		}
+
+		/* It's authentic, so replies can follow its lead. */
+		if(amqp != null) {
+			amqp.updatePeer(amsg);
+		}
+
+		/* Waiting holds up the transport, which is the point. Don't wait on ourselves, though. */
+		_AgentMessage msg = new _AgentMessage(tag, amsg.messageId, amsg.message, amsg.sentAt.get(), Instant.now());
+		boolean queued;
+		try {
+			queued = agentMessages.offer(msg, Thread.currentThread() == masterThread ? 0 : AGENT_QUEUE_WAIT_MS, TimeUnit.MILLISECONDS);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			queued = false;
+		}
+
+		if(!queued) {
+			/* It'll be redelivered, which isn't a replay. */
+			replayCache.forget(timestamp, fingerprint);
 			return Optional.of(MessageOperation.RejectAndRequeue);
 		}
 
+		wakeSignal.signal();
 		return Optional.empty();
 	}
 
+	/* This runs out-of-band with the state machine. */
+	private void onAgentMessageFlow(boolean paused, int depth) {
+		if(paused) {
+			LOGGER.warn("{} agent messages queued, pausing consumption.", depth);
+		} else {
+			LOGGER.info("{} agent messages queued, resuming consumption.", depth);
+		}
+
+		if(amqp != null) {
+			amqp.setPaused(paused);
+		}
+	}
+
+	/**
+	 * Get the agent message queue's metrics.
+	 *
+	 * @return A snapshot of the agent message queue's metrics.
+	 */
+	public FlowControlledQueue.Stats getAgentQueueStats() {
+		return agentMessages.getStats();
+	}
+
+	/* This runs out-of-band with the state machine. */
+	@Override
+	public void onMessageUndeliverable(AMQPMessage amsg, String reason) {
+		if(amsg.message.getType() != AgentMessage.Type.Submit) {
+			/* Anything else is either retried by the heart, or doesn't matter. */
+			return;
+		}
+
+		runLater("onMessageUndeliverable", () -> handleUndeliveredSubmit((AgentSubmit)amsg.message, reason), true);
+	}
+
+	private void handleUndeliveredSubmit(AgentSubmit submit, String reason) {
+		MasterAgentInfo ai = allAgents.get(submit.getAgentUUID());
+		if(ai == null) {
+			/* Already gone, the job's been dealt with. */
+			return;
+		}
+
+		RunningJob rj = runningJobs.get(submit.getJob().uuid);
+		if(rj == null || rj.agent != ai.instance || ai.instance.getState() != AgentInfo.State.BUSY) {
+			return;
+		}
+
+		/*
+		 * The agent never got its job and we don't know what state it's in.
+		 * Get rid of it, the scheduler will see it crash and requeue the job.
+		 */
+		LOGGER.warn("Job '{}' was never delivered to agent '{}' ({}), disconnecting.", submit.getJob().uuid, ai.uuid, reason);
+		try {
+			ai.instance.terminate();
+		} catch(IOException e) {
+			LOGGER.warn("Unable to terminate agent '{}'", ai.uuid, e);
+		}
+		ai.instance.disconnect(AgentInfo.ShutdownReason.Requested, -1);
+	}
+
 	public void setAMQP(AMQProcessor amqp) {
 		if(amqp == null || this.amqp != null) {
 			throw new IllegalStateException();
 		}
 
 		this.amqp = amqp;
+		agentMessages.setPrefetch(amqp.getPrefetch());
 	}
 
 	public void flagStop() {
 		interruptFlag.compareAndSet(false, true);
+		wakeSignal.signal();
+	}
+
+	/**
+	 * Wake the master, causing the next call to {@link #waitForWork(long, long)} to return.
+	 *
+	 * This may be called from any thread.
+	 */
+	public void wakeUp() {
+		wakeSignal.signal();
+	}
+
+	/**
+	 * Block until there is work for the next {@link #tick()}.
+	 *
+	 * The master is woken by agent messages, queued tasks, heartbeat deadlines, and
+	 * database events if the API supports notifications. Anything else
+	 * (i.e. actuator shutdown) is picked up on the next tick, which happens at
+	 * most {@code maxInterval} milliseconds after the previous one.
+	 *
+	 * Ticks are never closer together than {@code minInterval} milliseconds, allowing
+	 * bursts of events to be batched.
+	 *
+	 * This must be called from the same thread as {@link #tick()}.
+	 *
+	 * @param minInterval The minimum interval between ticks, in milliseconds.
+	 * @param maxInterval The maximum interval between ticks, in milliseconds.
+	 * @throws InterruptedException If the thread was interrupted whilst waiting.
+	 */
+	public void waitForWork(long minInterval, long maxInterval) throws InterruptedException {
+		if(minInterval < 0 || maxInterval < minInterval) {
+			throw new IllegalArgumentException();
+		}
+
+		Instant now = Instant.now();
+		long timeout = TimeUnit.MILLISECONDS.toNanos(maxInterval) - (System.nanoTime() - lastTickTime);
+
+		/* Wake up for the next heartbeat or agent flush, if it's sooner. */
+		Instant deadline = heart.getNextDeadline(now);
+		if(agentWriteBehind.getNextDeadline().isBefore(deadline)) {
+			deadline = agentWriteBehind.getNextDeadline();
+		}
+		if(deadline.isBefore(now.plusMillis(maxInterval))) {
+			timeout = Math.min(timeout, TimeUnit.MILLISECONDS.toNanos(now.until(deadline, ChronoUnit.MILLIS) + 1));
+		}
+
+		wakeSignal.await(timeout);
+
+		long remaining = TimeUnit.MILLISECONDS.toNanos(minInterval) - (System.nanoTime() - lastTickTime);
+		if(remaining > 0) {
+			TimeUnit.NANOSECONDS.sleep(remaining);
+		}
 	}
 
 	/**
@@ -300,6 +462,7 @@ public class Master implements MessageQueueListener, AutoCloseable {
 		} else {
 			taskQueue.offer(new QTask(name, r));
 		}
+		wakeSignal.signal();
 	}
 
 	private void runLater(String name, Runnable r) {
@@ -311,6 +474,9 @@ public class Master implements MessageQueueListener, AutoCloseable {
 	}
 
 	public boolean tick() {
+		lastTickTime = System.nanoTime();
+		masterThread = Thread.currentThread();
+
 		if(state != oldState) {
 			if(stateHandlers[oldState.value].handler != null) {
 				try {
@@ -346,9 +512,30 @@ public class Master implements MessageQueueListener, AutoCloseable {
 			}
 		}
 
+		/*
+		 * Write out everything this tick deferred in one transaction, then settle the messages
+		 * that caused it. If the flush fails, they're left unsettled and redelivered if we die.
+		 */
+		try {
+			nimrod.flush();
+			settleMessages();
+		} catch(RuntimeException e) {
+			LOGGER.error("Caught exception during flush", e);
+			state = stateHandlers[state.value].interruptState;
+		}
+
 		return true;
 	}
 
+	private void settleMessages() {
+		if(unsettled.isEmpty()) {
+			return;
+		}
+
+		amqp.opMessages(unsettled);
+		unsettled.clear();
+	}
+
 	/*
 	 * Register an agent with the master, creating its state machine et al.
 	 */
@@ -393,7 +580,8 @@ public class Master implements MessageQueueListener, AutoCloseable {
 						LOGGER.info("Resource {} marked orphaned agent {} as stale, marking as expired.", r.getName(), as.getUUID());
 						orphanage.adopt(as);
 						ai.actuator.complete(orphanage);
-						heart.forceExpire(as.getUUID());
+						/* This may not be on the main thread. */
+						runLater("orphanForceExpire", () -> heart.forceExpire(as.getUUID()), true);
 					} else {
 						LOGGER.info("Resource {} rejected orphaned agent {}.", r.getName(), as.getUUID());
 						orphanage.adopt(as);
@@ -456,6 +644,8 @@ public class Master implements MessageQueueListener, AutoCloseable {
 
 	private State startProc(State state, Mode mode) {
 		if(mode == Mode.Enter) {
+			nimrod.setMasterEventListener(wakeSignal::signal);
+			nimrod.setDeferredWrites(true);
 			nimrod.updateExperimentState(experiment, Experiment.State.STARTED);
 
 			/* Create psuedo-events for initial configuration values. */
@@ -508,11 +698,21 @@ public class Master implements MessageQueueListener, AutoCloseable {
 				jobScheduler.onConfigChange(evt.key, evt.oldValue, evt.newValue);
 				agentScheduler.onConfigChange(evt.key, evt.oldValue, evt.newValue);
 				heart.onConfigChange(evt.key, evt.oldValue, evt.newValue);
+				agentWriteBehind.onConfigChange(evt.key, evt.oldValue, evt.newValue);
+				replayCache.onConfigChange(evt.key, evt.oldValue, evt.newValue);
+				agentMessages.onConfigChange(evt.key, evt.oldValue, evt.newValue);
+
+				if("nimrod.master.agent_workers".equals(evt.key)) {
+					agentWorkers.setShardCount(ConfigListener.get(evt.newValue, agentWorkers.getShardCount(), DEFAULT_AGENT_WORKERS, 1, 1024));
+				}
 				break;
 			}
 
 			case JobAdd: {
-				jobScheduler.onJobAdd(((JobAddMasterEvent)_evt).job);
+				JobAddMasterEvent evt = (JobAddMasterEvent)_evt;
+				if(experiment.equals(evt.exp)) {
+					jobScheduler.onJobAdd(evt.firstIndex, evt.lastIndex);
+				}
 				break;
 			}
 		}
@@ -522,19 +722,38 @@ public class Master implements MessageQueueListener, AutoCloseable {
 		List<_AgentMessage> msgs = new ArrayList<>();
 		agentMessages.drainTo(msgs);
 
-		for(_AgentMessage msg : msgs) {
-			MessageOperation mop;
-			try {
-				mop = this.doProcessAgentMessage2(msg);
-			} catch(IOException | IllegalStateException e) {
-				LOGGER.error("Caught exception processing agent message", e);
-				continue;
-			}
+		/*
+		 * Messages are processed in parallel, sharded by agent. We wait for them all,
+		 * so nothing else touches the agents whilst this happens.
+		 * See _AgentListener for what happens off the master thread.
+		 */
+		Map<Long, MessageOperation> ops = new ConcurrentHashMap<>();
+		try {
+			agentWorkers.process(msgs, msg -> msg.msg.getAgentUUID(), msg -> {
+				MessageOperation mop;
+				try {
+					mop = this.doProcessAgentMessage2(msg);
+				} catch(IOException | RuntimeException e) {
+					/* Don't let one bad message stop the rest of the shard. */
+					LOGGER.error("Caught exception processing agent message", e);
+					mop = MessageOperation.Reject;
+				}
 
-			amqp.opMessage(mop, msg.tag);
+				/* Faked messages don't have a delivery tag. */
+				if(msg.tag >= 0) {
+					ops.put(msg.tag, mop);
+				}
+			});
+		} finally {
+			/* Settled together after the flush, so acks can be coalesced. */
+			unsettled.putAll(ops);
 		}
 
+		/* The workers defer state changes and pongs, apply them before the heart looks at anyone. */
+		processQueue(taskQueuePrio);
+
 		heart.tick(Instant.now());
+		agentWriteBehind.tick(Instant.now());
 
 		if(!heartOps.toExpire.isEmpty()) {
 			List<MasterAgentInfo> ais = heartOps.toExpire.stream()
@@ -588,7 +807,7 @@ public class Master implements MessageQueueListener, AutoCloseable {
 		ai.state.setExpired(true);
 		heart.onAgentDisconnect(ai.uuid);
 		runLater("heartExpireAgent", () -> agentScheduler.onAgentExpiry(ai.instance, ai.resource));
-		nimrod.updateAgent(ai.state);
+		agentWriteBehind.updateNow(ai.state);
 		return true;
 	}
 
@@ -623,6 +842,12 @@ public class Master implements MessageQueueListener, AutoCloseable {
 			return MessageOperation.Ack;
 		}
 
+		if(ai.state.getState() == AgentInfo.State.SHUTDOWN) {
+			/* Shut down earlier in this batch, but not yet removed. */
+			LOGGER.warn("Message from shut down agent {}, ignoring...", msg.getAgentUUID());
+			return MessageOperation.Ack;
+		}
+
 		/* Process the agent message. */
 		Agent _ag = ai.instance;
 		try {
@@ -677,6 +902,10 @@ public class Master implements MessageQueueListener, AutoCloseable {
 
 	@Override
 	public void close() {
+		agentWorkers.close();
+		agentWriteBehind.flush();
+		nimrod.setDeferredWrites(false);
+		nimrod.setMasterEventListener(null);
 		aaaaa.close();
 		orphanage.close();
 	}
@@ -693,6 +922,11 @@ public class Master implements MessageQueueListener, AutoCloseable {
 			return nimrod.filterJobs(exp, status, start, limit);
 		}
 
+		@Override
+		public JobCursor openJobCursor(Experiment exp, EnumSet<JobAttempt.Status> status, long start) {
+			return nimrod.openJobCursor(exp, status, start);
+		}
+
 		@Override
 		public JobAttempt.Status fetchJobStatus(Job j) {
 			return nimrod.getJobStatus(j);
@@ -730,6 +964,12 @@ public class Master implements MessageQueueListener, AutoCloseable {
 			nimrod.addCommandResult(att, status, index, time, retval, message, errcode, stop);
 		}
 
+		@Override
+		public int getLiveAgentCount() {
+			/* Agents are removed once they've shut down. */
+			return allAgents.size();
+		}
+
 	}
 
 	/**
@@ -783,9 +1023,10 @@ public class Master implements MessageQueueListener, AutoCloseable {
 
 			ai.state.setActuatorData(lr.actuatorData);
 			ai.state.setExpiryTime(lr.expiryTime);
+			heart.reschedule(ai.uuid);
 
 			/* FIXME: Double check this, I might not need to do it here. */
-			nimrod.updateAgent(ai.state);
+			agentWriteBehind.updateNow(ai.state);
 
 			if(act == orphanage) {
 				orphanage.adopt(ai.state);
@@ -944,8 +1185,17 @@ public class Master implements MessageQueueListener, AutoCloseable {
 		}
 	}
 
+	/*
+	 * Agent messages are processed on the agent workers, whilst the master thread waits.
+	 * Anything that touches master state is run on the master thread via runLater(),
+	 * before the next scheduler tick.
+	 */
 	private class _AgentListener implements ReferenceAgent.AgentListener {
 
+		private boolean isMasterThread() {
+			return Thread.currentThread() == masterThread;
+		}
+
 		@Override
 		public void send(Agent agent, AgentMessage.Builder<?> msg) throws IOException {
 			AgentState as = ((ReferenceAgent)agent).getDataStore();
@@ -964,6 +1214,19 @@ public class Master implements MessageQueueListener, AutoCloseable {
 
 			LOGGER.debug("Agent {}: State change from {} -> {}", agent.getUUID(), oldState, newState);
 
+			if(isMasterThread()) {
+				handleStateChange(ai, oldState, newState);
+				/* Execute this with priority so it's processed before the next scheduler tick. */
+				runLater("agOnStateChange", () -> agentScheduler.onAgentStateUpdate(agent, ai.resource, oldState, newState), true);
+			} else {
+				runLater("agOnStateChange", () -> {
+					handleStateChange(ai, oldState, newState);
+					agentScheduler.onAgentStateUpdate(agent, ai.resource, oldState, newState);
+				}, true);
+			}
+		}
+
+		private void handleStateChange(MasterAgentInfo ai, AgentInfo.State oldState, AgentInfo.State newState) {
 			if(oldState == null) {
 				assert newState == AgentInfo.State.WAITING_FOR_HELLO;
 				AgentState nas = nimrod.addAgent(ai.resource, ai.state);
@@ -972,17 +1235,14 @@ public class Master implements MessageQueueListener, AutoCloseable {
 			} else if(oldState == AgentInfo.State.WAITING_FOR_HELLO && newState == AgentInfo.State.READY) {
 				ai.state.setConnectionTime(Instant.now());
 				aaaaa.runWithActuator(ai.resource, a -> a.notifyAgentConnection(ai.state));
-				nimrod.updateAgent(ai.state);
+				agentWriteBehind.updateNow(ai.state);
 			} else if(newState == AgentInfo.State.SHUTDOWN) {
 				ai.state.setExpired(true);
 				aaaaa.runWithActuator(ai.resource, a -> a.notifyAgentDisconnection(ai.uuid));
 				heart.onAgentDisconnect(ai.uuid);
 				allAgents.remove(ai.uuid);
-				nimrod.updateAgent(ai.state);
+				agentWriteBehind.updateNow(ai.state);
 			}
-
-			/* Execute this with priority so it's processed before the next scheduler tick. */
-			runLater("agOnStateChange", () -> agentScheduler.onAgentStateUpdate(agent, ai.resource, oldState, newState), true);
 		}
 
 		@Override
@@ -994,6 +1254,7 @@ public class Master implements MessageQueueListener, AutoCloseable {
 		public void onJobUpdate(Agent agent, AgentUpdate au) {
 			UUID uuid = au.getJobUUID();
 
+			/* Safe off the master thread, nothing writes to this whilst messages are processed. */
 			RunningJob rj = runningJobs.get(uuid);
 
 			assert rj.agent.equals(agent);
@@ -1008,8 +1269,17 @@ public class Master implements MessageQueueListener, AutoCloseable {
 
 		@Override
 		public void onPong(Agent agent, AgentPong pong) {
+			if(isMasterThread()) {
+				handlePong(agent);
+			} else {
+				runLater("agOnPong", () -> handlePong(agent), true);
+			}
+		}
+
+		private void handlePong(Agent agent) {
 			heart.onAgentPong(agent.getUUID());
-			nimrod.updateAgent(((ReferenceAgent)agent).getDataStore());
+			/* Pongs only bump last_heard_from, these can wait. */
+			agentWriteBehind.markDirty(((ReferenceAgent)agent).getDataStore());
 		}
 	}
 
@@ -1038,13 +1308,15 @@ public class Master implements MessageQueueListener, AutoCloseable {
 		public void reportAgentFailure(Actuator act, UUID uuid, AgentInfo.ShutdownReason reason, int signal) throws IllegalArgumentException {
 			Instant now = Instant.now();
 			// FIXME: Should probably be some way to tell this message was faked.
-			agentMessages.offer(new _AgentMessage(-1, UUID.randomUUID(), new AgentShutdown.Builder()
+			/* This can't be redelivered, don't drop it. */
+			agentMessages.force(new _AgentMessage(-1, UUID.randomUUID(), new AgentShutdown.Builder()
 					.agentUuid(uuid)
 					.reason(reason)
 					.signal(signal)
 					.build(),
 					now,
 					now));
+			wakeSignal.signal();
 		}
 
 		@Override
@@ -30,6 +30,19 @@ public interface MessageQueueListener {
 		RejectAndRequeue
 	}
 
-	/* Return an empty optional to do nothing. The tag must be passed to opMessage() */
+	/* Return an empty optional to do nothing. The tag must be passed to opMessage() or opMessages() */
 	Optional<MessageOperation> processAgentMessage(long tag, AMQPMessage msg) throws IllegalStateException, IOException;
+
+	/**
+	 * Called when a sent message was returned or nacked by the broker, or its channel
+	 * closed before it was confirmed. The agent should be assumed to have never received it.
+	 *
+	 * This may be called from any thread.
+	 *
+	 * @param msg The message, as returned by {@link AMQProcessor#sendMessage}.
+	 * @param reason A human-readable reason.
+	 */
+	default void onMessageUndeliverable(AMQPMessage msg, String reason) {
+		/* nop */
+	}
 }
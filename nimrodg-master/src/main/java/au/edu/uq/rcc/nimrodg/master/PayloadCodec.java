@@ -0,0 +1,205 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.master;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Content-encodings for message payloads.
+ *
+ * Only gzip is supported, as it's the only one the JDK provides.
+ */
+final class PayloadCodec {
+
+	static final String IDENTITY = "identity";
+	static final String GZIP = "gzip";
+
+	/* Payloads are decoded before they're verified, don't let them inflate without bound. */
+	static final int MAX_DECODED_SIZE = 64 * 1024 * 1024;
+
+	private static final byte[] GZIP_HEADER = {
+			0x1f, (byte)0x8b, /* Magic */
+			Deflater.DEFLATED,
+			0, /* Flags */
+			0, 0, 0, 0, /* mtime */
+			0, /* Extra flags */
+			(byte)0xff /* OS, unknown */
+	};
+	private static final int GZIP_TRAILER_SIZE = 8;
+
+	private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+	private static final ThreadLocal<CRC32> CRCS = ThreadLocal.withInitial(CRC32::new);
+
+	private static final int MAX_CACHED_ACCEPTS = 64;
+	private static final ConcurrentHashMap<Object, Boolean> ACCEPTS_GZIP = new ConcurrentHashMap<>();
+
+	private PayloadCodec() {
+
+	}
+
+	/**
+	 * Gzip a payload.
+	 *
+	 * @param data The payload.
+	 * @return The compressed payload, or null if it isn't any smaller.
+	 */
+	static byte[] gzip(byte[] data) {
+		/* Not worth it if it isn't smaller, so don't go past the input size. */
+		int limit = data.length - GZIP_HEADER.length - GZIP_TRAILER_SIZE;
+		if(limit <= 0) {
+			return null;
+		}
+
+		Deflater def = DEFLATERS.get();
+		def.reset();
+		def.setInput(data);
+		def.finish();
+
+		byte[] out = new byte[data.length];
+		System.arraycopy(GZIP_HEADER, 0, out, 0, GZIP_HEADER.length);
+
+		int len = GZIP_HEADER.length;
+		int end = GZIP_HEADER.length + limit;
+		while(!def.finished()) {
+			if(len >= end) {
+				return null;
+			}
+			len += def.deflate(out, len, end - len);
+		}
+
+		CRC32 crc = CRCS.get();
+		crc.reset();
+		crc.update(data);
+
+		putIntLE(out, len, (int)crc.getValue());
+		putIntLE(out, len + 4, data.length);
+		return Arrays.copyOf(out, len + GZIP_TRAILER_SIZE);
+	}
+
+	private static void putIntLE(byte[] b, int off, int val) {
+		b[off] = (byte)val;
+		b[off + 1] = (byte)(val >>> 8);
+		b[off + 2] = (byte)(val >>> 16);
+		b[off + 3] = (byte)(val >>> 24);
+	}
+
+	/**
+	 * Decode a payload.
+	 *
+	 * @param encoding The content-encoding. If null, assume "identity".
+	 * @param body The encoded payload.
+	 * @param maxSize The maximum size of the decoded payload.
+	 * @return The decoded payload, or null if the encoding isn't supported.
+	 * @throws IOException If the payload is corrupt or larger than maxSize.
+	 */
+	static byte[] decode(String encoding, byte[] body, int maxSize) throws IOException {
+		if(encoding == null || encoding.isEmpty() || IDENTITY.equalsIgnoreCase(encoding)) {
+			return body;
+		}
+
+		if(!GZIP.equalsIgnoreCase(encoding) && !"x-gzip".equalsIgnoreCase(encoding)) {
+			return null;
+		}
+
+		try(InputStream is = new GZIPInputStream(new ByteArrayInputStream(body), Math.max(512, Math.min(body.length, 65536)))) {
+			byte[] data = is.readNBytes(maxSize);
+			if(is.read() >= 0) {
+				throw new IOException("Decoded payload exceeds " + maxSize + " bytes");
+			}
+			return data;
+		}
+	}
+
+	/**
+	 * Check if an Accept-Encoding header allows gzip.
+	 *
+	 * Peers send the same value every time, so the answer is cached.
+	 *
+	 * @param accept The raw header value. This may be null.
+	 * @return If gzip is allowed.
+	 */
+	static boolean acceptsGzip(Object accept) {
+		if(accept == null) {
+			return false;
+		}
+
+		/* The AMQP client gives us LongStrings, which compare by content. */
+		Boolean b = ACCEPTS_GZIP.get(accept);
+		if(b == null) {
+			b = accepts(accept.toString(), GZIP);
+			if(ACCEPTS_GZIP.size() < MAX_CACHED_ACCEPTS) {
+				ACCEPTS_GZIP.putIfAbsent(accept, b);
+			}
+		}
+		return b;
+	}
+
+	/**
+	 * Check if an Accept-Encoding value allows a given encoding.
+	 *
+	 * @param accept The Accept-Encoding value, e.g. "gzip, identity;q=0.5".
+	 * @param encoding The encoding.
+	 * @return If the encoding is allowed. Anything with a q-value of 0 isn't.
+	 */
+	static boolean accepts(String accept, String encoding) {
+		if(accept == null) {
+			return false;
+		}
+
+		/* An explicit entry takes precedence over "*". */
+		boolean wildcard = false;
+		for(String coding : accept.split(",")) {
+			String[] params = coding.split(";");
+			String name = params[0].trim();
+
+			boolean exact = name.equalsIgnoreCase(encoding);
+			if(!exact && !name.equals("*")) {
+				continue;
+			}
+
+			boolean allowed = true;
+			for(int i = 1; i < params.length; ++i) {
+				String p = params[i].trim();
+				if(!p.startsWith("q=")) {
+					continue;
+				}
+
+				try {
+					allowed = Double.parseDouble(p.substring(2)) > 0;
+				} catch(NumberFormatException e) {
+					allowed = false;
+				}
+			}
+
+			if(exact) {
+				return allowed;
+			}
+			wildcard = allowed;
+		}
+		return wildcard;
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.master;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.AlreadyClosedException;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.ReturnListener;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+/**
+ * A set of confirm-mode channels used for publishing.
+ *
+ * Each routing key always maps to the same channel, so messages to a single agent are never reordered.
+ * Channels are locked independently, so a burst of messages to some agents doesn't stall the others,
+ * or the consuming channel.
+ *
+ * @param <T> The message type, passed back to the undeliverable handler.
+ */
+public final class PublisherPool<T> implements AutoCloseable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PublisherPool.class);
+
+	private static final class Pending<T> {
+		public final String messageId;
+		public final T msg;
+
+		private Pending(String messageId, T msg) {
+			this.messageId = messageId;
+			this.msg = msg;
+		}
+	}
+
+	private final class PublishChannel implements ConfirmListener, ReturnListener, ShutdownListener {
+		/* Also the publishing lock. */
+		public final Channel channel;
+		public final ConfirmTracker<Pending<T>> unconfirmed;
+
+		private PublishChannel(Channel channel, int maxInFlight) throws IOException {
+			this.channel = channel;
+			this.unconfirmed = new ConfirmTracker<>(maxInFlight);
+
+			channel.addConfirmListener(this);
+			channel.addReturnListener(this);
+			channel.addShutdownListener(this);
+			channel.confirmSelect();
+		}
+
+		public void publish(String exchange, String routingKey, AMQP.BasicProperties props, byte[] body, T msg) throws IOException {
+			synchronized(channel) {
+				try {
+					unconfirmed.awaitCapacity(confirmTimeoutNanos);
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException();
+				} catch(TimeoutException e) {
+					throw new IOException("Timed out waiting for publisher confirms", e);
+				}
+
+				long seqNo = channel.getNextPublishSeqNo();
+				unconfirmed.track(seqNo, new Pending<>(props.getMessageId(), msg));
+				try {
+					channel.basicPublish(exchange, routingKey, true, props, body);
+				} catch(IOException | RuntimeException e) {
+					unconfirmed.confirm(seqNo, false);
+					throw e;
+				}
+			}
+		}
+
+		@Override
+		public void handleAck(long deliveryTag, boolean multiple) {
+			unconfirmed.confirm(deliveryTag, multiple);
+		}
+
+		@Override
+		public void handleNack(long deliveryTag, boolean multiple) {
+			unconfirmed.confirm(deliveryTag, multiple).forEach(p -> undeliverable.accept(p.msg, "Nacked by broker"));
+		}
+
+		@Override
+		public void handleReturn(int replyCode, String replyText, String exchange, String routingKey, AMQP.BasicProperties properties, byte[] body) {
+			/* Returns arrive before the ack, so stop tracking it here and the ack is a no-op. */
+			Optional<Pending<T>> p = unconfirmed.remove(pp -> Objects.equals(pp.messageId, properties.getMessageId()));
+			if(p.isPresent()) {
+				undeliverable.accept(p.get().msg, String.format("Returned by broker: %d %s", replyCode, replyText));
+			} else {
+				LOGGER.warn("Unknown message {} returned from {}/{}: {} {}", properties.getMessageId(), exchange, routingKey, replyCode, replyText);
+			}
+		}
+
+		@Override
+		public void shutdownCompleted(ShutdownSignalException cause) {
+			/* Sequence numbers restart with the channel, anything unconfirmed is in limbo. */
+			unconfirmed.clear().forEach(p -> undeliverable.accept(p.msg, "Channel shut down"));
+		}
+	}
+
+	private final List<PublishChannel> channels;
+	private final long confirmTimeoutNanos;
+	private final BiConsumer<T, String> undeliverable;
+
+	/**
+	 * Create a publisher pool. Each channel is put into confirm mode.
+	 *
+	 * @param channels The channels to publish on. Must not be empty.
+	 * @param maxInFlight The maximum number of unconfirmed messages per channel. 0 is unlimited.
+	 * @param confirmTimeoutNanos How long {@link #publish} will wait for room in a channel's window.
+	 * @param undeliverable Called with any message that was returned, nacked, or was unconfirmed when its channel shut down.
+	 *                      This may be called from any thread.
+	 * @throws IOException If a channel couldn't be put into confirm mode.
+	 */
+	public PublisherPool(List<Channel> channels, int maxInFlight, long confirmTimeoutNanos, BiConsumer<T, String> undeliverable) throws IOException {
+		if(channels.isEmpty()) {
+			throw new IllegalArgumentException();
+		}
+
+		this.confirmTimeoutNanos = confirmTimeoutNanos;
+		this.undeliverable = undeliverable;
+
+		List<PublishChannel> pcs = new ArrayList<>(channels.size());
+		for(Channel c : channels) {
+			pcs.add(new PublishChannel(c, maxInFlight));
+		}
+		this.channels = List.copyOf(pcs);
+	}
+
+	/**
+	 * Publish a mandatory message, blocking if its channel's confirm window is full.
+	 *
+	 * This may be called from any thread.
+	 */
+	public void publish(String exchange, String routingKey, AMQP.BasicProperties props, byte[] body, T msg) throws IOException {
+		channels.get(selectChannel(routingKey, channels.size())).publish(exchange, routingKey, props, body, msg);
+	}
+
+	public int getChannelCount() {
+		return channels.size();
+	}
+
+	public int getInFlight() {
+		return channels.stream().mapToInt(pc -> pc.unconfirmed.getInFlight()).sum();
+	}
+
+	static int selectChannel(String routingKey, int count) {
+		return Math.floorMod(Objects.hashCode(routingKey), count);
+	}
+
+	@Override
+	public void close() {
+		for(PublishChannel pc : channels) {
+			/* We're going away, don't report anything still in flight. */
+			pc.unconfirmed.clear();
+			try {
+				pc.channel.abort();
+			} catch(AlreadyClosedException | IOException e) {
+				/* nop */
+			}
+		}
+	}
+}
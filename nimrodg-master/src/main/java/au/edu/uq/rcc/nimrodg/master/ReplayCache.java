@@ -0,0 +1,448 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.master;
+
+import au.edu.uq.rcc.nimrodg.master.sig.AuthHeader;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Rejects replayed agent messages.
+ *
+ * Messages are only accepted if their signed timestamp is within the window of the current time.
+ * Within the window, each accepted message's fingerprint is remembered so it can't be accepted twice.
+ *
+ * Senders aren't required to use a unique nonce (the master itself always sends 0), so
+ * the fingerprint covers the whole signed scope: the credential, which includes the nonce,
+ * the message id and the signature. A replayed message has to carry all of these unchanged,
+ * otherwise it won't verify.
+ *
+ * Fingerprints are kept in segments of {@link #SEGMENT_SECONDS} seconds, keyed by the signed timestamp,
+ * in a ring that covers the window either side of now. A replay has the same timestamp as the original
+ * so only one segment is ever searched. Segments are dropped whole once they fall out of the window,
+ * so memory tracks the actual message rate.
+ *
+ * Memory is capped at a maximum number of fingerprints. If the cap is hit, the oldest segment is
+ * dropped early and anything older than it is treated as expired, i.e. the window shrinks under load
+ * rather than letting replays through.
+ *
+ * The structures are primitive arrays, checking a message doesn't allocate.
+ */
+final class ReplayCache implements ConfigListener {
+
+	/* Maximum allowed difference in seconds between a message's timestamp and ours. 0 disables. */
+	public static final long DEFAULT_WINDOW = 300;
+	/* Tables are kept 25-75% full, so 11-32 bytes per fingerprint, at most 128MiB. */
+	public static final int DEFAULT_MAX_ENTRIES = 1 << 22;
+
+	static final long SEGMENT_SECONDS = 5;
+
+	public enum Result {
+		/**
+		 * The message is new and has been recorded.
+		 */
+		Accepted,
+		/**
+		 * The message has been seen before.
+		 */
+		Replayed,
+		/**
+		 * The message's timestamp is outside the window.
+		 */
+		Expired,
+		/**
+		 * Too many messages are being tracked, and there's nothing left to drop.
+		 * The message hasn't been recorded, try again later.
+		 */
+		Full
+	}
+
+	private long window;
+	private int maxEntries;
+	private Segment[] ring;
+	private int size;
+	private long lastExpiry;
+	/* Segments at or below this were dropped early, see evictOldest(). */
+	private long floorTag;
+
+	private long replayed;
+	private long expired;
+
+	ReplayCache() {
+		this.window = DEFAULT_WINDOW;
+		this.maxEntries = DEFAULT_MAX_ENTRIES;
+		this.ring = new Segment[ringSize(window)];
+		this.size = 0;
+		this.lastExpiry = Long.MIN_VALUE;
+		this.floorTag = Long.MIN_VALUE;
+		this.replayed = 0;
+		this.expired = 0;
+	}
+
+	/* Enough slots to hold every segment the window can touch, either side of now, without collisions. */
+	private static int ringSize(long window) {
+		return (int)(2 * ((window + SEGMENT_SECONDS - 1) / SEGMENT_SECONDS) + 2);
+	}
+
+	/**
+	 * Check a message, recording it if it's acceptable.
+	 *
+	 * @param timestamp   The message's signed timestamp, in seconds since the epoch.
+	 * @param fingerprint The message's fingerprint. See {@link #fingerprint(AuthHeader, UUID)}.
+	 * @param now         The current time, in seconds since the epoch.
+	 * @return The result of the check. The message has only been recorded if {@link Result#Accepted}.
+	 */
+	synchronized Result check(long timestamp, long fingerprint, long now) {
+		if(window == 0) {
+			return Result.Accepted;
+		}
+
+		if(timestamp < now - window || timestamp > now + window) {
+			++expired;
+			return Result.Expired;
+		}
+
+		if(now != lastExpiry) {
+			expire(now);
+			lastExpiry = now;
+		}
+
+		long tag = Math.floorDiv(timestamp, SEGMENT_SECONDS);
+		if(tag <= floorTag) {
+			++expired;
+			return Result.Expired;
+		}
+
+		int slot = (int)Math.floorMod(tag, (long)ring.length);
+
+		Segment seg = ring[slot];
+		if(seg == null) {
+			seg = ring[slot] = new Segment(tag);
+		} else if(seg.tag != tag) {
+			/* Anything else in this slot is out of the window by now. */
+			size -= seg.size;
+			seg.reset(tag);
+		}
+
+		if(seg.contains(fingerprint)) {
+			++replayed;
+			return Result.Replayed;
+		}
+
+		if(size >= maxEntries && !evictOldest(tag)) {
+			return Result.Full;
+		}
+
+		seg.add(fingerprint);
+		++size;
+		return Result.Accepted;
+	}
+
+	/**
+	 * Forget a message previously accepted by {@link #check(long, long, long)}, i.e. if it's being requeued.
+	 *
+	 * @param timestamp   The message's signed timestamp, in seconds since the epoch.
+	 * @param fingerprint The message's fingerprint.
+	 */
+	synchronized void forget(long timestamp, long fingerprint) {
+		long tag = Math.floorDiv(timestamp, SEGMENT_SECONDS);
+		Segment seg = ring[(int)Math.floorMod(tag, (long)ring.length)];
+		if(seg != null && seg.tag == tag && seg.remove(fingerprint)) {
+			--size;
+		}
+	}
+
+	/* Drop the oldest segment that isn't the one we're about to add to. */
+	private boolean evictOldest(long keep) {
+		Segment oldest = null;
+		for(Segment seg : ring) {
+			if(seg != null && seg.size > 0 && seg.tag != keep && (oldest == null || seg.tag < oldest.tag)) {
+				oldest = seg;
+			}
+		}
+
+		if(oldest == null || oldest.tag > keep) {
+			/* Everything else is newer, dropping it would make this one unreachable. */
+			return false;
+		}
+
+		floorTag = Math.max(floorTag, oldest.tag);
+		size -= oldest.size;
+		oldest.reset(oldest.tag);
+		return true;
+	}
+
+	private void expire(long now) {
+		long oldest = Math.floorDiv(now - window, SEGMENT_SECONDS);
+		for(Segment seg : ring) {
+			if(seg != null && seg.tag < oldest && seg.size > 0) {
+				size -= seg.size;
+				seg.reset(seg.tag);
+			}
+		}
+	}
+
+	synchronized int size() {
+		return size;
+	}
+
+	synchronized long getReplayedCount() {
+		return replayed;
+	}
+
+	synchronized long getExpiredCount() {
+		return expired;
+	}
+
+	/* Number of table slots allocated, for checking memory use. */
+	synchronized long getCapacity() {
+		return Arrays.stream(ring).filter(Objects::nonNull).mapToLong(s -> s.table.length).sum();
+	}
+
+	synchronized void setWindow(long window) {
+		if(window == this.window) {
+			return;
+		}
+
+		/* Carry over what we can, anything that doesn't fit has fallen out of the window. */
+		Segment[] oldRing = ring;
+		ring = new Segment[ringSize(window)];
+		size = 0;
+		for(Segment seg : oldRing) {
+			if(seg == null || seg.size == 0) {
+				continue;
+			}
+
+			int slot = (int)Math.floorMod(seg.tag, (long)ring.length);
+			if(ring[slot] == null || ring[slot].tag < seg.tag) {
+				if(ring[slot] != null) {
+					size -= ring[slot].size;
+				}
+				ring[slot] = seg;
+				size += seg.size;
+			}
+		}
+
+		this.window = window;
+		this.lastExpiry = Long.MIN_VALUE;
+	}
+
+	synchronized void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	@Override
+	public void onConfigChange(String key, String oldValue, String newValue) {
+		Objects.requireNonNull(key, "key");
+
+		switch(key) {
+			case "nimrod.master.replay_window":
+				/* Cap it at a day, beyond that it's not doing anything useful. */
+				setWindow(ConfigListener.get(newValue, window, DEFAULT_WINDOW, 0, 86400));
+				break;
+			case "nimrod.master.replay_max_entries":
+				setMaxEntries(ConfigListener.get(newValue, maxEntries, DEFAULT_MAX_ENTRIES, 1, 1 << 28));
+				break;
+		}
+	}
+
+	/**
+	 * Calculate a message's fingerprint.
+	 *
+	 * @param hdr       The message's authorization header.
+	 * @param messageId The message id.
+	 * @return The message's fingerprint.
+	 */
+	static long fingerprint(AuthHeader hdr, UUID messageId) {
+		long h = 0xcbf29ce484222325L;
+		h = hash(h, hdr.credential);
+		h = hash(h, messageId.getMostSignificantBits());
+		h = hash(h, messageId.getLeastSignificantBits());
+		h = hash(h, hdr.signature);
+		return mix(h);
+	}
+
+	private static long hash(long h, long v) {
+		for(int i = 0; i < 8; ++i, v >>>= 8) {
+			h ^= v & 0xFF;
+			h *= 0x100000001b3L;
+		}
+		return h;
+	}
+
+	/* FNV-1a, a char at a time. */
+	private static long hash(long h, String s) {
+		for(int i = 0; i < s.length(); ++i) {
+			h ^= s.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		/* Separator, so ("ab", "c") and ("a", "bc") differ. */
+		h ^= 0xFFFF;
+		h *= 0x100000001b3L;
+		return h;
+	}
+
+	/* MurmurHash3 finaliser, FNV's low bits aren't great. */
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * An open-addressed set of fingerprints, with linear probing. 0 marks an empty slot,
+	 * so a fingerprint of 0 is tracked separately.
+	 */
+	private static final class Segment {
+		private static final int INITIAL_CAPACITY = 64;
+
+		long tag;
+		long[] table;
+		int size;
+		private boolean hasZero;
+		/* How many entries this held last time, to size the table up-front. */
+		private int sizeHint;
+
+		Segment(long tag) {
+			this.tag = tag;
+			this.table = new long[INITIAL_CAPACITY];
+			this.size = 0;
+			this.hasZero = false;
+			this.sizeHint = 0;
+		}
+
+		/* Empty it, releasing the table. Segments spend most of their time empty, waiting for their turn. */
+		void reset(long tag) {
+			this.tag = tag;
+			if(table.length > INITIAL_CAPACITY) {
+				table = new long[INITIAL_CAPACITY];
+			} else {
+				Arrays.fill(table, 0);
+			}
+			sizeHint = size;
+			size = 0;
+			hasZero = false;
+		}
+
+		private static int capacityFor(int n) {
+			int cap = INITIAL_CAPACITY;
+			while(cap / 2 < n) {
+				cap <<= 1;
+			}
+			return cap;
+		}
+
+		private int indexOf(long k) {
+			int mask = table.length - 1;
+			int i = (int)k & mask;
+			while(table[i] != 0 && table[i] != k) {
+				i = (i + 1) & mask;
+			}
+			return i;
+		}
+
+		boolean contains(long fp) {
+			if(fp == 0) {
+				return hasZero;
+			}
+			return table[indexOf(fp)] != 0;
+		}
+
+		void add(long fp) {
+			if(fp == 0) {
+				if(!hasZero) {
+					hasZero = true;
+					++size;
+				}
+				return;
+			}
+
+			if(size == 0 && sizeHint > 0) {
+				/* Probably going to see as many as last time, avoid growing it step-by-step. */
+				int cap = capacityFor(sizeHint);
+				if(cap > table.length) {
+					table = new long[cap];
+				}
+				sizeHint = 0;
+			}
+
+			if((size + 1) * 4 > table.length * 3) {
+				grow();
+			}
+
+			int i = indexOf(fp);
+			if(table[i] == 0) {
+				table[i] = fp;
+				++size;
+			}
+		}
+
+		boolean remove(long fp) {
+			if(fp == 0) {
+				if(!hasZero) {
+					return false;
+				}
+				hasZero = false;
+				--size;
+				return true;
+			}
+
+			int mask = table.length - 1;
+			int i = indexOf(fp);
+			if(table[i] == 0) {
+				return false;
+			}
+
+			/* Backward-shift deletion, so probe sequences stay intact. */
+			int j = i;
+			for(;;) {
+				j = (j + 1) & mask;
+				if(table[j] == 0) {
+					break;
+				}
+
+				int home = (int)table[j] & mask;
+				/* Move it back if its home isn't cyclically within (i, j]. */
+				if(i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+					table[i] = table[j];
+					i = j;
+				}
+			}
+			table[i] = 0;
+			--size;
+			return true;
+		}
+
+		private void grow() {
+			long[] old = table;
+			table = new long[old.length * 2];
+			for(long k : old) {
+				if(k != 0) {
+					table[indexOf(k)] = k;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.master;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Processes batches of items in parallel, sharded by UUID.
+ *
+ * Items with the same UUID always go to the same shard, and each shard processes its items
+ * in order, so per-UUID ordering is preserved. Items with different UUIDs may be processed
+ * concurrently.
+ */
+class ShardedExecutor implements AutoCloseable {
+
+	private final String name;
+	private ExecutorService[] shards;
+
+	ShardedExecutor(String name, int shardCount) {
+		this.name = name;
+		this.shards = createShards(shardCount);
+	}
+
+	private ExecutorService[] createShards(int count) {
+		/* A single shard is processed on the calling thread. */
+		if(count <= 1) {
+			return new ExecutorService[0];
+		}
+
+		ExecutorService[] es = new ExecutorService[count];
+		for(int i = 0; i < count; ++i) {
+			String threadName = String.format("%s-%d", name, i);
+			es[i] = Executors.newSingleThreadExecutor(r -> {
+				Thread t = new Thread(r, threadName);
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return es;
+	}
+
+	/**
+	 * Change the number of shards.
+	 *
+	 * This must not be called whilst {@link #process(Collection, Function, Consumer)} is running.
+	 *
+	 * @param count The new shard count. Values less than two process everything on the calling thread.
+	 */
+	public void setShardCount(int count) {
+		if(Math.max(count, 1) == getShardCount()) {
+			return;
+		}
+
+		shutdown();
+		shards = createShards(count);
+	}
+
+	public int getShardCount() {
+		return Math.max(shards.length, 1);
+	}
+
+	static int getShard(UUID uuid, int count) {
+		return Math.floorMod(uuid.hashCode(), count);
+	}
+
+	/**
+	 * Process a batch of items, blocking until all of them have been processed.
+	 *
+	 * @param items The items to process.
+	 * @param key A function to get an item's sharding key.
+	 * @param proc The processing function. This must be safe to call concurrently for items with different keys.
+	 * @param <T> The item type.
+	 * @throws RuntimeException If any item threw. The remaining items in its shard are not processed.
+	 */
+	public <T> void process(Collection<T> items, Function<T, UUID> key, Consumer<T> proc) {
+		if(shards.length == 0) {
+			items.forEach(proc);
+			return;
+		}
+
+		List<List<T>> batches = new ArrayList<>(shards.length);
+		for(int i = 0; i < shards.length; ++i) {
+			batches.add(new ArrayList<>());
+		}
+
+		for(T item : items) {
+			batches.get(getShard(key.apply(item), shards.length)).add(item);
+		}
+
+		List<Future<?>> futures = new ArrayList<>(shards.length);
+		for(int i = 0; i < shards.length; ++i) {
+			List<T> batch = batches.get(i);
+			if(!batch.isEmpty()) {
+				futures.add(shards[i].submit(() -> batch.forEach(proc)));
+			}
+		}
+
+		RuntimeException ex = null;
+		boolean interrupted = false;
+		for(Future<?> f : futures) {
+			/* Wait for everything, even if one has failed. */
+			while(true) {
+				try {
+					f.get();
+					break;
+				} catch(InterruptedException e) {
+					interrupted = true;
+				} catch(ExecutionException e) {
+					RuntimeException re = e.getCause() instanceof RuntimeException ?
+							(RuntimeException)e.getCause() : new RuntimeException(e.getCause());
+					if(ex == null) {
+						ex = re;
+					} else {
+						ex.addSuppressed(re);
+					}
+					break;
+				}
+			}
+		}
+
+		if(interrupted) {
+			Thread.currentThread().interrupt();
+		}
+
+		if(ex != null) {
+			throw ex;
+		}
+	}
+
+	private void shutdown() {
+		for(ExecutorService es : shards) {
+			es.shutdown();
+		}
+	}
+
+	@Override
+	public void close() {
+		shutdown();
+		shards = new ExecutorService[0];
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.master;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A sticky wakeup signal for the master's run loop.
+ *
+ * Unlike a bare {@link Object#notify()}, a signal raised while nobody is waiting
+ * isn't lost, the next call to {@link #await(long)} will return immediately.
+ */
+public final class WakeSignal {
+
+	private final Object monitor;
+	private boolean pending;
+
+	public WakeSignal() {
+		this.monitor = new Object();
+		this.pending = false;
+	}
+
+	/**
+	 * Raise the signal, waking the waiter if there is one.
+	 *
+	 * This may be called from any thread.
+	 */
+	public void signal() {
+		synchronized(monitor) {
+			pending = true;
+			monitor.notifyAll();
+		}
+	}
+
+	/**
+	 * Wait for the signal to be raised, consuming it.
+	 *
+	 * @param timeoutNanos The maximum amount of time to wait, in nanoseconds.
+	 * @return If the signal was raised before the timeout expired.
+	 * @throws InterruptedException If the thread was interrupted whilst waiting.
+	 */
+	public boolean await(long timeoutNanos) throws InterruptedException {
+		long deadline = System.nanoTime() + timeoutNanos;
+		synchronized(monitor) {
+			long remaining = timeoutNanos;
+			while(!pending && remaining > 0) {
+				TimeUnit.NANOSECONDS.timedWait(monitor, remaining);
+				remaining = deadline - System.nanoTime();
+			}
+
+			boolean signalled = pending;
+			pending = false;
+			return signalled;
+		}
+	}
+}
@@ -56,7 +56,7 @@ public class DefaultAgentScheduler implements AgentScheduler {
 
 	private final LinkedHashSet<JobAttempt> m_PendingJobs;
 	private final FailureTracker m_FailureTracker;
-	private final LinkedHashSet<JobAttempt> m_HeldJobs;
+	private final HeldJobQueue m_HeldJobs;
 	private final ASJob m_AssJob;
 	private final AgentDemandHeuristic m_AgentHeuristic;
 	private final HashSet<Agent> m_AllAgents;
@@ -71,7 +71,7 @@ public class DefaultAgentScheduler implements AgentScheduler {
 		this.ops = null;
 		m_PendingJobs = new LinkedHashSet<>();
 		m_FailureTracker = new FailureTracker();
-		m_HeldJobs = new LinkedHashSet<>();
+		m_HeldJobs = new HeldJobQueue();
 		m_AssJob = new ASJob();
 		m_AgentHeuristic = new AgentDemandHeuristic();
 		m_AllAgents = new HashSet<>();
@@ -265,24 +265,18 @@ public class DefaultAgentScheduler implements AgentScheduler {
 	 * Given an agent, get the next held job that this agent is best-suited for. and remove it from the queue.
 	 *
 	 * @param agent The agent.
+	 * @param runnable A cache of the experiments with held jobs that each resource can run. Only valid for this tick.
 	 * @return A job that the agent is best-suited for, or null if there is none.
 	 */
-	private JobAttempt removeNextHeldJobBestSuitedForAgent(Agent agent) {
+	private JobAttempt removeNextHeldJobBestSuitedForAgent(Agent agent, Map<Resource, List<Experiment>> runnable) {
 		Resource node = ops.getAgentResource(agent);
 
-		JobAttempt att = null;
-		for(JobAttempt a : m_HeldJobs) {
-			Experiment exp = a.getJob().getExperiment();
+		/* If we're capable of an experiment and assigned, we can run any of its jobs. */
+		List<Experiment> exps = runnable.computeIfAbsent(node, n -> m_HeldJobs.getExperiments().stream()
+				.filter(exp -> ops.isResourceCapable(n, exp) && ops.getAssignedResources(exp).contains(n))
+				.collect(Collectors.toList()));
 
-			/* If we're capable of this experiment and assigned, we're done here. */
-			if(ops.isResourceCapable(node, exp) && ops.getAssignedResources(exp).contains(node)) {
-				att = a;
-				break;
-			}
-		}
-
-		m_HeldJobs.remove(att);
-		return att;
+		return m_HeldJobs.removeFirst(exps);
 	}
 
 	@Override
@@ -356,8 +350,9 @@ public class DefaultAgentScheduler implements AgentScheduler {
 
 		/* If we have ready agents, held jobs, and no pending jobs, see if we can release some. */
 		if(m_PendingJobs.isEmpty() && !m_HeldJobs.isEmpty()) {
+			Map<Resource, List<Experiment>> runnable = new HashMap<>();
 			m_ReadyAgents.forEach(ag -> {
-				JobAttempt att = removeNextHeldJobBestSuitedForAgent(ag);
+				JobAttempt att = removeNextHeldJobBestSuitedForAgent(ag, runnable);
 				if(att != null) {
 					releaseJob(att, ag);
 				}
@@ -366,8 +361,7 @@ public class DefaultAgentScheduler implements AgentScheduler {
 
 		/* If we have held jobs, no agents, and no pending agents, move all held jobs into pending. */
 		if(!m_HeldJobs.isEmpty() && m_AllAgents.isEmpty() && m_LaunchingAgents.isEmpty()) {
-			m_PendingJobs.addAll(m_HeldJobs);
-			m_HeldJobs.clear();
+			m_PendingJobs.addAll(m_HeldJobs.removeAll());
 		}
 
 		return true;
@@ -25,20 +25,24 @@ import au.edu.uq.rcc.nimrodg.api.Experiment;
 import au.edu.uq.rcc.nimrodg.api.Job;
 import au.edu.uq.rcc.nimrodg.api.JobAttempt;
 import au.edu.uq.rcc.nimrodg.api.JobAttempt.Status;
+import au.edu.uq.rcc.nimrodg.api.JobCursor;
 import au.edu.uq.rcc.nimrodg.utils.NimrodUtils;
 import au.edu.uq.rcc.nimrodg.master.ConfigListener;
 import au.edu.uq.rcc.nimrodg.master.JobSchedulerFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Objects;
 import java.util.Queue;
 import java.util.Set;
@@ -49,7 +53,18 @@ public class DefaultJobScheduler implements JobScheduler {
 	private static final Logger LOGGER = LoggerFactory.getLogger(DefaultJobScheduler.class);
 	private static final int DEFAULT_BUFFER_SIZE = 1000;
 	private static final int DEFAULT_BUFFER_REFILL_THRESHOLD = 100;
-
+	private static final int DEFAULT_BUFFER_MIN_SIZE = 100;
+	private static final int DEFAULT_BUFFER_MAX_SIZE = 100000;
+	/* When adaptive, how many seconds of launches to buffer, and to refill at. */
+	private static final double BUFFER_LOOKAHEAD = 30.0;
+	private static final double BUFFER_LOW_WATER = 5.0;
+	/* How often to sample the launch rate, and how much weight to give each sample. */
+	private static final Duration RATE_SAMPLE_INTERVAL = Duration.ofSeconds(1);
+	private static final double RATE_SMOOTHING = 0.3;
+	private static final int DEFAULT_MAX_RETRIES = 3;
+	private static final String MAX_RETRIES_KEY = "nimrod.sched.default.max_retries";
+
+	private final Clock clock;
 	private Operations ops;
 	private Experiment exp;
 
@@ -59,43 +74,122 @@ public class DefaultJobScheduler implements JobScheduler {
 	private int bufferSize;
 	private int bufferThreshold;
 
+	/* Size the buffer from the launch rate and agent count instead, within these bounds. */
+	private boolean adaptiveBuffer;
+	private int minBufferSize;
+	private int maxBufferSize;
+
+	/* Launches since the last sample, and the smoothed launch rate in jobs/second. */
+	private int launchCount;
+	private double launchRate;
+	private Instant rateSampleTime;
+
+	/* The global retry limit, and the override for this experiment, if any. */
+	private int maxRetries;
+	private int expMaxRetries;
+
 	private static class JobInfo {
 
 		public final Job job;
 		public int retryCount;
-		public final LinkedHashSet<JobAttempt> attempts;
+		/*
+		 * The status of each of the job's attempts, as reported to us.
+		 * We see every transition, so this is authoritative. The database is only consulted on resync.
+		 */
+		public final LinkedHashMap<JobAttempt, Status> attempts;
 
 		public JobInfo(Job job) {
 			this.job = job;
 			this.retryCount = 0;
-			this.attempts = new LinkedHashSet<>();
+			this.attempts = new LinkedHashMap<>();
 		}
 
+		/**
+		 * Derive the job status from its attempts, the same way the database does.
+		 *
+		 * Only attempts we're tracking are considered. Any others have already finished and can't
+		 * have completed, otherwise the job wouldn't have been scheduled.
+		 *
+		 * @return The job status.
+		 */
+		public Status getStatus() {
+			boolean running = false, failed = false;
+			for(Status s : attempts.values()) {
+				switch(s) {
+					case COMPLETED:
+						return Status.COMPLETED;
+					case RUNNING:
+						running = true;
+						break;
+					case FAILED:
+						failed = true;
+						break;
+				}
+			}
+
+			if(running) {
+				return Status.RUNNING;
+			} else if(failed) {
+				return Status.FAILED;
+			}
+
+			return Status.NOT_RUN;
+		}
 	}
 
 	private final LinkedHashMap<Job, JobInfo> jobInfo;
 	private final Set<JobAttempt> runningAttempts;
-
-	private long highestIndex;
-
-	public DefaultJobScheduler() {
+	/* How many of those are actually running on an agent. */
+	private int runningCount;
+	/* How many are waiting to be launched. */
+	private int pendingCount;
+
+	/* Where we're up to in the experiment's runnable jobs. */
+	private JobCursor cursor;
+	/* Are there (possibly) jobs past the cursor? */
+	private boolean moreJobs;
+
+	public DefaultJobScheduler(Clock clock) {
+		this.clock = Objects.requireNonNull(clock, "clock");
 		this.ops = null;
 
 		this.incomingJobs = new LinkedList<>();
 		this.jobInfo = new LinkedHashMap<>();
 		this.runningAttempts = new HashSet<>();
+		this.runningCount = 0;
+		this.pendingCount = 0;
 
 		this.bufferSize = DEFAULT_BUFFER_SIZE;
 		this.bufferThreshold = DEFAULT_BUFFER_REFILL_THRESHOLD;
+		this.adaptiveBuffer = true;
+		this.minBufferSize = DEFAULT_BUFFER_MIN_SIZE;
+		this.maxBufferSize = DEFAULT_BUFFER_MAX_SIZE;
+		this.launchCount = 0;
+		this.launchRate = 0.0;
+		this.rateSampleTime = clock.instant();
+		this.maxRetries = DEFAULT_MAX_RETRIES;
+		this.expMaxRetries = -1;
+
+		this.cursor = null;
+		this.moreJobs = true;
+	}
+
+	public DefaultJobScheduler() {
+		this(Clock.systemUTC());
+	}
 
-		this.highestIndex = 0;
+	protected final Clock getClock() {
+		return clock;
 	}
 
 	private void reset() {
-		this.highestIndex = 0;
+		this.cursor = ops.openJobCursor(exp, EnumSet.of(JobAttempt.Status.FAILED, JobAttempt.Status.NOT_RUN), 1);
+		this.moreJobs = true;
 		this.incomingJobs.clear();
 		this.jobInfo.clear();
 		this.runningAttempts.clear();
+		this.runningCount = 0;
+		this.pendingCount = 0;
 	}
 
 	@Override
@@ -110,32 +204,70 @@ public class DefaultJobScheduler implements JobScheduler {
 
 	@Override
 	public void recordAttempts(Collection<JobAttempt> atts, Collection<Job> jobs) {
+		/* This is a resync, so the attempts' statuses have to come from the database. */
+		trackAttempts(atts, jobs, true);
+	}
+
+	private void trackAttempts(Collection<JobAttempt> atts, Collection<Job> jobs, boolean resync) {
 		if(atts.size() != jobs.size()) {
 			throw new IllegalArgumentException();
 		}
 
 		this.incomingJobs.removeAll(jobs);
 
-		/* NB: These guys are sets, they'll handle the duplicates themselves. */
+		/* NB: These guys are sets/maps, they'll handle the duplicates themselves. */
 		Iterator<JobAttempt> attit = atts.iterator();
 		Iterator<Job> jobit = jobs.iterator();
 		for(int i = 0; i < atts.size(); ++i) {
-			NimrodUtils.getOrAddLazy(this.jobInfo, jobit.next(), JobInfo::new).attempts.add(attit.next());
+			JobAttempt att = attit.next();
+			Status status = resync ? att.getStatus() : Status.NOT_RUN;
+			Status old = NimrodUtils.getOrAddLazy(this.jobInfo, jobit.next(), JobInfo::new).attempts.put(att, status);
+			updateCounts(old, status);
 		}
 		this.runningAttempts.addAll(atts);
 	}
 
+	private void setAttemptStatus(JobAttempt att, Status status) {
+		JobInfo stats = jobInfo.get(att.getJob());
+		if(stats != null && stats.attempts.containsKey(att)) {
+			updateCounts(stats.attempts.put(att, status), status);
+		}
+	}
+
+	/* A null status means the attempt isn't (or is no longer) tracked. */
+	private void updateCounts(Status oldStatus, Status newStatus) {
+		if(oldStatus == Status.RUNNING) {
+			--runningCount;
+		} else if(oldStatus == Status.NOT_RUN) {
+			--pendingCount;
+		}
+
+		if(newStatus == Status.RUNNING) {
+			++runningCount;
+		} else if(newStatus == Status.NOT_RUN) {
+			++pendingCount;
+		}
+	}
+
+	private void finishJobAttempt(JobAttempt att, boolean failed) {
+		ops.updateJobFinished(att, failed);
+		setAttemptStatus(att, failed ? Status.FAILED : Status.COMPLETED);
+		onJobAttemptFinished(att, failed);
+		tickJobAttempt(att);
+	}
+
 	@Override
 	public void onJobLaunchSuccess(JobAttempt att, UUID agentUuid) {
 		//LOGGER.debug("onJobLaunchSuccess: {} on {}", att.getPath(), agentUuid);
 		ops.updateJobStarted(att, agentUuid);
+		setAttemptStatus(att, Status.RUNNING);
+		++launchCount;
 	}
 
 	@Override
 	public void onJobLaunchFailure(JobAttempt att, UUID agentUuid, Throwable t) {
 		//LOGGER.debug("onJobLaunchFailure: {} on {}", att.getPath(), agentUuid);
-		ops.updateJobFinished(att, true);
-		tickJobAttempt(att);
+		finishJobAttempt(att, true);
 	}
 
 	@Override
@@ -146,34 +278,25 @@ public class DefaultJobScheduler implements JobScheduler {
 
 		ops.recordCommandResult(att, cr.status, cr.index, cr.time, cr.retVal, cr.message, cr.errorCode, au.getAction() == AgentUpdate.Action.Stop);
 
-		JobAttempt.Status status = att.getStatus();
-
-		assert status == Status.RUNNING;
-
-		if(au.getAction() == AgentUpdate.Action.Stop) {
-			if(cr.status != CommandResult.CommandResultStatus.SUCCESS) {
-				/* A command has failed and caused the job to stop. */
-				ops.updateJobFinished(att, true);
-			} else {
-				/* We've finished successfully. */
-				ops.updateJobFinished(att, false);
-			}
+		if(au.getAction() != AgentUpdate.Action.Stop) {
+			/* Still running, nothing to decide. */
+			return;
 		}
 
-		tickJobAttempt(att);
+		/* If a command has failed, it's caused the job to stop. Otherwise we've finished successfully. */
+		finishJobAttempt(att, cr.status != CommandResult.CommandResultStatus.SUCCESS);
 	}
 
 	@Override
 	public void onJobFailure(JobAttempt att, AgentScheduler.Operations.FailureReason reason) {
 		String msg = reason == AgentScheduler.Operations.FailureReason.EXPIRED ? "Agent expired." : "Agent crashed.";
 		ops.recordCommandResult(att, CommandResult.CommandResultStatus.ABORTED, -1, 0.0f, 0, msg, 0, true);
-		ops.updateJobFinished(att, true);
-		tickJobAttempt(att);
+		finishJobAttempt(att, true);
 	}
 
 	private void purgeJobAttempt(Job job, JobAttempt att) {
 		JobInfo sss = jobInfo.get(job);
-		sss.attempts.remove(att);
+		updateCounts(sss.attempts.remove(att), null);
 		if(sss.attempts.isEmpty()) {
 			jobInfo.remove(job);
 		}
@@ -185,8 +308,12 @@ public class DefaultJobScheduler implements JobScheduler {
 		/* Use the job-level status for this. */
 		Job j = att.getJob();
 		JobInfo stats = jobInfo.get(j);
+		if(stats == null || !stats.attempts.containsKey(att)) {
+			LOGGER.warn("Job attempt {} isn't being tracked, ignoring.", att.getUUID());
+			return;
+		}
 
-		Status stat = ops.fetchJobStatus(j);
+		Status stat = stats.getStatus();
 
 		if(stat == JobAttempt.Status.COMPLETED) {
 			++stats.retryCount;
@@ -194,13 +321,13 @@ public class DefaultJobScheduler implements JobScheduler {
 			purgeJobAttempt(stats.job, att);
 		} else if(stat == JobAttempt.Status.FAILED) {
 			++stats.retryCount;
-			if(stats.retryCount > 3) {
+			if(stats.retryCount > getMaxRetries()) {
 				LOGGER.info("Job '{}' exceeded retry count, failing...", NimrodUtils.buildUniqueJobId(stats.job));
 				purgeJobAttempt(stats.job, att);
 			} else {
 				LOGGER.info("Job '{}' failed on attempt {}, rescheduling...", NimrodUtils.buildUniqueJobId(stats.job), stats.retryCount);
 				runningAttempts.remove(att);
-				stats.attempts.remove(att);
+				updateCounts(stats.attempts.remove(att), null);
 				incomingJobs.offer(stats.job);
 			}
 		}
@@ -208,8 +335,15 @@ public class DefaultJobScheduler implements JobScheduler {
 	}
 
 	@Override
-	public void onJobAdd(Job job) {
-		incomingJobs.offer(job);
+	public void onJobAdd(long firstIndex, long lastIndex) {
+		/* Don't fetch anything now, let the buffer pick them up when it needs to. */
+		if(lastIndex > cursor.getPosition()) {
+			moreJobs = true;
+		}
+	}
+
+	private int getMaxRetries() {
+		return expMaxRetries >= 0 ? expMaxRetries : maxRetries;
 	}
 
 	@Override
@@ -224,7 +358,58 @@ public class DefaultJobScheduler implements JobScheduler {
 			case "nimrod.sched.default.job_buf_refill_threshold":
 				bufferThreshold = ConfigListener.get(newValue, bufferThreshold, DEFAULT_BUFFER_REFILL_THRESHOLD, 0, Integer.MAX_VALUE);
 				break;
+
+			case "nimrod.sched.default.job_buf_adaptive":
+				adaptiveBuffer = ConfigListener.get(newValue, adaptiveBuffer, true);
+				break;
+
+			case "nimrod.sched.default.job_buf_min_size":
+				minBufferSize = ConfigListener.get(newValue, minBufferSize, DEFAULT_BUFFER_MIN_SIZE, 1, Integer.MAX_VALUE);
+				break;
+
+			case "nimrod.sched.default.job_buf_max_size":
+				maxBufferSize = ConfigListener.get(newValue, maxBufferSize, DEFAULT_BUFFER_MAX_SIZE, 1, Integer.MAX_VALUE);
+				break;
+
+			case MAX_RETRIES_KEY:
+				maxRetries = ConfigListener.get(newValue, maxRetries, DEFAULT_MAX_RETRIES, 0, Integer.MAX_VALUE);
+				break;
+
+			default:
+				/* Per-experiment override, unset to fall back to the global limit. */
+				if(exp != null && key.equals(MAX_RETRIES_KEY + "." + exp.getName())) {
+					expMaxRetries = ConfigListener.get(newValue, expMaxRetries, -1, -1, Integer.MAX_VALUE);
+				}
+				break;
+		}
+	}
+
+	/**
+	 * Resize the buffer to suit the current load.
+	 *
+	 * The buffer holds everything running, plus {@link #BUFFER_LOOKAHEAD} seconds of launches,
+	 * and is refilled when there's less than {@link #BUFFER_LOW_WATER} seconds' worth left.
+	 * A busy experiment refills in large, infrequent batches, and a quiet one holds few jobs.
+	 */
+	private void resizeBuffer() {
+		Instant now = clock.instant();
+		Duration elapsed = Duration.between(rateSampleTime, now);
+		if(elapsed.compareTo(RATE_SAMPLE_INTERVAL) >= 0) {
+			double rate = launchCount / (elapsed.toNanos() / 1e9);
+			launchRate += RATE_SMOOTHING * (rate - launchRate);
+			launchCount = 0;
+			rateSampleTime = now;
 		}
+
+		/* Not runningAttempts, that includes what we've buffered. */
+		long concurrency = Math.max(ops.getLiveAgentCount(), runningCount);
+		long size = concurrency + (long)Math.ceil(launchRate * BUFFER_LOOKAHEAD);
+		long threshold = concurrency + (long)Math.ceil(launchRate * BUFFER_LOW_WATER);
+
+		int min = getMinimumBufferSize();
+		bufferSize = (int)ConfigListener.clamp(size, min, Math.max(min, maxBufferSize));
+		/* Always leave room for a decent-sized refill. */
+		bufferThreshold = (int)ConfigListener.clamp(threshold, Math.max(bufferSize / 10, 1), bufferSize - bufferSize / 10);
 	}
 
 	@Override
@@ -237,30 +422,32 @@ public class DefaultJobScheduler implements JobScheduler {
 		 * If no jobs are available, store them as we check use them later.
 		 */
 		boolean empty = false;
+		if(adaptiveBuffer) {
+			resizeBuffer();
+		}
+
 		int cccc = runningAttempts.size() + incomingJobs.size();
-		if(cccc < bufferThreshold) {
-			Collection<Job> nj = ops.filterJobs(
-					exp,
-					EnumSet.of(JobAttempt.Status.FAILED, JobAttempt.Status.NOT_RUN),
-					highestIndex + 1,
-					bufferSize - cccc
-			);
+		if(cccc < bufferThreshold && moreJobs) {
+			int limit = bufferSize - cccc;
+			Collection<Job> nj = cursor.fetch(limit > 0 ? limit : Integer.MAX_VALUE);
 
-			n += nj.size();
-			if(!(empty = nj.isEmpty())) {
-				highestIndex = nj.stream().mapToLong(Job::getIndex).max().getAsLong();
+			/* A short (or unlimited) read means we've caught up, wait until we're told there's more. */
+			if(limit <= 0 || nj.size() < limit) {
+				moreJobs = false;
 			}
 
-			incomingJobs.addAll(nj);
+			n += nj.size();
+			empty = nj.isEmpty();
+
+			/* Skip anything we're already tracking, i.e. recovered on resync. Retries are queued separately. */
+			nj.stream().filter(j -> !jobInfo.containsKey(j)).forEach(incomingJobs::offer);
 		}
 
 		//double taken = (System.currentTimeMillis() - startTime) / 1000.0;
 		//LOGGER.trace("Queried {} jobs in {} seconds", n, taken);
 
 		/* Filter the incoming job messages */
-		ArrayList<Job> jobQueue = new ArrayList<>(incomingJobs.size());
-		jobQueue.addAll(incomingJobs);
-		incomingJobs.clear();
+		List<Job> jobQueue = takeJobs(incomingJobs);
 
 		//startTime = System.currentTimeMillis();
 		n = jobQueue.size();
@@ -268,17 +455,59 @@ public class DefaultJobScheduler implements JobScheduler {
 		/* FIXME: Keeping the behaviour for now. */
 		jobQueue.forEach(j -> LOGGER.info("Scheduling job '{}'", NimrodUtils.buildUniqueJobId(j)));
 
-		/* FIXME: Just schedule everything */
 		Collection<JobAttempt> attempts = ops.runJobs(jobQueue);
-		recordAttempts(attempts, jobQueue);
+		trackAttempts(attempts, jobQueue, false);
 
 		//taken = (System.currentTimeMillis() - startTime) / 1000.0;
 		//LOGGER.trace("Created {} attempts in {} seconds", n, taken);
 
-		jobQueue.clear();
-
 		return !jobInfo.isEmpty();
 	}
 
+	/**
+	 * Choose which of the buffered jobs to launch this tick, removing them from the buffer.
+	 *
+	 * Anything left in the buffer is offered again next tick. Jobs are buffered in the order they
+	 * were fetched, with retries at the end. The default launches everything, in that order.
+	 *
+	 * @param buffered The buffered jobs.
+	 * @return The jobs to launch, in the order they should be launched.
+	 */
+	protected List<Job> takeJobs(Queue<Job> buffered) {
+		List<Job> jobs = new ArrayList<>(buffered);
+		buffered.clear();
+		return jobs;
+	}
+
+	/**
+	 * Called when a job attempt has finished, before deciding whether to retry.
+	 *
+	 * @param att The {@link JobAttempt} instance.
+	 * @param failed Did the attempt fail?
+	 */
+	protected void onJobAttemptFinished(JobAttempt att, boolean failed) {
+
+	}
+
+	/**
+	 * Get the smallest size the buffer may adapt to.
+	 *
+	 * Override this if the scheduler needs a minimum number of jobs to choose from.
+	 *
+	 * @return The minimum buffer size.
+	 */
+	protected int getMinimumBufferSize() {
+		return minBufferSize;
+	}
+
+	/**
+	 * Get the number of attempts that have been handed out but haven't started yet.
+	 *
+	 * @return The number of attempts waiting to be launched.
+	 */
+	protected final int getPendingLaunchCount() {
+		return pendingCount;
+	}
+
 	public static final JobSchedulerFactory FACTORY = DefaultJobScheduler::new;
 }
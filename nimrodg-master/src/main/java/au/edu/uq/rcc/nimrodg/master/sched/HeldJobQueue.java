@@ -0,0 +1,138 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.master.sched;
+
+import au.edu.uq.rcc.nimrodg.api.Experiment;
+import au.edu.uq.rcc.nimrodg.api.JobAttempt;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Jobs waiting for an agent, indexed by experiment.
+ *
+ * Every job of an experiment can run on the same resources, so finding a job for an agent only
+ * needs to look at the first job of each experiment its resource can run, not every held job.
+ * Jobs are taken in the order they were held.
+ */
+public class HeldJobQueue {
+
+	/* Held jobs, by experiment, with the order they were held in. */
+	private final Map<Experiment, LinkedHashMap<JobAttempt, Long>> m_Jobs;
+	private long m_NextSequence;
+	private int m_Size;
+
+	public HeldJobQueue() {
+		m_Jobs = new HashMap<>();
+		m_NextSequence = 0;
+		m_Size = 0;
+	}
+
+	public void add(JobAttempt att) {
+		LinkedHashMap<JobAttempt, Long> jobs = m_Jobs.computeIfAbsent(att.getJob().getExperiment(), e -> new LinkedHashMap<>());
+		if(!jobs.containsKey(att)) {
+			jobs.put(att, m_NextSequence++);
+			++m_Size;
+		}
+	}
+
+	public boolean remove(JobAttempt att) {
+		Experiment exp = att.getJob().getExperiment();
+		LinkedHashMap<JobAttempt, Long> jobs = m_Jobs.get(exp);
+		if(jobs == null || jobs.remove(att) == null) {
+			return false;
+		}
+
+		if(jobs.isEmpty()) {
+			m_Jobs.remove(exp);
+		}
+
+		--m_Size;
+		return true;
+	}
+
+	/**
+	 * Get the experiments that have held jobs.
+	 *
+	 * @return A read-only view of the experiments that have held jobs.
+	 */
+	public Set<Experiment> getExperiments() {
+		return Collections.unmodifiableSet(m_Jobs.keySet());
+	}
+
+	/**
+	 * Remove the job held the longest out of the given experiments.
+	 *
+	 * @param exps The experiments to take a job from.
+	 * @return The job held the longest, or null if there are none.
+	 */
+	public JobAttempt removeFirst(Collection<Experiment> exps) {
+		Map.Entry<JobAttempt, Long> first = null;
+		for(Experiment exp : exps) {
+			LinkedHashMap<JobAttempt, Long> jobs = m_Jobs.get(exp);
+			if(jobs == null) {
+				continue;
+			}
+
+			Map.Entry<JobAttempt, Long> head = jobs.entrySet().iterator().next();
+			if(first == null || head.getValue() < first.getValue()) {
+				first = head;
+			}
+		}
+
+		if(first == null) {
+			return null;
+		}
+
+		remove(first.getKey());
+		return first.getKey();
+	}
+
+	/**
+	 * Remove every held job.
+	 *
+	 * @return The held jobs, in the order they were held.
+	 */
+	public List<JobAttempt> removeAll() {
+		List<Map.Entry<JobAttempt, Long>> all = new ArrayList<>(m_Size);
+		m_Jobs.values().forEach(jobs -> all.addAll(jobs.entrySet()));
+		all.sort(Map.Entry.comparingByValue());
+
+		List<JobAttempt> atts = new ArrayList<>(all.size());
+		all.forEach(e -> atts.add(e.getKey()));
+
+		m_Jobs.clear();
+		m_Size = 0;
+		return atts;
+	}
+
+	public int size() {
+		return m_Size;
+	}
+
+	public boolean isEmpty() {
+		return m_Size == 0;
+	}
+}
@@ -24,6 +24,7 @@ import au.edu.uq.rcc.nimrodg.api.CommandResult;
 import au.edu.uq.rcc.nimrodg.api.Experiment;
 import au.edu.uq.rcc.nimrodg.api.Job;
 import au.edu.uq.rcc.nimrodg.api.JobAttempt;
+import au.edu.uq.rcc.nimrodg.api.JobCursor;
 import au.edu.uq.rcc.nimrodg.master.ConfigListener;
 import au.edu.uq.rcc.nimrodg.master.sched.AgentScheduler.Operations.FailureReason;
 
@@ -40,6 +41,8 @@ public interface JobScheduler extends ConfigListener {
 
 		Collection<Job> filterJobs(Experiment exp, EnumSet<JobAttempt.Status> status, long start, int limit);
 
+		JobCursor openJobCursor(Experiment exp, EnumSet<JobAttempt.Status> status, long start);
+
 		JobAttempt.Status fetchJobStatus(Job j);
 
 		Collection<JobAttempt> runJobs(Collection<Job> jobs);
@@ -65,6 +68,13 @@ public interface JobScheduler extends ConfigListener {
 		void updateJobFinished(JobAttempt att, boolean failed);
 
 		void recordCommandResult(JobAttempt att, CommandResult.CommandResultStatus status, long index, float time, int retval, String message, int errcode, boolean stop);
+
+		/**
+		 * Get the number of agents that are, or soon will be, available to run jobs.
+		 *
+		 * @return The number of agents that haven't shut down.
+		 */
+		int getLiveAgentCount();
 	}
 
 	/**
@@ -83,7 +93,15 @@ public interface JobScheduler extends ConfigListener {
 	 */
 	void recordAttempts(Collection<JobAttempt> atts, Collection<Job> jobs);
 
-	void onJobAdd(Job job);
+	/**
+	 * Called when jobs have been added to the experiment.
+	 *
+	 * The jobs themselves aren't provided, it is up to the scheduler to fetch them when it needs them.
+	 *
+	 * @param firstIndex The index of the first job added, inclusive.
+	 * @param lastIndex The index of the last job added, inclusive.
+	 */
+	void onJobAdd(long firstIndex, long lastIndex);
 
 	/**
 	 * Called when a job attempt has been successfully launched.
@@ -0,0 +1,153 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.master.sched;
+
+import au.edu.uq.rcc.nimrodg.api.Job;
+import au.edu.uq.rcc.nimrodg.api.JobAttempt;
+import au.edu.uq.rcc.nimrodg.master.ConfigListener;
+import au.edu.uq.rcc.nimrodg.master.JobSchedulerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+
+/**
+ * A {@link DefaultJobScheduler} that launches the jobs it expects to take longest first.
+ *
+ * Runtimes are learnt from completed attempts with a {@link RuntimeModel}. Starting the long jobs
+ * early keeps them from becoming a tail at the end of the experiment.
+ *
+ * To have a choice at all, jobs are held back until there are only a few attempts waiting for
+ * an agent. Until there's enough data to make predictions, jobs are launched in index order.
+ */
+public class LongestJobFirstScheduler extends DefaultJobScheduler {
+
+	private static final int DEFAULT_LAUNCH_BACKLOG = 32;
+	private static final int DEFAULT_WINDOW = 1000;
+
+	private final RuntimeModel model;
+	private final Map<JobAttempt, Instant> startTimes;
+
+	private int launchBacklog;
+	private int window;
+
+	/* The observation count and buffer size when the buffer was last left in order. */
+	private long sortedObservations;
+	private int sortedSize;
+
+	public LongestJobFirstScheduler(Clock clock) {
+		super(clock);
+		this.model = new RuntimeModel();
+		this.startTimes = new HashMap<>();
+		this.launchBacklog = DEFAULT_LAUNCH_BACKLOG;
+		this.window = DEFAULT_WINDOW;
+		this.sortedObservations = -1;
+		this.sortedSize = -1;
+	}
+
+	public LongestJobFirstScheduler() {
+		this(Clock.systemUTC());
+	}
+
+	@Override
+	public void onJobLaunchSuccess(JobAttempt att, UUID agentUuid) {
+		super.onJobLaunchSuccess(att, agentUuid);
+		startTimes.put(att, getClock().instant());
+	}
+
+	@Override
+	protected void onJobAttemptFinished(JobAttempt att, boolean failed) {
+		Instant start = startTimes.remove(att);
+
+		/* Failures say nothing about how long a job takes. */
+		if(start == null || failed) {
+			return;
+		}
+
+		model.observe(att.getJob().getVariables(), Duration.between(start, getClock().instant()).toNanos() / 1e9);
+	}
+
+	@Override
+	protected List<Job> takeJobs(Queue<Job> buffered) {
+		int n = Math.min(buffered.size(), launchBacklog - getPendingLaunchCount());
+		if(n <= 0) {
+			return List.of();
+		}
+
+		/*
+		 * Only reorder if the model or the buffer has changed since last time. Nothing else takes
+		 * from the buffer, so if it's the same size nothing has been added to it.
+		 */
+		long observations = model.getObservationCount();
+		if(observations > 0 && (observations != sortedObservations || buffered.size() != sortedSize)) {
+			List<Job> jobs = new ArrayList<>(buffered);
+
+			/* Unpredictable jobs go last, otherwise keep the buffer order. */
+			Map<Job, Double> predictions = new HashMap<>(jobs.size());
+			jobs.forEach(j -> predictions.put(j, model.predict(j.getVariables())));
+			jobs.sort(Comparator.comparingDouble((Job j) -> {
+				double p = predictions.get(j);
+				return Double.isNaN(p) ? Double.POSITIVE_INFINITY : -p;
+			}));
+
+			buffered.clear();
+			buffered.addAll(jobs);
+		}
+
+		List<Job> jobs = new ArrayList<>(n);
+		for(int i = 0; i < n; ++i) {
+			jobs.add(buffered.poll());
+		}
+
+		sortedObservations = observations;
+		sortedSize = buffered.size();
+		return jobs;
+	}
+
+	@Override
+	protected int getMinimumBufferSize() {
+		/* The buffer is all we get to choose from, don't let it shrink too far. */
+		return Math.max(super.getMinimumBufferSize(), window);
+	}
+
+	@Override
+	public void onConfigChange(String key, String oldValue, String newValue) {
+		super.onConfigChange(key, oldValue, newValue);
+
+		switch(key) {
+			case "nimrod.sched.ljf.launch_backlog":
+				launchBacklog = ConfigListener.get(newValue, launchBacklog, DEFAULT_LAUNCH_BACKLOG, 1, Integer.MAX_VALUE);
+				break;
+
+			case "nimrod.sched.ljf.window":
+				window = ConfigListener.get(newValue, window, DEFAULT_WINDOW, 1, Integer.MAX_VALUE);
+				break;
+		}
+	}
+
+	public static final JobSchedulerFactory FACTORY = LongestJobFirstScheduler::new;
+}
@@ -0,0 +1,206 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.master.sched;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Estimates job runtimes with a least-squares linear fit over the numeric job variables.
+ *
+ * Observations are accumulated into the normal equations, so memory use is independent of
+ * how many have been seen. The fit is redone lazily when a prediction is needed.
+ */
+class RuntimeModel {
+
+	/* The implicit variables are just the index, they say nothing about the runtime. */
+	private static final Set<String> IGNORED_VARIABLES = Set.of("jobindex", "jobname");
+	/* Ridge penalty, relative to the mean diagonal. Keeps the fit stable when a variable never changes. */
+	private static final double RIDGE = 1e-9;
+
+	/* Feature names, fixed by the first observation. The intercept is feature 0. */
+	private List<String> features;
+	private double[][] xtx;
+	private double[] xty;
+	private long count;
+
+	private double[] coefficients;
+	private boolean dirty;
+
+	RuntimeModel() {
+		this.features = null;
+		this.xtx = null;
+		this.xty = null;
+		this.count = 0;
+		this.coefficients = null;
+		this.dirty = false;
+	}
+
+	long getObservationCount() {
+		return count;
+	}
+
+	/**
+	 * Record the runtime of a completed job.
+	 *
+	 * @param variables The job's variables.
+	 * @param seconds How long the job took to run.
+	 */
+	void observe(Map<String, String> variables, double seconds) {
+		if(!Double.isFinite(seconds) || seconds < 0) {
+			return;
+		}
+
+		if(features == null) {
+			features = new ArrayList<>();
+			variables.entrySet().stream()
+					.filter(e -> !IGNORED_VARIABLES.contains(e.getKey()) && Double.isFinite(parse(e.getValue())))
+					.map(Map.Entry::getKey)
+					.sorted()
+					.forEach(features::add);
+
+			int n = features.size() + 1;
+			xtx = new double[n][n];
+			xty = new double[n];
+		}
+
+		double[] x = featurise(variables);
+		if(x == null) {
+			return;
+		}
+
+		for(int i = 0; i < x.length; ++i) {
+			for(int j = 0; j < x.length; ++j) {
+				xtx[i][j] += x[i] * x[j];
+			}
+			xty[i] += x[i] * seconds;
+		}
+
+		++count;
+		dirty = true;
+	}
+
+	/**
+	 * Predict the runtime of a job.
+	 *
+	 * @param variables The job's variables.
+	 * @return The predicted runtime in seconds, or NaN if there isn't enough data to make one.
+	 */
+	double predict(Map<String, String> variables) {
+		if(features == null || count <= features.size()) {
+			return Double.NaN;
+		}
+
+		if(dirty) {
+			coefficients = solve();
+			dirty = false;
+		}
+
+		double[] x = featurise(variables);
+		if(x == null || coefficients == null) {
+			return Double.NaN;
+		}
+
+		double y = 0;
+		for(int i = 0; i < x.length; ++i) {
+			y += coefficients[i] * x[i];
+		}
+		return y;
+	}
+
+	private double[] featurise(Map<String, String> variables) {
+		double[] x = new double[features.size() + 1];
+		x[0] = 1.0;
+		for(int i = 0; i < features.size(); ++i) {
+			double v = parse(variables.get(features.get(i)));
+			if(!Double.isFinite(v)) {
+				return null;
+			}
+			x[i + 1] = v;
+		}
+		return x;
+	}
+
+	private static double parse(String s) {
+		if(s == null) {
+			return Double.NaN;
+		}
+
+		try {
+			return Double.parseDouble(s);
+		} catch(NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
+	/* Gaussian elimination with partial pivoting on a penalised copy of the normal equations. */
+	private double[] solve() {
+		int n = xty.length;
+
+		double trace = 0;
+		for(int i = 0; i < n; ++i) {
+			trace += xtx[i][i];
+		}
+		double lambda = RIDGE * Math.max(trace / n, 1.0);
+
+		double[][] a = new double[n][n + 1];
+		for(int i = 0; i < n; ++i) {
+			System.arraycopy(xtx[i], 0, a[i], 0, n);
+			a[i][i] += lambda;
+			a[i][n] = xty[i];
+		}
+
+		for(int c = 0; c < n; ++c) {
+			int pivot = c;
+			for(int r = c + 1; r < n; ++r) {
+				if(Math.abs(a[r][c]) > Math.abs(a[pivot][c])) {
+					pivot = r;
+				}
+			}
+
+			if(a[pivot][c] == 0) {
+				return null;
+			}
+
+			double[] tmp = a[c];
+			a[c] = a[pivot];
+			a[pivot] = tmp;
+
+			for(int r = c + 1; r < n; ++r) {
+				double f = a[r][c] / a[c][c];
+				for(int k = c; k <= n; ++k) {
+					a[r][k] -= f * a[c][k];
+				}
+			}
+		}
+
+		double[] b = new double[n];
+		for(int r = n - 1; r >= 0; --r) {
+			double v = a[r][n];
+			for(int k = r + 1; k < n; ++k) {
+				v -= a[r][k] * b[k];
+			}
+			b[r] = v / a[r][r];
+		}
+		return b;
+	}
+}
@@ -64,13 +64,12 @@ public class AuthHeader {
 		this.signedProperties = signedProperties;
 		this.signedHeaders = signedHeaders;
 		this.signature = signature;
-		this.header = String.format("%s Credential=%s, SignedProperties=%s, SignedHeaders=%s, Signature=%s",
-				algorithm,
-				credential,
-				String.join(";", signedProperties),
-				String.join(";", signedHeaders),
-				signature
-		);
+		/* Not String.format(), this is built for every message. */
+		this.header = algorithm +
+				" Credential=" + credential +
+				", SignedProperties=" + String.join(";", signedProperties) +
+				", SignedHeaders=" + String.join(";", signedHeaders) +
+				", Signature=" + signature;
 	}
 
 	@Override
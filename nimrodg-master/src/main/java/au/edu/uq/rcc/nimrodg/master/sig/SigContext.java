@@ -0,0 +1,303 @@
+/*
+ * Nimrod/G
+ * https://github.com/UQ-RCC/nimrodg
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 The University of Queensland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.edu.uq.rcc.nimrodg.master.sig;
+
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.Mac;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoField;
+import java.util.Arrays;
+
+/**
+ * Per-thread signing state, so messages can be signed and verified without
+ * allocating fresh MACs, digests and buffers each time.
+ *
+ * Instances are not thread-safe.
+ */
+final class SigContext {
+	/* Number of (secret, timestamp) keys to remember. Must be a power of two. */
+	private static final int KEY_CACHE_SIZE = 16;
+
+	private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+	final String algorithm;
+	private final SigUtils.AlgoInfo algo;
+	final Digest digest;
+	final Mac mac;
+
+	/* Digest output. */
+	final byte[] hash;
+	/* Derived signing key. */
+	final byte[] key;
+	/* Final signature. */
+	final byte[] sig;
+
+	/* Canonical request/string-to-sign buffer. */
+	private byte[] buf;
+	private int len;
+
+	/* Scratch space for the properties and headers to sign. */
+	String[] propNames;
+	String[] propValues;
+	int propCount;
+	String[] headerNames;
+	String[] headerValues;
+	int headerCount;
+
+	private long cachedTimestampSecond;
+	private String cachedTimestamp;
+
+	private final String[] keyCacheSecrets;
+	private final long[] keyCacheSeconds;
+	private final Mac[] keyCacheMacs;
+
+	SigContext(String algorithm, SigUtils.AlgoInfo algo) {
+		this.algorithm = algorithm;
+		this.algo = algo;
+		this.digest = algo.getDigest();
+		this.mac = algo.getMac();
+		this.hash = new byte[digest.getDigestSize()];
+		this.key = new byte[mac.getMacSize()];
+		this.sig = new byte[mac.getMacSize()];
+		this.buf = new byte[1024];
+		this.len = 0;
+		this.propNames = new String[16];
+		this.propValues = new String[16];
+		this.propCount = 0;
+		this.headerNames = new String[8];
+		this.headerValues = new String[8];
+		this.headerCount = 0;
+		this.cachedTimestampSecond = 0;
+		this.cachedTimestamp = null;
+		this.keyCacheSecrets = new String[KEY_CACHE_SIZE];
+		this.keyCacheSeconds = new long[KEY_CACHE_SIZE];
+		this.keyCacheMacs = new Mac[KEY_CACHE_SIZE];
+	}
+
+	void addProperty(String name, String value) {
+		if(propCount == propNames.length) {
+			propNames = Arrays.copyOf(propNames, propCount * 2);
+			propValues = Arrays.copyOf(propValues, propCount * 2);
+		}
+
+		propNames[propCount] = name;
+		propValues[propCount] = value;
+		++propCount;
+	}
+
+	/* Insert a header, keeping them sorted. Later duplicates replace earlier ones. */
+	void addHeader(String name, String value) {
+		int i = headerCount;
+		while(i > 0) {
+			int c = headerNames[i - 1].compareTo(name);
+			if(c == 0) {
+				headerValues[i - 1] = value;
+				return;
+			} else if(c < 0) {
+				break;
+			}
+			--i;
+		}
+
+		if(headerCount == headerNames.length) {
+			headerNames = Arrays.copyOf(headerNames, headerCount * 2);
+			headerValues = Arrays.copyOf(headerValues, headerCount * 2);
+		}
+
+		System.arraycopy(headerNames, i, headerNames, i + 1, headerCount - i);
+		System.arraycopy(headerValues, i, headerValues, i + 1, headerCount - i);
+		headerNames[i] = name;
+		headerValues[i] = value;
+		++headerCount;
+	}
+
+	void clearFields() {
+		Arrays.fill(propNames, 0, propCount, null);
+		Arrays.fill(propValues, 0, propCount, null);
+		propCount = 0;
+		Arrays.fill(headerNames, 0, headerCount, null);
+		Arrays.fill(headerValues, 0, headerCount, null);
+		headerCount = 0;
+	}
+
+	/**
+	 * Format a timestamp as "YYYYMMDDTHHMMSSZ". The last one is cached, as it only changes once a second.
+	 */
+	String timestampString(Instant t) {
+		long s = t.getEpochSecond();
+		if(cachedTimestamp != null && cachedTimestampSecond == s) {
+			return cachedTimestamp;
+		}
+
+		/* Need to do this so ChronoField's will work. */
+		ZonedDateTime zdt = t.atZone(ZoneOffset.UTC);
+
+		cachedTimestamp = String.format("%04d%02d%02dT%02d%02d%02dZ",
+				zdt.get(ChronoField.YEAR),
+				zdt.get(ChronoField.MONTH_OF_YEAR),
+				zdt.get(ChronoField.DAY_OF_MONTH),
+				zdt.get(ChronoField.HOUR_OF_DAY),
+				zdt.get(ChronoField.MINUTE_OF_HOUR),
+				zdt.get(ChronoField.SECOND_OF_MINUTE)
+		);
+		cachedTimestampSecond = s;
+		return cachedTimestamp;
+	}
+
+	/**
+	 * Get a MAC keyed with HMAC("NIM1" + secret, "YYYYMMDDTHHMMSSZ"), the first step of the key derivation.
+	 *
+	 * This only depends on the secret and the second, so it's cached. Keeping the initialised
+	 * MAC around rather than the key saves redoing the HMAC key schedule as well.
+	 * The MAC is reset before it's returned.
+	 */
+	Mac dateMac(String secretKey, long epochSecond, String timestamp) {
+		int slot = (secretKey.hashCode() * 31 + Long.hashCode(epochSecond)) & (KEY_CACHE_SIZE - 1);
+		Mac m = keyCacheMacs[slot];
+		if(m != null && keyCacheSeconds[slot] == epochSecond && secretKey.equals(keyCacheSecrets[slot])) {
+			m.reset();
+			return m;
+		}
+
+		byte[] k = ("NIM1" + secretKey).getBytes(StandardCharsets.UTF_8);
+		mac.init(new KeyParameter(k));
+		reset();
+		put(timestamp);
+		mac.update(buf, 0, len);
+		mac.doFinal(key, 0);
+
+		if(m == null) {
+			m = keyCacheMacs[slot] = algo.getMac();
+		}
+		m.init(new KeyParameter(key));
+		keyCacheSecrets[slot] = secretKey;
+		keyCacheSeconds[slot] = epochSecond;
+		return m;
+	}
+
+	void reset() {
+		len = 0;
+	}
+
+	int length() {
+		return len;
+	}
+
+	byte[] buffer() {
+		return buf;
+	}
+
+	/* Drop the last byte. Used to trim trailing separators. */
+	void trim() {
+		--len;
+	}
+
+	private void ensure(int n) {
+		if(len + n > buf.length) {
+			buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + n));
+		}
+	}
+
+	SigContext put(char c) {
+		ensure(1);
+		buf[len++] = (byte)c;
+		return this;
+	}
+
+	/* Append a string as UTF-8, the same as String.getBytes(StandardCharsets.UTF_8). */
+	SigContext put(String s) {
+		int n = s.length();
+		ensure(n * 3);
+		for(int i = 0; i < n; ++i) {
+			char c = s.charAt(i);
+			if(c < 0x80) {
+				buf[len++] = (byte)c;
+			} else if(c < 0x800) {
+				buf[len++] = (byte)(0xC0 | (c >> 6));
+				buf[len++] = (byte)(0x80 | (c & 0x3F));
+			} else if(Character.isSurrogate(c)) {
+				int cp;
+				if(Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+					cp = Character.toCodePoint(c, s.charAt(++i));
+				} else {
+					/* Unpaired, this is what the encoder does. */
+					buf[len++] = '?';
+					continue;
+				}
+				buf[len++] = (byte)(0xF0 | (cp >> 18));
+				buf[len++] = (byte)(0x80 | ((cp >> 12) & 0x3F));
+				buf[len++] = (byte)(0x80 | ((cp >> 6) & 0x3F));
+				buf[len++] = (byte)(0x80 | (cp & 0x3F));
+			} else {
+				buf[len++] = (byte)(0xE0 | (c >> 12));
+				buf[len++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+				buf[len++] = (byte)(0x80 | (c & 0x3F));
+			}
+		}
+		return this;
+	}
+
+	/* Same as Long.toUnsignedString(). */
+	SigContext putUnsigned(long val) {
+		ensure(20);
+		int start = len;
+		do {
+			buf[len++] = (byte)('0' + Long.remainderUnsigned(val, 10));
+			val = Long.divideUnsigned(val, 10);
+		} while(val != 0);
+
+		for(int i = start, j = len - 1; i < j; ++i, --j) {
+			byte tmp = buf[i];
+			buf[i] = buf[j];
+			buf[j] = tmp;
+		}
+		return this;
+	}
+
+	SigContext putHex(byte[] data) {
+		ensure(data.length * 2);
+		for(byte b : data) {
+			buf[len++] = HEX[(b >> 4) & 0x0F];
+			buf[len++] = HEX[b & 0x0F];
+		}
+		return this;
+	}
+
+	/**
+	 * Compare a signature against a hex string, in constant time.
+	 */
+	static boolean hexEquals(byte[] data, String hex) {
+		if(hex.length() != data.length * 2) {
+			return false;
+		}
+
+		int diff = 0;
+		for(int i = 0; i < data.length; ++i) {
+			diff |= HEX[(data[i] >> 4) & 0x0F] ^ hex.charAt(i * 2);
+			diff |= HEX[data[i] & 0x0F] ^ hex.charAt(i * 2 + 1);
+		}
+		return diff == 0;
+	}
+}
@@ -31,18 +31,18 @@ import org.bouncycastle.crypto.digests.SHA512Digest;
 import org.bouncycastle.crypto.macs.HMac;
 import org.bouncycastle.crypto.params.KeyParameter;
 
-import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
-import java.time.ZoneOffset;
-import java.time.ZonedDateTime;
-import java.time.temporal.ChronoField;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.UUID;
 import java.util.function.BiFunction;
 import java.util.function.Function;
@@ -130,7 +130,7 @@ public class SigUtils {
 				(p, b) -> b.replyTo(p.getReplyTo())
 		));
 		put("timestamp", new Procs(
-				p -> String.valueOf(p.getTimestamp().toInstant().getEpochSecond()),
+				p -> Optional.ofNullable(p.getTimestamp()).map(d -> String.valueOf(d.toInstant().getEpochSecond())).orElse(null),
 				(p, b) -> b.timestamp(p.getTimestamp())
 		));
 		put("type", new Procs(
@@ -186,189 +186,152 @@ public class SigUtils {
 		return b.headers(newHeaders).build();
 	}
 
-	/* KeyParameter copies the key, so it's safe for both key and out to point to the same buffer. */
-	private static byte[] hmacCascade(Mac mac, byte[] key, byte[] data, byte[] out) {
-		mac.reset();
-		mac.init(new KeyParameter(key));
-		mac.update(data, 0, data.length);
-		mac.doFinal(out, 0);
-		return out;
+	private static final ThreadLocal<Map<String, SigContext>> CONTEXTS = ThreadLocal.withInitial(HashMap::new);
+
+	private static SigContext getContext(String algorithm) throws NoSuchAlgorithmException {
+		Map<String, SigContext> contexts = CONTEXTS.get();
+		SigContext ctx = contexts.get(algorithm);
+		if(ctx != null) {
+			return ctx;
+		}
+
+		AlgoInfo algo = ALGORITHMS.get(algorithm);
+		if(algo == null) {
+			throw new NoSuchAlgorithmException();
+		}
+
+		ctx = new SigContext(algorithm, algo);
+		contexts.put(algorithm, ctx);
+		return ctx;
 	}
 
-	/* HMAC(HMAC("NIM1" + secret, "YYYYMMDDTHHMMSSZ"), app_id) */
-	private static byte[] buildSigningKey(Mac mac, String secretKey, String timestamp, long nonce, String appId, byte[] out) {
-		hmacCascade(mac, ("NIM1" + secretKey).getBytes(StandardCharsets.UTF_8), timestamp.getBytes(StandardCharsets.UTF_8), out);
-		hmacCascade(mac, out, Long.toUnsignedString(nonce).getBytes(StandardCharsets.UTF_8), out);
-		hmacCascade(mac, out, appId.getBytes(StandardCharsets.UTF_8), out);
-		return out;
+	/* KeyParameter copies the key, so it's safe for both key and out to point to the same buffer. */
+	private static void hmacCascade(SigContext ctx, KeyParameter key, byte[] out) {
+		ctx.mac.init(key);
+		ctx.mac.update(ctx.buffer(), 0, ctx.length());
+		ctx.mac.doFinal(out, 0);
 	}
 
-	private static TreeMap<String, String> buildProperties(AMQP.BasicProperties props) {
-		TreeMap<String, String> m = new TreeMap<>();
+	/*
+	 * Compute the signature of the properties and headers currently in the context, into ctx.sig.
+	 *
+	 * The signing key is HMAC(HMAC(HMAC("NIM1" + secret, "YYYYMMDDTHHMMSSZ"), nonce), app_id).
+	 * Only the first step is cached, the nonce changes every message.
+	 */
+	private static void computeSignature(SigContext ctx, String secretKey, Instant t, String timestamp, long nonce, String appid, byte[] payload) {
+		Mac dateMac = ctx.dateMac(secretKey, t.getEpochSecond(), timestamp);
 
-		ALLOWED_PROPERTIES.forEach((k, v) -> {
-			String val = v.getString.apply(props);
-			if(val == null) {
-				return;
-			}
+		ctx.reset();
+		ctx.putUnsigned(nonce);
+		dateMac.update(ctx.buffer(), 0, ctx.length());
+		dateMac.doFinal(ctx.key, 0);
 
-			m.put(k.toLowerCase(Locale.US), val);
-		});
+		ctx.reset();
+		ctx.put(appid);
+		hmacCascade(ctx, new KeyParameter(ctx.key), ctx.key);
 
-		return m;
-	}
+		/* Format the canonical request. */
+		ctx.reset();
+		for(int i = 0; i < ctx.propCount; ++i) {
+			ctx.put(ctx.propNames[i]).put(':').put(ctx.propValues[i]).put('\n');
+		}
+		ctx.put('\n');
 
-	private static TreeMap<String, String> buildHeaders(AMQP.BasicProperties props) {
-		Map<String, Object> headers = props.getHeaders();
-		if(headers == null) {
-			return new TreeMap<>();
+		for(int i = 0; i < ctx.propCount; ++i) {
+			ctx.put(ctx.propNames[i]).put(';');
 		}
+		ctx.trim();
+		ctx.put('\n');
 
-		TreeMap<String, String> m = new TreeMap<>();
-		headers.forEach((k, v) -> m.put(k.toLowerCase(Locale.US), v.toString()));
-		return m;
-	}
+		for(int i = 0; i < ctx.headerCount; ++i) {
+			ctx.put(ctx.headerNames[i]).put(':').put(ctx.headerValues[i]).put('\n');
+		}
+		ctx.put('\n');
 
-	private static StringBuilder writeHex(StringBuilder sb, byte[] payload) {
-		final String characters = "0123456789abcdef";
-		for(byte b : payload) {
-			sb.append(characters.charAt((b >> 4) & 0x0F));
-			sb.append(characters.charAt(b & 0x0F));
+		for(int i = 0; i < ctx.headerCount; ++i) {
+			ctx.put(ctx.headerNames[i]).put(';');
 		}
+		ctx.trim();
+		ctx.put('\n');
 
-		return sb;
-	}
+		ctx.digest.reset();
+		ctx.digest.update(payload, 0, payload.length);
+		ctx.digest.doFinal(ctx.hash, 0);
+		ctx.putHex(ctx.hash);
 
-	public static AuthHeader buildAuthHeader(String algorithm, String accessKey, String secretKey, Instant t, long nonce, byte[] payload, AMQP.BasicProperties props) throws NoSuchAlgorithmException {
-		final AlgoInfo algo = ALGORITHMS.get(algorithm);
-		if(algo == null) {
-			throw new NoSuchAlgorithmException();
-		}
+		ctx.digest.reset();
+		ctx.digest.update(ctx.buffer(), 0, ctx.length());
+		ctx.digest.doFinal(ctx.hash, 0);
 
-		final Digest md = algo.getDigest();
-		final StringBuilder sb = new StringBuilder();
-		final Mac hmac = algo.getMac();
-		final byte[] buf = new byte[hmac.getMacSize()];
-		final byte[] buf2 = new byte[md.getDigestSize()];
+		/* Format the "string to sign". */
+		ctx.reset();
+		/* Algo */
+		ctx.put(ctx.algorithm).put('\n');
+		/* Timestamp */
+		ctx.put(timestamp).put('\n');
+		/* Scope */
+		ctx.put(timestamp).put('/').putUnsigned(nonce).put('/').put(appid).put('\n');
+		/* Signature */
+		ctx.putHex(ctx.hash);
+
+		hmacCascade(ctx, new KeyParameter(ctx.key), ctx.sig);
+	}
 
-		/* Need to do this so ChronoField's will work. */
-		ZonedDateTime zdt = t.atZone(ZoneOffset.UTC);
+	public static AuthHeader buildAuthHeader(String algorithm, String accessKey, String secretKey, Instant t, long nonce, byte[] payload, AMQP.BasicProperties props) throws NoSuchAlgorithmException {
+		SigContext ctx = getContext(algorithm);
 
-		String timestamp = String.format("%04d%02d%02dT%02d%02d%02dZ",
-				zdt.get(ChronoField.YEAR),
-				zdt.get(ChronoField.MONTH_OF_YEAR),
-				zdt.get(ChronoField.DAY_OF_MONTH),
-				zdt.get(ChronoField.HOUR_OF_DAY),
-				zdt.get(ChronoField.MINUTE_OF_HOUR),
-				zdt.get(ChronoField.SECOND_OF_MINUTE)
-		);
+		String timestamp = ctx.timestampString(t);
 
 		String appid = props.getAppId();
 		if(appid == null) {
 			appid = DEFAULT_APPID;
 		}
 
-		buildSigningKey(hmac, secretKey, timestamp, nonce, appid, buf);
-
-		TreeMap<String, String> properties = buildProperties(props);
-		TreeMap<String, String> headers = buildHeaders(props);
-
-		/* Format the canonical request. */
-		String canonicalRequest;
-		{
-			sb.setLength(0);
-			properties.forEach((k, v) -> {
-				sb.append(k);
-				sb.append(":");
-				sb.append(v);
-				sb.append("\n");
+		ctx.clearFields();
+		try {
+			ALLOWED_PROPERTIES.forEach((k, v) -> {
+				String val = v.getString.apply(props);
+				if(val != null) {
+					ctx.addProperty(k, val);
+				}
 			});
-			sb.append("\n");
 
-			for(String s : properties.keySet()) {
-				sb.append(s);
-				sb.append(";");
+			Map<String, Object> headers = props.getHeaders();
+			if(headers != null) {
+				headers.forEach((k, v) -> ctx.addHeader(k.toLowerCase(Locale.US), v.toString()));
 			}
-			sb.setLength(sb.length() - 1);
-			sb.append("\n");
-
-			headers.forEach((k, v) -> {
-				sb.append(k);
-				sb.append(":");
-				sb.append(v);
-				sb.append("\n");
-			});
-			sb.append("\n");
 
-			for(String s : headers.keySet()) {
-				sb.append(s);
-				sb.append(";");
-			}
-			sb.setLength(sb.length() - 1);
-			sb.append("\n");
-
-			md.reset();
-			md.update(payload, 0, payload.length);
-			md.doFinal(buf2, 0);
-			writeHex(sb, buf2);
-			canonicalRequest = sb.toString();
+			computeSignature(ctx, secretKey, t, timestamp, nonce, appid, payload);
+
+			return new AuthHeader(
+					algorithm,
+					accessKey + "/" + timestamp + "/" + Long.toUnsignedString(nonce) + "/" + appid,
+					accessKey,
+					timestamp,
+					t,
+					nonce,
+					appid,
+					toSet(ctx.propNames, ctx.propCount),
+					toSet(ctx.headerNames, ctx.headerCount),
+					writeHex(new StringBuilder(ctx.sig.length * 2), ctx.sig).toString()
+			);
+		} finally {
+			ctx.clearFields();
 		}
+	}
 
-		/* Format the "string to sign". */
-		String sts;
-		{
-			sb.setLength(0);
-			/* Algo */
-			sb.append(algorithm);
-			sb.append("\n");
-			/* Timestamp */
-			sb.append(timestamp);
-			sb.append("\n");
-			/* Scope */
-			sb.append(timestamp);
-			sb.append("/");
-			sb.append(Long.toUnsignedString(nonce));
-			sb.append("/");
-			sb.append(appid);
-			sb.append("\n");
-			/* Signature */
-			md.reset();
-
-			byte[] cbytes = canonicalRequest.getBytes(StandardCharsets.UTF_8);
-			md.update(cbytes, 0, cbytes.length);
-			md.doFinal(buf2, 0);
-			writeHex(sb, buf2);
-			sts = sb.toString();
-		}
+	private static Set<String> toSet(String[] vals, int count) {
+		return Collections.unmodifiableSet(new TreeSet<>(Arrays.asList(vals).subList(0, count)));
+	}
 
-		String credential;
-		{
-			sb.setLength(0);
-			sb.append(accessKey);
-			sb.append("/");
-			sb.append(timestamp);
-			sb.append("/");
-			sb.append(Long.toUnsignedString(nonce));
-			sb.append("/");
-			sb.append(appid);
-			credential = sb.toString();
+	private static StringBuilder writeHex(StringBuilder sb, byte[] payload) {
+		final String characters = "0123456789abcdef";
+		for(byte b : payload) {
+			sb.append(characters.charAt((b >> 4) & 0x0F));
+			sb.append(characters.charAt(b & 0x0F));
 		}
 
-		hmacCascade(hmac, buf, sts.getBytes(StandardCharsets.UTF_8), buf);
-
-		sb.setLength(0);
-		return new AuthHeader(
-				algorithm,
-				credential,
-				accessKey,
-				timestamp,
-				t,
-				nonce,
-				appid,
-				properties.keySet(),
-				headers.keySet(),
-				writeHex(sb, buf).toString()
-		);
+		return sb;
 	}
 
 	public static boolean validateMessage(AMQP.BasicProperties props, AuthHeader hdr, AgentMessage msg) {
@@ -411,19 +374,92 @@ public class SigUtils {
 		return true;
 	}
 
+	/**
+	 * Verify a message's signature.
+	 *
+	 * This is equivalent to rebuilding the header from the signed properties and headers
+	 * with {@link #buildAuthHeader(String, String, String, Instant, long, byte[], AMQP.BasicProperties)}
+	 * and comparing, but without the intermediate objects.
+	 */
 	public static boolean verifySignature(AuthHeader hdr, String secretKey, AMQP.BasicProperties props, byte[] payload) throws NoSuchAlgorithmException {
 		Objects.requireNonNull(hdr, "hdr");
 		Objects.requireNonNull(props, "props");
 		Objects.requireNonNull(payload, "payload");
 
-		AMQP.BasicProperties newProps = SigUtils.buildBasicProperties(hdr, props);
-		if(newProps == null) {
-			/* Invalid/Missing signed properties or headers. */
+		SigContext ctx = getContext(hdr.algorithm);
+
+		String timestamp = ctx.timestampString(hdr.timestamp);
+		if(!timestamp.equals(hdr.timestampString)) {
 			return false;
 		}
 
-		AuthHeader ourHdr = SigUtils.buildAuthHeader(hdr.algorithm, hdr.accessKey, secretKey, hdr.timestamp, hdr.nonce, payload, newProps);
-		return ourHdr.equals(hdr);
+		String appid = null;
+
+		ctx.clearFields();
+		try {
+			for(String s : hdr.signedProperties) {
+				Procs procs = ALLOWED_PROPERTIES.get(s);
+				if(procs == null) {
+					/* Invalid property. */
+					return false;
+				}
+
+				String val = procs.getString.apply(props);
+				if(val == null) {
+					/* Missing property. */
+					return false;
+				}
+
+				if("app-id".equals(s)) {
+					appid = val;
+				}
+
+				ctx.addProperty(s, val);
+			}
+
+			Map<String, Object> headers = props.getHeaders();
+			if(headers == null) {
+				headers = Map.of();
+			}
+
+			for(String s : hdr.signedHeaders) {
+				Object val = findHeader(headers, s);
+				if(val == null) {
+					/* Missing header. */
+					return false;
+				}
+				ctx.addHeader(s, val.toString());
+			}
+
+			if(appid == null) {
+				appid = DEFAULT_APPID;
+			}
+
+			if(!appid.equals(hdr.appid)) {
+				return false;
+			}
+
+			computeSignature(ctx, secretKey, hdr.timestamp, timestamp, hdr.nonce, appid, payload);
+			return SigContext.hexEquals(ctx.sig, hdr.signature);
+		} finally {
+			ctx.clearFields();
+		}
+	}
+
+	/* Case-insensitive header lookup. The name must already be lowercase. */
+	private static Object findHeader(Map<String, Object> headers, String name) {
+		Object val = headers.get(name);
+		if(val != null) {
+			return val;
+		}
+
+		for(Map.Entry<String, Object> e : headers.entrySet()) {
+			if(e.getKey().equalsIgnoreCase(name)) {
+				return e.getValue();
+			}
+		}
+
+		return null;
 	}
 
 	public static String buildAccessKey(UUID agentUuid) {
@@ -0,0 +1,62 @@
+package au.edu.uq.rcc.nimrodg.master;
+
+import au.edu.uq.rcc.nimrodg.master.MessageQueueListener.MessageOperation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class AckCoalescerTests {
+
+	private static List<String> coalesce(Map<Long, MessageOperation> ops, long floor) {
+		return AckCoalescer.coalesce(ops, floor).stream()
+				.map(s -> String.format("%s %d%s", s.op, s.tag, s.multiple ? "+" : ""))
+				.collect(Collectors.toList());
+	}
+
+	@Test
+	public void allAcksTest() {
+		Map<Long, MessageOperation> ops = new HashMap<>();
+		for(long i = 1; i <= 1000; ++i) {
+			ops.put(i, MessageOperation.Ack);
+		}
+
+		Assertions.assertEquals(List.of("Ack 1000+"), coalesce(ops, Long.MAX_VALUE));
+	}
+
+	@Test
+	public void rejectsFirstTest() {
+		Map<Long, MessageOperation> ops = Map.of(
+				1L, MessageOperation.Ack,
+				2L, MessageOperation.Reject,
+				3L, MessageOperation.Ack,
+				4L, MessageOperation.RejectAndRequeue,
+				5L, MessageOperation.Ack
+		);
+
+		Assertions.assertEquals(List.of("Reject 2", "RejectAndRequeue 4", "Ack 5+"), coalesce(ops, Long.MAX_VALUE));
+	}
+
+	@Test
+	public void outstandingTest() {
+		/* 4 is still being processed, it mustn't be acked. */
+		Map<Long, MessageOperation> ops = Map.of(
+				1L, MessageOperation.Ack,
+				3L, MessageOperation.Ack,
+				5L, MessageOperation.Ack,
+				6L, MessageOperation.Reject,
+				7L, MessageOperation.Ack
+		);
+
+		Assertions.assertEquals(List.of("Ack 5", "Reject 6", "Ack 7", "Ack 3+"), coalesce(ops, 4));
+	}
+
+	@Test
+	public void emptyTest() {
+		Assertions.assertEquals(List.of(), coalesce(Map.of(), Long.MAX_VALUE));
+		Assertions.assertEquals(List.of("Reject 1"), coalesce(Map.of(1L, MessageOperation.Reject), Long.MAX_VALUE));
+	}
+}
@@ -0,0 +1,59 @@
+package au.edu.uq.rcc.nimrodg.master;
+
+import au.edu.uq.rcc.nimrodg.agent.AgentState;
+import au.edu.uq.rcc.nimrodg.agent.DefaultAgentState;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class AgentWriteBehindTests {
+
+	private static AgentState createAgent() {
+		DefaultAgentState as = new DefaultAgentState();
+		as.setUUID(UUID.randomUUID());
+		return as;
+	}
+
+	@Test
+	public void coalesceTest() {
+		List<List<AgentState>> writes = new ArrayList<>();
+		Instant now = Instant.EPOCH;
+		AgentWriteBehind awb = new AgentWriteBehind(a -> writes.add(new ArrayList<>(a)), now);
+		awb.onConfigChange("nimrod.master.agent_flush_interval", null, "10");
+
+		AgentState a = createAgent();
+		AgentState b = createAgent();
+
+		Assertions.assertEquals(Instant.MAX, awb.getNextDeadline());
+
+		/* Lots of pongs from two agents. */
+		for(int i = 0; i < 100; ++i) {
+			awb.markDirty(a);
+			awb.markDirty(b);
+		}
+		Assertions.assertEquals(2, awb.getDirtyCount());
+		Assertions.assertEquals(now.plusSeconds(10), awb.getNextDeadline());
+
+		awb.tick(now.plusSeconds(5));
+		Assertions.assertTrue(writes.isEmpty());
+
+		awb.tick(now.plusSeconds(10));
+		Assertions.assertEquals(List.of(List.of(a, b)), writes);
+		Assertions.assertEquals(0, awb.getDirtyCount());
+
+		/* State transitions go straight through and supersede pending writes. */
+		writes.clear();
+		awb.markDirty(a);
+		awb.updateNow(a);
+		Assertions.assertEquals(List.of(List.of(a)), writes);
+		Assertions.assertEquals(0, awb.getDirtyCount());
+
+		writes.clear();
+		awb.tick(now.plusSeconds(100));
+		Assertions.assertTrue(writes.isEmpty());
+	}
+}
@@ -0,0 +1,77 @@
+package au.edu.uq.rcc.nimrodg.master;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ConfirmTrackerTests {
+
+	@Test
+	public void confirmTest() {
+		ConfirmTracker<String> ct = new ConfirmTracker<>(0);
+		ct.track(1, "a");
+		ct.track(2, "b");
+		ct.track(3, "c");
+		ct.track(4, "d");
+
+		Assertions.assertEquals(List.of("c"), ct.confirm(3, false));
+		Assertions.assertEquals(List.of(), ct.confirm(3, false));
+		Assertions.assertEquals(List.of("a", "b"), ct.confirm(3, true));
+		Assertions.assertEquals(1, ct.getInFlight());
+
+		Assertions.assertEquals(Optional.of("d"), ct.remove("d"::equals));
+		Assertions.assertEquals(Optional.empty(), ct.remove("d"::equals));
+		Assertions.assertEquals(0, ct.getInFlight());
+	}
+
+	@Test
+	public void windowTimeoutTest() throws InterruptedException, TimeoutException {
+		ConfirmTracker<String> ct = new ConfirmTracker<>(2);
+		ct.awaitCapacity(0);
+		ct.track(1, "a");
+		ct.awaitCapacity(0);
+		ct.track(2, "b");
+
+		Assertions.assertThrows(TimeoutException.class, () -> ct.awaitCapacity(TimeUnit.MILLISECONDS.toNanos(10)));
+
+		ct.confirm(1, false);
+		ct.awaitCapacity(0);
+	}
+
+	@Test
+	public void windowBackpressureTest() throws InterruptedException {
+		ConfirmTracker<String> ct = new ConfirmTracker<>(1);
+		ct.track(1, "a");
+
+		CountDownLatch started = new CountDownLatch(1);
+		AtomicReference<Throwable> err = new AtomicReference<>();
+		Thread t = new Thread(() -> {
+			started.countDown();
+			try {
+				ct.awaitCapacity(TimeUnit.SECONDS.toNanos(10));
+				ct.track(2, "b");
+			} catch(InterruptedException | TimeoutException e) {
+				err.set(e);
+			}
+		});
+		t.start();
+
+		started.await();
+		Thread.sleep(50);
+		Assertions.assertTrue(t.isAlive());
+
+		/* Channel's gone, the sender should be woken. */
+		Assertions.assertEquals(List.of("a"), ct.clear());
+		t.join(TimeUnit.SECONDS.toMillis(10));
+
+		Assertions.assertFalse(t.isAlive());
+		Assertions.assertNull(err.get());
+		Assertions.assertEquals(1, ct.getInFlight());
+	}
+}
@@ -0,0 +1,100 @@
+package au.edu.uq.rcc.nimrodg.master;
+
+import au.edu.uq.rcc.nimrodg.agent.MessageBackend;
+import au.edu.uq.rcc.nimrodg.agent.messages.cbor.CborBackend;
+import au.edu.uq.rcc.nimrodg.agent.messages.json.JsonBackend;
+import com.rabbitmq.client.impl.LongStringHelper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import javax.mail.internet.ContentType;
+import javax.mail.internet.ParseException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+public class ContentFormatTests {
+
+	@Test
+	public void resolveTest() {
+		ContentFormat cf = ContentFormat.resolve("application/json; charset=utf-8");
+		Assertions.assertNotNull(cf);
+		Assertions.assertSame(JsonBackend.INSTANCE, cf.backend);
+		Assertions.assertEquals(StandardCharsets.UTF_8, cf.charset);
+		Assertions.assertEquals("application/json", cf.contentType.getBaseType());
+
+		/* Precomputed, a new string with the same value gets the same instance. */
+		Assertions.assertSame(cf, ContentFormat.resolve(new String("application/json; charset=utf-8")));
+
+		/* No charset is ISO-8859-1, per HTTP/1.1. */
+		cf = ContentFormat.resolve("application/json");
+		Assertions.assertNotNull(cf);
+		Assertions.assertEquals(StandardCharsets.ISO_8859_1, cf.charset);
+
+		cf = ContentFormat.resolve("application/cbor");
+		Assertions.assertNotNull(cf);
+		Assertions.assertSame(CborBackend.INSTANCE, cf.backend);
+
+		Assertions.assertNull(ContentFormat.resolve(null));
+		Assertions.assertNull(ContentFormat.resolve("text/plain"));
+		Assertions.assertNull(ContentFormat.resolve("application/json; charset=not-a-charset"));
+		Assertions.assertNull(ContentFormat.resolve("/////"));
+	}
+
+	@Test
+	public void unknownTest() {
+		/* Junk doesn't get remembered, and doesn't affect the known types. */
+		for(int i = 0; i < 1000; ++i) {
+			Assertions.assertNull(ContentFormat.resolve("application/x-junk-" + i));
+		}
+
+		ContentFormat cf = ContentFormat.resolve("application/json; charset=utf-8");
+		Assertions.assertSame(cf, ContentFormat.resolve("application/json; charset=utf-8"));
+		Assertions.assertSame(CborBackend.INSTANCE, ContentFormat.resolve("application/cbor").backend);
+
+		/* Valid, but not one of ours, so it's parsed each time. */
+		String value = "application/json; charset=\"UTF-8\"; x=1000";
+		cf = ContentFormat.resolve(value);
+		Assertions.assertNotNull(cf);
+		Assertions.assertEquals(StandardCharsets.UTF_8, cf.charset);
+		Assertions.assertNotSame(cf, ContentFormat.resolve(value));
+	}
+
+	@Test
+	public void acceptsGzipTest() {
+		Assertions.assertFalse(PayloadCodec.acceptsGzip(null));
+		Assertions.assertTrue(PayloadCodec.acceptsGzip(LongStringHelper.asLongString("gzip, identity")));
+		Assertions.assertTrue(PayloadCodec.acceptsGzip(LongStringHelper.asLongString("gzip, identity")));
+		Assertions.assertFalse(PayloadCodec.acceptsGzip(LongStringHelper.asLongString("identity")));
+		Assertions.assertFalse(PayloadCodec.acceptsGzip(LongStringHelper.asLongString("identity")));
+		Assertions.assertTrue(PayloadCodec.acceptsGzip("gzip"));
+	}
+
+	@Test
+	@Tag("benchmark")
+	public void resolveBenchmark() throws ParseException {
+		final int iterations = 1000000;
+		final String value = "application/json; charset=utf-8";
+
+		/* What handleDelivery() used to do. */
+		long start = System.nanoTime();
+		int n = 0;
+		for(int i = 0; i < iterations; ++i) {
+			ContentType ct = new ContentType(new String(value));
+			MessageBackend mb = AMQProcessorImpl.MESSAGE_BACKENDS.get(ct.getBaseType());
+			Charset cs = AMQProcessorImpl.resolveCharset(ct.getParameter("charset"));
+			n += (mb != null && cs != null) ? 1 : 0;
+		}
+		long parse = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for(int i = 0; i < iterations; ++i) {
+			/* The client decodes a fresh string for each delivery. */
+			n += ContentFormat.resolve(new String(value)) != null ? 1 : 0;
+		}
+		long known = System.nanoTime() - start;
+
+		Assertions.assertEquals(iterations * 2, n);
+		System.err.printf("Content-type: parse = %6.1f ns/msg, known = %6.1f ns/msg\n", parse / (double)iterations, known / (double)iterations);
+	}
+}
@@ -0,0 +1,159 @@
+package au.edu.uq.rcc.nimrodg.master;
+
+import au.edu.uq.rcc.nimrodg.api.NimrodMasterAPI;
+import au.edu.uq.rcc.nimrodg.master.sched.DefaultAgentScheduler;
+import au.edu.uq.rcc.nimrodg.master.sched.DefaultJobScheduler;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Compare dispatch latency of the old fixed-tick loop against {@link Master#waitForWork(long, long)}.
+ *
+ * Events are a mix of "messages", which notified the old loop, and "tasks", which didn't.
+ * Latency is the time between an event being submitted and the wait returning to dispatch it.
+ */
+public class DispatchLatencyTests {
+
+	private static final int EVENT_COUNT = 200;
+	private static final long TICK_RATE = 500;
+	/* Simulated tick cost. */
+	private static final long TICK_WORK_MS = 2;
+
+	private interface Loop {
+		void notifyMessage();
+
+		void notifyTask();
+
+		void await() throws InterruptedException;
+	}
+
+	private static class FixedTickLoop implements Loop {
+		private final Object monitor = new Object();
+
+		@Override
+		public void notifyMessage() {
+			synchronized(monitor) {
+				monitor.notify();
+			}
+		}
+
+		@Override
+		public void notifyTask() {
+			/* runLater() never woke the loop. */
+		}
+
+		@Override
+		public void await() throws InterruptedException {
+			synchronized(monitor) {
+				monitor.wait(TICK_RATE);
+			}
+		}
+	}
+
+	private static class MasterLoop implements Loop {
+		private final Master master;
+
+		MasterLoop(Master master) {
+			this.master = master;
+		}
+
+		@Override
+		public void notifyMessage() {
+			master.wakeUp();
+		}
+
+		@Override
+		public void notifyTask() {
+			master.wakeUp();
+		}
+
+		@Override
+		public void await() throws InterruptedException {
+			/*
+			 * The master isn't ticked, so the intervals are measured from when it was created.
+			 * Keep the maximum past the end of the run, so only wakeups end the wait.
+			 */
+			master.waitForWork(0, 60000);
+		}
+	}
+
+	private static long[] runBenchmark(Loop loop) throws InterruptedException {
+		ConcurrentLinkedQueue<Long> pending = new ConcurrentLinkedQueue<>();
+		long[] latencies = new long[EVENT_COUNT];
+
+		Thread producer = new Thread(() -> {
+			Random rng = new Random(0);
+			for(int i = 0; i < EVENT_COUNT; ++i) {
+				try {
+					Thread.sleep(rng.nextInt(10));
+				} catch(InterruptedException e) {
+					return;
+				}
+
+				pending.offer(System.nanoTime());
+				if(i % 2 == 0) {
+					loop.notifyMessage();
+				} else {
+					loop.notifyTask();
+				}
+			}
+		});
+		producer.start();
+
+		int processed = 0;
+		while(processed < EVENT_COUNT) {
+			Long ts;
+			while((ts = pending.poll()) != null) {
+				latencies[processed++] = System.nanoTime() - ts;
+			}
+
+			/* Notifications sent now are lost by the fixed-tick loop. */
+			Thread.sleep(TICK_WORK_MS);
+
+			if(processed < EVENT_COUNT) {
+				loop.await();
+			}
+		}
+
+		producer.join();
+		Arrays.sort(latencies);
+		return latencies;
+	}
+
+	private static double mean(long[] vals) {
+		return Arrays.stream(vals).average().orElse(0) / 1e6;
+	}
+
+	private static double percentile(long[] sorted, double p) {
+		return sorted[(int)Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1e6;
+	}
+
+	@Test
+	@Tag("benchmark")
+	public void dispatchLatencyBenchmark() throws InterruptedException {
+		/* The master doesn't touch the API until it's ticked, nothing should get through. */
+		NimrodMasterAPI nimrod = (NimrodMasterAPI)Proxy.newProxyInstance(
+				NimrodMasterAPI.class.getClassLoader(),
+				new Class<?>[]{NimrodMasterAPI.class},
+				(proxy, method, args) -> null
+		);
+
+		long[] fixed = runBenchmark(new FixedTickLoop());
+		long[] event;
+		try(Master master = new Master(nimrod, null, DefaultJobScheduler.FACTORY, DefaultAgentScheduler.FACTORY)) {
+			event = runBenchmark(new MasterLoop(master));
+		}
+
+		Assertions.assertEquals(EVENT_COUNT, fixed.length);
+		Assertions.assertEquals(EVENT_COUNT, event.length);
+
+		System.err.printf("Fixed tick  : mean = %8.3f ms, p50 = %8.3f ms, p99 = %8.3f ms\n", mean(fixed), percentile(fixed, 0.5), percentile(fixed, 0.99));
+		System.err.printf("waitForWork : mean = %8.3f ms, p50 = %8.3f ms, p99 = %8.3f ms\n", mean(event), percentile(event, 0.5), percentile(event, 0.99));
+	}
+}
@@ -0,0 +1,204 @@
+package au.edu.uq.rcc.nimrodg.master;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FlowControlledQueueTests {
+
+	private static class Recorder implements FlowControlledQueue.FlowListener {
+		final List<Boolean> changes = new ArrayList<>();
+		final List<Integer> depths = new ArrayList<>();
+
+		@Override
+		public synchronized void onFlowChange(boolean paused, int depth) {
+			changes.add(paused);
+			depths.add(depth);
+		}
+	}
+
+	@Test
+	public void watermarkTest() {
+		Recorder r = new Recorder();
+		FlowControlledQueue<Integer> q = new FlowControlledQueue<>(r);
+		q.setWatermarks(10, 3);
+
+		for(int i = 0; i < 9; ++i) {
+			Assertions.assertTrue(q.offer(i));
+		}
+		Assertions.assertEquals(List.of(), r.changes);
+
+		/* Hitting the high-water mark pauses. */
+		Assertions.assertTrue(q.offer(9));
+		Assertions.assertEquals(List.of(true), r.changes);
+		Assertions.assertEquals(List.of(10), r.depths);
+
+		/* And anything more is refused. */
+		Assertions.assertFalse(q.offer(10));
+		Assertions.assertEquals(1, q.getStats().rejectedCount);
+		Assertions.assertEquals(10, q.size());
+
+		/* Except what can't be. */
+		Assertions.assertTrue(q.force(11));
+		Assertions.assertEquals(11, q.size());
+		Assertions.assertEquals(List.of(true), r.changes);
+
+		List<Integer> out = new ArrayList<>();
+		Assertions.assertEquals(11, q.drainTo(out));
+		Assertions.assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 11), out);
+		Assertions.assertEquals(List.of(true, false), r.changes);
+
+		FlowControlledQueue.Stats stats = q.getStats();
+		Assertions.assertEquals(0, stats.depth);
+		Assertions.assertEquals(11, stats.peakDepth);
+		Assertions.assertFalse(stats.paused);
+		Assertions.assertEquals(1, stats.pauseCount);
+	}
+
+	@Test
+	public void configTest() {
+		Recorder r = new Recorder();
+		FlowControlledQueue<Integer> q = new FlowControlledQueue<>(r);
+		Assertions.assertEquals(FlowControlledQueue.DEFAULT_HIGH_WATER, q.getHighWater());
+		Assertions.assertEquals(FlowControlledQueue.DEFAULT_LOW_WATER, q.getLowWater());
+
+		for(int i = 0; i < 100; ++i) {
+			q.offer(i);
+		}
+
+		/* Lowering the high-water mark below the depth pauses immediately, and drags the low-water mark down. */
+		q.onConfigChange("nimrod.master.agent_queue_high_water", null, "50");
+		Assertions.assertEquals(50, q.getHighWater());
+		Assertions.assertEquals(49, q.getLowWater());
+		Assertions.assertEquals(List.of(true), r.changes);
+
+		q.onConfigChange("nimrod.master.agent_queue_low_water", null, "1000");
+		Assertions.assertEquals(49, q.getLowWater());
+		q.onConfigChange("nimrod.master.agent_queue_low_water", null, "10");
+		Assertions.assertEquals(10, q.getLowWater());
+
+		/* Raising it again resumes. */
+		q.onConfigChange("nimrod.master.agent_queue_high_water", null, "200");
+		Assertions.assertEquals(List.of(true), r.changes);
+		q.onConfigChange("nimrod.master.agent_queue_low_water", null, "150");
+		Assertions.assertEquals(List.of(true, false), r.changes);
+
+		/* Defaults. */
+		q.onConfigChange("nimrod.master.agent_queue_high_water", "200", null);
+		q.onConfigChange("nimrod.master.agent_queue_low_water", "150", null);
+		Assertions.assertEquals(FlowControlledQueue.DEFAULT_HIGH_WATER, q.getHighWater());
+		Assertions.assertEquals(FlowControlledQueue.DEFAULT_LOW_WATER, q.getLowWater());
+	}
+
+	@Test
+	public void prefetchTest() {
+		Recorder r = new Recorder();
+		FlowControlledQueue<Integer> q = new FlowControlledQueue<>(r);
+
+		/* The defaults couldn't be reached with this prefetch, they're scaled down to half of it. */
+		q.setPrefetch(1000);
+		Assertions.assertEquals(500, q.getHighWater());
+		Assertions.assertEquals(500 * FlowControlledQueue.DEFAULT_LOW_WATER / FlowControlledQueue.DEFAULT_HIGH_WATER, q.getLowWater());
+
+		/* Configured changes are scaled too. */
+		q.setWatermarks(2000, 1000);
+		Assertions.assertEquals(500, q.getHighWater());
+		Assertions.assertEquals(250, q.getLowWater());
+
+		/* Unless they already fit. */
+		q.setWatermarks(100, 10);
+		Assertions.assertEquals(100, q.getHighWater());
+		Assertions.assertEquals(10, q.getLowWater());
+
+		q.setPrefetch(3);
+		Assertions.assertEquals(1, q.getHighWater());
+		Assertions.assertEquals(0, q.getLowWater());
+
+		/* Unlimited. */
+		q.setPrefetch(0);
+		Assertions.assertEquals(100, q.getHighWater());
+		Assertions.assertEquals(10, q.getLowWater());
+	}
+
+	@Test
+	public void offerWaitTest() throws InterruptedException {
+		Recorder r = new Recorder();
+		FlowControlledQueue<Integer> q = new FlowControlledQueue<>(r);
+		q.setWatermarks(2, 0);
+
+		Assertions.assertTrue(q.offer(0, 0, TimeUnit.MILLISECONDS));
+		Assertions.assertTrue(q.offer(1, 0, TimeUnit.MILLISECONDS));
+		Assertions.assertEquals(List.of(true), r.changes);
+
+		/* Full, nothing's draining it. */
+		Assertions.assertFalse(q.offer(2, 10, TimeUnit.MILLISECONDS));
+		Assertions.assertEquals(1, q.getStats().rejectedCount);
+
+		/* Draining makes room for a waiting offer. */
+		List<Integer> out = new ArrayList<>();
+		Thread t = new Thread(() -> {
+			while(q.drainTo(out) == 0) {
+				Thread.onSpinWait();
+			}
+		});
+		t.start();
+		Assertions.assertTrue(q.offer(3, 1, TimeUnit.MINUTES));
+		t.join();
+
+		Assertions.assertEquals(List.of(0, 1), out);
+		Assertions.assertEquals(1, q.size());
+		Assertions.assertEquals(1, q.getStats().rejectedCount);
+	}
+
+	@Test
+	public void concurrentTest() throws InterruptedException {
+		final int count = 100000;
+		AtomicBoolean paused = new AtomicBoolean(false);
+		AtomicInteger violations = new AtomicInteger(0);
+
+		FlowControlledQueue<Integer> q = new FlowControlledQueue<>((p, depth) -> {
+			/* Must alternate. */
+			if(paused.getAndSet(p) == p) {
+				violations.incrementAndGet();
+			}
+		});
+		q.setWatermarks(1000, 100);
+
+		/* A "consumer" that backs off whilst paused, like the broker would. */
+		Thread producer = new Thread(() -> {
+			for(int i = 0; i < count; ) {
+				if(paused.get()) {
+					Thread.onSpinWait();
+					continue;
+				}
+
+				if(q.offer(i)) {
+					++i;
+				}
+			}
+		});
+		producer.start();
+
+		List<Integer> out = new ArrayList<>(count);
+		while(out.size() < count) {
+			if(q.drainTo(out) == 0) {
+				Thread.onSpinWait();
+			}
+		}
+		producer.join();
+
+		for(int i = 0; i < count; ++i) {
+			Assertions.assertEquals(i, out.get(i));
+		}
+
+		FlowControlledQueue.Stats stats = q.getStats();
+		Assertions.assertEquals(0, violations.get());
+		Assertions.assertFalse(stats.paused);
+		Assertions.assertTrue(stats.peakDepth <= 1000);
+	}
+}
@@ -1,9 +1,15 @@
 package au.edu.uq.rcc.nimrodg.master;
 
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
+import au.edu.uq.rcc.nimrodg.api.AgentInfo;
+
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -64,4 +70,201 @@ public class HeartTests {
 		}
 		//Heart heart = new Heart();
 	}
+
+	/**
+	 * Minimal operations, recording everything the heart does.
+	 */
+	private static class RecordingOps implements Heart.Operations {
+		final Map<UUID, Instant> lastHeardFrom = new HashMap<>();
+		final Map<UUID, Instant> walltime = new HashMap<>();
+		final List<String> log = new ArrayList<>();
+		/* Agents that pong as soon as they're pinged. */
+		final Map<UUID, Boolean> responsive = new HashMap<>();
+		Heart heart;
+		Instant now;
+		long lookups;
+
+		void create(UUID u, Instant now, Instant walltime, boolean responsive) {
+			this.lastHeardFrom.put(u, now);
+			this.walltime.put(u, walltime);
+			this.responsive.put(u, responsive);
+			heart.onAgentCreate(u, now);
+		}
+
+		void tick(Instant now) {
+			this.now = now;
+			heart.tick(now);
+		}
+
+		private void record(String op, UUID u) {
+			log.add(String.format("%d %s %s", now.getEpochSecond(), op, u));
+		}
+
+		@Override
+		public void expireAgent(UUID u) {
+			record("expire", u);
+		}
+
+		@Override
+		public void terminateAgent(UUID u) {
+			record("terminate", u);
+		}
+
+		@Override
+		public void disconnectAgent(UUID u, AgentInfo.ShutdownReason reason, int signal) {
+			record("disconnect", u);
+			heart.onAgentDisconnect(u);
+		}
+
+		@Override
+		public void pingAgent(UUID u) {
+			if(responsive.get(u)) {
+				lastHeardFrom.put(u, now);
+				heart.onAgentPong(u);
+			} else {
+				record("ping", u);
+			}
+		}
+
+		@Override
+		public Instant getLastHeardFrom(UUID u) {
+			++lookups;
+			return lastHeardFrom.get(u);
+		}
+
+		@Override
+		public Instant getWalltime(UUID u) {
+			++lookups;
+			return walltime.get(u);
+		}
+
+		@Override
+		public void logInfo(String fmt, Object... args) {
+
+		}
+
+		@Override
+		public void logTrace(String fmt, Object... args) {
+
+		}
+	}
+
+	private static RecordingOps createOps() {
+		RecordingOps ops = new RecordingOps();
+		ops.heart = new Heart(ops);
+		return ops;
+	}
+
+	private static UUID agentUuid(int i) {
+		return new UUID(0, i);
+	}
+
+	@Test
+	public void missedHeartbeatExpiryTest() {
+		RecordingOps ops = createOps();
+		UUID u = agentUuid(0);
+
+		ops.create(u, Instant.EPOCH, Instant.MAX, false);
+		for(int i = 0; i <= 20; ++i) {
+			ops.tick(Instant.EPOCH.plusSeconds(i));
+		}
+
+		Assertions.assertEquals(List.of(
+				"6 ping " + u,
+				"12 ping " + u,
+				"18 ping " + u,
+				"19 expire " + u,
+				"20 expire " + u
+		), ops.log);
+
+		/* Make sure the master is woken for these. */
+		Assertions.assertEquals(Instant.EPOCH.plusSeconds(20), ops.heart.getNextDeadline(Instant.EPOCH.plusSeconds(20)));
+	}
+
+	@Test
+	public void walltimeTest() {
+		RecordingOps ops = createOps();
+		UUID u = agentUuid(0);
+
+		ops.create(u, Instant.EPOCH, Instant.MAX, true);
+		ops.heart.onConfigChange("nimrod.master.heart.expiry_retry_count", null, "2");
+
+		ops.tick(Instant.EPOCH);
+		Assertions.assertEquals(Instant.EPOCH.plusSeconds(6), ops.heart.getNextDeadline(Instant.EPOCH));
+
+		/* Bring the walltime forward, as happens when an agent finishes launching. */
+		ops.walltime.put(u, Instant.EPOCH.plusSeconds(3));
+		ops.heart.reschedule(u);
+		Assertions.assertEquals(Instant.EPOCH, ops.heart.getNextDeadline(Instant.EPOCH));
+
+		for(int i = 1; i <= 20; ++i) {
+			ops.tick(Instant.EPOCH.plusSeconds(i));
+		}
+
+		Assertions.assertEquals(List.of(
+				"3 terminate " + u,
+				"8 terminate " + u,
+				"13 disconnect " + u
+		), ops.log);
+		Assertions.assertEquals(Instant.MAX, ops.heart.getNextDeadline(Instant.EPOCH.plusSeconds(20)));
+	}
+
+	@Test
+	public void onlyDueAgentsTickedTest() {
+		RecordingOps ops = createOps();
+
+		/* Half the agents a second behind the others. */
+		int count = 10000;
+		for(int i = 0; i < count; ++i) {
+			ops.create(agentUuid(i), Instant.EPOCH.plusSeconds(i % 2), Instant.MAX, true);
+		}
+
+		/* Each agent ticked costs four lookups. */
+		ops.tick(Instant.EPOCH);
+		Assertions.assertEquals(count / 2 * 4, ops.lookups);
+		ops.tick(Instant.EPOCH.plusSeconds(1));
+		Assertions.assertEquals(count * 4, ops.lookups);
+
+		/* Nothing is due until the first pings. */
+		ops.lookups = 0;
+		for(int i = 2; i < 6; ++i) {
+			ops.tick(Instant.EPOCH.plusSeconds(i));
+		}
+		Assertions.assertEquals(0, ops.lookups);
+
+		ops.tick(Instant.EPOCH.plusSeconds(6));
+		Assertions.assertEquals(count / 2 * 4, ops.lookups);
+		Assertions.assertTrue(ops.log.isEmpty());
+	}
+
+	@Test
+	@Tag("benchmark")
+	public void heartTickBenchmark() {
+		RecordingOps ops = createOps();
+
+		/* Creation times are spread out over a heartbeat interval, as they would be in practice. */
+		int count = 100000;
+		long stepMs = 100;
+		for(int i = 0; i < count; ++i) {
+			ops.create(agentUuid(i), Instant.EPOCH.plusMillis(i % (Heart.DEFAULT_HEARTBEAT_INTERVAL * 1000)), Instant.MAX, true);
+		}
+
+		/* Settle, everything is due on creation. */
+		ops.tick(Instant.EPOCH);
+
+		long ticks = 0;
+		ops.lookups = 0;
+		long start = System.nanoTime();
+		for(long t = stepMs; t <= 60000; t += stepMs, ++ticks) {
+			ops.tick(Instant.EPOCH.plusMillis(t));
+		}
+		long elapsed = System.nanoTime() - start;
+
+		double lookupsPerTick = (double)ops.lookups / ticks;
+		System.err.printf("Heart, %d agents: %d ticks, mean = %8.3f ms/tick, %.1f lookups/tick\n", count, ticks, elapsed / 1e6 / ticks, lookupsPerTick);
+
+		Assertions.assertTrue(ops.log.isEmpty());
+		/* A full scan would do at least two lookups per agent per tick. */
+		Assertions.assertTrue(lookupsPerTick < count / 10.0);
+	}
 }
@@ -0,0 +1,301 @@
+package au.edu.uq.rcc.nimrodg.master;
+
+import au.edu.uq.rcc.nimrodg.agent.Agent;
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentInit;
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentMessage;
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentPing;
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentPong;
+import au.edu.uq.rcc.nimrodg.agent.messages.json.JsonBackend;
+import au.edu.uq.rcc.nimrodg.master.sig.SigUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+public class LocalTransportTests {
+
+	private static final String SECRET_KEY = "abc123";
+
+	private ExecutorService executor;
+
+	/* Checks messages the same way the master does, then defers to the test. */
+	private static class Listener implements MessageQueueListener {
+		final BiFunction<Long, AMQPMessage, Optional<MessageOperation>> handler;
+		final BlockingQueue<AMQPMessage> undeliverable;
+		final AtomicInteger invalid;
+		/* Must be single-threaded, like an AMQP consumer. */
+		final AtomicInteger concurrent;
+
+		Listener(BiFunction<Long, AMQPMessage, Optional<MessageOperation>> handler) {
+			this.handler = handler;
+			this.undeliverable = new LinkedBlockingQueue<>();
+			this.invalid = new AtomicInteger(0);
+			this.concurrent = new AtomicInteger(0);
+		}
+
+		@Override
+		public Optional<MessageOperation> processAgentMessage(long tag, AMQPMessage msg) {
+			Assertions.assertEquals(1, concurrent.incrementAndGet());
+			try {
+				if(!msg.sentAt.isPresent() || !SigUtils.validateMessage(msg.basicProperties, msg.authHeader, msg.message) ||
+						!SigUtils.verifySignature(msg.authHeader, SECRET_KEY, msg.basicProperties, msg.body)) {
+					invalid.incrementAndGet();
+					return Optional.of(MessageOperation.Reject);
+				}
+				return handler.apply(tag, msg);
+			} catch(NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			} finally {
+				concurrent.decrementAndGet();
+			}
+		}
+
+		@Override
+		public void onMessageUndeliverable(AMQPMessage msg, String reason) {
+			undeliverable.offer(msg);
+		}
+	}
+
+	/* Signatures only cover whole seconds, the master rejects anything else. */
+	private static Instant now() {
+		return Instant.now().truncatedTo(ChronoUnit.SECONDS);
+	}
+
+	private static AgentMessage ping(UUID uuid) {
+		return new AgentPing.Builder().agentUuid(uuid).timestamp(now()).build();
+	}
+
+	private static AgentMessage pong(UUID uuid) {
+		return new AgentPong.Builder().agentUuid(uuid).timestamp(now()).clientState(Agent.ClientState.IDLE).build();
+	}
+
+	@BeforeEach
+	public void before() {
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@AfterEach
+	public void after() throws InterruptedException {
+		executor.shutdownNow();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void roundTripTest() throws IOException, InterruptedException {
+		UUID uuid = UUID.randomUUID();
+		String accessKey = SigUtils.buildAccessKey(uuid);
+		BlockingQueue<AMQPMessage> received = new LinkedBlockingQueue<>();
+		BlockingQueue<AgentMessage> agentReceived = new LinkedBlockingQueue<>();
+
+		Listener l = new Listener((tag, msg) -> {
+			received.offer(msg);
+			return Optional.of(MessageQueueListener.MessageOperation.Ack);
+		});
+
+		try(LocalTransport lt = new LocalTransport(l, executor, SigUtils.DEFAULT_ALGORITHM)) {
+			LocalTransport.AgentEndpoint ep = lt.connect("agent0", accessKey, SECRET_KEY, agentReceived::offer);
+
+			ep.send(pong(uuid));
+			AMQPMessage amsg = received.poll(10, TimeUnit.SECONDS);
+			Assertions.assertNotNull(amsg);
+			Assertions.assertEquals(AgentMessage.Type.Pong, amsg.message.getType());
+			Assertions.assertEquals(uuid, amsg.message.getAgentUUID());
+			Assertions.assertEquals(0, l.invalid.get());
+
+			lt.sendMessage("agent0", accessKey, SECRET_KEY, new AgentInit.Builder().agentUuid(uuid).timestamp(now()).build());
+			AgentMessage am = agentReceived.poll(10, TimeUnit.SECONDS);
+			Assertions.assertNotNull(am);
+			Assertions.assertEquals(AgentMessage.Type.Init, am.getType());
+
+			/* The agent drops anything not signed with its key. */
+			lt.sendMessage("agent0", accessKey, "wrong", ping(uuid));
+			lt.sendMessage("agent0", accessKey, SECRET_KEY, ping(uuid));
+			am = agentReceived.poll(10, TimeUnit.SECONDS);
+			Assertions.assertNotNull(am);
+			Assertions.assertEquals(AgentMessage.Type.Ping, am.getType());
+			Assertions.assertTrue(agentReceived.isEmpty());
+
+			/* And the master anything not signed with the agent's. */
+			lt.connect("agent1", accessKey, "wrong", m -> {}).send(pong(uuid));
+			ep.send(pong(uuid));
+			Assertions.assertNotNull(received.poll(10, TimeUnit.SECONDS));
+			Assertions.assertEquals(1, l.invalid.get());
+		}
+	}
+
+	@Test
+	public void undeliverableTest() throws IOException, InterruptedException {
+		UUID uuid = UUID.randomUUID();
+		Listener l = new Listener((tag, msg) -> Optional.of(MessageQueueListener.MessageOperation.Ack));
+
+		try(LocalTransport lt = new LocalTransport(l, executor, SigUtils.DEFAULT_ALGORITHM)) {
+			LocalTransport.AgentEndpoint ep = lt.connect("agent0", SigUtils.buildAccessKey(uuid), SECRET_KEY, m -> {});
+			ep.close();
+
+			AMQPMessage sent = lt.sendMessage("agent0", SigUtils.buildAccessKey(uuid), SECRET_KEY, ping(uuid));
+			Assertions.assertSame(sent, l.undeliverable.poll(10, TimeUnit.SECONDS));
+
+			/* The queue name is free again. */
+			lt.connect("agent0", SigUtils.buildAccessKey(uuid), SECRET_KEY, m -> {});
+			Assertions.assertThrows(IllegalStateException.class, () -> lt.connect("agent0", SigUtils.buildAccessKey(uuid), SECRET_KEY, m -> {}));
+		}
+	}
+
+	@Test
+	public void requeueTest() throws IOException, InterruptedException {
+		UUID uuid = UUID.randomUUID();
+		List<Long> tags = new ArrayList<>();
+		List<UUID> ids = new ArrayList<>();
+		CountDownLatch done = new CountDownLatch(1);
+
+		Listener l = new Listener((tag, msg) -> {
+			tags.add(tag);
+			ids.add(msg.messageId);
+			if(tags.size() < 3) {
+				return Optional.of(MessageQueueListener.MessageOperation.RejectAndRequeue);
+			}
+			done.countDown();
+			return Optional.of(MessageQueueListener.MessageOperation.Ack);
+		});
+
+		try(LocalTransport lt = new LocalTransport(l, executor, SigUtils.DEFAULT_ALGORITHM)) {
+			lt.connect("agent0", SigUtils.buildAccessKey(uuid), SECRET_KEY, m -> {}).send(pong(uuid));
+			Assertions.assertTrue(done.await(10, TimeUnit.SECONDS));
+		}
+
+		/* Same message, new tag each time. */
+		Assertions.assertEquals(3, tags.stream().distinct().count());
+		Assertions.assertEquals(1, ids.stream().distinct().count());
+	}
+
+	@Test
+	public void prefetchTest() throws IOException, InterruptedException {
+		UUID uuid = UUID.randomUUID();
+		final int prefetch = 4;
+		BlockingQueue<Long> held = new LinkedBlockingQueue<>();
+
+		/* Hold on to everything, like the master does whilst it processes them. */
+		Listener l = new Listener((tag, msg) -> {
+			held.offer(tag);
+			return Optional.empty();
+		});
+
+		try(LocalTransport lt = new LocalTransport(l, executor, SigUtils.DEFAULT_ALGORITHM, JsonBackend.INSTANCE, prefetch)) {
+			LocalTransport.AgentEndpoint ep = lt.connect("agent0", SigUtils.buildAccessKey(uuid), SECRET_KEY, m -> {});
+			for(int i = 0; i < 10; ++i) {
+				ep.send(pong(uuid));
+			}
+
+			List<Long> tags = new ArrayList<>();
+			for(int i = 0; i < prefetch; ++i) {
+				tags.add(held.poll(10, TimeUnit.SECONDS));
+			}
+			Assertions.assertNull(held.poll(100, TimeUnit.MILLISECONDS));
+
+			/* Settling them lets the rest through. */
+			Map<Long, MessageQueueListener.MessageOperation> ops = new ConcurrentHashMap<>();
+			tags.forEach(t -> ops.put(t, MessageQueueListener.MessageOperation.Ack));
+			lt.opMessages(ops);
+
+			for(int i = 0; i < prefetch; ++i) {
+				tags.set(i, held.poll(10, TimeUnit.SECONDS));
+			}
+			Assertions.assertNull(held.poll(100, TimeUnit.MILLISECONDS));
+			tags.forEach(t -> lt.opMessage(MessageQueueListener.MessageOperation.Ack, t));
+
+			Assertions.assertNotNull(held.poll(10, TimeUnit.SECONDS));
+			Assertions.assertNotNull(held.poll(10, TimeUnit.SECONDS));
+		}
+	}
+
+	@Test
+	public void pauseTest() throws IOException, InterruptedException {
+		UUID uuid = UUID.randomUUID();
+		BlockingQueue<AMQPMessage> received = new LinkedBlockingQueue<>();
+		Listener l = new Listener((tag, msg) -> {
+			received.offer(msg);
+			return Optional.of(MessageQueueListener.MessageOperation.Ack);
+		});
+
+		try(LocalTransport lt = new LocalTransport(l, executor, SigUtils.DEFAULT_ALGORITHM)) {
+			LocalTransport.AgentEndpoint ep = lt.connect("agent0", SigUtils.buildAccessKey(uuid), SECRET_KEY, m -> {});
+
+			lt.setPaused(true);
+			ep.send(pong(uuid));
+			ep.send(pong(uuid));
+			Assertions.assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+
+			lt.setPaused(false);
+			Assertions.assertNotNull(received.poll(10, TimeUnit.SECONDS));
+			Assertions.assertNotNull(received.poll(10, TimeUnit.SECONDS));
+		}
+	}
+
+	@Test
+	@Tag("benchmark")
+	public void throughputBenchmark() throws IOException, InterruptedException {
+		final int agentCount = 100;
+		final int messagesPerAgent = 500;
+		final int total = agentCount * messagesPerAgent;
+
+		CountDownLatch done = new CountDownLatch(total * 2);
+		LocalTransport[] transport = new LocalTransport[1];
+		Map<UUID, String> queues = new ConcurrentHashMap<>();
+
+		/* Reply to every pong with a ping, and ack. */
+		Listener l = new Listener((tag, msg) -> {
+			UUID uuid = msg.message.getAgentUUID();
+			try {
+				transport[0].sendMessage(queues.get(uuid), SigUtils.buildAccessKey(uuid), SECRET_KEY, ping(uuid));
+			} catch(IOException e) {
+				throw new IllegalStateException(e);
+			}
+			done.countDown();
+			return Optional.of(MessageQueueListener.MessageOperation.Ack);
+		});
+
+		try(LocalTransport lt = new LocalTransport(l, executor, SigUtils.DEFAULT_ALGORITHM)) {
+			transport[0] = lt;
+
+			UUID[] uuids = new UUID[agentCount];
+			LocalTransport.AgentEndpoint[] eps = new LocalTransport.AgentEndpoint[agentCount];
+			for(int i = 0; i < agentCount; ++i) {
+				uuids[i] = UUID.randomUUID();
+				queues.put(uuids[i], "agent" + i);
+				eps[i] = lt.connect("agent" + i, SigUtils.buildAccessKey(uuids[i]), SECRET_KEY, m -> done.countDown());
+			}
+
+			long start = System.nanoTime();
+			for(int j = 0; j < messagesPerAgent; ++j) {
+				for(int i = 0; i < agentCount; ++i) {
+					eps[i].send(pong(uuids[i]));
+				}
+			}
+			Assertions.assertTrue(done.await(120, TimeUnit.SECONDS));
+			long elapsed = System.nanoTime() - start;
+
+			System.err.printf("%d agents, %d round-trips: %.0f round-trips/s\n", agentCount, total, total / (elapsed / 1e9));
+			Assertions.assertEquals(0, l.invalid.get());
+		}
+	}
+}
@@ -0,0 +1,269 @@
+package au.edu.uq.rcc.nimrodg.master;
+
+import au.edu.uq.rcc.nimrodg.agent.Agent;
+import au.edu.uq.rcc.nimrodg.agent.MessageBackend;
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentHello;
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentInit;
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentLifeControl;
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentMessage;
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentPing;
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentPong;
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentShutdown;
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentSubmit;
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentUpdate;
+import au.edu.uq.rcc.nimrodg.agent.messages.NetworkJob;
+import au.edu.uq.rcc.nimrodg.agent.messages.cbor.CborBackend;
+import au.edu.uq.rcc.nimrodg.agent.messages.cbor.CborReader;
+import au.edu.uq.rcc.nimrodg.agent.messages.cbor.CborWriter;
+import au.edu.uq.rcc.nimrodg.agent.messages.json.JsonBackend;
+import au.edu.uq.rcc.nimrodg.api.AgentInfo;
+import au.edu.uq.rcc.nimrodg.api.CommandResult;
+import au.edu.uq.rcc.nimrodg.api.CopyCommand;
+import au.edu.uq.rcc.nimrodg.api.OnErrorCommand;
+import au.edu.uq.rcc.nimrodg.api.RedirectCommand;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class MessageBackendTests {
+
+	private static final UUID AGENT_UUID = UUID.fromString("a0b1c2d3-e4f5-4607-8819-2a3b4c5d6e7f");
+	private static final Instant TIMESTAMP = Instant.ofEpochSecond(1589860764, 871032600);
+
+	public static NetworkJob buildJob(int nCommands) {
+		List<NetworkJob.ResolvedCommand> cmds = new ArrayList<>();
+		cmds.add(new NetworkJob.OnErrorCommand(OnErrorCommand.Action.Fail));
+		cmds.add(new NetworkJob.RedirectCommand(RedirectCommand.Stream.Stdout, true, "output.txt"));
+		for(int i = 0; i < nCommands; ++i) {
+			cmds.add(new NetworkJob.CopyCommand(CopyCommand.Context.Root, "input/file" + i + ".dat", CopyCommand.Context.Node, "file" + i + ".dat"));
+			cmds.add(new NetworkJob.ExecCommand("/usr/bin/python3", List.of("python3", "model.py", "--seed", Integer.toString(i), "--param-x", "0.125", "--param-y", "ünïcödé"), true));
+		}
+
+		Map<String, String> env = new HashMap<>();
+		env.put("NIMROD_JOB_INDEX", "42");
+		env.put("x", "0.125");
+		env.put("y", "ünïcödé");
+
+		return new NetworkJob(UUID.fromString("8563a068-b116-1089-9078-110dcbd7b612"), 42, "https://example.com/store/exp1", cmds, env);
+	}
+
+	public static List<AgentMessage> buildMessages() {
+		return List.of(
+				new AgentHello.Builder().agentUuid(AGENT_UUID).timestamp(TIMESTAMP).queue("amq.gen-dScbYtY1SWZqJNt4qwZ7Mw").build(),
+				new AgentInit.Builder().agentUuid(AGENT_UUID).timestamp(TIMESTAMP).build(),
+				new AgentLifeControl.Builder().agentUuid(AGENT_UUID).timestamp(TIMESTAMP).operation(AgentLifeControl.Operation.Terminate).build(),
+				new AgentShutdown.Builder().agentUuid(AGENT_UUID).timestamp(TIMESTAMP).reason(AgentInfo.ShutdownReason.HostSignal).signal(15).build(),
+				new AgentSubmit.Builder().agentUuid(AGENT_UUID).timestamp(TIMESTAMP).job(buildJob(20)).build(),
+				new AgentUpdate.Builder().agentUuid(AGENT_UUID).timestamp(TIMESTAMP)
+						.jobUuid(UUID.fromString("8563a068-b116-1089-9078-110dcbd7b612"))
+						.commandResult(new AgentUpdate.CommandResult_(CommandResult.CommandResultStatus.FAILED, 3, 1.5f, -1, "Segmentation fault", 11))
+						.action(AgentUpdate.Action.Stop)
+						.build(),
+				new AgentPing.Builder().agentUuid(AGENT_UUID).timestamp(TIMESTAMP).build(),
+				new AgentPong.Builder().agentUuid(AGENT_UUID).timestamp(TIMESTAMP).clientState(Agent.ClientState.IN_JOB).build()
+		);
+	}
+
+	/* There's no equals() on the messages, compare by re-encoding. */
+	private static void assertRoundTrip(MessageBackend mb, AgentMessage msg) {
+		byte[] bytes = mb.toBytes(msg, StandardCharsets.UTF_8);
+		AgentMessage msg2 = mb.fromBytes(bytes, StandardCharsets.UTF_8);
+		Assertions.assertNotNull(msg2);
+		Assertions.assertEquals(msg.getType(), msg2.getType());
+		Assertions.assertEquals(msg.getAgentUUID(), msg2.getAgentUUID());
+		Assertions.assertEquals(msg.getTimestamp(), msg2.getTimestamp());
+		Assertions.assertArrayEquals(bytes, mb.toBytes(msg2, StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void cborRoundTripTest() {
+		buildMessages().forEach(msg -> assertRoundTrip(CborBackend.INSTANCE, msg));
+	}
+
+	@Test
+	public void cborSubmitFieldsTest() {
+		NetworkJob job = buildJob(3);
+		AgentSubmit as = (AgentSubmit)CborBackend.INSTANCE.fromBytes(CborBackend.INSTANCE.toBytes(
+				new AgentSubmit.Builder().agentUuid(AGENT_UUID).timestamp(TIMESTAMP).job(job).build(),
+				StandardCharsets.UTF_8
+		), StandardCharsets.UTF_8);
+
+		NetworkJob job2 = as.getJob();
+		Assertions.assertEquals(job.uuid, job2.uuid);
+		Assertions.assertEquals(job.index, job2.index);
+		Assertions.assertEquals(job.txUri, job2.txUri);
+		Assertions.assertEquals(job.environment, job2.environment);
+		Assertions.assertEquals(job.numCommands, job2.numCommands);
+
+		NetworkJob.ExecCommand ec = (NetworkJob.ExecCommand)job2.commands.get(3);
+		Assertions.assertEquals("/usr/bin/python3", ec.program);
+		Assertions.assertEquals("ünïcödé", ec.arguments.get(7));
+		Assertions.assertTrue(ec.searchPath);
+	}
+
+	@Test
+	public void cborUnknownKeysAndOrderTest() {
+		/* Payload before type, with junk keys everywhere. */
+		CborWriter w = new CborWriter();
+		w.writeMapHeader(7);
+		w.writeString("junk").writeArrayHeader(2).writeFloat(1.0f).writeMapHeader(1).writeString("a").writeBoolean(true);
+		w.writeString("payload").writeMapHeader(2).writeString("xyz").writeLong(-1000).writeString("queue").writeString("q");
+		w.writeString("type").writeString("agent.hello");
+		w.writeString("timestamp").writeArrayHeader(2).writeLong(TIMESTAMP.getEpochSecond()).writeLong(TIMESTAMP.getNano());
+		w.writeString("version").writeLong(AgentMessage.PROTOCOL_VERSION);
+		w.writeString("uuid").writeUUID(AGENT_UUID);
+		w.writeString("more").writeBytes(new byte[300]);
+
+		AgentHello hello = (AgentHello)CborBackend.INSTANCE.fromBytes(w.toByteArray(), StandardCharsets.UTF_8);
+		Assertions.assertEquals("q", hello.queue);
+		Assertions.assertEquals(AGENT_UUID, hello.getAgentUUID());
+		Assertions.assertEquals(TIMESTAMP, hello.getTimestamp());
+	}
+
+	@Test
+	public void cborMalformedTest() {
+		byte[] bytes = CborBackend.INSTANCE.toBytes(buildMessages().get(4), StandardCharsets.UTF_8);
+		for(int i = 0; i < bytes.length; i += 7) {
+			byte[] truncated = Arrays.copyOf(bytes, i);
+			Assertions.assertThrows(IllegalArgumentException.class, () -> CborBackend.INSTANCE.fromBytes(truncated, StandardCharsets.UTF_8));
+		}
+	}
+
+	@Test
+	public void cborIntegerTest() {
+		long[] vals = {0, 23, 24, 255, 256, 65535, 65536, 0xFFFFFFFFL, 0x100000000L, Long.MAX_VALUE, -1, -24, -25, -256, -257, Long.MIN_VALUE};
+
+		CborWriter w = new CborWriter(1);
+		for(long v : vals) {
+			w.writeLong(v);
+		}
+
+		CborReader r = new CborReader(w.toByteArray());
+		for(long v : vals) {
+			Assertions.assertEquals(v, r.readLong());
+		}
+		Assertions.assertFalse(r.hasRemaining());
+	}
+
+	@Test
+	public void jsonRoundTripTest() {
+		buildMessages().forEach(msg -> assertRoundTrip(JsonBackend.INSTANCE, msg));
+	}
+
+	@Test
+	public void jsonWireFormatTest() {
+		List<AgentMessage> msgs = buildMessages();
+
+		/* As produced by the old JsonObjectBuilder-based encoder. */
+		Assertions.assertEquals(
+				"{\"uuid\":\"a0b1c2d3-e4f5-4607-8819-2a3b4c5d6e7f\",\"version\":6,\"type\":\"agent.hello\",\"timestamp\":\"2020-05-19T03:59:24.871032600Z\"," +
+						"\"queue\":\"amq.gen-dScbYtY1SWZqJNt4qwZ7Mw\"}",
+				new String(JsonBackend.INSTANCE.toBytes(msgs.get(0), StandardCharsets.UTF_8), StandardCharsets.UTF_8)
+		);
+
+		Assertions.assertEquals(
+				"{\"uuid\":\"a0b1c2d3-e4f5-4607-8819-2a3b4c5d6e7f\",\"version\":6,\"type\":\"agent.update\",\"timestamp\":\"2020-05-19T03:59:24.871032600Z\"," +
+						"\"job_uuid\":\"8563a068-b116-1089-9078-110dcbd7b612\",\"action\":\"stop\"," +
+						"\"command_result\":{\"status\":\"failed\",\"index\":3,\"time\":1.5,\"retval\":-1,\"message\":\"Segmentation fault\",\"error_code\":11}}",
+				new String(JsonBackend.INSTANCE.toBytes(msgs.get(5), StandardCharsets.UTF_8), StandardCharsets.UTF_8)
+		);
+
+		/* Everything else should survive a trip through the tree API unchanged. */
+		for(AgentMessage msg : msgs) {
+			byte[] bytes = JsonBackend.INSTANCE.toBytes(msg, StandardCharsets.UTF_8);
+			Assertions.assertArrayEquals(JsonBackend.INSTANCE.toJson(msg).toString().getBytes(StandardCharsets.UTF_8), bytes);
+		}
+	}
+
+	@Test
+	public void jsonUnknownKeysAndOrderTest() {
+		/* The agent sorts its keys, so the header comes after the payload. */
+		String s = "{\"command_result\":{\"error_code\":0,\"index\":1,\"junk\":[1,{\"a\":[]}],\"message\":\"\",\"retval\":0,\"status\":\"success\",\"time\":0.25}," +
+				"\"action\":\"continue\",\"job_uuid\":\"8563a068-b116-1089-9078-110dcbd7b612\",\"more\":{\"x\":null}," +
+				"\"timestamp\":\"2020-05-19T03:59:24.871032600Z\",\"type\":\"agent.update\",\"uuid\":\"a0b1c2d3-e4f5-4607-8819-2a3b4c5d6e7f\",\"version\":6}";
+
+		AgentUpdate au = (AgentUpdate)JsonBackend.INSTANCE.fromBytes(s.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+		Assertions.assertEquals(AGENT_UUID, au.getAgentUUID());
+		Assertions.assertEquals(TIMESTAMP, au.getTimestamp());
+		Assertions.assertEquals(AgentUpdate.Action.Continue, au.getAction());
+		Assertions.assertEquals(CommandResult.CommandResultStatus.SUCCESS, au.getCommandResult().status);
+		Assertions.assertEquals(1, au.getCommandResult().index);
+		Assertions.assertEquals(0.25f, au.getCommandResult().time);
+	}
+
+	@Test
+	public void jsonSubmitFieldsTest() {
+		NetworkJob job = buildJob(3);
+		AgentSubmit as = (AgentSubmit)JsonBackend.INSTANCE.fromBytes(JsonBackend.INSTANCE.toBytes(
+				new AgentSubmit.Builder().agentUuid(AGENT_UUID).timestamp(TIMESTAMP).job(job).build(),
+				StandardCharsets.UTF_8
+		), StandardCharsets.UTF_8);
+
+		NetworkJob job2 = as.getJob();
+		Assertions.assertEquals(job.uuid, job2.uuid);
+		Assertions.assertEquals(job.index, job2.index);
+		Assertions.assertEquals(job.txUri, job2.txUri);
+		Assertions.assertEquals(job.environment, job2.environment);
+		Assertions.assertEquals(job.numCommands, job2.numCommands);
+
+		NetworkJob.ExecCommand ec = (NetworkJob.ExecCommand)job2.commands.get(3);
+		Assertions.assertEquals("ünïcödé", ec.arguments.get(7));
+		Assertions.assertTrue(ec.searchPath);
+	}
+
+	@Test
+	public void cborSizeTest() {
+		AgentSubmit msg = new AgentSubmit.Builder().agentUuid(AGENT_UUID).timestamp(TIMESTAMP).job(buildJob(30)).build();
+
+		byte[] json = JsonBackend.INSTANCE.toBytes(msg, StandardCharsets.UTF_8);
+		byte[] cbor = CborBackend.INSTANCE.toBytes(msg, StandardCharsets.UTF_8);
+		Assertions.assertTrue(cbor.length < json.length);
+	}
+
+	@Test
+	@Tag("benchmark")
+	public void submitEncodingBenchmark() {
+		AgentSubmit msg = new AgentSubmit.Builder().agentUuid(AGENT_UUID).timestamp(TIMESTAMP).job(buildJob(30)).build();
+		final int iterations = 20000;
+
+		byte[] json = JsonBackend.INSTANCE.toBytes(msg, StandardCharsets.UTF_8);
+		byte[] cbor = CborBackend.INSTANCE.toBytes(msg, StandardCharsets.UTF_8);
+
+		long[] jsonTimes = time(JsonBackend.INSTANCE, msg, json, iterations);
+		long[] cborTimes = time(CborBackend.INSTANCE, msg, cbor, iterations);
+
+		System.err.printf("JSON : %6d bytes, encode = %6.2f us, decode = %6.2f us\n", json.length, jsonTimes[0] / 1e3 / iterations, jsonTimes[1] / 1e3 / iterations);
+		System.err.printf("CBOR : %6d bytes, encode = %6.2f us, decode = %6.2f us\n", cbor.length, cborTimes[0] / 1e3 / iterations, cborTimes[1] / 1e3 / iterations);
+	}
+
+	private static long[] time(MessageBackend mb, AgentMessage msg, byte[] bytes, int iterations) {
+		/* Warm up. */
+		for(int i = 0; i < iterations; ++i) {
+			mb.toBytes(msg, StandardCharsets.UTF_8);
+			mb.fromBytes(bytes, StandardCharsets.UTF_8);
+		}
+
+		long start = System.nanoTime();
+		for(int i = 0; i < iterations; ++i) {
+			mb.toBytes(msg, StandardCharsets.UTF_8);
+		}
+		long encode = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for(int i = 0; i < iterations; ++i) {
+			mb.fromBytes(bytes, StandardCharsets.UTF_8);
+		}
+		long decode = System.nanoTime() - start;
+
+		return new long[]{encode, decode};
+	}
+}
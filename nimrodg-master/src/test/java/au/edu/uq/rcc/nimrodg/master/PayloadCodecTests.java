@@ -0,0 +1,150 @@
+package au.edu.uq.rcc.nimrodg.master;
+
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentMessage;
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentSubmit;
+import au.edu.uq.rcc.nimrodg.agent.messages.json.JsonBackend;
+import au.edu.uq.rcc.nimrodg.master.sig.AuthHeader;
+import au.edu.uq.rcc.nimrodg.master.sig.SigUtils;
+import com.rabbitmq.client.AMQP;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class PayloadCodecTests {
+
+	private static byte[] buildSubmit(int nCommands) {
+		AgentMessage msg = new AgentSubmit.Builder()
+				.agentUuid(UUID.fromString("a0b1c2d3-e4f5-4607-8819-2a3b4c5d6e7f"))
+				.timestamp(Instant.ofEpochSecond(1589860764))
+				.job(MessageBackendTests.buildJob(nCommands))
+				.build();
+		return JsonBackend.INSTANCE.toBytes(msg, StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void roundTripTest() throws IOException {
+		byte[] payload = buildSubmit(100);
+		byte[] gz = PayloadCodec.gzip(payload);
+		Assertions.assertNotNull(gz);
+		Assertions.assertTrue(gz.length < payload.length);
+		Assertions.assertArrayEquals(payload, PayloadCodec.decode("gzip", gz, PayloadCodec.MAX_DECODED_SIZE));
+
+		/* Twice, the deflater is reused. */
+		Assertions.assertArrayEquals(gz, PayloadCodec.gzip(payload));
+	}
+
+	@Test
+	public void interopTest() throws IOException {
+		byte[] payload = buildSubmit(10);
+
+		/* What we produce must be readable by anyone, and vice versa. */
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try(GZIPOutputStream os = new GZIPOutputStream(baos)) {
+			os.write(payload);
+		}
+		Assertions.assertArrayEquals(payload, PayloadCodec.decode("x-gzip", baos.toByteArray(), PayloadCodec.MAX_DECODED_SIZE));
+		Assertions.assertArrayEquals(payload, new GZIPInputStream(new ByteArrayInputStream(PayloadCodec.gzip(payload))).readAllBytes());
+	}
+
+	@Test
+	public void incompressibleTest() {
+		byte[] noise = new byte[8192];
+		new Random(0).nextBytes(noise);
+		Assertions.assertNull(PayloadCodec.gzip(noise));
+		Assertions.assertNull(PayloadCodec.gzip(new byte[0]));
+		Assertions.assertNull(PayloadCodec.gzip(new byte[10]));
+	}
+
+	@Test
+	public void decodeTest() throws IOException {
+		byte[] payload = "{}".getBytes(StandardCharsets.UTF_8);
+		Assertions.assertSame(payload, PayloadCodec.decode(null, payload, 10));
+		Assertions.assertSame(payload, PayloadCodec.decode("identity", payload, 10));
+		Assertions.assertNull(PayloadCodec.decode("br", payload, 10));
+		Assertions.assertThrows(IOException.class, () -> PayloadCodec.decode("gzip", payload, 10));
+
+		/* A small body that inflates to something large. */
+		byte[] bomb = PayloadCodec.gzip(new byte[1 << 20]);
+		Assertions.assertNotNull(bomb);
+		Assertions.assertThrows(IOException.class, () -> PayloadCodec.decode("gzip", bomb, (1 << 20) - 1));
+		Assertions.assertEquals(1 << 20, PayloadCodec.decode("gzip", bomb, 1 << 20).length);
+	}
+
+	@Test
+	public void acceptsTest() {
+		Assertions.assertTrue(PayloadCodec.accepts("gzip, identity", "gzip"));
+		Assertions.assertTrue(PayloadCodec.accepts("GZIP", "gzip"));
+		Assertions.assertTrue(PayloadCodec.accepts("*", "gzip"));
+		Assertions.assertTrue(PayloadCodec.accepts("identity;q=0.5, gzip;q=1.0", "gzip"));
+		Assertions.assertFalse(PayloadCodec.accepts(null, "gzip"));
+		Assertions.assertFalse(PayloadCodec.accepts("identity", "gzip"));
+		Assertions.assertFalse(PayloadCodec.accepts("gzip;q=0", "gzip"));
+		Assertions.assertFalse(PayloadCodec.accepts("*, gzip;q=0", "gzip"));
+		Assertions.assertFalse(PayloadCodec.accepts("gzip;q=bad", "gzip"));
+	}
+
+	@Test
+	public void signatureTest() throws NoSuchAlgorithmException {
+		byte[] gz = PayloadCodec.gzip(buildSubmit(100));
+
+		AMQP.BasicProperties props = new AMQP.BasicProperties.Builder()
+				.contentType("application/json; charset=utf-8")
+				.contentEncoding("gzip")
+				.messageId(UUID.randomUUID().toString())
+				.appId(SigUtils.DEFAULT_APPID)
+				.headers(Map.of("Accept-Encoding", "gzip, identity"))
+				.build();
+
+		Instant now = Instant.now();
+		AuthHeader hdr = SigUtils.buildAuthHeader(SigUtils.DEFAULT_ALGORITHM, "access", "secret", now, 0, gz, props);
+		Assertions.assertTrue(SigUtils.verifySignature(hdr, "secret", props, gz));
+
+		/* The encoding is signed. */
+		AMQP.BasicProperties identity = props.builder().contentEncoding("identity").build();
+		Assertions.assertFalse(SigUtils.verifySignature(hdr, "secret", identity, gz));
+
+		/* As is the encoded body. */
+		byte[] tampered = Arrays.copyOf(gz, gz.length);
+		tampered[tampered.length / 2] ^= 1;
+		Assertions.assertFalse(SigUtils.verifySignature(hdr, "secret", props, tampered));
+	}
+
+	@Test
+	@Tag("benchmark")
+	public void compressionBenchmark() throws IOException {
+		for(int n : new int[]{10, 100, 1000}) {
+			byte[] payload = buildSubmit(n);
+
+			byte[] gz = null;
+			final int iterations = 200;
+			long start = System.nanoTime();
+			for(int i = 0; i < iterations; ++i) {
+				gz = PayloadCodec.gzip(payload);
+			}
+			long encode = (System.nanoTime() - start) / iterations;
+
+			start = System.nanoTime();
+			for(int i = 0; i < iterations; ++i) {
+				PayloadCodec.decode("gzip", gz, PayloadCodec.MAX_DECODED_SIZE);
+			}
+			long decode = (System.nanoTime() - start) / iterations;
+
+			Assertions.assertNotNull(gz);
+			System.err.printf("Submit, %4d commands: %8d -> %6d bytes (%5.1f%%), encode = %6d us, decode = %6d us\n",
+					n, payload.length, gz.length, 100.0 * gz.length / payload.length, encode / 1000, decode / 1000);
+		}
+	}
+}
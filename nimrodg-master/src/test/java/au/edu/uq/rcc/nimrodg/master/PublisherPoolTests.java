@@ -0,0 +1,286 @@
+package au.edu.uq.rcc.nimrodg.master;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.ReturnListener;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+public class PublisherPoolTests {
+
+	/**
+	 * An in-process stand-in for a broker channel.
+	 *
+	 * Publishing costs a fixed amount of time, and confirms are sent asynchronously.
+	 * Messages to routing keys in {@code unroutable} are returned, ones with IDs in {@code nack} are nacked.
+	 * Nothing is confirmed if {@code confirming} is false.
+	 */
+	private static class StandInBroker implements AutoCloseable {
+		public final long publishCostNanos;
+		public final Set<String> unroutable;
+		public final Set<String> nack;
+		public final Map<String, List<String>> received;
+		public volatile boolean confirming;
+		private final ExecutorService confirmer;
+		private final List<Runnable> aborts;
+
+		public StandInBroker(long publishCostNanos) {
+			this.publishCostNanos = publishCostNanos;
+			this.unroutable = ConcurrentHashMap.newKeySet();
+			this.nack = ConcurrentHashMap.newKeySet();
+			this.received = new ConcurrentHashMap<>();
+		this.confirming = true;
+			this.confirmer = Executors.newSingleThreadExecutor();
+			this.aborts = new CopyOnWriteArrayList<>();
+		}
+
+		public Channel createChannel() {
+			List<ConfirmListener> confirms = new CopyOnWriteArrayList<>();
+			List<ReturnListener> returns = new CopyOnWriteArrayList<>();
+			List<ShutdownListener> shutdowns = new CopyOnWriteArrayList<>();
+			long[] seq = {1};
+
+			Channel[] self = new Channel[1];
+			Runnable abort = () -> {
+				ShutdownSignalException sse = new ShutdownSignalException(false, true, null, self[0]);
+				shutdowns.forEach(sl -> sl.shutdownCompleted(sse));
+			};
+			aborts.add(abort);
+
+			self[0] = (Channel)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Channel.class}, (proxy, method, args) -> {
+				switch(method.getName()) {
+					case "addConfirmListener":
+						confirms.add((ConfirmListener)args[0]);
+						return null;
+					case "addReturnListener":
+						returns.add((ReturnListener)args[0]);
+						return null;
+					case "addShutdownListener":
+						shutdowns.add((ShutdownListener)args[0]);
+						return null;
+					case "confirmSelect":
+						return null;
+					case "getNextPublishSeqNo":
+						return seq[0];
+					case "basicPublish": {
+						String key = (String)args[1];
+						AMQP.BasicProperties props = (AMQP.BasicProperties)args[3];
+						long tag = seq[0]++;
+
+						LockSupport.parkNanos(publishCostNanos);
+
+						if(!confirming) {
+							return null;
+						}
+
+						if(unroutable.contains(key)) {
+							confirmer.execute(() -> {
+								returns.forEach(rl -> {
+									try {
+										rl.handleReturn(312, "NO_ROUTE", (String)args[0], key, props, (byte[])args[4]);
+									} catch(IOException e) {
+										throw new UncheckedIOException(e);
+									}
+								});
+								confirm(confirms, tag, true);
+							});
+						} else if(nack.contains(props.getMessageId())) {
+							confirmer.execute(() -> confirm(confirms, tag, false));
+						} else {
+							received.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(props.getMessageId());
+							confirmer.execute(() -> confirm(confirms, tag, true));
+						}
+						return null;
+					}
+					case "abort":
+						abort.run();
+						return null;
+					case "hashCode":
+						return System.identityHashCode(proxy);
+					case "equals":
+						return proxy == args[0];
+					case "toString":
+						return "StandInChannel";
+					default:
+						throw new UnsupportedOperationException(method.getName());
+				}
+			});
+			return self[0];
+		}
+
+		private static void confirm(List<ConfirmListener> listeners, long tag, boolean ack) {
+			for(ConfirmListener cl : listeners) {
+				try {
+					if(ack) {
+						cl.handleAck(tag, false);
+					} else {
+						cl.handleNack(tag, false);
+					}
+				} catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+
+		public void shutdownAll() {
+			aborts.forEach(Runnable::run);
+		}
+
+		@Override
+		public void close() throws InterruptedException {
+			confirmer.shutdown();
+			confirmer.awaitTermination(10, TimeUnit.SECONDS);
+		}
+	}
+
+	private static AMQP.BasicProperties props(String id) {
+		return new AMQP.BasicProperties.Builder().messageId(id).build();
+	}
+
+	private static PublisherPool<String> createPool(StandInBroker broker, int count, int maxInFlight, List<String> failed) throws IOException {
+		List<Channel> channels = new ArrayList<>();
+		for(int i = 0; i < count; ++i) {
+			channels.add(broker.createChannel());
+		}
+
+		return new PublisherPool<>(channels, maxInFlight, TimeUnit.SECONDS.toNanos(10), (msg, reason) -> failed.add(msg));
+	}
+
+	private static void awaitConfirms(PublisherPool<?> pool) throws InterruptedException {
+		for(int i = 0; i < 1000 && pool.getInFlight() > 0; ++i) {
+			Thread.sleep(10);
+		}
+		Assertions.assertEquals(0, pool.getInFlight());
+	}
+
+	@Test
+	public void perKeyOrderingTest() throws Exception {
+		List<String> failed = new CopyOnWriteArrayList<>();
+		try(StandInBroker broker = new StandInBroker(0); PublisherPool<String> pool = createPool(broker, 4, 16, failed)) {
+			Map<String, List<String>> sent = new ConcurrentHashMap<>();
+
+			Thread[] threads = new Thread[4];
+			for(int t = 0; t < threads.length; ++t) {
+				String key = "agent" + t;
+				threads[t] = new Thread(() -> {
+					for(int i = 0; i < 500; ++i) {
+						String id = UUID.randomUUID().toString();
+						sent.computeIfAbsent(key, k -> new ArrayList<>()).add(id);
+						try {
+							pool.publish("amq.direct", key, props(id), new byte[0], id);
+						} catch(IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					}
+				});
+				threads[t].start();
+			}
+
+			for(Thread t : threads) {
+				t.join();
+			}
+
+			awaitConfirms(pool);
+			Assertions.assertEquals(sent, broker.received);
+			Assertions.assertEquals(List.of(), failed);
+		}
+	}
+
+	@Test
+	public void undeliverableTest() throws Exception {
+		List<String> failed = new CopyOnWriteArrayList<>();
+		try(StandInBroker broker = new StandInBroker(0); PublisherPool<String> pool = createPool(broker, 2, 0, failed)) {
+			broker.unroutable.add("dead");
+			broker.nack.add("nacked");
+
+			pool.publish("amq.direct", "alive", props("ok"), new byte[0], "ok");
+			pool.publish("amq.direct", "dead", props("returned"), new byte[0], "returned");
+			pool.publish("amq.direct", "alive", props("nacked"), new byte[0], "nacked");
+			awaitConfirms(pool);
+
+			Assertions.assertEquals(Set.of("returned", "nacked"), Set.copyOf(failed));
+		}
+	}
+
+	@Test
+	public void shutdownTest() throws Exception {
+		List<String> failed = new CopyOnWriteArrayList<>();
+		try(StandInBroker broker = new StandInBroker(0); PublisherPool<String> pool = createPool(broker, 1, 0, failed)) {
+			/* Never confirm anything. */
+			broker.confirming = false;
+
+			pool.publish("amq.direct", "a", props("1"), new byte[0], "1");
+			pool.publish("amq.direct", "b", props("2"), new byte[0], "2");
+			Assertions.assertEquals(2, pool.getInFlight());
+
+			broker.shutdownAll();
+			Assertions.assertEquals(List.of("1", "2"), failed);
+			Assertions.assertEquals(0, pool.getInFlight());
+		}
+	}
+
+	private static double runThroughput(int channelCount) throws Exception {
+		final int threads = 8;
+		final int perThread = 2000;
+
+		List<String> failed = new CopyOnWriteArrayList<>();
+		try(StandInBroker broker = new StandInBroker(TimeUnit.MICROSECONDS.toNanos(50)); PublisherPool<String> pool = createPool(broker, channelCount, 1000, failed)) {
+			Thread[] ts = new Thread[threads];
+			for(int t = 0; t < threads; ++t) {
+				int _t = t;
+				ts[t] = new Thread(() -> {
+					for(int i = 0; i < perThread; ++i) {
+						String key = String.format("agent-%d-%d", _t, i % 16);
+						try {
+							pool.publish("amq.direct", key, props(key), new byte[0], key);
+						} catch(IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					}
+				});
+			}
+
+			long start = System.nanoTime();
+			for(Thread t : ts) {
+				t.start();
+			}
+			for(Thread t : ts) {
+				t.join();
+			}
+			awaitConfirms(pool);
+			long elapsed = System.nanoTime() - start;
+
+			Assertions.assertEquals(List.of(), failed);
+			return (threads * perThread) / (elapsed / 1e9);
+		}
+	}
+
+	@Test
+	@Tag("benchmark")
+	public void publishThroughputBenchmark() throws Exception {
+		double single = runThroughput(1);
+		double pooled = runThroughput(4);
+
+		System.err.printf("1 channel  : %10.0f msg/s\n", single);
+		System.err.printf("4 channels : %10.0f msg/s\n", pooled);
+	}
+}
@@ -0,0 +1,221 @@
+package au.edu.uq.rcc.nimrodg.master;
+
+import au.edu.uq.rcc.nimrodg.master.sig.AuthHeader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+public class ReplayCacheTests {
+
+	private static final long NOW = 1589860764;
+
+	@Test
+	public void replayTest() {
+		ReplayCache rc = new ReplayCache();
+
+		Assertions.assertEquals(ReplayCache.Result.Accepted, rc.check(NOW, 1, NOW));
+		Assertions.assertEquals(ReplayCache.Result.Replayed, rc.check(NOW, 1, NOW));
+		/* Later on, still a replay. */
+		Assertions.assertEquals(ReplayCache.Result.Replayed, rc.check(NOW, 1, NOW + 100));
+
+		/* Different message, same time. */
+		Assertions.assertEquals(ReplayCache.Result.Accepted, rc.check(NOW, 2, NOW));
+		/* 0 is the empty marker internally. */
+		Assertions.assertEquals(ReplayCache.Result.Accepted, rc.check(NOW, 0, NOW));
+		Assertions.assertEquals(ReplayCache.Result.Replayed, rc.check(NOW, 0, NOW));
+
+		Assertions.assertEquals(3, rc.size());
+		Assertions.assertEquals(3, rc.getReplayedCount());
+	}
+
+	@Test
+	public void windowTest() {
+		ReplayCache rc = new ReplayCache();
+		rc.onConfigChange("nimrod.master.replay_window", null, "60");
+
+		Assertions.assertEquals(ReplayCache.Result.Accepted, rc.check(NOW - 60, 1, NOW));
+		Assertions.assertEquals(ReplayCache.Result.Accepted, rc.check(NOW + 60, 2, NOW));
+		Assertions.assertEquals(ReplayCache.Result.Expired, rc.check(NOW - 61, 3, NOW));
+		Assertions.assertEquals(ReplayCache.Result.Expired, rc.check(NOW + 61, 4, NOW));
+
+		/* Once its time is up, a replay is just expired. */
+		Assertions.assertEquals(ReplayCache.Result.Expired, rc.check(NOW - 60, 1, NOW + 1));
+		Assertions.assertEquals(3, rc.getExpiredCount());
+
+		/* Disabled. */
+		rc.onConfigChange("nimrod.master.replay_window", "60", "0");
+		Assertions.assertEquals(ReplayCache.Result.Accepted, rc.check(0, 1, NOW));
+		Assertions.assertEquals(ReplayCache.Result.Accepted, rc.check(0, 1, NOW));
+	}
+
+	@Test
+	public void expiryTest() {
+		ReplayCache rc = new ReplayCache();
+		rc.onConfigChange("nimrod.master.replay_window", null, "60");
+
+		for(int i = 0; i < 1000; ++i) {
+			Assertions.assertEquals(ReplayCache.Result.Accepted, rc.check(NOW, i, NOW));
+		}
+		Assertions.assertEquals(1000, rc.size());
+
+		/* Everything's out of the window, it should all go. */
+		rc.check(NOW + 100, 1, NOW + 100);
+		Assertions.assertEquals(1, rc.size());
+	}
+
+	@Test
+	public void forgetTest() {
+		ReplayCache rc = new ReplayCache();
+
+		/* Enough to force collisions, to exercise deletion. */
+		Random rng = new Random(0);
+		Set<Long> model = new HashSet<>();
+		for(int i = 0; i < 20000; ++i) {
+			long fp = rng.nextInt(500);
+			if(rng.nextBoolean()) {
+				ReplayCache.Result r = rc.check(NOW, fp, NOW);
+				Assertions.assertEquals(model.add(fp) ? ReplayCache.Result.Accepted : ReplayCache.Result.Replayed, r);
+			} else {
+				rc.forget(NOW, fp);
+				model.remove(fp);
+			}
+			Assertions.assertEquals(model.size(), rc.size());
+		}
+	}
+
+	@Test
+	public void resizeTest() {
+		ReplayCache rc = new ReplayCache();
+		rc.onConfigChange("nimrod.master.replay_window", null, "300");
+
+		for(int i = 0; i < 100; ++i) {
+			rc.check(NOW - i, i, NOW);
+		}
+
+		/* Shrinking the window keeps whatever is still in it. */
+		rc.onConfigChange("nimrod.master.replay_window", "300", "30");
+		for(int i = 0; i <= 30; ++i) {
+			Assertions.assertEquals(ReplayCache.Result.Replayed, rc.check(NOW - i, i, NOW));
+		}
+
+		rc.onConfigChange("nimrod.master.replay_window", "30", "600");
+		for(int i = 0; i <= 30; ++i) {
+			Assertions.assertEquals(ReplayCache.Result.Replayed, rc.check(NOW - i, i, NOW));
+		}
+	}
+
+	@Test
+	public void capTest() {
+		ReplayCache rc = new ReplayCache();
+		rc.onConfigChange("nimrod.master.replay_window", null, "60");
+		rc.onConfigChange("nimrod.master.replay_max_entries", null, "100");
+
+		for(int i = 0; i < 100; ++i) {
+			Assertions.assertEquals(ReplayCache.Result.Accepted, rc.check(NOW - 50, i, NOW));
+		}
+
+		/* Full, so the oldest segment goes. */
+		Assertions.assertEquals(ReplayCache.Result.Accepted, rc.check(NOW, 1000, NOW));
+		Assertions.assertEquals(1, rc.size());
+
+		/* Which means nothing from then on can be trusted. */
+		Assertions.assertEquals(ReplayCache.Result.Expired, rc.check(NOW - 50, 0, NOW));
+		Assertions.assertEquals(ReplayCache.Result.Expired, rc.check(NOW - 50, 5000, NOW));
+
+		/* Whereas newer ones are still checked. */
+		Assertions.assertEquals(ReplayCache.Result.Replayed, rc.check(NOW, 1000, NOW));
+
+		/* All in one segment, there's nothing to drop. */
+		for(int i = 1; i < 100; ++i) {
+			Assertions.assertEquals(ReplayCache.Result.Accepted, rc.check(NOW, i, NOW));
+		}
+		Assertions.assertEquals(ReplayCache.Result.Full, rc.check(NOW, 2000, NOW));
+	}
+
+	@Test
+	public void fingerprintTest() {
+		UUID x = UUID.fromString("8563a068-b116-1089-9078-110dcbd7b612");
+		UUID y = UUID.fromString("8563a068-b116-1089-9078-110dcbd7b613");
+		AuthHeader a = AuthHeader.parse(SigTests.HEADER_SHA256);
+		AuthHeader b = AuthHeader.parse(SigTests.HEADER_SHA224);
+
+		Assertions.assertEquals(ReplayCache.fingerprint(a, x), ReplayCache.fingerprint(AuthHeader.parse(SigTests.HEADER_SHA256), x));
+		Assertions.assertNotEquals(ReplayCache.fingerprint(a, x), ReplayCache.fingerprint(a, y));
+		Assertions.assertNotEquals(ReplayCache.fingerprint(a, x), ReplayCache.fingerprint(b, x));
+
+		/* The NULL algorithm has no signature, the message id still distinguishes them. */
+		AuthHeader n = AuthHeader.parse(SigTests.HEADER_NULL);
+		Assertions.assertNotEquals(ReplayCache.fingerprint(n, x), ReplayCache.fingerprint(n, y));
+	}
+
+	/* Returns the mean time per check, in nanoseconds. */
+	private static double runSustained(ReplayCache rc, int rate, int seconds, long maxEntries) {
+		Random rng = new Random(0);
+		long fp = 0;
+		long maxCapacity = 0;
+		long checks = 0;
+
+		long start = System.nanoTime();
+		for(int s = 0; s < seconds; ++s) {
+			long now = NOW + s;
+			for(int i = 0; i < rate; ++i) {
+				/* Messages arrive up to a couple of seconds after they're sent. */
+				long ts = now - rng.nextInt(3);
+				long f = ++fp * 0x9E3779B97F4A7C15L;
+				Assertions.assertEquals(ReplayCache.Result.Accepted, rc.check(ts, f, now));
+
+				/* Replay something recent every so often. */
+				if(i % 1000 == 0) {
+					Assertions.assertEquals(ReplayCache.Result.Replayed, rc.check(ts, f, now));
+					++checks;
+				}
+				++checks;
+			}
+
+			Assertions.assertTrue(rc.size() <= maxEntries, "size exceeded bound");
+			maxCapacity = Math.max(maxCapacity, rc.getCapacity());
+		}
+		long elapsed = System.nanoTime() - start;
+
+		/* Tables are at least 25% full, empty segments hold a minimal table. */
+		Assertions.assertTrue(maxCapacity <= maxEntries * 4 + 64 * 200, "memory exceeded bound");
+		return elapsed / (double)checks;
+	}
+
+	@Test
+	public void sustainedRateTest() {
+		final int rate = 1000;
+
+		/* Fits within the cap. */
+		ReplayCache rc = new ReplayCache();
+		rc.onConfigChange("nimrod.master.replay_window", null, "60");
+		runSustained(rc, rate, 180, rate * (60 + 2 * ReplayCache.SEGMENT_SECONDS));
+
+		/* Doesn't, the window shrinks to fit instead. */
+		rc = new ReplayCache();
+		rc.onConfigChange("nimrod.master.replay_max_entries", null, "20000");
+		runSustained(rc, rate, 180, 20000);
+	}
+
+	@Test
+	@Tag("benchmark")
+	public void sustainedRateBenchmark() {
+		final int rate = 50000;
+
+		/* Fits within the cap. */
+		ReplayCache rc = new ReplayCache();
+		rc.onConfigChange("nimrod.master.replay_window", null, "60");
+		double ns = runSustained(rc, rate, 180, rate * (60 + 2 * ReplayCache.SEGMENT_SECONDS));
+		System.err.printf("%6d msg/s, 60 s window: %6.1f ns/check\n", rate, ns);
+
+		/* Default settings, which don't. */
+		rc = new ReplayCache();
+		ns = runSustained(rc, rate, 180, ReplayCache.DEFAULT_MAX_ENTRIES);
+		System.err.printf("%6d msg/s, default settings: %6.1f ns/check\n", rate, ns);
+	}
+}
@@ -0,0 +1,85 @@
+package au.edu.uq.rcc.nimrodg.master;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class ShardedExecutorTests {
+
+	private static class Item {
+		final UUID uuid;
+		final int seq;
+
+		Item(UUID uuid, int seq) {
+			this.uuid = uuid;
+			this.seq = seq;
+		}
+	}
+
+	@Test
+	public void orderingTest() {
+		List<UUID> uuids = IntStream.range(0, 64).mapToObj(i -> UUID.randomUUID()).collect(Collectors.toList());
+
+		List<Item> items = new ArrayList<>();
+		for(int i = 0; i < 100; ++i) {
+			for(UUID u : uuids) {
+				items.add(new Item(u, i));
+			}
+		}
+
+		Map<UUID, List<Integer>> seen = new ConcurrentHashMap<>();
+		Set<Thread> threads = ConcurrentHashMap.newKeySet();
+		try(ShardedExecutor se = new ShardedExecutor("test", 8)) {
+			se.process(items, it -> it.uuid, it -> {
+				threads.add(Thread.currentThread());
+				/* Each UUID is only ever on one thread, this doesn't need to be synchronised. */
+				seen.computeIfAbsent(it.uuid, u -> new ArrayList<>()).add(it.seq);
+			});
+		}
+
+		List<Integer> expected = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+		uuids.forEach(u -> Assertions.assertEquals(expected, seen.get(u)));
+		Assertions.assertFalse(threads.contains(Thread.currentThread()));
+		Assertions.assertTrue(threads.size() > 1);
+	}
+
+	@Test
+	public void singleShardInlineTest() {
+		List<Thread> threads = new ArrayList<>();
+		try(ShardedExecutor se = new ShardedExecutor("test", 1)) {
+			se.process(List.of(UUID.randomUUID(), UUID.randomUUID()), u -> u, u -> threads.add(Thread.currentThread()));
+		}
+
+		Assertions.assertEquals(List.of(Thread.currentThread(), Thread.currentThread()), threads);
+	}
+
+	@Test
+	public void exceptionTest() {
+		UUID bad = UUID.randomUUID();
+		Set<UUID> done = ConcurrentHashMap.newKeySet();
+		List<UUID> uuids = IntStream.range(0, 32).mapToObj(i -> UUID.randomUUID()).collect(Collectors.toList());
+		uuids.add(bad);
+
+		try(ShardedExecutor se = new ShardedExecutor("test", 4)) {
+			Assertions.assertThrows(IllegalStateException.class, () -> se.process(uuids, u -> u, u -> {
+				if(u.equals(bad)) {
+					throw new IllegalStateException();
+				}
+				done.add(u);
+			}));
+		}
+
+		/* Other shards still ran to completion. */
+		uuids.stream()
+				.filter(u -> ShardedExecutor.getShard(u, 4) != ShardedExecutor.getShard(bad, 4))
+				.forEach(u -> Assertions.assertTrue(done.contains(u)));
+	}
+}
@@ -23,16 +23,28 @@ import au.edu.uq.rcc.nimrodg.agent.messages.AgentInit;
 import au.edu.uq.rcc.nimrodg.master.sig.AuthHeader;
 import au.edu.uq.rcc.nimrodg.master.sig.SigUtils;
 import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.impl.LongStringHelper;
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.Mac;
+import org.bouncycastle.crypto.params.KeyParameter;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
 import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoField;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
 import java.util.UUID;
 
 public class SigTests {
@@ -185,4 +197,264 @@ public class SigTests {
 		));
 
 	}
+
+	private static AMQP.BasicProperties randomProperties(Random rng) {
+		AMQP.BasicProperties.Builder b = new AMQP.BasicProperties.Builder()
+				.timestamp(Date.from(TIMESTAMP.plusSeconds(rng.nextInt(100000))));
+
+		if(rng.nextBoolean()) {
+			b.appId("nimrod");
+		}
+		if(rng.nextBoolean()) {
+			b.contentType("application/json; charset=utf-8");
+		}
+		if(rng.nextBoolean()) {
+			b.contentEncoding(rng.nextBoolean() ? "identity" : "gzip");
+		}
+		if(rng.nextBoolean()) {
+			b.deliveryMode(2);
+		}
+		if(rng.nextBoolean()) {
+			b.priority(rng.nextInt(10));
+		}
+		if(rng.nextBoolean()) {
+			b.messageId(new UUID(rng.nextLong(), rng.nextLong()).toString());
+		}
+		if(rng.nextBoolean()) {
+			b.userId("ünïcödé\uD83D\uDE00");
+		}
+
+		int nHeaders = rng.nextInt(4);
+		if(nHeaders > 0 || rng.nextBoolean()) {
+			Map<String, Object> headers = new HashMap<>();
+			for(int i = 0; i < nHeaders; ++i) {
+				String v = "value-" + rng.nextInt() + (rng.nextBoolean() ? "-\u00e9\u4e2d" : "");
+				headers.put((rng.nextBoolean() ? "X-Header-" : "x-header-") + i, rng.nextBoolean() ? v : LongStringHelper.asLongString(v));
+			}
+			b.headers(headers);
+		}
+		return b.build();
+	}
+
+	@Test
+	public void signatureEquivalenceTest() throws NoSuchAlgorithmException {
+		Random rng = new Random(0);
+		for(String algo : SigUtils.ALGORITHMS.keySet()) {
+			for(int i = 0; i < 500; ++i) {
+				AMQP.BasicProperties props = randomProperties(rng);
+				String secret = "secret" + rng.nextInt(4);
+				long nonce = i % 7 == 0 ? -rng.nextInt(1000) : rng.nextInt();
+				byte[] payload = new byte[rng.nextInt(300)];
+				rng.nextBytes(payload);
+				Instant t = props.getTimestamp().toInstant();
+
+				AuthHeader hdr = SigUtils.buildAuthHeader(algo, "accesskey", secret, t, nonce, payload, props);
+				Assertions.assertEquals(LegacySig.buildAuthHeader(algo, "accesskey", secret, t, nonce, payload, props), hdr.header);
+				/* Again, this time with the derived key cached. */
+				Assertions.assertEquals(hdr, SigUtils.buildAuthHeader(algo, "accesskey", secret, t, nonce, payload, props));
+
+				AuthHeader parsed = AuthHeader.parse(hdr.header);
+				if(parsed == null) {
+					/* No headers, which the parser doesn't allow. */
+					Assertions.assertTrue(hdr.signedHeaders.isEmpty());
+					continue;
+				}
+
+				Assertions.assertTrue(SigUtils.verifySignature(parsed, secret, props, payload));
+				Assertions.assertTrue(LegacySig.verifySignature(parsed, secret, props, payload));
+
+				if(algo.equals("NIM1-HMAC-NULL")) {
+					continue;
+				}
+
+				/* Wrong secret. */
+				Assertions.assertFalse(SigUtils.verifySignature(parsed, secret + "x", props, payload));
+
+				/* Tampered payload. */
+				byte[] tampered = payload.clone();
+				tampered = tampered.length == 0 ? new byte[]{1} : tampered;
+				tampered[0] ^= 1;
+				Assertions.assertFalse(SigUtils.verifySignature(parsed, secret, props, tampered));
+
+				/* Tampered property. */
+				AMQP.BasicProperties tamperedProps = props.builder().userId("someone-else").build();
+				if(parsed.signedProperties.contains("user-id")) {
+					Assertions.assertFalse(SigUtils.verifySignature(parsed, secret, tamperedProps, payload));
+				}
+			}
+		}
+	}
+
+	@Test
+	@Tag("benchmark")
+	public void signatureBenchmark() throws NoSuchAlgorithmException {
+		final int iterations = 100000;
+		final String algo = SigUtils.DEFAULT_ALGORITHM;
+
+		AMQP.BasicProperties props = makeBasicProperties(APPID, HEADER_SHA256);
+		byte[] payload = PAYLOAD.getBytes(StandardCharsets.UTF_8);
+		AuthHeader hdr = AuthHeader.parse(HEADER_SHA256);
+
+		/* Warm up. */
+		for(int i = 0; i < iterations; ++i) {
+			LegacySig.buildAuthHeader(algo, "accesskey", SECRET_KEY, TIMESTAMP, i, payload, props);
+			LegacySig.verifySignature(hdr, SECRET_KEY, props, payload);
+			SigUtils.buildAuthHeader(algo, "accesskey", SECRET_KEY, TIMESTAMP, i, payload, props);
+			SigUtils.verifySignature(hdr, SECRET_KEY, props, payload);
+		}
+
+		long start = System.nanoTime();
+		for(int i = 0; i < iterations; ++i) {
+			LegacySig.buildAuthHeader(algo, "accesskey", SECRET_KEY, TIMESTAMP, i, payload, props);
+		}
+		long legacySign = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for(int i = 0; i < iterations; ++i) {
+			LegacySig.verifySignature(hdr, SECRET_KEY, props, payload);
+		}
+		long legacyVerify = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for(int i = 0; i < iterations; ++i) {
+			SigUtils.buildAuthHeader(algo, "accesskey", SECRET_KEY, TIMESTAMP, i, payload, props);
+		}
+		long sign = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for(int i = 0; i < iterations; ++i) {
+			SigUtils.verifySignature(hdr, SECRET_KEY, props, payload);
+		}
+		long verify = System.nanoTime() - start;
+
+		System.err.printf("Legacy : sign = %8.0f msg/s, verify = %8.0f msg/s\n", iterations * 1e9 / legacySign, iterations * 1e9 / legacyVerify);
+		System.err.printf("Current: sign = %8.0f msg/s, verify = %8.0f msg/s\n", iterations * 1e9 / sign, iterations * 1e9 / verify);
+	}
+
+	/**
+	 * The original, allocation-heavy implementation, for comparison.
+	 */
+	private static class LegacySig {
+		private static final Map<String, java.util.function.Function<AMQP.BasicProperties, String>> PROPERTIES = new TreeMap<>() {{
+			put("app-id", AMQP.BasicProperties::getAppId);
+			put("cluster-id", AMQP.BasicProperties::getClusterId);
+			put("content-encoding", AMQP.BasicProperties::getContentEncoding);
+			put("content-type", AMQP.BasicProperties::getContentType);
+			put("correlation-id", AMQP.BasicProperties::getCorrelationId);
+			put("delivery-mode", p -> p.getDeliveryMode() == null ? null : String.valueOf(p.getDeliveryMode()));
+			put("expiration", AMQP.BasicProperties::getExpiration);
+			put("message-id", AMQP.BasicProperties::getMessageId);
+			put("priority", p -> p.getPriority() == null ? null : String.valueOf(p.getPriority()));
+			put("reply-to", AMQP.BasicProperties::getReplyTo);
+			put("timestamp", p -> p.getTimestamp() == null ? null : String.valueOf(p.getTimestamp().toInstant().getEpochSecond()));
+			put("type", AMQP.BasicProperties::getType);
+			put("user-id", AMQP.BasicProperties::getUserId);
+		}};
+
+		private static byte[] hmacCascade(Mac mac, byte[] key, byte[] data, byte[] out) {
+			mac.reset();
+			mac.init(new KeyParameter(key));
+			mac.update(data, 0, data.length);
+			mac.doFinal(out, 0);
+			return out;
+		}
+
+		private static StringBuilder writeHex(StringBuilder sb, byte[] payload) {
+			final String characters = "0123456789abcdef";
+			for(byte b : payload) {
+				sb.append(characters.charAt((b >> 4) & 0x0F));
+				sb.append(characters.charAt(b & 0x0F));
+			}
+			return sb;
+		}
+
+		static String buildAuthHeader(String algorithm, String accessKey, String secretKey, Instant t, long nonce, byte[] payload, AMQP.BasicProperties props) {
+			SigUtils.AlgoInfo algo = SigUtils.ALGORITHMS.get(algorithm);
+			Digest md = algo.getDigest();
+			StringBuilder sb = new StringBuilder();
+			Mac hmac = algo.getMac();
+			byte[] buf = new byte[hmac.getMacSize()];
+			byte[] buf2 = new byte[md.getDigestSize()];
+
+			ZonedDateTime zdt = t.atZone(ZoneOffset.UTC);
+			String timestamp = String.format("%04d%02d%02dT%02d%02d%02dZ",
+					zdt.get(ChronoField.YEAR),
+					zdt.get(ChronoField.MONTH_OF_YEAR),
+					zdt.get(ChronoField.DAY_OF_MONTH),
+					zdt.get(ChronoField.HOUR_OF_DAY),
+					zdt.get(ChronoField.MINUTE_OF_HOUR),
+					zdt.get(ChronoField.SECOND_OF_MINUTE)
+			);
+
+			String appid = props.getAppId();
+			if(appid == null) {
+				appid = SigUtils.DEFAULT_APPID;
+			}
+
+			hmacCascade(hmac, ("NIM1" + secretKey).getBytes(StandardCharsets.UTF_8), timestamp.getBytes(StandardCharsets.UTF_8), buf);
+			hmacCascade(hmac, buf, Long.toUnsignedString(nonce).getBytes(StandardCharsets.UTF_8), buf);
+			hmacCascade(hmac, buf, appid.getBytes(StandardCharsets.UTF_8), buf);
+
+			TreeMap<String, String> properties = new TreeMap<>();
+			PROPERTIES.forEach((k, v) -> {
+				String val = v.apply(props);
+				if(val != null) {
+					properties.put(k, val);
+				}
+			});
+
+			TreeMap<String, String> headers = new TreeMap<>();
+			if(props.getHeaders() != null) {
+				props.getHeaders().forEach((k, v) -> headers.put(k.toLowerCase(Locale.US), v.toString()));
+			}
+
+			properties.forEach((k, v) -> sb.append(k).append(":").append(v).append("\n"));
+			sb.append("\n");
+			properties.keySet().forEach(s -> sb.append(s).append(";"));
+			sb.setLength(sb.length() - 1);
+			sb.append("\n");
+			headers.forEach((k, v) -> sb.append(k).append(":").append(v).append("\n"));
+			sb.append("\n");
+			headers.keySet().forEach(s -> sb.append(s).append(";"));
+			sb.setLength(sb.length() - 1);
+			sb.append("\n");
+
+			md.reset();
+			md.update(payload, 0, payload.length);
+			md.doFinal(buf2, 0);
+			writeHex(sb, buf2);
+			String canonicalRequest = sb.toString();
+
+			sb.setLength(0);
+			sb.append(algorithm).append("\n");
+			sb.append(timestamp).append("\n");
+			sb.append(timestamp).append("/").append(Long.toUnsignedString(nonce)).append("/").append(appid).append("\n");
+			md.reset();
+			byte[] cbytes = canonicalRequest.getBytes(StandardCharsets.UTF_8);
+			md.update(cbytes, 0, cbytes.length);
+			md.doFinal(buf2, 0);
+			writeHex(sb, buf2);
+			String sts = sb.toString();
+
+			hmacCascade(hmac, buf, sts.getBytes(StandardCharsets.UTF_8), buf);
+
+			sb.setLength(0);
+			return String.format("%s Credential=%s, SignedProperties=%s, SignedHeaders=%s, Signature=%s",
+					algorithm,
+					accessKey + "/" + timestamp + "/" + Long.toUnsignedString(nonce) + "/" + appid,
+					String.join(";", properties.keySet()),
+					String.join(";", headers.keySet()),
+					writeHex(sb, buf).toString()
+			);
+		}
+
+		static boolean verifySignature(AuthHeader hdr, String secretKey, AMQP.BasicProperties props, byte[] payload) {
+			AMQP.BasicProperties newProps = SigUtils.buildBasicProperties(hdr, props);
+			if(newProps == null) {
+				return false;
+			}
+
+			return buildAuthHeader(hdr.algorithm, hdr.accessKey, secretKey, hdr.timestamp, hdr.nonce, payload, newProps).equals(hdr.header);
+		}
+	}
 }
@@ -0,0 +1,119 @@
+package au.edu.uq.rcc.nimrodg.master;
+
+import au.edu.uq.rcc.nimrodg.api.NimrodMasterAPI;
+import au.edu.uq.rcc.nimrodg.master.sched.DefaultAgentScheduler;
+import au.edu.uq.rcc.nimrodg.master.sched.DefaultJobScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link WakeSignal} and {@link Master#waitForWork(long, long)}.
+ *
+ * Waits never return early, so elapsed times are only ever checked against a lower bound.
+ * Upper bounds are enforced by the test timeouts, far larger than anything waited for.
+ */
+@Timeout(value = 30, unit = TimeUnit.SECONDS)
+public class WaitForWorkTests {
+
+	/* Longer than the test timeout, so only a wakeup can end the wait in time. */
+	private static final long FOREVER_MS = TimeUnit.MINUTES.toMillis(10);
+
+	private long createTime;
+	private Master master;
+
+	@BeforeEach
+	public void before() {
+		/* The master doesn't touch the API until it's ticked, nothing should get through. */
+		NimrodMasterAPI nimrod = (NimrodMasterAPI)Proxy.newProxyInstance(
+				NimrodMasterAPI.class.getClassLoader(),
+				new Class<?>[]{NimrodMasterAPI.class},
+				(proxy, method, args) -> null
+		);
+
+		createTime = System.nanoTime();
+		master = new Master(nimrod, null, DefaultJobScheduler.FACTORY, DefaultAgentScheduler.FACTORY);
+	}
+
+	@AfterEach
+	public void after() {
+		master.close();
+	}
+
+	private long elapsedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - createTime);
+	}
+
+	@Test
+	public void signalNotLostTest() throws InterruptedException {
+		WakeSignal ws = new WakeSignal();
+
+		/* Signal before anyone's waiting, it should stick. */
+		ws.signal();
+		Assertions.assertTrue(ws.await(0));
+
+		/* And then be consumed. */
+		Assertions.assertFalse(ws.await(0));
+	}
+
+	@Test
+	public void signalWakesWaiterTest() throws InterruptedException {
+		WakeSignal ws = new WakeSignal();
+
+		/* Whether this signals before or during the wait, the wait ends. */
+		Thread t = new Thread(ws::signal);
+		t.start();
+		Assertions.assertTrue(ws.await(TimeUnit.MILLISECONDS.toNanos(FOREVER_MS)));
+		t.join();
+	}
+
+	@Test
+	public void signalTimeoutTest() throws InterruptedException {
+		WakeSignal ws = new WakeSignal();
+
+		long start = System.nanoTime();
+		Assertions.assertFalse(ws.await(TimeUnit.MILLISECONDS.toNanos(50)));
+		Assertions.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+	}
+
+	@Test
+	public void invalidIntervalTest() {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> master.waitForWork(-1, 10));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> master.waitForWork(10, 5));
+	}
+
+	@Test
+	public void wakeUpTest() throws InterruptedException {
+		/* Woken before waiting, this mustn't wait for the maximum interval. */
+		master.wakeUp();
+		master.waitForWork(0, FOREVER_MS);
+	}
+
+	@Test
+	public void wakeUpFromOtherThreadTest() throws InterruptedException {
+		Thread t = new Thread(master::wakeUp);
+		t.start();
+		master.waitForWork(0, FOREVER_MS);
+		t.join();
+	}
+
+	@Test
+	public void maxIntervalTest() throws InterruptedException {
+		/* Nothing to wake us, so this should return once the maximum interval has passed. */
+		master.waitForWork(0, 100);
+		Assertions.assertTrue(elapsedMillis() >= 100);
+	}
+
+	@Test
+	public void minIntervalTest() throws InterruptedException {
+		/* Even when woken, ticks can't be closer together than the minimum interval. */
+		master.wakeUp();
+		master.waitForWork(100, FOREVER_MS);
+		Assertions.assertTrue(elapsedMillis() >= 100);
+	}
+}
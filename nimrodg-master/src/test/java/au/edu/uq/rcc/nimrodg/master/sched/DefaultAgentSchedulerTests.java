@@ -0,0 +1,150 @@
+package au.edu.uq.rcc.nimrodg.master.sched;
+
+import au.edu.uq.rcc.nimrodg.agent.Agent;
+import au.edu.uq.rcc.nimrodg.api.AgentInfo;
+import au.edu.uq.rcc.nimrodg.api.JobAttempt;
+import au.edu.uq.rcc.nimrodg.api.Resource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class DefaultAgentSchedulerTests {
+
+	private TestAgentOps ops;
+	private DefaultAgentScheduler sched;
+
+	@BeforeEach
+	public void before() {
+		ops = new TestAgentOps();
+		sched = new DefaultAgentScheduler();
+		sched.setAgentOperations(ops);
+	}
+
+	private TestJobOps experiment(String name, Resource... resources) {
+		TestJobOps jops = new TestJobOps(name);
+		for(Resource res : resources) {
+			ops.assign(res, jops.getExperiment());
+		}
+		return jops;
+	}
+
+	private Collection<JobAttempt> addJobs(TestJobOps jops, int n) {
+		List<TestJobOps.TestJob> jobs = new ArrayList<>(n);
+		for(int i = 0; i < n; ++i) {
+			jobs.add(jops.addJob(Map.of()));
+		}
+		return jops.runJobs(new ArrayList<>(jobs));
+	}
+
+	/*
+	 * Add an agent that's still connecting, so jobs are held for it rather than requeued.
+	 * These go through resync(), the agent demand heuristic doesn't know about them.
+	 */
+	private TestAgentOps.TestAgent addAgent(Resource res) {
+		TestAgentOps.TestAgent ag = ops.addAgent(res);
+		sched.resync(Set.of(ag), Set.of());
+		return ag;
+	}
+
+	private void makeReady(TestAgentOps.TestAgent ag) {
+		ag.state = AgentInfo.State.READY;
+		sched.resync(Set.of(ag), Set.of());
+	}
+
+	/* Queue the attempts and tick, there are no ready agents so they're all held. */
+	private void hold(Collection<JobAttempt> atts) {
+		atts.forEach(sched::onJobRun);
+		sched.tick();
+		Assertions.assertTrue(ops.runs.isEmpty());
+	}
+
+	@Test
+	public void heldJobOrderTest() {
+		Resource r0 = new TestAgentOps.TestResource("r0");
+		Resource r1 = new TestAgentOps.TestResource("r1");
+		TestJobOps e0 = experiment("e0", r0, r1);
+		TestJobOps e1 = experiment("e1", r1);
+
+		TestAgentOps.TestAgent a0 = addAgent(r0);
+		TestAgentOps.TestAgent a1 = addAgent(r1);
+
+		JobAttempt first = addJobs(e1, 1).iterator().next();
+		hold(List.of(first));
+		JobAttempt second = addJobs(e0, 1).iterator().next();
+		hold(List.of(second));
+
+		/* r0 can't run e1's jobs, so it skips to e0's, even though e1's was held first. */
+		makeReady(a0);
+		sched.tick();
+		Assertions.assertEquals(Map.of(second, a0), ops.runs);
+
+		a0.state = AgentInfo.State.BUSY;
+		sched.onAgentStateUpdate(a0, r0, AgentInfo.State.READY, AgentInfo.State.BUSY);
+
+		/* r1 can run both, so it gets the one held first. */
+		ops.runs.clear();
+		hold(addJobs(e0, 1));
+		makeReady(a1);
+		sched.tick();
+		Assertions.assertEquals(List.of(first), new ArrayList<>(ops.runs.keySet()));
+	}
+
+	/* Returns the time taken to release the jobs, in milliseconds. */
+	private double releaseHeldJobs(int nResources, int nAgents, int nJobs) {
+		/* Each experiment may only run on its own resource. */
+		List<Resource> resources = new ArrayList<>(nResources);
+		List<TestJobOps> exps = new ArrayList<>(nResources);
+		for(int i = 0; i < nResources; ++i) {
+			Resource res = new TestAgentOps.TestResource("r" + i);
+			resources.add(res);
+			exps.add(experiment("e" + i, res));
+		}
+
+		List<TestAgentOps.TestAgent> agents = new ArrayList<>(nAgents);
+		for(int i = 0; i < nAgents; ++i) {
+			agents.add(addAgent(resources.get(i % nResources)));
+		}
+
+		List<JobAttempt> atts = new ArrayList<>(nJobs);
+		for(TestJobOps e : exps) {
+			atts.addAll(addJobs(e, nJobs / nResources));
+		}
+		hold(atts);
+
+		agents.forEach(this::makeReady);
+
+		ops.capabilityChecks = ops.assignmentChecks = 0;
+		long start = System.nanoTime();
+		sched.tick();
+		double taken = (System.nanoTime() - start) / 1e6;
+
+		/* Every agent gets a job it can run. */
+		Assertions.assertEquals(nAgents, ops.runs.size());
+		ops.runs.forEach((att, ag) -> Assertions.assertTrue(ops.getAssignedResources(att.getJob().getExperiment()).contains(ops.getAgentResource(ag))));
+		Assertions.assertEquals(nAgents, ops.runs.values().stream().map(Agent::getUUID).distinct().count());
+
+		/* Checked once per resource and experiment, not once per held job. */
+		Assertions.assertTrue(ops.capabilityChecks <= nResources * nResources);
+		return taken;
+	}
+
+	@Test
+	public void heldJobReleaseTest() {
+		releaseHeldJobs(10, 50, 1000);
+	}
+
+	@Test
+	@Tag("benchmark")
+	public void heldJobReleaseBenchmark() {
+		int nResources = 10, nAgents = 5000, nJobs = 100000;
+		double taken = releaseHeldJobs(nResources, nAgents, nJobs);
+		System.err.printf("Released %d of %d held jobs to %d agents in %.1f ms\n", nAgents, nJobs, nAgents, taken);
+	}
+}
@@ -0,0 +1,216 @@
+package au.edu.uq.rcc.nimrodg.master.sched;
+
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentUpdate;
+import au.edu.uq.rcc.nimrodg.api.CommandResult;
+import au.edu.uq.rcc.nimrodg.api.JobAttempt;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class DefaultJobSchedulerTests {
+
+	private TestJobOps ops;
+	private DefaultJobScheduler sched;
+	private UUID agentUuid;
+
+	@BeforeEach
+	public void before() {
+		ops = new TestJobOps("exp1");
+		sched = new DefaultJobScheduler();
+		sched.setJobOperations(ops);
+		agentUuid = UUID.randomUUID();
+	}
+
+	private TestJobOps.TestAttempt lastAttempt() {
+		return ops.launched.get(ops.launched.size() - 1);
+	}
+
+	private void launchAndFail() {
+		sched.tick();
+		TestJobOps.TestAttempt att = lastAttempt();
+		sched.onJobLaunchSuccess(att, agentUuid);
+		sched.onJobFailure(att, AgentScheduler.Operations.FailureReason.CRASHED);
+	}
+
+	@Test
+	public void defaultRetryLimitTest() {
+		ops.addJob(Map.of());
+
+		/* The initial attempt, then 3 retries. */
+		for(int i = 0; i < 4; ++i) {
+			launchAndFail();
+			Assertions.assertEquals(i + 1, ops.launched.size());
+		}
+
+		Assertions.assertFalse(sched.tick());
+		Assertions.assertEquals(4, ops.launched.size());
+		Assertions.assertEquals(0, ops.statusFetches);
+	}
+
+	@Test
+	public void experimentRetryOverrideTest() {
+		sched.onConfigChange("nimrod.sched.default.max_retries", null, "5");
+		sched.onConfigChange("nimrod.sched.default.max_retries.exp2", null, "2");
+		sched.onConfigChange("nimrod.sched.default.max_retries.exp1", null, "0");
+
+		ops.addJob(Map.of());
+		launchAndFail();
+		Assertions.assertFalse(sched.tick());
+		Assertions.assertEquals(1, ops.launched.size());
+
+		/* Unsetting the override falls back to the global limit. */
+		sched.onConfigChange("nimrod.sched.default.max_retries.exp1", "0", null);
+		sched.onJobAdd(2, 2);
+		ops.addJob(Map.of());
+		for(int i = 0; i < 6; ++i) {
+			launchAndFail();
+		}
+		Assertions.assertFalse(sched.tick());
+		Assertions.assertEquals(7, ops.launched.size());
+	}
+
+	@Test
+	public void completionTest() {
+		ops.addJob(Map.of());
+		launchAndFail();
+
+		sched.tick();
+		TestJobOps.TestAttempt att = lastAttempt();
+		sched.onJobLaunchSuccess(att, agentUuid);
+
+		/* Not stopped yet, so still running. */
+		AgentUpdate au = new AgentUpdate.Builder()
+				.agentUuid(agentUuid)
+				.timestamp(Instant.now())
+				.jobUuid(att.getUUID())
+				.commandResult(new AgentUpdate.CommandResult_(CommandResult.CommandResultStatus.SUCCESS, 0, 1.0f, 0, "", 0))
+				.action(AgentUpdate.Action.Continue)
+				.build();
+		sched.onJobUpdate(att, au, 2);
+		Assertions.assertTrue(sched.tick());
+
+		sched.onJobUpdate(att, TestJobOps.stopUpdate(att, CommandResult.CommandResultStatus.SUCCESS), 2);
+		Assertions.assertEquals(JobAttempt.Status.COMPLETED, att.getStatus());
+		Assertions.assertFalse(sched.tick());
+		Assertions.assertEquals(2, ops.launched.size());
+		Assertions.assertEquals(0, ops.statusFetches);
+	}
+
+	@Test
+	public void resyncTest() {
+		TestJobOps.TestJob j = ops.addJob(Map.of());
+		JobAttempt att = ops.runJobs(List.of(j)).iterator().next();
+		ops.updateJobStarted(att, agentUuid);
+
+		/* A recovered attempt, its status comes from the "database". */
+		sched.recordAttempts(List.of(att), List.of(j));
+		sched.tick();
+		Assertions.assertEquals(1, ops.launched.size());
+
+		sched.onJobUpdate(att, TestJobOps.stopUpdate(att, CommandResult.CommandResultStatus.FAILED), 1);
+
+		/* Rescheduled, once. */
+		sched.tick();
+		Assertions.assertEquals(2, ops.launched.size());
+		Assertions.assertEquals(0, ops.statusFetches);
+	}
+
+	@Test
+	public void pendingLaunchCountTest() {
+		addJobs(3);
+		sched.tick();
+		Assertions.assertEquals(3, sched.getPendingLaunchCount());
+
+		TestJobOps.TestAttempt att = ops.launched.get(0);
+		sched.onJobLaunchSuccess(att, agentUuid);
+		Assertions.assertEquals(2, sched.getPendingLaunchCount());
+
+		/* Failed attempts aren't pending, the retry is once it's launched. */
+		sched.onJobFailure(att, AgentScheduler.Operations.FailureReason.CRASHED);
+		Assertions.assertEquals(2, sched.getPendingLaunchCount());
+		sched.tick();
+		Assertions.assertEquals(3, sched.getPendingLaunchCount());
+
+		for(TestJobOps.TestAttempt a : ops.launched.subList(1, 4)) {
+			sched.onJobLaunchSuccess(a, agentUuid);
+			sched.onJobUpdate(a, TestJobOps.stopUpdate(a, CommandResult.CommandResultStatus.SUCCESS), 1);
+		}
+		Assertions.assertEquals(0, sched.getPendingLaunchCount());
+	}
+
+	private void addJobs(int n) {
+		for(int i = 0; i < n; ++i) {
+			ops.addJob(Map.of());
+		}
+	}
+
+	@Test
+	public void staticBufferTest() {
+		sched.onConfigChange("nimrod.sched.default.job_buf_adaptive", null, "false");
+		ops.liveAgents = 2000;
+		addJobs(5000);
+
+		sched.tick();
+		Assertions.assertEquals(1000, ops.launched.size());
+	}
+
+	@Test
+	public void adaptiveBufferAgentsTest() {
+		addJobs(5000);
+
+		/* Few agents, only buffer the minimum. */
+		ops.liveAgents = 10;
+		sched.tick();
+		Assertions.assertEquals(100, ops.launched.size());
+
+		/* Many agents, buffer enough for all of them. */
+		ops = new TestJobOps("exp1");
+		sched = new DefaultJobScheduler();
+		sched.setJobOperations(ops);
+		addJobs(5000);
+		ops.liveAgents = 2000;
+		sched.tick();
+		Assertions.assertEquals(2000, ops.launched.size());
+
+		/* ...unless that's too many. */
+		ops = new TestJobOps("exp1");
+		sched = new DefaultJobScheduler();
+		sched.onConfigChange("nimrod.sched.default.job_buf_max_size", null, "1500");
+		sched.setJobOperations(ops);
+		addJobs(5000);
+		ops.liveAgents = 2000;
+		sched.tick();
+		Assertions.assertEquals(1500, ops.launched.size());
+	}
+
+	@Test
+	public void adaptiveBufferRateTest() {
+		JobSchedulerSimulationTests.SimClock clock = new JobSchedulerSimulationTests.SimClock();
+		sched = new DefaultJobScheduler(clock);
+		sched.setJobOperations(ops);
+		ops.liveAgents = 10;
+		addJobs(5000);
+
+		sched.tick();
+		Assertions.assertEquals(100, ops.launched.size());
+
+		/* Launch and finish most of them within a second. */
+		List<TestJobOps.TestAttempt> atts = List.copyOf(ops.launched);
+		atts.forEach(att -> sched.onJobLaunchSuccess(att, agentUuid));
+		atts.subList(0, 95).forEach(att -> sched.onJobUpdate(att, TestJobOps.stopUpdate(att, CommandResult.CommandResultStatus.SUCCESS), 1));
+		clock.now = clock.now.plus(Duration.ofSeconds(1));
+
+		/*
+		 * Smoothed, that's 30 jobs/second. Buffer 30 seconds of that on top of the agents,
+		 * less the 5 still running.
+		 */
+		sched.tick();
+		Assertions.assertEquals(100 + (10 + 900 - 5), ops.launched.size());
+	}
+}
@@ -0,0 +1,163 @@
+package au.edu.uq.rcc.nimrodg.master.sched;
+
+import au.edu.uq.rcc.nimrodg.api.CommandResult;
+import au.edu.uq.rcc.nimrodg.api.JobAttempt;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Simulate running an experiment on a fixed pool of agents and compare the makespan of job schedulers.
+ *
+ * The agent side is a simplified {@link DefaultAgentScheduler}: attempts are queued in the order the
+ * job scheduler hands them out and taken by whichever agent frees up first.
+ */
+public class JobSchedulerSimulationTests {
+
+	private static final int AGENT_COUNT = 20;
+
+	static class SimClock extends Clock {
+		Instant now = Instant.EPOCH;
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public Instant instant() {
+			return now;
+		}
+	}
+
+	private static class Running implements Comparable<Running> {
+		final Instant finish;
+		final JobAttempt att;
+
+		Running(Instant finish, JobAttempt att) {
+			this.finish = finish;
+			this.att = att;
+		}
+
+		@Override
+		public int compareTo(Running o) {
+			return finish.compareTo(o.finish);
+		}
+	}
+
+	/**
+	 * Run a workload to completion.
+	 *
+	 * @param workload The variables of each job, in index order.
+	 * @param runtime The runtime of a job in seconds, given its variables.
+	 * @param factory Create the scheduler, given the simulation clock.
+	 * @return The makespan, in seconds.
+	 */
+	private static double simulate(List<Map<String, String>> workload, ToDoubleFunction<Map<String, String>> runtime, Function<Clock, JobScheduler> factory) {
+		SimClock clock = new SimClock();
+		TestJobOps ops = new TestJobOps("sim");
+		ops.liveAgents = AGENT_COUNT;
+		workload.forEach(ops::addJob);
+
+		JobScheduler sched = factory.apply(clock);
+		sched.setJobOperations(ops);
+
+		Deque<JobAttempt> pending = new ArrayDeque<>();
+		PriorityQueue<Running> running = new PriorityQueue<>();
+		UUID agentUuid = UUID.randomUUID();
+		int handedOut = 0;
+
+		for(;;) {
+			sched.tick();
+			while(handedOut < ops.launched.size()) {
+				pending.add(ops.launched.get(handedOut++));
+			}
+
+			while(running.size() < AGENT_COUNT && !pending.isEmpty()) {
+				JobAttempt att = pending.poll();
+				sched.onJobLaunchSuccess(att, agentUuid);
+				long nanos = (long)(runtime.applyAsDouble(att.getJob().getVariables()) * 1e9);
+				running.add(new Running(clock.now.plusNanos(nanos), att));
+			}
+
+			if(running.isEmpty()) {
+				break;
+			}
+
+			/* Jump to the next completion, and finish everything due then. */
+			clock.now = running.peek().finish;
+			while(!running.isEmpty() && !running.peek().finish.isAfter(clock.now)) {
+				JobAttempt att = running.poll().att;
+				sched.onJobUpdate(att, TestJobOps.stopUpdate(att, CommandResult.CommandResultStatus.SUCCESS), 1);
+			}
+		}
+
+		Assertions.assertTrue(ops.jobs.stream().allMatch(j -> j.getCachedStatus() == JobAttempt.Status.COMPLETED));
+		return Duration.between(Instant.EPOCH, clock.now).toNanos() / 1e9;
+	}
+
+	private static double lowerBound(List<Map<String, String>> workload, ToDoubleFunction<Map<String, String>> runtime) {
+		double total = workload.stream().mapToDouble(runtime).sum();
+		double longest = workload.stream().mapToDouble(runtime).max().orElse(0);
+		return Math.max(total / AGENT_COUNT, longest);
+	}
+
+	private static double[] compare(List<Map<String, String>> workload, ToDoubleFunction<Map<String, String>> runtime) {
+		double def = simulate(workload, runtime, DefaultJobScheduler::new);
+		double ljf = simulate(workload, runtime, LongestJobFirstScheduler::new);
+
+		/* Simulated runtimes are truncated to nanoseconds. */
+		double lb = lowerBound(workload, runtime) - 1e-6;
+		Assertions.assertTrue(def >= lb);
+		Assertions.assertTrue(ljf >= lb);
+		return new double[]{def, ljf};
+	}
+
+	@Test
+	public void slowTailTest() {
+		/* Runtime grows steeply with x, which grows with the index. The slowest jobs come last. */
+		int n = 1000;
+		Random rng = new Random(0);
+		List<Map<String, String>> workload = new ArrayList<>(n);
+		for(int i = 0; i < n; ++i) {
+			workload.add(Map.of("x", String.valueOf((double)i / n), "seed", String.valueOf(rng.nextInt(10))));
+		}
+
+		double[] r = compare(workload, v -> 10 + 2000 * Math.pow(Double.parseDouble(v.get("x")), 8));
+		Assertions.assertTrue(r[1] < r[0]);
+	}
+
+	@Test
+	public void shuffledTest() {
+		/* Runtime depends on two variables, in no particular index order. */
+		int n = 1000;
+		Random rng = new Random(1);
+		List<Map<String, String>> workload = new ArrayList<>(n);
+		for(int i = 0; i < n; ++i) {
+			workload.add(Map.of("a", String.valueOf(rng.nextInt(10)), "b", String.valueOf(rng.nextInt(10))));
+		}
+
+		double[] r = compare(workload, v -> 5 + 10 * Integer.parseInt(v.get("a")) + (Integer.parseInt(v.get("b")) == 9 ? 600 : 0));
+		Assertions.assertTrue(r[1] <= r[0]);
+	}
+}
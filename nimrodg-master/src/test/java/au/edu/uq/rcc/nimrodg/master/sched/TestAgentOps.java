@@ -0,0 +1,266 @@
+package au.edu.uq.rcc.nimrodg.master.sched;
+
+import au.edu.uq.rcc.nimrodg.agent.Agent;
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentMessage;
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentPong;
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentUpdate;
+import au.edu.uq.rcc.nimrodg.agent.messages.NetworkJob;
+import au.edu.uq.rcc.nimrodg.api.AgentInfo;
+import au.edu.uq.rcc.nimrodg.api.Experiment;
+import au.edu.uq.rcc.nimrodg.api.JobAttempt;
+import au.edu.uq.rcc.nimrodg.api.NimrodURI;
+import au.edu.uq.rcc.nimrodg.api.Resource;
+import au.edu.uq.rcc.nimrodg.api.ResourceType;
+
+import javax.json.JsonStructure;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * An in-memory {@link AgentScheduler.Operations}, standing in for the master.
+ *
+ * Every assigned resource is capable, and agents only change state when told to.
+ */
+public class TestAgentOps implements AgentScheduler.Operations {
+
+	static class TestResource implements Resource {
+		private final String name;
+
+		TestResource(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public String getTypeName() {
+			return "test";
+		}
+
+		@Override
+		public ResourceType getType() {
+			return null;
+		}
+
+		@Override
+		public JsonStructure getConfig() {
+			return null;
+		}
+
+		@Override
+		public NimrodURI getAMQPUri() {
+			return null;
+		}
+
+		@Override
+		public NimrodURI getTransferUri() {
+			return null;
+		}
+	}
+
+	static class TestAgent implements Agent {
+		private final UUID uuid;
+		AgentInfo.State state;
+
+		TestAgent() {
+			this.uuid = UUID.randomUUID();
+			this.state = AgentInfo.State.WAITING_FOR_HELLO;
+		}
+
+		@Override
+		public AgentInfo.State getState() {
+			return state;
+		}
+
+		@Override
+		public String getQueue() {
+			return null;
+		}
+
+		@Override
+		public UUID getUUID() {
+			return uuid;
+		}
+
+		@Override
+		public int getShutdownSignal() {
+			return -1;
+		}
+
+		@Override
+		public AgentInfo.ShutdownReason getShutdownReason() {
+			return null;
+		}
+
+		@Override
+		public Instant getLastHeardFrom() {
+			return null;
+		}
+
+		@Override
+		public void submitJob(NetworkJob job) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void cancelJob() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void ping() {
+
+		}
+
+		@Override
+		public void terminate() {
+
+		}
+
+		@Override
+		public void processMessage(AgentMessage msg, Instant receivedAt) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void disconnect(AgentInfo.ShutdownReason reason, int signal) {
+
+		}
+
+		@Override
+		public void sendMessage(AgentMessage.Builder msg) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void reportJobSubmit(NetworkJob job) {
+
+		}
+
+		@Override
+		public void reportJobUpdate(AgentUpdate au) {
+
+		}
+
+		@Override
+		public void reportPong(AgentPong pong) {
+
+		}
+
+		@Override
+		public void reportStateChange(AgentInfo.State oldState, AgentInfo.State newState) {
+
+		}
+	}
+
+	private final Map<Experiment, List<Resource>> assignments;
+	private final Map<Resource, List<Agent>> resourceAgents;
+	private final Map<Agent, Resource> agentResources;
+	/* Every job run, and the agent it was run on, in order. */
+	final LinkedHashMap<JobAttempt, Agent> runs;
+	int capabilityChecks;
+	int assignmentChecks;
+
+	public TestAgentOps() {
+		this.assignments = new HashMap<>();
+		this.resourceAgents = new HashMap<>();
+		this.agentResources = new HashMap<>();
+		this.runs = new LinkedHashMap<>();
+		this.capabilityChecks = 0;
+		this.assignmentChecks = 0;
+	}
+
+	void assign(Resource res, Experiment exp) {
+		assignments.computeIfAbsent(exp, e -> new ArrayList<>()).add(res);
+		resourceAgents.computeIfAbsent(res, r -> new ArrayList<>());
+	}
+
+	TestAgent addAgent(Resource res) {
+		TestAgent ag = new TestAgent();
+		resourceAgents.computeIfAbsent(res, r -> new ArrayList<>()).add(ag);
+		agentResources.put(ag, res);
+		return ag;
+	}
+
+	@Override
+	public UUID[] launchAgents(Resource res, int num) {
+		UUID[] uuids = new UUID[num];
+		for(int i = 0; i < num; ++i) {
+			uuids[i] = UUID.randomUUID();
+		}
+		return uuids;
+	}
+
+	@Override
+	public void terminateAgent(Agent agent) {
+
+	}
+
+	@Override
+	public UUID runJob(JobAttempt att, Agent agent) {
+		runs.put(att, agent);
+		return UUID.randomUUID();
+	}
+
+	@Override
+	public void runUnmanagedJob(NetworkJob job, Agent agent) throws IllegalArgumentException {
+
+	}
+
+	@Override
+	public void cancelCurrentJob(Agent agent) {
+
+	}
+
+	@Override
+	public Collection<Resource> getResources() {
+		return resourceAgents.keySet();
+	}
+
+	@Override
+	public Collection<Resource> getAssignedResources(Experiment exp) {
+		++assignmentChecks;
+		return assignments.getOrDefault(exp, List.of());
+	}
+
+	@Override
+	public Optional<NimrodURI> resolveTransferUri(Resource res, Experiment exp) {
+		return Optional.empty();
+	}
+
+	@Override
+	public boolean isResourceCapable(Resource node, Experiment exp) {
+		++capabilityChecks;
+		return true;
+	}
+
+	@Override
+	public void addResourceCaps(Resource node, Experiment exp) {
+
+	}
+
+	@Override
+	public Resource getAgentResource(Agent agent) {
+		return agentResources.get(agent);
+	}
+
+	@Override
+	public List<Agent> getResourceAgents(Resource node) {
+		return resourceAgents.getOrDefault(node, List.of());
+	}
+
+	@Override
+	public void reportJobFailure(JobAttempt att, Agent agent, FailureReason r) {
+
+	}
+}
@@ -0,0 +1,296 @@
+package au.edu.uq.rcc.nimrodg.master.sched;
+
+import au.edu.uq.rcc.nimrodg.agent.messages.AgentUpdate;
+import au.edu.uq.rcc.nimrodg.api.CommandResult;
+import au.edu.uq.rcc.nimrodg.api.Experiment;
+import au.edu.uq.rcc.nimrodg.api.Job;
+import au.edu.uq.rcc.nimrodg.api.JobAttempt;
+import au.edu.uq.rcc.nimrodg.api.JobCursor;
+import au.edu.uq.rcc.nimrodg.api.Task;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * An in-memory {@link JobScheduler.Operations}, standing in for the master and database.
+ */
+public class TestJobOps implements JobScheduler.Operations {
+
+	static class TestExperiment implements Experiment {
+		private final String name;
+
+		TestExperiment(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public State getState() {
+			return State.STARTED;
+		}
+
+		@Override
+		public String getWorkingDirectory() {
+			return name;
+		}
+
+		@Override
+		public Instant getCreationTime() {
+			return Instant.EPOCH;
+		}
+
+		@Override
+		public Set<String> getVariables() {
+			return Set.of();
+		}
+
+		@Override
+		public Map<Task.Name, Task> getTasks() {
+			return Map.of();
+		}
+
+		@Override
+		public Task getTask(Task.Name name) {
+			return null;
+		}
+
+		@Override
+		public boolean isPersistent() {
+			return false;
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+	}
+
+	class TestJob implements Job {
+		final long index;
+		final Map<String, String> variables;
+		final List<TestAttempt> attempts;
+
+		TestJob(long index, Map<String, String> variables) {
+			this.index = index;
+			this.variables = variables;
+			this.attempts = new ArrayList<>();
+		}
+
+		@Override
+		public Experiment getExperiment() {
+			return experiment;
+		}
+
+		@Override
+		public long getIndex() {
+			return index;
+		}
+
+		@Override
+		public Map<String, String> getVariables() {
+			return variables;
+		}
+
+		@Override
+		public Instant getCreationTime() {
+			return Instant.EPOCH;
+		}
+
+		@Override
+		public JobAttempt.Status getCachedStatus() {
+			return deriveStatus(this);
+		}
+	}
+
+	class TestAttempt implements JobAttempt {
+		final TestJob job;
+		final UUID uuid;
+		Status status;
+		UUID agentUuid;
+
+		TestAttempt(TestJob job) {
+			this.job = job;
+			this.uuid = UUID.randomUUID();
+			this.status = Status.NOT_RUN;
+			this.agentUuid = null;
+		}
+
+		@Override
+		public Job getJob() {
+			return job;
+		}
+
+		@Override
+		public UUID getUUID() {
+			return uuid;
+		}
+
+		@Override
+		public Status getStatus() {
+			return status;
+		}
+
+		@Override
+		public Instant getCreationTime() {
+			return Instant.EPOCH;
+		}
+
+		@Override
+		public Instant getStartTime() {
+			return null;
+		}
+
+		@Override
+		public Instant getFinishTime() {
+			return null;
+		}
+
+		@Override
+		public UUID getAgentUUID() {
+			return agentUuid;
+		}
+	}
+
+	private final TestExperiment experiment;
+	final List<TestJob> jobs;
+	/* Attempts handed out by runJobs(), in order. */
+	final List<TestAttempt> launched;
+	int statusFetches;
+	int liveAgents;
+
+	public TestJobOps(String expName) {
+		this.experiment = new TestExperiment(expName);
+		this.jobs = new ArrayList<>();
+		this.launched = new ArrayList<>();
+		this.statusFetches = 0;
+		this.liveAgents = 0;
+	}
+
+	TestJob addJob(Map<String, String> variables) {
+		TestJob j = new TestJob(jobs.size() + 1, variables);
+		jobs.add(j);
+		return j;
+	}
+
+	static AgentUpdate stopUpdate(JobAttempt att, CommandResult.CommandResultStatus status) {
+		return new AgentUpdate.Builder()
+				.agentUuid(att.getAgentUUID() != null ? att.getAgentUUID() : UUID.randomUUID())
+				.timestamp(Instant.now())
+				.jobUuid(att.getUUID())
+				.commandResult(new AgentUpdate.CommandResult_(status, 0, 1.0f, 0, "", 0))
+				.action(AgentUpdate.Action.Stop)
+				.build();
+	}
+
+	private static JobAttempt.Status deriveStatus(TestJob j) {
+		Set<JobAttempt.Status> s = j.attempts.stream().map(a -> a.status).collect(Collectors.toSet());
+		if(s.contains(JobAttempt.Status.COMPLETED)) {
+			return JobAttempt.Status.COMPLETED;
+		} else if(s.contains(JobAttempt.Status.RUNNING)) {
+			return JobAttempt.Status.RUNNING;
+		} else if(s.contains(JobAttempt.Status.FAILED)) {
+			return JobAttempt.Status.FAILED;
+		}
+		return JobAttempt.Status.NOT_RUN;
+	}
+
+	@Override
+	public Experiment getExperiment() {
+		return experiment;
+	}
+
+	@Override
+	public Collection<Job> filterJobs(Experiment exp, EnumSet<JobAttempt.Status> status, long start, int limit) {
+		return jobs.stream()
+				.filter(j -> j.index >= start && status.contains(deriveStatus(j)))
+				.limit(limit <= 0 ? Long.MAX_VALUE : limit)
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	public JobCursor openJobCursor(Experiment exp, EnumSet<JobAttempt.Status> status, long start) {
+		return new JobCursor() {
+			long position = Math.max(start, 1) - 1;
+
+			@Override
+			public Experiment getExperiment() {
+				return exp;
+			}
+
+			@Override
+			public long getPosition() {
+				return position;
+			}
+
+			@Override
+			public List<Job> fetch(int limit) {
+				List<Job> page = new ArrayList<>(filterJobs(exp, status, position + 1, limit));
+				if(!page.isEmpty()) {
+					position = page.get(page.size() - 1).getIndex();
+				}
+				return page;
+			}
+		};
+	}
+
+	@Override
+	public JobAttempt.Status fetchJobStatus(Job j) {
+		++statusFetches;
+		return deriveStatus((TestJob)j);
+	}
+
+	@Override
+	public Collection<JobAttempt> runJobs(Collection<Job> jobs) {
+		List<JobAttempt> atts = new ArrayList<>(jobs.size());
+		for(Job j : jobs) {
+			TestAttempt att = new TestAttempt((TestJob)j);
+			((TestJob)j).attempts.add(att);
+			launched.add(att);
+			atts.add(att);
+		}
+		return atts;
+	}
+
+	@Override
+	public void cancelJob(JobAttempt att) {
+
+	}
+
+	@Override
+	public void updateExperimentState(Experiment.State state) {
+
+	}
+
+	@Override
+	public void updateJobStarted(JobAttempt att, UUID agentUuid) {
+		TestAttempt ta = (TestAttempt)att;
+		ta.status = JobAttempt.Status.RUNNING;
+		ta.agentUuid = agentUuid;
+	}
+
+	@Override
+	public void updateJobFinished(JobAttempt att, boolean failed) {
+		((TestAttempt)att).status = failed ? JobAttempt.Status.FAILED : JobAttempt.Status.COMPLETED;
+	}
+
+	@Override
+	public void recordCommandResult(JobAttempt att, CommandResult.CommandResultStatus status, long index, float time, int retval, String message, int errcode, boolean stop) {
+
+	}
+
+	@Override
+	public int getLiveAgentCount() {
+		return liveAgents;
+	}
+}
@@ -33,6 +33,7 @@ import au.edu.uq.rcc.nimrodg.api.CommandResult;
 import au.edu.uq.rcc.nimrodg.api.Experiment;
 import au.edu.uq.rcc.nimrodg.api.Job;
 import au.edu.uq.rcc.nimrodg.api.JobAttempt;
+import au.edu.uq.rcc.nimrodg.api.JobCursor;
 import au.edu.uq.rcc.nimrodg.api.MachinePair;
 import au.edu.uq.rcc.nimrodg.agent.messages.NetworkJob;
 import au.edu.uq.rcc.nimrodg.api.NimrodAPI;
@@ -42,6 +43,7 @@ import au.edu.uq.rcc.nimrodg.api.NimrodMasterAPI;
 import au.edu.uq.rcc.nimrodg.api.NimrodURI;
 import au.edu.uq.rcc.nimrodg.api.PlanfileParseException;
 import au.edu.uq.rcc.nimrodg.api.Resource;
+import au.edu.uq.rcc.nimrodg.api.RunCounts;
 import au.edu.uq.rcc.nimrodg.api.Task;
 import au.edu.uq.rcc.nimrodg.api.events.JobAddMasterEvent;
 import au.edu.uq.rcc.nimrodg.api.events.NimrodMasterEvent;
@@ -66,6 +68,7 @@ import java.net.URI;
 import java.nio.file.Path;
 import java.security.cert.Certificate;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumSet;
@@ -278,6 +281,151 @@ public abstract class APITests {
 		}
 	}
 
+	private static RunCounts deriveRunCounts(NimrodAPI api, Experiment exp) {
+		List<JobAttempt.Status> stats = api.getJobStatuses(api.filterJobs(exp, EnumSet.allOf(JobAttempt.Status.class), 0, 0));
+		return new RunCounts(
+				stats.stream().filter(s -> s == JobAttempt.Status.NOT_RUN).count(),
+				stats.stream().filter(s -> s == JobAttempt.Status.RUNNING).count(),
+				stats.stream().filter(s -> s == JobAttempt.Status.COMPLETED).count(),
+				stats.stream().filter(s -> s == JobAttempt.Status.FAILED).count()
+		);
+	}
+
+	@Test
+	public void runCountsTest() throws RunfileBuildException, PlanfileParseException {
+		NimrodMasterAPI api = getNimrodMasterAPI();
+		Experiment exp = api.addExperiment("test1", TestUtils.getSimpleSampleEmptyExperiment());
+		Experiment empty = api.addExperiment("test2", TestUtils.getSimpleSampleEmptyExperiment());
+
+		Assertions.assertEquals(new RunCounts(0, 0, 0, 0), api.getRunCounts(exp));
+
+		List<Job> jobs = new ArrayList<>(api.addJobs(exp, List.of(
+				Map.of("x", "0", "y", "0"),
+				Map.of("x", "1", "y", "0"),
+				Map.of("x", "2", "y", "0"),
+				Map.of("x", "3", "y", "0")
+		)));
+		Assertions.assertEquals(new RunCounts(jobs.size(), 0, 0, 0), api.getRunCounts(exp));
+
+		UUID agentUuid = UUID.randomUUID();
+		List<JobAttempt> atts = api.createJobAttempts(jobs.subList(0, 3));
+		Assertions.assertEquals(new RunCounts(jobs.size(), 0, 0, 0), api.getRunCounts(exp));
+
+		atts.forEach(att -> api.startJobAttempt(att, agentUuid));
+		Assertions.assertEquals(new RunCounts(jobs.size() - 3, 3, 0, 0), api.getRunCounts(exp));
+
+		api.finishJobAttempt(atts.get(0), false);
+		api.finishJobAttempt(atts.get(1), true);
+		Assertions.assertEquals(new RunCounts(jobs.size() - 3, 1, 1, 1), api.getRunCounts(exp));
+
+		/* A successful retry moves the job from FAILED to COMPLETED. */
+		JobAttempt retry = api.createJobAttempts(List.of(jobs.get(1))).get(0);
+		api.startJobAttempt(retry, agentUuid);
+		Assertions.assertEquals(new RunCounts(jobs.size() - 3, 2, 1, 0), api.getRunCounts(exp));
+		api.finishJobAttempt(retry, false);
+		Assertions.assertEquals(new RunCounts(jobs.size() - 3, 1, 2, 0), api.getRunCounts(exp));
+
+		api.addJobs(exp, List.of(Map.of("x", "1", "y", "1")));
+		Assertions.assertEquals(new RunCounts(jobs.size() - 2, 1, 2, 0), api.getRunCounts(exp));
+
+		Assertions.assertEquals(deriveRunCounts(api, exp), api.getRunCounts(exp));
+		Assertions.assertEquals(new RunCounts(0, 0, 0, 0), api.getRunCounts(empty));
+	}
+
+	@Test
+	public void jobCursorTest() throws RunfileBuildException, PlanfileParseException {
+		NimrodMasterAPI api = getNimrodMasterAPI();
+		Experiment exp = api.addExperiment("test1", TestUtils.getSimpleSampleEmptyExperiment());
+
+		List<Job> jobs = new ArrayList<>(api.addJobs(exp, List.of(
+				Map.of("x", "0", "y", "0"),
+				Map.of("x", "1", "y", "0"),
+				Map.of("x", "2", "y", "0"),
+				Map.of("x", "3", "y", "0"),
+				Map.of("x", "4", "y", "0")
+		)));
+
+		UUID agentUuid = UUID.randomUUID();
+		List<JobAttempt> atts = api.createJobAttempts(List.of(jobs.get(0), jobs.get(1), jobs.get(3)));
+		atts.forEach(att -> api.startJobAttempt(att, agentUuid));
+		api.finishJobAttempt(atts.get(0), false);
+		api.finishJobAttempt(atts.get(1), true);
+
+		/* 1 = COMPLETED, 2 = FAILED, 3 = NOT_RUN, 4 = RUNNING, 5 = NOT_RUN */
+		JobCursor cursor = api.openJobCursor(exp, EnumSet.of(JobAttempt.Status.FAILED, JobAttempt.Status.NOT_RUN), 0);
+		Assertions.assertEquals(0, cursor.getPosition());
+		Assertions.assertThrows(IllegalArgumentException.class, () -> cursor.fetch(0));
+
+		/* The limit applies after filtering. */
+		Assertions.assertEquals(List.of(jobs.get(1), jobs.get(2)), cursor.fetch(2));
+		Assertions.assertEquals(3, cursor.getPosition());
+
+		/* Statuses are evaluated at fetch time, 4 is now FAILED. */
+		api.finishJobAttempt(atts.get(2), true);
+		Assertions.assertEquals(List.of(jobs.get(3), jobs.get(4)), cursor.fetch(2));
+		Assertions.assertEquals(5, cursor.getPosition());
+
+		Assertions.assertEquals(List.of(), cursor.fetch(2));
+		Assertions.assertEquals(5, cursor.getPosition());
+
+		/* New jobs are picked up on the next fetch. */
+		Job j6 = api.addSingleJob(exp, Map.of("x", "5", "y", "0"));
+		Assertions.assertEquals(List.of(j6), cursor.fetch(2));
+		Assertions.assertEquals(6, cursor.getPosition());
+
+		JobCursor later = api.openJobCursor(exp, EnumSet.of(JobAttempt.Status.FAILED), 3);
+		Assertions.assertEquals(2, later.getPosition());
+		Assertions.assertEquals(List.of(jobs.get(3)), later.fetch(10));
+	}
+
+	@Test
+	public void deferredWritesTest() throws RunfileBuildException {
+		NimrodMasterAPI api = getNimrodMasterAPI();
+		Experiment exp = api.addExperiment("test1", TestUtils.getSimpleSampleEmptyExperiment());
+
+		List<Job> jobs = new ArrayList<>(api.addJobs(exp, List.of(
+				Map.of("x", "0", "y", "0"),
+				Map.of("x", "1", "y", "0")
+		)));
+
+		UUID agentUuid = UUID.randomUUID();
+		List<JobAttempt> atts = api.createJobAttempts(jobs);
+
+		api.setDeferredWrites(true);
+
+		/* Some backends only store seconds. */
+		Instant started = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+		atts.forEach(att -> api.startJobAttempt(att, agentUuid));
+		Assertions.assertNull(api.addCommandResult(atts.get(0), CommandResult.CommandResultStatus.SUCCESS, 0, 10.0f, 0, "Success", 0, true));
+		api.finishJobAttempt(atts.get(0), false);
+		Instant finished = Instant.now();
+
+		/* Pending writes must be visible before the flush. */
+		Assertions.assertEquals(JobAttempt.Status.COMPLETED, atts.get(0).getStatus());
+		Assertions.assertEquals(agentUuid, atts.get(0).getAgentUUID());
+		Assertions.assertEquals(JobAttempt.Status.RUNNING, atts.get(1).getStatus());
+		Assertions.assertEquals(List.of(JobAttempt.Status.COMPLETED, JobAttempt.Status.RUNNING), api.getJobStatuses(jobs));
+
+		/* Times are when it happened, not when it was written. */
+		api.flush();
+
+		Assertions.assertEquals(List.of(JobAttempt.Status.COMPLETED, JobAttempt.Status.RUNNING), api.getJobStatuses(jobs));
+		Assertions.assertEquals(new RunCounts(0, 1, 1, 0), api.getRunCounts(exp));
+		Assertions.assertFalse(atts.get(0).getStartTime().isBefore(started));
+		Assertions.assertFalse(atts.get(0).getStartTime().isAfter(finished));
+		Assertions.assertFalse(atts.get(0).getFinishTime().isAfter(finished));
+		Assertions.assertFalse(atts.get(0).getFinishTime().isBefore(atts.get(0).getStartTime()));
+
+		List<CommandResult> results = api.getCommandResults(List.of(atts.get(0))).get(atts.get(0));
+		Assertions.assertEquals(1, results.size());
+		Assertions.assertEquals(CommandResult.CommandResultStatus.SUCCESS, results.get(0).getStatus());
+
+		/* Disabling flushes anything outstanding. */
+		api.finishJobAttempt(atts.get(1), true);
+		api.setDeferredWrites(false);
+		Assertions.assertEquals(new RunCounts(0, 0, 1, 1), api.getRunCounts(exp));
+	}
+
 	@Test
 	public void commandResultTest1() throws RunfileBuildException {
 		NimrodMasterAPI api = getNimrodMasterAPI();
@@ -477,6 +625,32 @@ public abstract class APITests {
 		Assertions.assertEquals(as.getActuatorData(), as2.getActuatorData());
 	}
 
+	@Test
+	public void updateAgentsTest() {
+		NimrodMasterAPI mapi = getNimrodMasterAPI();
+
+		Resource rootResource = mapi.addResource("root", "dummy", JsonValue.EMPTY_JSON_OBJECT, null, null);
+
+		List<AgentState> agents = new ArrayList<>();
+		for(int i = 0; i < 3; ++i) {
+			DefaultAgentState as = new DefaultAgentState();
+			new ReferenceAgent(as, new NoopAgentListener()).reset(UUID.randomUUID());
+			mapi.addAgent(rootResource, as);
+			agents.add(as);
+		}
+
+		Instant now = Instant.ofEpochSecond(Instant.now().getEpochSecond());
+		for(int i = 0; i < agents.size(); ++i) {
+			agents.get(i).setLastHeardFrom(now.plusSeconds(i));
+		}
+
+		mapi.updateAgents(agents);
+
+		for(int i = 0; i < agents.size(); ++i) {
+			Assertions.assertEquals(now.plusSeconds(i), mapi.getAgentByUUID(agents.get(i).getUUID()).getLastHeardFrom());
+		}
+	}
+
 	@Test
 	public void fakeAgentTests() throws IllegalArgumentException, IOException {
 		NimrodMasterAPI api = getNimrodMasterAPI();
@@ -690,6 +864,27 @@ public abstract class APITests {
 
 			JobAddMasterEvent ja = (JobAddMasterEvent)nme;
 			Assertions.assertEquals(exp, ja.exp);
+			Assertions.assertEquals(ja.firstIndex, ja.lastIndex);
+		}
+
+		/* Adding multiple jobs at once should be coalesced into a single range. */
+		List<Job> jobs = new ArrayList<>(api.addJobs(exp, List.of(
+				Map.of("x", "x1", "y", "y1"),
+				Map.of("x", "x2", "y", "y2"),
+				Map.of("x", "x3", "y", "y3")
+		)));
+
+		evts = new ArrayList<>(api.pollMasterEvents());
+		Assertions.assertEquals(1, evts.size());
+
+		{
+			NimrodMasterEvent nme = evts.get(0);
+			Assertions.assertEquals(NimrodMasterEvent.Type.JobAdd, nme.getType());
+
+			JobAddMasterEvent ja = (JobAddMasterEvent)nme;
+			Assertions.assertEquals(exp, ja.exp);
+			Assertions.assertEquals(jobs.get(0).getIndex(), ja.firstIndex);
+			Assertions.assertEquals(jobs.get(2).getIndex(), ja.lastIndex);
 		}
 	}
 